@@ -0,0 +1,79 @@
+package in.projecteka.gateway;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static in.projecteka.gateway.common.Constants.API_CALLED;
+import static in.projecteka.gateway.common.Constants.CORRELATION_ID;
+
+/**
+ * Mirrors the operator chain of {@code RequestOrchestrator.handleThis} and {@code offloadThis}: a context read,
+ * validation, the request id swap and the forward. Compare {@code lifted} against {@code bare} with the gc profiler
+ * ({@code ./gradlew jmh}) to see what the MDC hook costs per request in time and in bytes allocated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MdcContextLifterBenchmark {
+    private static final String HOOK_KEY = MdcContextLifterBenchmark.class.getName();
+
+    @Param({"lifted", "bare"})
+    public String mode;
+
+    private final String correlationId = UUID.randomUUID().toString();
+    private final String requestId = UUID.randomUUID().toString();
+    private final UUID gatewayRequestId = UUID.randomUUID();
+
+    @Setup(Level.Trial)
+    public void installHook() {
+        if ("lifted".equals(mode)) {
+            Hooks.onEachOperator(HOOK_KEY,
+                    Operators.lift((scannable, coreSubscriber) -> new MdcContextLifter<>(coreSubscriber)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void removeHook() {
+        Hooks.resetOnEachOperator(HOOK_KEY);
+    }
+
+    @Benchmark
+    public void orchestratorPipeline(Blackhole blackhole) {
+        Mono.subscriberContext()
+                .flatMap(context -> validate(context.get(API_CALLED)))
+                .map(request -> {
+                    request.put("requestId", gatewayRequestId);
+                    return request;
+                })
+                .flatMap(request -> Mono.just(request).filter(body -> !body.isEmpty()))
+                .doOnNext(blackhole::consume)
+                .then()
+                .subscriberContext(context -> context.put(API_CALLED, "/v0.5/care-contexts/discover"))
+                .subscriberContext(context -> context.put(CORRELATION_ID, correlationId))
+                .subscribe();
+    }
+
+    private Mono<Map<String, Object>> validate(String apiCalled) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("requestId", requestId);
+        request.put("apiCalled", apiCalled);
+        return Mono.just(request);
+    }
+}
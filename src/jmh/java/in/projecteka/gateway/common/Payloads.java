@@ -0,0 +1,52 @@
+package in.projecteka.gateway.common;
+
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Request bodies shaped like partner traffic, from {@code src/fixtures/resources/payloads}, which the load test reads
+ * too. Placeholders are filled with fresh ids and the current time, so the bodies pass the replay window when they
+ * are used.
+ */
+final class Payloads {
+    private Payloads() {
+    }
+
+    static String body(String name, Map<String, String> values) {
+        var body = read(name);
+        for (var value : values.entrySet()) {
+            body = body.replace("${" + value.getKey() + "}", value.getValue());
+        }
+        return body;
+    }
+
+    static String body(String name) {
+        return body(name, Map.of("requestId", UUID.randomUUID().toString(),
+                "timestamp", LocalDateTime.now(ZoneOffset.UTC).toString(),
+                "transactionId", UUID.randomUUID().toString(),
+                "respRequestId", UUID.randomUUID().toString()));
+    }
+
+    static HttpEntity<String> entity(String body, String routingKey, String clientId) {
+        var headers = new HttpHeaders();
+        headers.add(routingKey, clientId);
+        return new HttpEntity<>(body, headers);
+    }
+
+    private static String read(String name) {
+        try (InputStream payload = Payloads.class.getResourceAsStream("/payloads/" + name + ".json")) {
+            return new String(payload.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package in.projecteka.gateway.common;
+
+import in.projecteka.gateway.common.cache.LoadingCacheAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.cache.CacheBuilder.newBuilder;
+import static com.google.common.cache.CacheLoader.from;
+
+/**
+ * The replay check of every incoming request. {@code perCallFormatter} and {@code sharedFormatter} isolate the
+ * timestamp parse, which builds a new formatter on every call today.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RedundantRequestValidatorBenchmark {
+    private static final DateTimeFormatter SHARED_FORMATTER = formatter();
+
+    private RedundantRequestValidator validator;
+    private String requestId;
+    private String timestamp;
+
+    @Setup(Level.Trial)
+    public void setUpValidator() {
+        validator = new RedundantRequestValidator(new LoadingCacheAdapter<>(newBuilder()
+                .expireAfterWrite(10, TimeUnit.MINUTES)
+                .<String, String>build(from(key -> ""))), "replay");
+        requestId = UUID.randomUUID().toString();
+    }
+
+    @Setup(Level.Iteration)
+    public void refreshTimestamp() {
+        timestamp = LocalDateTime.now(ZoneOffset.UTC).toString();
+    }
+
+    @Benchmark
+    public Boolean validate() {
+        return validator.validate(requestId, timestamp).block();
+    }
+
+    @Benchmark
+    public LocalDateTime perCallFormatter() {
+        return LocalDateTime.parse(timestamp, formatter());
+    }
+
+    @Benchmark
+    public LocalDateTime sharedFormatter() {
+        return LocalDateTime.parse(timestamp, SHARED_FORMATTER);
+    }
+
+    private static DateTimeFormatter formatter() {
+        return new DateTimeFormatterBuilder()
+                .append(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                .optionalStart()
+                .appendOffsetId()
+                .toFormatter();
+    }
+}
@@ -0,0 +1,46 @@
+package in.projecteka.gateway.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpEntity;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserialisation of request bodies the way {@link Validator} does it: requests into a map, callbacks into a tree.
+ * Every request is deserialised twice on the way in (once each for the replay check and the request id), which the
+ * throughput here should be multiplied by.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SerializerBenchmark {
+    @Param({"discover", "link-init", "on-discover"})
+    public String payload;
+
+    private HttpEntity<String> entity;
+
+    @Setup
+    public void setUp() {
+        entity = new HttpEntity<>(Payloads.body(payload));
+    }
+
+    @Benchmark
+    public Optional<Map<String, Object>> fromAsMap() {
+        return Serializer.from(entity);
+    }
+
+    @Benchmark
+    public JsonNode deserializeRequestAsJsonNode() {
+        return Serializer.deserializeRequestAsJsonNode(entity).block();
+    }
+}
@@ -0,0 +1,37 @@
+package in.projecteka.gateway.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpEntity;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The request id swap on a callback before it is passed back to the caller. The same tree is updated every time;
+ * the swap only replaces two fields, so that is what happens to a freshly parsed callback too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UtilsBenchmark {
+    private JsonNode onDiscover;
+    private final String requestId = UUID.randomUUID().toString();
+    private final String callerRequestId = UUID.randomUUID().toString();
+
+    @Setup
+    public void setUp() {
+        onDiscover = Serializer.deserializeRequestAsJsonNode(new HttpEntity<>(Payloads.body("on-discover"))).block();
+    }
+
+    @Benchmark
+    public JsonNode updateRequestId() {
+        return Utils.updateRequestId(onDiscover, requestId, callerRequestId);
+    }
+}
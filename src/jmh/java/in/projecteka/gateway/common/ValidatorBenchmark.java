@@ -0,0 +1,109 @@
+package in.projecteka.gateway.common;
+
+import in.projecteka.gateway.common.cache.CacheAdapter;
+import in.projecteka.gateway.common.cache.LoadingCacheAdapter;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
+import in.projecteka.gateway.registry.BridgeRegistry;
+import in.projecteka.gateway.registry.CMRegistry;
+import in.projecteka.gateway.registry.ServiceType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.util.Pair;
+import org.springframework.http.HttpEntity;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.cache.CacheBuilder.newBuilder;
+import static com.google.common.cache.CacheLoader.from;
+import static in.projecteka.gateway.common.Constants.X_CM_ID;
+import static in.projecteka.gateway.common.Constants.X_HIP_ID;
+
+/**
+ * {@link Validator} against the in-memory stores used with {@code cacheMethod: guava}, with the registries already
+ * warm, so what is measured is parsing, the replay check and the lookups, never the database. Bodies are refreshed
+ * every iteration to stay inside the replay window.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ValidatorBenchmark {
+    private static final String HIP_ID = "10000005";
+    private static final String CM_ID = "sbx";
+
+    private Validator validator;
+    private HttpEntity<String> discover;
+    private HttpEntity<String> onDiscover;
+
+    @Setup(Level.Trial)
+    public void setUpValidator() {
+        CacheAdapter<String, String> bridgeMappings = inMemory();
+        CacheAdapter<String, String> cmMappings = inMemory();
+        bridgeMappings.put(HIP_ID + "-" + ServiceType.HIP.name(), "http://localhost:9052").block();
+        cmMappings.put(CM_ID, "http://localhost:9051").block();
+        var unreachable = new MappingRepository(null) {
+            @Override
+            public Mono<String> cmHost(String cmId) {
+                return Mono.empty();
+            }
+
+            @Override
+            public Mono<String> bridgeHost(Pair<String, ServiceType> bridge) {
+                return Mono.empty();
+            }
+
+            @Override
+            public Mono<String> bridgeHost(String bridgeId) {
+                return Mono.empty();
+            }
+        };
+        CacheAdapter<String, String> requestIdMappings = inMemory();
+        validator = new Validator(new BridgeRegistry(bridgeMappings, unreachable),
+                new CMRegistry(cmMappings, unreachable),
+                requestIdMappings,
+                new RedundantRequestValidator(inMemory(), "replay"),
+                new RoutingMetrics(new SimpleMeterRegistry()),
+                RouteLogSampler.ALL);
+
+        var gatewayRequestId = UUID.randomUUID().toString();
+        requestIdMappings.put(gatewayRequestId, UUID.randomUUID().toString()).block();
+        onDiscover = Payloads.entity(Payloads.body("on-discover", Map.of(
+                "requestId", UUID.randomUUID().toString(),
+                "timestamp", LocalDateTime.now(ZoneOffset.UTC).toString(),
+                "transactionId", UUID.randomUUID().toString(),
+                "respRequestId", gatewayRequestId)), X_CM_ID, CM_ID);
+    }
+
+    @Setup(Level.Iteration)
+    public void refreshRequest() {
+        discover = Payloads.entity(Payloads.body("discover"), X_HIP_ID, HIP_ID);
+    }
+
+    @Benchmark
+    public ValidatedRequest validateRequest() {
+        return validator.validateRequest(discover, X_HIP_ID).block();
+    }
+
+    @Benchmark
+    public ValidatedResponse validateResponse() {
+        return validator.validateResponse(onDiscover, X_CM_ID).block();
+    }
+
+    private static CacheAdapter<String, String> inMemory() {
+        return new LoadingCacheAdapter<>(newBuilder()
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .<String, String>build(from(key -> "")));
+    }
+}
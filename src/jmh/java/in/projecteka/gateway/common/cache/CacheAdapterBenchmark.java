@@ -0,0 +1,62 @@
+package in.projecteka.gateway.common.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same cache workload ({@link CacheWorkload}) on every backend; sample time mode gives the p99 of each
+ * operation next to its throughput. The redis backend needs {@code -Dgateway.benchmark.redis} pointing at an empty
+ * database, see {@link CacheStores}; without it its trials fail before touching any redis and the other backends still
+ * run. Growth of the stores over time is left to {@link CacheSoak}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class CacheAdapterBenchmark {
+    @Param({"guava", "node-owned", "redis"})
+    private String backend;
+
+    @Param({"0", "0.01"})
+    private double unknownBridgeShare;
+
+    private CacheStores stores;
+    private CacheWorkload workload;
+
+    @Setup(Level.Trial)
+    public void openStores() {
+        stores = CacheStores.open(backend, 10);
+        workload = new CacheWorkload(stores, unknownBridgeShare);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeStores() {
+        stores.close();
+    }
+
+    @Benchmark
+    public void roundTrip() {
+        workload.roundTrip().block();
+    }
+
+    @Benchmark
+    public String registryLookup() {
+        return workload.registryLookup().block();
+    }
+
+    @Benchmark
+    public Boolean replayCheck() {
+        return workload.replayCheck().block();
+    }
+}
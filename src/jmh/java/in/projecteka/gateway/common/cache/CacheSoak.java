@@ -0,0 +1,154 @@
+package in.projecteka.gateway.common.cache;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs {@link CacheWorkload} on one backend at a fixed rate for a long time, and prints, every sample interval, how
+ * many entries the stores hold, how many of those are the {@code ""} the guava loader leaves for every key that was
+ * only looked up, and the retained heap (or redis memory) per entry. Once the run is past two expiry periods the
+ * stores should stay flat at about rate x entries per round trip x expiry; anything still climbing is reported.
+ *
+ * <p>It also checks the expiry boundary: probe entries must still be there a little before they expire and gone a
+ * little after.
+ *
+ * <p>{@code ./gradlew cacheSoak -PcacheSoakArgs="backend=guava rate=2000 duration=30 expiry=1 unknownBridgeShare=0.01"}
+ * with the duration and expiry in minutes.
+ */
+public class CacheSoak {
+    private static final int PROBES = 100;
+    private static final Duration PROBE_MARGIN = Duration.ofSeconds(2);
+
+    private final String backend;
+    private final int rate;
+    private final Duration duration;
+    private final int expiryInMinutes;
+    private final double unknownBridgeShare;
+    private final Duration sampleInterval;
+
+    private CacheSoak(Map<String, String> options) {
+        backend = options.getOrDefault("backend", "guava");
+        rate = Integer.parseInt(options.getOrDefault("rate", "2000"));
+        duration = Duration.ofMinutes(Long.parseLong(options.getOrDefault("duration", "30")));
+        expiryInMinutes = Integer.parseInt(options.getOrDefault("expiry", "1"));
+        unknownBridgeShare = Double.parseDouble(options.getOrDefault("unknownBridgeShare", "0.01"));
+        sampleInterval = Duration.ofSeconds(Long.parseLong(options.getOrDefault("sampleEvery", "10")));
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            var keyValue = arg.split("=", 2);
+            if (keyValue.length == 2) {
+                options.put(keyValue[0], keyValue[1]);
+            }
+        }
+        boolean growing = new CacheSoak(options).run();
+        System.exit(growing ? 1 : 0);
+    }
+
+    private boolean run() {
+        try (var stores = CacheStores.open(backend, expiryInMinutes)) {
+            var workload = new CacheWorkload(stores, unknownBridgeShare);
+            var expiry = Duration.ofMinutes(expiryInMinutes);
+            var probes = putProbes(stores);
+            long steadyState = (long) rate * CacheWorkload.ENTRIES_PER_ROUND_TRIP * expiry.toSeconds();
+            System.out.printf("%s at %d round trips/s for %d min, expiry %d min; expect about %d entries once steady%n",
+                    backend, rate, duration.toMinutes(), expiryInMinutes, steadyState);
+            System.out.printf("%8s %10s %12s %12s %14s %12s%n",
+                    "elapsed", "rate", "entries", "empty", "heap/entry", "redis/entry");
+
+            long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+            long start = System.nanoTime();
+            long end = start + duration.toNanos();
+            long nextSample = start + sampleInterval.toNanos();
+            long beforeExpiry = start + expiry.minus(PROBE_MARGIN).toNanos();
+            long afterExpiry = start + expiry.plus(PROBE_MARGIN).toNanos();
+            long baselineHeap = heapAfterGc();
+            long sent = 0;
+            long sentAtLastSample = 0;
+            List<Long> steadySamples = new ArrayList<>();
+            for (long intended = start; intended < end; intended += interval) {
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                workload.roundTrip().block();
+                sent++;
+                long now = System.nanoTime();
+                if (beforeExpiry != 0 && now >= beforeExpiry) {
+                    System.out.printf("Probes present %s before expiry: %d/%d%n",
+                            PROBE_MARGIN, present(stores, probes), PROBES);
+                    beforeExpiry = 0;
+                }
+                if (afterExpiry != 0 && now >= afterExpiry) {
+                    System.out.printf("Probes present %s after expiry: %d/%d%n",
+                            PROBE_MARGIN, present(stores, probes), PROBES);
+                    afterExpiry = 0;
+                }
+                if (now >= nextSample) {
+                    long entries = stores.entries();
+                    long heap = heapAfterGc() - baselineHeap;
+                    long redisMemory = stores.redisUsedMemory();
+                    System.out.printf("%7ds %10d %12d %12d %14s %12s%n",
+                            TimeUnit.NANOSECONDS.toSeconds(now - start),
+                            (sent - sentAtLastSample) / sampleInterval.toSeconds(),
+                            entries,
+                            stores.emptyEntries(),
+                            perEntry(heap, entries),
+                            redisMemory < 0 ? "-" : perEntry(redisMemory, entries));
+                    if (now - start > expiry.multipliedBy(2).toNanos()) {
+                        steadySamples.add(entries);
+                    }
+                    sentAtLastSample = sent;
+                    nextSample += sampleInterval.toNanos();
+                }
+            }
+            return reportGrowth(steadySamples, steadyState);
+        }
+    }
+
+    private static boolean reportGrowth(List<Long> steadySamples, long steadyState) {
+        if (steadySamples.size() < 2) {
+            System.out.println("Run was too short to judge growth; soak for more than two expiry periods");
+            return false;
+        }
+        long first = steadySamples.get(0);
+        long last = steadySamples.get(steadySamples.size() - 1);
+        boolean growing = last > first * 1.1 || last > steadyState * 1.5;
+        System.out.printf("Entries past two expiry periods: %d -> %d, expected about %d: %s%n",
+                first, last, steadyState, growing ? "GROWING" : "flat");
+        return growing;
+    }
+
+    private static List<String> putProbes(CacheStores stores) {
+        List<String> probes = new ArrayList<>();
+        for (int i = 0; i < PROBES; i++) {
+            var key = "probe_" + UUID.randomUUID();
+            stores.requestIdMappings.put(key, "probe").block();
+            probes.add(key);
+        }
+        return probes;
+    }
+
+    private static long present(CacheStores stores, List<String> probes) {
+        return probes.stream().filter(key -> stores.requestIdMappings.get(key).blockOptional().isPresent()).count();
+    }
+
+    private static String perEntry(long bytes, long entries) {
+        return entries == 0 ? "-" : String.format("%d B", bytes / entries);
+    }
+
+    private static long heapAfterGc() {
+        var memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,143 @@
+package in.projecteka.gateway.common.cache;
+
+import com.google.common.cache.LoadingCache;
+import in.projecteka.gateway.common.correlation.NodeOwnedRequestIdMappings;
+import in.projecteka.gateway.common.correlation.NodeOwnedRequestIds;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.google.common.cache.CacheBuilder.newBuilder;
+import static com.google.common.cache.CacheLoader.from;
+
+/**
+ * The stores one request goes through, built the way {@code GatewayConfiguration} builds them for a backend:
+ * <ul>
+ *     <li>{@code guava}: every store is a {@link LoadingCacheAdapter} whose loader answers {@code ""};</li>
+ *     <li>{@code node-owned}: guava, with request id mappings kept by {@link NodeOwnedRequestIdMappings};</li>
+ *     <li>{@code redis}: every store is a {@link RedisCacheAdapter}, against the redis at the {@code
+ *     gateway.benchmark.redis} system property, e.g. {@code redis://localhost:6379/15}. Without the property the
+ *     backend refuses to open, so no redis is touched unless asked for. The database must be empty when the stores
+ *     are opened; it is flushed when they are closed, which only drops what the run wrote.</li>
+ * </ul>
+ */
+class CacheStores implements AutoCloseable {
+    static final String REDIS_URI = System.getProperty("gateway.benchmark.redis");
+
+    final CacheAdapter<String, String> requestIdMappings;
+    final CacheAdapter<String, String> requestIdTimestampMappings;
+    final CacheAdapter<String, String> bridgeMappings;
+    final Supplier<String> gatewayRequestIds;
+
+    private final List<LoadingCache<String, String>> localCaches = new ArrayList<>();
+    private final List<RedisCacheAdapter> redisCaches = new ArrayList<>();
+    private final StatefulRedisConnection<String, String> redisAdmin;
+
+    private CacheStores(String backend, int expiryInMinutes) {
+        switch (backend) {
+            case "guava":
+                requestIdMappings = local(expiryInMinutes);
+                requestIdTimestampMappings = local(expiryInMinutes);
+                bridgeMappings = local(expiryInMinutes);
+                gatewayRequestIds = () -> UUID.randomUUID().toString();
+                redisAdmin = null;
+                break;
+            case "node-owned":
+                var requestIds = new NodeOwnedRequestIds(1);
+                requestIdTimestampMappings = local(expiryInMinutes);
+                requestIdMappings = new NodeOwnedRequestIdMappings(requestIds,
+                        local(expiryInMinutes),
+                        requestIdTimestampMappings,
+                        null);
+                bridgeMappings = local(expiryInMinutes);
+                gatewayRequestIds = () -> requestIds.next().toString();
+                redisAdmin = null;
+                break;
+            case "redis":
+                redisAdmin = emptyRedis();
+                requestIdMappings = redis(expiryInMinutes);
+                requestIdTimestampMappings = redis(expiryInMinutes);
+                bridgeMappings = redis(expiryInMinutes);
+                gatewayRequestIds = () -> UUID.randomUUID().toString();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown cache backend " + backend);
+        }
+    }
+
+    static CacheStores open(String backend, int expiryInMinutes) {
+        return new CacheStores(backend, expiryInMinutes);
+    }
+
+    /** Entries held across all stores, expired ones included until the store gets round to dropping them. */
+    long entries() {
+        if (redisAdmin != null) {
+            return redisAdmin.sync().dbsize();
+        }
+        return localCaches.stream().peek(LoadingCache::cleanUp).mapToLong(LoadingCache::size).sum();
+    }
+
+    /** Entries the loader created for keys which were only ever looked up; redis does not store misses. */
+    long emptyEntries() {
+        return localCaches.stream()
+                .flatMap(cache -> cache.asMap().values().stream())
+                .filter(String::isEmpty)
+                .count();
+    }
+
+    /** Memory redis reports as used, or -1 when the stores live on the heap. */
+    long redisUsedMemory() {
+        if (redisAdmin == null) {
+            return -1;
+        }
+        return redisAdmin.sync().info("memory").lines()
+                .filter(line -> line.startsWith("used_memory:"))
+                .mapToLong(line -> Long.parseLong(line.substring("used_memory:".length()).trim()))
+                .findFirst()
+                .orElse(-1);
+    }
+
+    @Override
+    public void close() {
+        localCaches.forEach(LoadingCache::invalidateAll);
+        redisCaches.forEach(RedisCacheAdapter::preDestroy);
+        if (redisAdmin != null) {
+            redisAdmin.sync().flushdb();
+            redisAdmin.close();
+        }
+    }
+
+    private static StatefulRedisConnection<String, String> emptyRedis() {
+        if (REDIS_URI == null || REDIS_URI.isBlank()) {
+            throw new IllegalStateException("Set -Dgateway.benchmark.redis to run the redis backend");
+        }
+        var connection = RedisClient.create(REDIS_URI).connect();
+        long keys = connection.sync().dbsize();
+        if (keys > 0) {
+            connection.close();
+            throw new IllegalStateException(String.format("%s holds %d keys; point gateway.benchmark.redis at an empty "
+                    + "database", REDIS_URI, keys));
+        }
+        return connection;
+    }
+
+    private CacheAdapter<String, String> local(int expiryInMinutes) {
+        var cache = newBuilder()
+                .expireAfterWrite(expiryInMinutes, TimeUnit.MINUTES)
+                .<String, String>build(from(key -> ""));
+        localCaches.add(cache);
+        return new LoadingCacheAdapter<>(cache);
+    }
+
+    private CacheAdapter<String, String> redis(int expiryInMinutes) {
+        var cache = new RedisCacheAdapter(RedisClient.create(REDIS_URI), expiryInMinutes, 0);
+        cache.postConstruct();
+        redisCaches.add(cache);
+        return cache;
+    }
+}
@@ -0,0 +1,73 @@
+package in.projecteka.gateway.common.cache;
+
+import in.projecteka.gateway.common.MappingRepository;
+import in.projecteka.gateway.common.RedundantRequestValidator;
+import in.projecteka.gateway.registry.BridgeRegistry;
+import in.projecteka.gateway.registry.ServiceType;
+import org.springframework.data.util.Pair;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static reactor.core.publisher.Mono.defer;
+
+/**
+ * The cache operations of one CM initiated round trip, issued through the same classes the gateway uses: the
+ * replay check and put of the request ({@link RedundantRequestValidator}), the bridge lookup ({@link BridgeRegistry}),
+ * the gateway id to caller id mapping put by {@code RequestOrchestrator}, and on the callback its own replay check and
+ * put plus the mapping lookup. A share of the bridge lookups can be for ids no registry knows, as a misconfigured or
+ * hostile caller would send; each of those falls through to a repository which finds nothing.
+ */
+class CacheWorkload {
+    static final String KNOWN_BRIDGE = "10000005";
+    /** Two replay keys and one request id mapping; unknown bridge lookups add their own. */
+    static final int ENTRIES_PER_ROUND_TRIP = 3;
+
+    private final CacheStores stores;
+    private final RedundantRequestValidator redundantRequestValidator;
+    private final BridgeRegistry bridgeRegistry;
+    private final double unknownBridgeShare;
+
+    CacheWorkload(CacheStores stores, double unknownBridgeShare) {
+        this.stores = stores;
+        this.unknownBridgeShare = unknownBridgeShare;
+        this.redundantRequestValidator = new RedundantRequestValidator(stores.requestIdTimestampMappings, "replay");
+        this.bridgeRegistry = new BridgeRegistry(stores.bridgeMappings, new MappingRepository(null) {
+            @Override
+            public Mono<String> bridgeHost(Pair<String, ServiceType> bridge) {
+                return Mono.empty();
+            }
+        });
+        stores.bridgeMappings.put(String.join("-", KNOWN_BRIDGE, ServiceType.HIP.name()), "http://localhost:9052")
+                .block();
+    }
+
+    Mono<Void> roundTrip() {
+        var callerRequestId = UUID.randomUUID().toString();
+        var gatewayRequestId = stores.gatewayRequestIds.get();
+        var callbackRequestId = UUID.randomUUID().toString();
+        var timestamp = LocalDateTime.now(ZoneOffset.UTC).toString();
+        return redundantRequestValidator.validate(callerRequestId, timestamp)
+                .then(defer(this::registryLookup))
+                .then(defer(() -> stores.requestIdMappings.put(gatewayRequestId, callerRequestId)))
+                .then(defer(() -> redundantRequestValidator.put(callerRequestId, timestamp)))
+                .then(defer(() -> redundantRequestValidator.validate(callbackRequestId, timestamp)))
+                .then(defer(() -> stores.requestIdMappings.get(gatewayRequestId)))
+                .then(defer(() -> redundantRequestValidator.put(callbackRequestId, timestamp)));
+    }
+
+    Mono<String> registryLookup() {
+        var bridgeId = ThreadLocalRandom.current().nextDouble() < unknownBridgeShare
+                       ? UUID.randomUUID().toString()
+                       : KNOWN_BRIDGE;
+        return bridgeRegistry.getHostFor(bridgeId, ServiceType.HIP);
+    }
+
+    Mono<Boolean> replayCheck() {
+        var timestamp = LocalDateTime.now(ZoneOffset.UTC).toString();
+        return redundantRequestValidator.validate(UUID.randomUUID().toString(), timestamp);
+    }
+}
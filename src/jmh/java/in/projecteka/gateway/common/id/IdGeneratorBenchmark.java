@@ -0,0 +1,36 @@
+package in.projecteka.gateway.common.id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run with {@code ./gradlew jmh}; the gc profiler reports bytes allocated per id next to the throughput.
+ * Eight threads reproduce the contention of a busy event loop group on {@link UUID#randomUUID()}'s shared
+ * {@code SecureRandom}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class IdGeneratorBenchmark {
+    private final IdGenerator random = UUID::randomUUID;
+    private final IdGenerator timeOrdered = new TimeOrderedIdGenerator();
+
+    @Benchmark
+    public String randomUUID() {
+        return random.next().toString();
+    }
+
+    @Benchmark
+    public String timeOrderedUUID() {
+        return timeOrdered.next().toString();
+    }
+}
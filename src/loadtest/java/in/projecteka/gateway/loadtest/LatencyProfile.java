@@ -0,0 +1,41 @@
+package in.projecteka.gateway.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How a stub answers: a fixed latency plus exponentially distributed jitter with the given mean, a share of requests
+ * answered with a 500, and for bridges the delay before the callback is sent.
+ */
+class LatencyProfile {
+    private final int latencyInMillis;
+    private final int jitterInMillis;
+    private final double errorRate;
+    private final int callbackDelayInMillis;
+
+    LatencyProfile(int latencyInMillis, int jitterInMillis, double errorRate, int callbackDelayInMillis) {
+        this.latencyInMillis = latencyInMillis;
+        this.jitterInMillis = jitterInMillis;
+        this.errorRate = errorRate;
+        this.callbackDelayInMillis = callbackDelayInMillis;
+    }
+
+    Duration nextLatency() {
+        var random = ThreadLocalRandom.current();
+        long jitter = jitterInMillis == 0 ? 0 : (long) (-jitterInMillis * Math.log(1 - random.nextDouble()));
+        return Duration.ofMillis(latencyInMillis + jitter);
+    }
+
+    boolean nextIsError() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+
+    Duration callbackDelay() {
+        return Duration.ofMillis(callbackDelayInMillis);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d ms + ~%d ms, %.2f%% errors", latencyInMillis, jitterInMillis, errorRate * 100);
+    }
+}
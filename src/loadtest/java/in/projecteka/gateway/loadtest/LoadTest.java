@@ -0,0 +1,207 @@
+package in.projecteka.gateway.loadtest;
+
+import in.projecteka.gateway.GatewayApplication;
+import in.projecteka.gateway.common.cache.CacheAdapter;
+import in.projecteka.gateway.registry.ServiceType;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static in.projecteka.gateway.common.Constants.X_HIP_ID;
+import static io.netty.handler.codec.http.HttpHeaderNames.AUTHORIZATION;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpResponseStatus.ACCEPTED;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Boots the gateway against local stand-ins and drives CM initiated round trips through it at a fixed arrival rate:
+ * the stub CM's request, the gateway's forward to the stub bridge, the bridge's callback and the gateway's forward of
+ * that back to the CM. Latencies are taken from when each request was due, which corrects for coordinated omission.
+ *
+ * <p>Nothing outside the JVM is needed: the gateway runs with the guava cache and with its registries warmed with
+ * the stubs' urls, so neither redis nor postgres is touched. Without a {@code broker}, the driven routes are not
+ * queued; the routes queued by default are not driven, so the gateway logs its failed attempts to reach RabbitMQ on
+ * localhost and carries on. Given a {@code broker}, the driven routes are queued on it as well, and the calls the
+ * bridge fails, e.g. with {@code bridgeErrorRate=0.05}, are retried through its queues.
+ *
+ * <p>Run with {@code ./gradlew loadTest -PloadTestArgs="rate=200 duration=60"}; see {@link LoadTestOptions}.
+ */
+public class LoadTest {
+    private static final String HIP_ID = "10000005";
+    private static final String CM_ID = "sbx";
+
+    private final LoadTestOptions options;
+    private final List<Route> routes;
+    private final Map<String, RouteStats> stats = new LinkedHashMap<>();
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private static class Pending {
+        private final Route route;
+        private final long intendedStart;
+        private final boolean recorded;
+
+        Pending(Route route, long intendedStart, boolean recorded) {
+            this.route = route;
+            this.intendedStart = intendedStart;
+            this.recorded = recorded;
+        }
+    }
+
+    private LoadTest(LoadTestOptions options) {
+        this.options = options;
+        this.routes = options.routes().stream().map(Route::named).collect(toList());
+        routes.forEach(route -> stats.put(route.name(), new RouteStats(route.name())));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest(new LoadTestOptions(args)).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        var identity = new StubIdentity();
+        var gatewayClient = HttpClient.create(ConnectionProvider.builder("load-test")
+                .maxConnections(options.rate() * 2)
+                .build())
+                .baseUrl("http://localhost:" + options.gatewayPort());
+        var cm = StubPartner.consentManager(options.cmProfile(), this::calledBack);
+        var bridge = StubPartner.bridge(options.bridgeProfile(), gatewayClient, identity.bearer(HIP_ID, "HIP"), CM_ID);
+        var gateway = SpringApplication.run(GatewayApplication.class, gatewayArguments(identity));
+        try {
+            warmRegistries(gateway, bridge, cm);
+            drive(gatewayClient, identity.bearer(CM_ID, "CM"));
+            report(bridge);
+        } finally {
+            gateway.close();
+            bridge.stop();
+            cm.stop();
+            identity.stop();
+        }
+    }
+
+    private void drive(HttpClient gateway, String cmToken) {
+        System.out.printf("Driving %s at %d requests/s for %d s after %d s of warm up; bridge %s, cm %s, %s%n",
+                stats.keySet(),
+                options.rate(),
+                options.duration().toSeconds(),
+                options.warmUp().toSeconds(),
+                options.bridgeProfile(),
+                options.cmProfile(),
+                options.broker().map(broker -> "queued on " + broker).orElse("not queued"));
+        long interval = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long total = options.rate() * (options.warmUp().toSeconds() + options.duration().toSeconds());
+        long start = System.nanoTime();
+        long recordFrom = start + options.warmUp().toNanos();
+        for (long i = 0; i < total; i++) {
+            long intendedStart = start + i * interval;
+            long wait;
+            while ((wait = intendedStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(gateway, cmToken, routes.get((int) (i % routes.size())), intendedStart, intendedStart >= recordFrom);
+        }
+        LockSupport.parkNanos(options.drain().toNanos());
+        pending.values().stream()
+                .filter(request -> request.recorded)
+                .forEach(request -> stats.get(request.route.name()).timedOut());
+    }
+
+    private void send(HttpClient gateway, String cmToken, Route route, long intendedStart, boolean recorded) {
+        var requestId = UUID.randomUUID().toString();
+        var routeStats = stats.get(route.name());
+        pending.put(requestId, new Pending(route, intendedStart, recorded));
+        if (recorded) {
+            routeStats.sent();
+        }
+        gateway.headers(headers -> headers
+                .add(AUTHORIZATION, cmToken)
+                .add(X_HIP_ID, HIP_ID)
+                .add(CONTENT_TYPE, "application/json"))
+                .post()
+                .uri(route.requestPath())
+                .send(ByteBufFlux.fromString(Mono.just(route.request(requestId))))
+                .responseSingle((response, content) -> content.then().thenReturn(response.status().code()))
+                .subscribe(status -> {
+                    if (status != ACCEPTED.code()) {
+                        rejected(requestId);
+                    } else if (recorded) {
+                        routeStats.accepted(intendedStart, System.nanoTime());
+                    }
+                }, error -> rejected(requestId));
+    }
+
+    private void rejected(String requestId) {
+        var request = pending.remove(requestId);
+        if (request != null && request.recorded) {
+            stats.get(request.route.name()).rejected();
+        }
+    }
+
+    private void calledBack(String callerRequestId, boolean withError) {
+        long now = System.nanoTime();
+        var request = pending.remove(callerRequestId);
+        if (request != null && request.recorded) {
+            stats.get(request.route.name()).calledBack(request.intendedStart, now, withError);
+        }
+    }
+
+    private void report(StubPartner bridge) {
+        stats.values().forEach(routeStats -> routeStats.report(System.out));
+        System.out.printf("%nCallbacks the gateway did not accept from the bridge: %d%n", bridge.failedCallbacks());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void warmRegistries(ConfigurableApplicationContext gateway, StubPartner bridge, StubPartner cm) {
+        gateway.getBean("bridgeMappings", CacheAdapter.class)
+                .put(String.join("-", HIP_ID, ServiceType.HIP.name()), bridge.url())
+                .block();
+        gateway.getBean("consentManagerMappings", CacheAdapter.class).put(CM_ID, cm.url()).block();
+    }
+
+    private String[] gatewayArguments(StubIdentity identity) {
+        var broker = options.broker().orElse("localhost:5672").split(":", 2);
+        var arguments = new ArrayList<>(List.of(
+                "--server.port=" + options.gatewayPort(),
+                "--gateway.cacheMethod=guava",
+                "--gateway.bridgeCacheExpiry=1440",
+                "--gateway.db.host=localhost",
+                "--gateway.db.schema=gateway",
+                "--gateway.db.user=gateway",
+                "--gateway.db.password=gateway",
+                "--gateway.db.replica.host=localhost",
+                "--gateway.db.replica.user=gateway",
+                "--gateway.db.replica.password=gateway",
+                "--spring.rabbitmq.host=" + broker[0],
+                "--spring.rabbitmq.port=" + (broker.length == 2 ? broker[1] : "5672"),
+                "--identity.url=" + identity.url(),
+                "--identity.realm=" + StubIdentity.REALM,
+                "--identity.clientId=gateway",
+                "--identity.clientSecret=load-test",
+                "--identity.host=http://localhost:" + options.gatewayPort(),
+                "--identity.userName=load-test",
+                "--identity.password=load-test",
+                "--facility-registry.url=http://localhost:1",
+                "--facility-registry.authUrl=http://localhost:1",
+                "--facility-registry.clientId=load-test",
+                "--facility-registry.clientSecret=load-test",
+                "--logging.level.ROOT=WARN"));
+        if (options.broker().isPresent()) {
+            routes.stream()
+                    .flatMap(route -> route.deliveryRoutes().stream())
+                    .forEach(route -> arguments.add("--gateway.delivery.routes." + route + ".queued=true"));
+        }
+        return arguments.toArray(String[]::new);
+    }
+}
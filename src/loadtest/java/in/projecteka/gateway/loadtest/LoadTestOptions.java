@@ -0,0 +1,79 @@
+package in.projecteka.gateway.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * {@code key=value} arguments of the load test, e.g. {@code ./gradlew loadTest -PloadTestArgs="rate=500
+ * duration=120 bridgeErrorRate=0.02"}. Anything not given falls back to a short, gentle run.
+ */
+class LoadTestOptions {
+    private final Map<String, String> values = new HashMap<>();
+
+    LoadTestOptions(String[] args) {
+        for (String arg : args) {
+            var keyValue = arg.replaceFirst("^--", "").split("=", 2);
+            if (keyValue.length == 2) {
+                values.put(keyValue[0], keyValue[1]);
+            }
+        }
+    }
+
+    /** Requests started per second across all routes, at fixed intervals. */
+    int rate() {
+        return intValue("rate", 100);
+    }
+
+    Duration duration() {
+        return Duration.ofSeconds(intValue("duration", 60));
+    }
+
+    /** Requests started during warm up are sent, but not recorded. */
+    Duration warmUp() {
+        return Duration.ofSeconds(intValue("warmUp", 10));
+    }
+
+    /** How long to wait for outstanding callbacks once the last request has been started. */
+    Duration drain() {
+        return Duration.ofSeconds(intValue("drain", 10));
+    }
+
+    List<String> routes() {
+        return Arrays.asList(values.getOrDefault("routes", "discover,link-init").split(","));
+    }
+
+    /**
+     * {@code host:port} of a RabbitMQ broker to queue the driven routes on, so the calls the bridge fails are retried
+     * through it. Without one, the driven routes are not queued.
+     */
+    Optional<String> broker() {
+        return Optional.ofNullable(values.get("broker"));
+    }
+
+    int gatewayPort() {
+        return intValue("gatewayPort", 18000);
+    }
+
+    LatencyProfile bridgeProfile() {
+        return new LatencyProfile(intValue("bridgeLatency", 20),
+                intValue("bridgeJitter", 10),
+                doubleValue("bridgeErrorRate", 0),
+                intValue("bridgeCallbackDelay", 50));
+    }
+
+    LatencyProfile cmProfile() {
+        return new LatencyProfile(intValue("cmLatency", 5), intValue("cmJitter", 2), doubleValue("cmErrorRate", 0), 0);
+    }
+
+    private int intValue(String key, int defaultValue) {
+        return values.containsKey(key) ? Integer.parseInt(values.get(key)) : defaultValue;
+    }
+
+    private double doubleValue(String key, double defaultValue) {
+        return values.containsKey(key) ? Double.parseDouble(values.get(key)) : defaultValue;
+    }
+}
@@ -0,0 +1,104 @@
+package in.projecteka.gateway.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static in.projecteka.gateway.common.Constants.PATH_CARE_CONTEXTS_DISCOVER;
+import static in.projecteka.gateway.common.Constants.PATH_CARE_CONTEXTS_ON_DISCOVER;
+import static in.projecteka.gateway.common.Constants.PATH_LINK_INIT;
+import static in.projecteka.gateway.common.Constants.PATH_LINK_ON_INIT;
+
+/**
+ * A CM initiated request to a HIP and the callback which answers it, with the bodies each side sends, and the routes
+ * of {@code gateway.delivery.routes} which deliver them.
+ */
+class Route {
+    private static final Map<String, Route> ROUTES = Map.of(
+            "discover", new Route("discover", "discovery", PATH_CARE_CONTEXTS_DISCOVER, PATH_CARE_CONTEXTS_ON_DISCOVER),
+            "link-init", new Route("link-init", "link-init", PATH_LINK_INIT, PATH_LINK_ON_INIT));
+
+    private final String name;
+    private final String deliveryRoute;
+    private final String requestPath;
+    private final String callbackPath;
+    private final String requestTemplate;
+    private final String callbackTemplate;
+
+    private Route(String name, String deliveryRoute, String requestPath, String callbackPath) {
+        this.name = name;
+        this.deliveryRoute = deliveryRoute;
+        this.requestPath = requestPath;
+        this.callbackPath = callbackPath;
+        this.requestTemplate = read(name);
+        this.callbackTemplate = read("on-" + name);
+    }
+
+    static Route named(String name) {
+        var route = ROUTES.get(name);
+        if (route == null) {
+            throw new IllegalArgumentException("Unknown route " + name + ", known routes are " + ROUTES.keySet());
+        }
+        return route;
+    }
+
+    static Route forRequestPath(String path) {
+        return ROUTES.values().stream()
+                .filter(route -> route.requestPath.equals(path))
+                .findFirst()
+                .orElse(null);
+    }
+
+    static Route forCallbackPath(String path) {
+        return ROUTES.values().stream()
+                .filter(route -> route.callbackPath.equals(path))
+                .findFirst()
+                .orElse(null);
+    }
+
+    String name() {
+        return name;
+    }
+
+    List<String> deliveryRoutes() {
+        return List.of(deliveryRoute + "-request", deliveryRoute + "-response");
+    }
+
+    String requestPath() {
+        return requestPath;
+    }
+
+    String callbackPath() {
+        return callbackPath;
+    }
+
+    String request(String requestId) {
+        return requestTemplate
+                .replace("${requestId}", requestId)
+                .replace("${timestamp}", now());
+    }
+
+    String callback(String requestId, String respRequestId) {
+        return callbackTemplate
+                .replace("${requestId}", requestId)
+                .replace("${timestamp}", now())
+                .replace("${respRequestId}", respRequestId);
+    }
+
+    private static String now() {
+        return LocalDateTime.now(ZoneOffset.UTC).toString();
+    }
+
+    private static String read(String name) {
+        try (InputStream payload = Route.class.getResourceAsStream("/payloads/" + name + ".json")) {
+            return new String(payload.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package in.projecteka.gateway.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies of one route, measured from when each request was due to start rather than when it was sent, so a
+ * stalled gateway or driver shows up in the percentiles instead of silently lowering the arrival rate.
+ */
+class RouteStats {
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final String route;
+    private final Histogram accepted = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram roundTrip = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder callbacks = new LongAdder();
+    private final LongAdder errorCallbacks = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    RouteStats(String route) {
+        this.route = route;
+    }
+
+    void sent() {
+        sent.increment();
+    }
+
+    void accepted(long intendedStartNanos, long nowNanos) {
+        accepted.recordValue(micros(nowNanos - intendedStartNanos));
+    }
+
+    void rejected() {
+        rejected.increment();
+    }
+
+    void calledBack(long intendedStartNanos, long nowNanos, boolean withError) {
+        callbacks.increment();
+        if (withError) {
+            errorCallbacks.increment();
+        }
+        roundTrip.recordValue(micros(nowNanos - intendedStartNanos));
+    }
+
+    void timedOut() {
+        timeouts.increment();
+    }
+
+    void report(PrintStream out) {
+        out.printf("%n%s: sent %d, rejected %d, callbacks %d (%d with an error), no callback %d%n",
+                route, sent.sum(), rejected.sum(), callbacks.sum(), errorCallbacks.sum(), timeouts.sum());
+        out.printf("  %-10s %10s %10s %10s %10s %10s%n", "ms", "p50", "p90", "p99", "p99.9", "max");
+        row(out, "accepted", accepted);
+        row(out, "round trip", roundTrip);
+    }
+
+    private static void row(PrintStream out, String name, Histogram histogram) {
+        out.printf("  %-10s %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                name,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static long micros(long nanos) {
+        return Math.min(TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0)), HIGHEST_TRACKABLE_MICROS);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,86 @@
+package in.projecteka.gateway.loadtest;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stands in for Keycloak: serves the JWKS the gateway verifies callers with, answers the gateway's client credentials
+ * login, and mints the tokens the stub CM and bridges call the gateway with.
+ */
+class StubIdentity {
+    static final String REALM = "consent-manager";
+    private static final Duration TOKEN_VALIDITY = Duration.ofHours(12);
+
+    private final RSAKey key;
+    private final DisposableServer server;
+
+    StubIdentity() throws JOSEException {
+        key = new RSAKeyGenerator(2048).keyID("load-test").generate();
+        var jwks = new JWKSet(key.toPublicJWK()).toString();
+        var login = String.format("{\"access_token\":\"%s\",\"expires_in\":%d,\"refresh_expires_in\":0,"
+                        + "\"refresh_token\":\"\",\"token_type\":\"bearer\"}",
+                token("gateway", "gateway"),
+                TOKEN_VALIDITY.toSeconds());
+        server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes
+                        .get("/realms/" + REALM + "/protocol/openid-connect/certs",
+                                (request, response) -> response.header("Content-Type", "application/json")
+                                        .sendString(Mono.just(jwks)))
+                        .post("/realms/" + REALM + "/protocol/openid-connect/token",
+                                (request, response) -> response.header("Content-Type", "application/json")
+                                        .sendString(request.receive().then(Mono.just(login)))))
+                .bindNow();
+    }
+
+    String url() {
+        return "http://localhost:" + server.port();
+    }
+
+    String bearer(String clientId, String role) {
+        try {
+            return "Bearer " + token(clientId, role);
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void stop() {
+        server.disposeNow();
+    }
+
+    private String token(String clientId, String role) throws JOSEException {
+        var now = Instant.now();
+        var claims = new JWTClaimsSet.Builder()
+                .subject(clientId)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(TOKEN_VALIDITY)))
+                .claim("scope", "openid")
+                .claim("clientId", clientId)
+                .claim("realm_access", Map.of("roles", List.of(role)))
+                .build();
+        var jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256)
+                .type(JOSEObjectType.JWT)
+                .keyID(key.getKeyID())
+                .build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+}
@@ -0,0 +1,122 @@
+package in.projecteka.gateway.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+import static in.projecteka.gateway.common.Constants.REQUEST_ID;
+import static in.projecteka.gateway.common.Constants.X_CM_ID;
+import static io.netty.handler.codec.http.HttpHeaderNames.AUTHORIZATION;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpResponseStatus.ACCEPTED;
+import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
+
+/**
+ * A partner the gateway routes to, on its own netty server. A bridge accepts a request and, after the callback delay,
+ * answers it through the gateway the way a HIP would; a consent manager hands every callback it receives to a
+ * {@link CallbackListener}. Both answer with the latency and error rate of their {@link LatencyProfile}.
+ */
+class StubPartner {
+    private static final Logger logger = LoggerFactory.getLogger(StubPartner.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final DisposableServer server;
+    private final LongAdder failedCallbacks;
+
+    interface CallbackListener {
+        void calledBack(String callerRequestId, boolean withError);
+    }
+
+    private StubPartner(LatencyProfile profile,
+                        LongAdder failedCallbacks,
+                        BiFunction<HttpServerRequest, JsonNode, Boolean> onReceived) {
+        this.failedCallbacks = failedCallbacks;
+        server = HttpServer.create()
+                .port(0)
+                .handle((request, response) -> request.receive()
+                        .aggregate()
+                        .asString()
+                        .map(StubPartner::parse)
+                        .flatMap(body -> Mono.delay(profile.nextLatency()).thenReturn(body))
+                        .flatMap(body -> respond(response, !profile.nextIsError() && onReceived.apply(request, body))))
+                .bindNow();
+    }
+
+    static StubPartner bridge(LatencyProfile profile,
+                              HttpClient gateway,
+                              String hipToken,
+                              String cmId) {
+        var failedCallbacks = new LongAdder();
+        return new StubPartner(profile, failedCallbacks, (request, body) -> {
+            var route = Route.forRequestPath(request.uri());
+            if (route == null) {
+                return false;
+            }
+            var callback = route.callback(UUID.randomUUID().toString(), body.path(REQUEST_ID).asText());
+            Mono.delay(profile.callbackDelay())
+                    .then(gateway.headers(headers -> headers
+                            .add(AUTHORIZATION, hipToken)
+                            .add(X_CM_ID, cmId)
+                            .add(CONTENT_TYPE, "application/json"))
+                            .post()
+                            .uri(route.callbackPath())
+                            .send(ByteBufFlux.fromString(Mono.just(callback)))
+                            .responseSingle((callbackResponse, content) -> content.then()
+                                    .thenReturn(callbackResponse.status().code())))
+                    .subscribe(status -> {
+                        if (status != ACCEPTED.code()) {
+                            failedCallbacks.increment();
+                        }
+                    }, error -> {
+                        logger.warn("Callback failed: {}", error.getMessage());
+                        failedCallbacks.increment();
+                    });
+            return true;
+        });
+    }
+
+    static StubPartner consentManager(LatencyProfile profile, CallbackListener listener) {
+        return new StubPartner(profile, new LongAdder(), (request, body) -> {
+            var error = body.path("error");
+            listener.calledBack(body.path("resp").path(REQUEST_ID).asText(), !error.isMissingNode() && !error.isNull());
+            return true;
+        });
+    }
+
+    String url() {
+        return "http://localhost:" + server.port();
+    }
+
+    long failedCallbacks() {
+        return failedCallbacks.sum();
+    }
+
+    void stop() {
+        server.disposeNow();
+    }
+
+    private static Mono<Void> respond(HttpServerResponse response, boolean accepted) {
+        return response.status(accepted ? ACCEPTED : INTERNAL_SERVER_ERROR).send().then();
+    }
+
+    private static JsonNode parse(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            return objectMapper.createObjectNode();
+        }
+    }
+}
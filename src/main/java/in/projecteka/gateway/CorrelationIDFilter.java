@@ -1,5 +1,7 @@
 package in.projecteka.gateway;
 
+import in.projecteka.gateway.common.RequestIds;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.logstash.logback.encoder.org.apache.commons.lang3.StringUtils;
 import org.slf4j.MDC;
@@ -10,26 +12,23 @@ import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
 import reactor.util.context.Context;
 
-import java.util.Map;
-import java.util.UUID;
-
 import static in.projecteka.gateway.common.Constants.CORRELATION_ID;
 
 @Component
 @Slf4j
+@AllArgsConstructor
 public class CorrelationIDFilter implements WebFilter {
+    private final RequestIds requestIds;
+
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
-        Map<String, String> headers = exchange.getRequest().getHeaders().toSingleValueMap();
-
         return chain.filter(exchange)
+                .doFinally(signalType -> MDC.remove(CORRELATION_ID))
                 .subscriberContext(context -> {
                     String correlationId = exchange.getRequest().getHeaders().getFirst(CORRELATION_ID);
                     if (StringUtils.isBlank(correlationId)) {
                         correlationId = generateRandomCorrelationId();
                     }
-                    MDC.put(CORRELATION_ID, correlationId);
-
                     Context contextTmp = context.put(CORRELATION_ID, correlationId);
                     exchange.getAttributes().put(CORRELATION_ID, correlationId);
                     exchange.getResponse().getHeaders().add(CORRELATION_ID, correlationId);
@@ -38,6 +37,6 @@ public class CorrelationIDFilter implements WebFilter {
     }
 
     private String generateRandomCorrelationId() {
-        return UUID.randomUUID().toString();
+        return requestIds.next().toString();
     }
 }
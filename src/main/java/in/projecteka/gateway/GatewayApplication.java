@@ -5,7 +5,18 @@ import in.projecteka.gateway.common.ShareProfile;
 import in.projecteka.gateway.common.cache.RedisOptions;
 import in.projecteka.gateway.common.cache.ServiceOptions;
 import in.projecteka.gateway.common.heartbeat.RabbitmqOptions;
+import in.projecteka.gateway.common.correlation.CorrelationOptions;
+import in.projecteka.gateway.common.eventloop.EventLoopLagOptions;
 import in.projecteka.gateway.common.heartbeat.CacheMethodProperty;
+import in.projecteka.gateway.common.heartbeat.HeartbeatOptions;
+import in.projecteka.gateway.common.logging.LoggingOptions;
+import in.projecteka.gateway.common.metrics.RoundTripOptions;
+import in.projecteka.gateway.common.replay.ReplayFilterOptions;
+import in.projecteka.gateway.common.reprocess.ReprocessOptions;
+import in.projecteka.gateway.common.retry.ConsumerOptions;
+import in.projecteka.gateway.common.retry.DeliveryOptions;
+import in.projecteka.gateway.common.retry.JournalOptions;
+import in.projecteka.gateway.common.retry.RetryPublisherOptions;
 import in.projecteka.gateway.registry.FacilityRegistryProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -20,7 +31,18 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
         WebClientOptions.class,
         CacheMethodProperty.class,
         ShareProfile.class,
-        FacilityRegistryProperties.class})
+        FacilityRegistryProperties.class,
+        ReplayFilterOptions.class,
+        CorrelationOptions.class,
+        HeartbeatOptions.class,
+        RoundTripOptions.class,
+        EventLoopLagOptions.class,
+        LoggingOptions.class,
+        ConsumerOptions.class,
+        RetryPublisherOptions.class,
+        DeliveryOptions.class,
+        JournalOptions.class,
+        ReprocessOptions.class})
 public class GatewayApplication {
     public static void main(String[] args) {
         SpringApplication.run(GatewayApplication.class, args);
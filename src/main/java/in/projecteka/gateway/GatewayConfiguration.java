@@ -18,6 +18,7 @@ import in.projecteka.gateway.clients.ConsentStatusServiceClient;
 import in.projecteka.gateway.clients.DataFlowRequestServiceClient;
 import in.projecteka.gateway.clients.DiscoveryServiceClient;
 import in.projecteka.gateway.clients.FacilityRegistryClient;
+import in.projecteka.gateway.clients.GatewayPeerClient;
 import in.projecteka.gateway.clients.GlobalExceptionHandler;
 import in.projecteka.gateway.clients.HealthInfoNotificationServiceClient;
 import in.projecteka.gateway.clients.HipConsentNotifyServiceClient;
@@ -41,20 +42,48 @@ import in.projecteka.gateway.common.IdentityService;
 import in.projecteka.gateway.common.MappingRepository;
 import in.projecteka.gateway.common.MappingService;
 import in.projecteka.gateway.common.RedundantRequestValidator;
+import in.projecteka.gateway.common.RequestIds;
 import in.projecteka.gateway.common.RequestOrchestrator;
 import in.projecteka.gateway.common.ResponseOrchestrator;
-import in.projecteka.gateway.common.RetryableValidatedRequestAction;
-import in.projecteka.gateway.common.RetryableValidatedResponseAction;
 import in.projecteka.gateway.common.Validator;
 import in.projecteka.gateway.common.cache.CacheAdapter;
+import in.projecteka.gateway.common.cache.CacheMetricsPostProcessor;
+import in.projecteka.gateway.common.cache.InstrumentedCacheAdapter;
 import in.projecteka.gateway.common.cache.LoadingCacheAdapter;
 import in.projecteka.gateway.common.cache.RedisCacheAdapter;
 import in.projecteka.gateway.common.cache.RedisOptions;
 import in.projecteka.gateway.common.cache.ServiceOptions;
+import in.projecteka.gateway.common.correlation.CorrelationOptions;
+import in.projecteka.gateway.common.correlation.NodeOwnedRequestIdMappings;
+import in.projecteka.gateway.common.correlation.NodeOwnedRequestIds;
+import in.projecteka.gateway.common.eventloop.EventLoopLagMonitor;
+import in.projecteka.gateway.common.eventloop.EventLoopLagOptions;
 import in.projecteka.gateway.common.heartbeat.CacheHealth;
 import in.projecteka.gateway.common.heartbeat.CacheMethodProperty;
 import in.projecteka.gateway.common.heartbeat.Heartbeat;
+import in.projecteka.gateway.common.heartbeat.HeartbeatOptions;
+import in.projecteka.gateway.common.heartbeat.IdentityHealth;
+import in.projecteka.gateway.common.heartbeat.RabbitmqHealth;
 import in.projecteka.gateway.common.heartbeat.RabbitmqOptions;
+import in.projecteka.gateway.common.inflight.InFlightRequests;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoundTripOptions;
+import in.projecteka.gateway.common.metrics.RoundTripTrackingMappings;
+import in.projecteka.gateway.common.metrics.RoundTripTrackingPostProcessor;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
+import in.projecteka.gateway.common.replay.BroadcastingRequestIdFilter;
+import in.projecteka.gateway.common.replay.ReplayFilterOptions;
+import in.projecteka.gateway.common.replay.RequestIdFilter;
+import in.projecteka.gateway.common.replay.RotatingBloomFilter;
+import in.projecteka.gateway.common.reprocess.ReprocessOptions;
+import in.projecteka.gateway.common.reprocess.Reprocessor;
+import in.projecteka.gateway.common.retry.ConsumerOptions;
+import in.projecteka.gateway.common.retry.DeliveryOptions;
+import in.projecteka.gateway.common.retry.QueuedDeliveries;
+import in.projecteka.gateway.common.retry.DeliveryJournal;
+import in.projecteka.gateway.common.retry.JournalOptions;
+import in.projecteka.gateway.common.retry.RetryPublisher;
+import in.projecteka.gateway.common.retry.RetryPublisherOptions;
 import in.projecteka.gateway.registry.BridgeRegistry;
 import in.projecteka.gateway.registry.CMRegistry;
 import in.projecteka.gateway.registry.FacilityRegistryProperties;
@@ -65,9 +94,12 @@ import io.lettuce.core.ClientOptions;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisURI;
 import io.lettuce.core.SocketOptions;
+import io.lettuce.core.resource.Transports;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.PoolOptions;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -90,22 +122,25 @@ import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.server.WebFilter;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.HttpResources;
 import reactor.netty.http.client.HttpClient;
 import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
 import reactor.rabbitmq.ChannelPoolFactory;
 import reactor.rabbitmq.ChannelPoolOptions;
 import reactor.rabbitmq.RabbitFlux;
 import reactor.rabbitmq.ReceiverOptions;
 import reactor.rabbitmq.SenderOptions;
 
+import java.io.IOException;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import static com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS;
-import static in.projecteka.gateway.common.Constants.GW_DATAFLOW_QUEUE;
-import static in.projecteka.gateway.common.Constants.GW_LINK_QUEUE;
 import static in.projecteka.gateway.common.Constants.X_CM_ID;
 import static in.projecteka.gateway.common.Constants.X_HIP_ID;
+import static in.projecteka.gateway.common.Constants.X_HIU_ID;
 import static reactor.rabbitmq.Utils.singleConnectionMono;
 
 @Configuration
@@ -159,7 +194,7 @@ public class GatewayConfiguration {
     }
 
     @ConditionalOnProperty(value = "gateway.cacheMethod", havingValue = "redis")
-    @Bean({"requestIdMappings", "requestIdTimestampMappings"})
+    @Bean("requestIdTimestampMappings")
     public CacheAdapter<String, String> createRedisCacheAdapter(@Qualifier("Lettuce") RedisClient redisClient,
                                                                 RedisOptions redisOptions) {
         return new RedisCacheAdapter(redisClient, redisOptions.getExpiry(), redisOptions.getRetry());
@@ -193,11 +228,133 @@ public class GatewayConfiguration {
     }
 
     @ConditionalOnProperty(value = "guava.cacheMethod", havingValue = "guava", matchIfMissing = true)
-    @Bean({"requestIdMappings", "requestIdTimestampMappings"})
+    @Bean("requestIdTimestampMappings")
     public CacheAdapter<String, String> createLoadingCacheAdapter() {
         return new LoadingCacheAdapter<>(createSessionCache(10));
     }
 
+    @ConditionalOnProperty(value = "gateway.correlation.nodeOwned", havingValue = "false", matchIfMissing = true)
+    @Bean("requestIdMappings")
+    public CacheAdapter<String, String> createRequestIdMappings(@Qualifier("Lettuce") RedisClient redisClient,
+                                                                RedisOptions redisOptions,
+                                                                @Value("${gateway.cacheMethod}") String cacheMethod) {
+        return requestIdMappings(redisClient, redisOptions, cacheMethod);
+    }
+
+    @ConditionalOnProperty(value = "gateway.correlation.nodeOwned", havingValue = "true")
+    @Bean("sharedRequestIdMappings")
+    public CacheAdapter<String, String> createSharedRequestIdMappings(
+            @Qualifier("Lettuce") RedisClient redisClient,
+            RedisOptions redisOptions,
+            @Value("${gateway.cacheMethod}") String cacheMethod) {
+        return requestIdMappings(redisClient, redisOptions, cacheMethod);
+    }
+
+    private CacheAdapter<String, String> requestIdMappings(RedisClient redisClient,
+                                                           RedisOptions redisOptions,
+                                                           String cacheMethod) {
+        return "redis".equalsIgnoreCase(cacheMethod)
+               ? new RedisCacheAdapter(redisClient, redisOptions.getExpiry(), redisOptions.getRetry())
+               : new LoadingCacheAdapter<>(createSessionCache(10));
+    }
+
+    @Bean
+    public static CacheMetricsPostProcessor cacheMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new CacheMetricsPostProcessor(meterRegistry);
+    }
+
+    @Bean
+    public static RoundTripTrackingPostProcessor roundTripTrackingPostProcessor(
+            ObjectProvider<RoundTripOptions> roundTripOptions,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${gateway.cacheMethod:guava}") String cacheMethod) {
+        return new RoundTripTrackingPostProcessor(roundTripOptions,
+                meterRegistry,
+                !"redis".equalsIgnoreCase(cacheMethod));
+    }
+
+    @ConditionalOnProperty(value = "gateway.correlation.nodeOwned", havingValue = "true")
+    @Bean
+    public NodeOwnedRequestIds nodeOwnedRequestIds(CorrelationOptions correlationOptions) {
+        return new NodeOwnedRequestIds(correlationOptions.getNodeId());
+    }
+
+    @ConditionalOnProperty(value = "gateway.correlation.nodeOwned", havingValue = "true")
+    @Bean("requestIdMappings")
+    public NodeOwnedRequestIdMappings createNodeOwnedRequestIdMappings(
+            @Qualifier("sharedRequestIdMappings") CacheAdapter<String, String> sharedRequestIdMappings,
+            NodeOwnedRequestIds nodeOwnedRequestIds,
+            CorrelationOptions correlationOptions,
+            GatewayPeerClient gatewayPeerClient,
+            RoundTripOptions roundTripOptions,
+            MeterRegistry meterRegistry) {
+        var localMappings = new InstrumentedCacheAdapter<>("requestIdMappings",
+                new LoadingCacheAdapter<>(createSessionCache(correlationOptions.getMappingExpiryInMinutes())),
+                meterRegistry);
+        return new NodeOwnedRequestIdMappings(nodeOwnedRequestIds,
+                roundTripTracked(localMappings, roundTripOptions, meterRegistry, true),
+                roundTripTracked(sharedRequestIdMappings, roundTripOptions, meterRegistry, false),
+                gatewayPeerClient);
+    }
+
+    private CacheAdapter<String, String> roundTripTracked(CacheAdapter<String, String> requestIdMappings,
+                                                          RoundTripOptions roundTripOptions,
+                                                          MeterRegistry meterRegistry,
+                                                          boolean trackTimeouts) {
+        if (!roundTripOptions.isEnabled()) {
+            return requestIdMappings;
+        }
+        return new RoundTripTrackingMappings(requestIdMappings,
+                meterRegistry,
+                Duration.ofSeconds(roundTripOptions.getTimeoutInSeconds()),
+                roundTripOptions.trackedTargetIdsOrNone(),
+                trackTimeouts);
+    }
+
+    @ConditionalOnProperty(value = "gateway.correlation.nodeOwned", havingValue = "true")
+    @Bean
+    public GatewayPeerClient gatewayPeerClient(@Qualifier("customBuilder") WebClient.Builder builder,
+                                               IdentityService identityService,
+                                               CorrelationOptions correlationOptions,
+                                               ServiceOptions serviceOptions) {
+        return new GatewayPeerClient(builder,
+                identityService,
+                correlationOptions.getPeerUrlTemplate(),
+                serviceOptions.getTimeout());
+    }
+
+    @Bean
+    public EventLoopLagMonitor eventLoopLagMonitor(EventLoopLagOptions eventLoopLagOptions,
+                                                   MeterRegistry meterRegistry,
+                                                   @Value("${gateway.cacheMethod:guava}") String cacheMethod,
+                                                   @Qualifier("Lettuce") RedisClient redisClient) {
+        var monitor = new EventLoopLagMonitor(meterRegistry, eventLoopLagOptions);
+        if (eventLoopLagOptions.getProbeIntervalInMillis() == 0) {
+            return monitor;
+        }
+        // the server and WebClient share these loops
+        monitor.monitor("reactor-netty", HttpResources.get().onServer(LoopResources.DEFAULT_NATIVE));
+        if ("redis".equalsIgnoreCase(cacheMethod)) {
+            // allocate hands out lettuce's own shared group and counts a reference to it, which has to be given back
+            var provider = redisClient.getResources().eventLoopGroupProvider();
+            var loops = provider.allocate(Transports.eventLoopGroupClass());
+            monitor.monitor("lettuce", loops, () -> provider.release(loops, 0, 0, TimeUnit.SECONDS));
+        }
+        return monitor;
+    }
+
+    @Bean
+    public RoutingMetrics routingMetrics(MeterRegistry meterRegistry) {
+        return new RoutingMetrics(meterRegistry);
+    }
+
+    @Bean
+    public InFlightRequests inFlightRequests(MeterRegistry meterRegistry) {
+        var inFlightRequests = new InFlightRequests();
+        meterRegistry.gauge("gateway.outbound.in.flight", inFlightRequests, InFlightRequests::count);
+        return inFlightRequests;
+    }
+
     public LoadingCache<String, String> createSessionCache(int duration) {
         return CacheBuilder
                 .newBuilder()
@@ -269,8 +426,13 @@ public class GatewayConfiguration {
                                                          @Qualifier("customBuilder") WebClient.Builder builder,
                                                          CMRegistry cmRegistry,
                                                          IdentityService identityService,
-                                                         BridgeRegistry bridgeRegistry) {
-        return new DiscoveryServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry);
+                                                         BridgeRegistry bridgeRegistry,
+                                                         RoutingMetrics routingMetrics,
+                                                         RouteLogSampler routeLogSampler,
+                                                         InFlightRequests inFlightRequests,
+                                                         RequestIds requestIds) {
+        return new DiscoveryServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("discoveryRequestAction")
@@ -285,12 +447,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             DiscoveryServiceClient discoveryServiceClient,
-            DefaultValidatedRequestAction<DiscoveryServiceClient> discoveryRequestAction) {
+            DefaultValidatedRequestAction<DiscoveryServiceClient> discoveryRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 discoveryServiceClient,
-                discoveryRequestAction);
+                queuedDeliveries.requestAction("discovery-request", discoveryRequestAction, X_HIP_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("discoveryResponseAction")
@@ -302,16 +471,31 @@ public class GatewayConfiguration {
     @Bean("discoveryResponseOrchestrator")
     public ResponseOrchestrator discoveryResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<DiscoveryServiceClient> discoveryResponseAction) {
-        return new ResponseOrchestrator(validator, discoveryResponseAction);
+            DefaultValidatedResponseAction<DiscoveryServiceClient> discoveryResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("discovery-response", discoveryResponseAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean
     public Validator validator(BridgeRegistry bridgeRegistry,
                                CMRegistry cmRegistry,
                                @Qualifier("requestIdMappings") CacheAdapter<String, String> requestIdMappings,
-                               RedundantRequestValidator redundantRequestValidator) {
-        return new Validator(bridgeRegistry, cmRegistry, requestIdMappings, redundantRequestValidator);
+                               RedundantRequestValidator redundantRequestValidator,
+                               RoutingMetrics routingMetrics,
+                               RouteLogSampler routeLogSampler) {
+        return new Validator(bridgeRegistry,
+                cmRegistry,
+                requestIdMappings,
+                redundantRequestValidator,
+                routingMetrics,
+                routeLogSampler);
     }
 
     @Bean("linkInitServiceClient")
@@ -319,8 +503,13 @@ public class GatewayConfiguration {
                                                        @Qualifier("customBuilder") WebClient.Builder builder,
                                                        CMRegistry cmRegistry,
                                                        IdentityService identityService,
-                                                       BridgeRegistry bridgeRegistry) {
-        return new LinkInitServiceClient(builder, serviceOptions, identityService, cmRegistry, bridgeRegistry);
+                                                       BridgeRegistry bridgeRegistry,
+                                                       RoutingMetrics routingMetrics,
+                                                       RouteLogSampler routeLogSampler,
+                                                       InFlightRequests inFlightRequests,
+                                                       RequestIds requestIds) {
+        return new LinkInitServiceClient(builder, serviceOptions, identityService, cmRegistry, bridgeRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("linkInitRequestAction")
@@ -335,12 +524,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             LinkInitServiceClient linkInitServiceClient,
-            DefaultValidatedRequestAction<LinkInitServiceClient> linkInitRequestAction) {
+            DefaultValidatedRequestAction<LinkInitServiceClient> linkInitRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 linkInitServiceClient,
-                linkInitRequestAction);
+                queuedDeliveries.requestAction("link-init-request", linkInitRequestAction, X_HIP_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("linkInitResponseAction")
@@ -352,8 +548,16 @@ public class GatewayConfiguration {
     @Bean("linkInitResponseOrchestrator")
     public ResponseOrchestrator linkInitResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<LinkInitServiceClient> linkInitResponseAction) {
-        return new ResponseOrchestrator(validator, linkInitResponseAction);
+            DefaultValidatedResponseAction<LinkInitServiceClient> linkInitResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("link-init-response", linkInitResponseAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean
@@ -362,8 +566,13 @@ public class GatewayConfiguration {
             @Qualifier("customBuilder") WebClient.Builder builder,
             CMRegistry cmRegistry,
             IdentityService identityService,
-            BridgeRegistry bridgeRegistry) {
-        return new LinkConfirmServiceClient(builder, serviceOptions, identityService, cmRegistry, bridgeRegistry);
+            BridgeRegistry bridgeRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new LinkConfirmServiceClient(builder, serviceOptions, identityService, cmRegistry, bridgeRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("linkConfirmRequestAction")
@@ -378,12 +587,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             LinkConfirmServiceClient linkConfirmServiceClient,
-            DefaultValidatedRequestAction<LinkConfirmServiceClient> linkConfirmRequestAction) {
+            DefaultValidatedRequestAction<LinkConfirmServiceClient> linkConfirmRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 linkConfirmServiceClient,
-                linkConfirmRequestAction);
+                queuedDeliveries.requestAction("link-confirm-request", linkConfirmRequestAction, X_HIP_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("linkConfirmResponseAction")
@@ -392,27 +608,19 @@ public class GatewayConfiguration {
         return new DefaultValidatedResponseAction<>(linkConfirmServiceClient);
     }
 
-    @Bean("retryableLinkConfirmResponseAction")
-    public RetryableValidatedResponseAction<LinkConfirmServiceClient> retryableLinkResponseAction(
-            DefaultValidatedResponseAction<LinkConfirmServiceClient> linkConfirmResponseAction,
-            ReceiverOptions receiverOptions,
-            SenderOptions senderOptions,
-            ServiceOptions serviceOptions) {
-        return new RetryableValidatedResponseAction<>(
-                RabbitFlux.createReceiver(receiverOptions),
-                RabbitFlux.createSender(senderOptions),
-                linkConfirmResponseAction,
-                serviceOptions,
-                GW_LINK_QUEUE,
-                X_CM_ID);
-    }
-
-
     @Bean("linkConfirmResponseOrchestrator")
     public ResponseOrchestrator linkConfirmResponseOrchestrator(
             Validator validator,
-            RetryableValidatedResponseAction<LinkConfirmServiceClient> retryableLinkConfirmResponseAction) {
-        return new ResponseOrchestrator(validator, retryableLinkConfirmResponseAction);
+            DefaultValidatedResponseAction<LinkConfirmServiceClient> linkConfirmResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("link-confirm-response", linkConfirmResponseAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean
@@ -421,8 +629,13 @@ public class GatewayConfiguration {
             @Qualifier("customBuilder") WebClient.Builder builder,
             BridgeRegistry bridgeRegistry,
             IdentityService identityService,
-            CMRegistry cmRegistry) {
-        return new ConsentRequestServiceClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry);
+            CMRegistry cmRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new ConsentRequestServiceClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean
@@ -431,8 +644,13 @@ public class GatewayConfiguration {
             @Qualifier("customBuilder") WebClient.Builder builder,
             BridgeRegistry bridgeRegistry,
             IdentityService identityService,
-            CMRegistry cmRegistry) {
-        return new ConsentFetchServiceClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry);
+            CMRegistry cmRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new ConsentFetchServiceClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean
@@ -441,8 +659,13 @@ public class GatewayConfiguration {
             @Qualifier("customBuilder") WebClient.Builder builder,
             BridgeRegistry bridgeRegistry,
             IdentityService identityService,
-            CMRegistry cmRegistry) {
-        return new ConsentStatusServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry);
+            CMRegistry cmRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new ConsentStatusServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("consentRequestAction")
@@ -458,12 +681,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             ConsentRequestServiceClient consentRequestServiceClient,
-            DefaultValidatedRequestAction<ConsentRequestServiceClient> consentRequestAction) {
+            DefaultValidatedRequestAction<ConsentRequestServiceClient> consentRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 consentRequestServiceClient,
-                consentRequestAction);
+                queuedDeliveries.requestAction("consent-request", consentRequestAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("consentFetchRequestAction")
@@ -478,12 +708,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             ConsentFetchServiceClient consentFetchServiceClient,
-            DefaultValidatedRequestAction<ConsentFetchServiceClient> consentRequestAction) {
+            DefaultValidatedRequestAction<ConsentFetchServiceClient> consentRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 consentFetchServiceClient,
-                consentRequestAction);
+                queuedDeliveries.requestAction("consent-fetch-request", consentRequestAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("consentFetchResponseAction")
@@ -495,8 +732,16 @@ public class GatewayConfiguration {
     @Bean("consentFetchResponseOrchestrator")
     public ResponseOrchestrator consentFetchResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<ConsentFetchServiceClient> consentFetchResponseAction) {
-        return new ResponseOrchestrator(validator, consentFetchResponseAction);
+            DefaultValidatedResponseAction<ConsentFetchServiceClient> consentFetchResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("consent-fetch-response", consentFetchResponseAction, X_HIU_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("consentStatusRequestAction")
@@ -511,12 +756,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             ConsentStatusServiceClient consentStatusServiceClient,
-            DefaultValidatedRequestAction<ConsentStatusServiceClient> consentStatusRequestAction) {
+            DefaultValidatedRequestAction<ConsentStatusServiceClient> consentStatusRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 consentStatusServiceClient,
-                consentStatusRequestAction);
+                queuedDeliveries.requestAction("consent-status-request", consentStatusRequestAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("consentStatusResponseAction")
@@ -528,8 +780,16 @@ public class GatewayConfiguration {
     @Bean("consentStatusResponseOrchestrator")
     public ResponseOrchestrator consentStatusResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<ConsentStatusServiceClient> consentStatusResponseAction) {
-        return new ResponseOrchestrator(validator, consentStatusResponseAction);
+            DefaultValidatedResponseAction<ConsentStatusServiceClient> consentStatusResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("consent-status-response", consentStatusResponseAction, X_HIU_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("patientSearchRequestAction")
@@ -544,12 +804,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             PatientSearchServiceClient patientSearchServiceClient,
-            DefaultValidatedRequestAction<PatientSearchServiceClient> patientSearchRequestAction) {
+            DefaultValidatedRequestAction<PatientSearchServiceClient> patientSearchRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 patientSearchServiceClient,
-                patientSearchRequestAction);
+                queuedDeliveries.requestAction("patient-search-request", patientSearchRequestAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean
@@ -572,8 +839,13 @@ public class GatewayConfiguration {
             @Qualifier("customBuilder") WebClient.Builder builder,
             IdentityService identityService,
             CMRegistry cmRegistry,
-            BridgeRegistry bridgeRegistry) {
-        return new HipConsentNotifyServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry);
+            BridgeRegistry bridgeRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new HipConsentNotifyServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("hipConsentNotifyRequestAction")
@@ -588,12 +860,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             HipConsentNotifyServiceClient hipConsentNotifyServiceClient,
-            DefaultValidatedRequestAction<HipConsentNotifyServiceClient> hipConsentNotifyRequestAction) {
+            DefaultValidatedRequestAction<HipConsentNotifyServiceClient> hipConsentNotifyRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 hipConsentNotifyServiceClient,
-                hipConsentNotifyRequestAction);
+                queuedDeliveries.requestAction("hip-consent-notify-request", hipConsentNotifyRequestAction, X_HIP_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean
@@ -602,8 +881,13 @@ public class GatewayConfiguration {
             @Qualifier("customBuilder") WebClient.Builder builder,
             IdentityService identityService,
             CMRegistry cmRegistry,
-            BridgeRegistry bridgeRegistry) {
-        return new HiuConsentNotifyServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry);
+            BridgeRegistry bridgeRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new HiuConsentNotifyServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("hiuConsentNotifyRequestAction")
@@ -618,12 +902,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             HiuConsentNotifyServiceClient hiuConsentNotifyServiceClient,
-            DefaultValidatedRequestAction<HiuConsentNotifyServiceClient> hiuConsentNotifyRequestAction) {
+            DefaultValidatedRequestAction<HiuConsentNotifyServiceClient> hiuConsentNotifyRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 hiuConsentNotifyServiceClient,
-                hiuConsentNotifyRequestAction);
+                queuedDeliveries.requestAction("hiu-consent-notify-request", hiuConsentNotifyRequestAction, X_HIU_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("consentResponseAction")
@@ -635,8 +926,16 @@ public class GatewayConfiguration {
     @Bean("consentResponseOrchestrator")
     public ResponseOrchestrator consentResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<ConsentRequestServiceClient> consentResponseAction) {
-        return new ResponseOrchestrator(validator, consentResponseAction);
+            DefaultValidatedResponseAction<ConsentRequestServiceClient> consentResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("consent-response", consentResponseAction, X_HIU_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean
@@ -645,8 +944,13 @@ public class GatewayConfiguration {
             @Qualifier("customBuilder") WebClient.Builder builder,
             BridgeRegistry bridgeRegistry,
             IdentityService identityService,
-            CMRegistry cmRegistry) {
-        return new SubscriptionRequestServiceClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry);
+            CMRegistry cmRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new SubscriptionRequestServiceClient(serviceOptions, builder, identityService, bridgeRegistry,
+                cmRegistry, routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("subscriptionRequestAction")
@@ -661,12 +965,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             SubscriptionRequestServiceClient subscriptionRequestServiceClient,
-            DefaultValidatedRequestAction<SubscriptionRequestServiceClient> subscriptionRequestAction) {
+            DefaultValidatedRequestAction<SubscriptionRequestServiceClient> subscriptionRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 subscriptionRequestServiceClient,
-                subscriptionRequestAction);
+                queuedDeliveries.requestAction("subscription-request", subscriptionRequestAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("subscriptionResponseAction")
@@ -678,8 +989,16 @@ public class GatewayConfiguration {
     @Bean("subscriptionResponseOrchestrator")
     public ResponseOrchestrator subscriptionResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<SubscriptionRequestServiceClient> subscriptionResponseAction) {
-        return new ResponseOrchestrator(validator, subscriptionResponseAction);
+            DefaultValidatedResponseAction<SubscriptionRequestServiceClient> subscriptionResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("subscription-response", subscriptionResponseAction, X_HIU_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean
@@ -688,8 +1007,13 @@ public class GatewayConfiguration {
             @Qualifier("customBuilder") WebClient.Builder builder,
             BridgeRegistry bridgeRegistry,
             IdentityService identityService,
-            CMRegistry cmRegistry) {
-        return new SubscriptionRequestNotifyServiceClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry);
+            CMRegistry cmRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new SubscriptionRequestNotifyServiceClient(serviceOptions, builder, identityService, bridgeRegistry,
+                cmRegistry, routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("subscriptionRequestNotifyAction")
@@ -704,12 +1028,21 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             SubscriptionRequestNotifyServiceClient subscriptionRequestNotifyServiceClient,
-            DefaultValidatedRequestAction<SubscriptionRequestNotifyServiceClient> subscriptionRequestNotifyAction) {
+            DefaultValidatedRequestAction<SubscriptionRequestNotifyServiceClient> subscriptionRequestNotifyAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 subscriptionRequestNotifyServiceClient,
-                subscriptionRequestNotifyAction);
+                queuedDeliveries.requestAction("subscription-request-notify",
+                        subscriptionRequestNotifyAction,
+                        X_HIU_ID),
+                        routingMetrics,
+                        routeLogSampler,
+                        requestIds);
     }
 
     @Bean("subscriptionRequestNotifyResponseAction")
@@ -721,8 +1054,18 @@ public class GatewayConfiguration {
     @Bean("subscriptionRequestNotifyResponseOrchestrator")
     public ResponseOrchestrator subscriptionRequestNotifyResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<SubscriptionRequestNotifyServiceClient> subscriptionRequestNotifyResponseAction) {
-        return new ResponseOrchestrator(validator, subscriptionRequestNotifyResponseAction);
+            DefaultValidatedResponseAction<SubscriptionRequestNotifyServiceClient> subscriptionRequestNotifyResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("subscription-request-notify-response",
+                        subscriptionRequestNotifyResponseAction,
+                        X_CM_ID),
+                        routingMetrics,
+                        routeLogSampler,
+                        requestIds);
     }
 
     @Bean
@@ -731,8 +1074,13 @@ public class GatewayConfiguration {
             @Qualifier("customBuilder") WebClient.Builder builder,
             IdentityService identityService,
             BridgeRegistry bridgeRegistry,
-            CMRegistry cmRegistry) {
-        return new PatientSearchServiceClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry);
+            CMRegistry cmRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new PatientSearchServiceClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("patientSearchResponseAction")
@@ -744,8 +1092,16 @@ public class GatewayConfiguration {
     @Bean("patientSearchResponseOrchestrator")
     public ResponseOrchestrator patientSearchResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<PatientSearchServiceClient> patientSearchResponseAction) {
-        return new ResponseOrchestrator(validator, patientSearchResponseAction);
+            DefaultValidatedResponseAction<PatientSearchServiceClient> patientSearchResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("patient-search-response", patientSearchResponseAction, X_HIU_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean
@@ -754,8 +1110,13 @@ public class GatewayConfiguration {
             @Qualifier("customBuilder") WebClient.Builder builder,
             IdentityService identityService,
             BridgeRegistry bridgeRegistry,
-            CMRegistry cmRegistry) {
-        return new DataFlowRequestServiceClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry);
+            CMRegistry cmRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new DataFlowRequestServiceClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("dataflowRequestAction")
@@ -770,12 +1131,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             DataFlowRequestServiceClient dataFlowRequestServiceClient,
-            DefaultValidatedRequestAction<DataFlowRequestServiceClient> dataflowRequestAction) {
+            DefaultValidatedRequestAction<DataFlowRequestServiceClient> dataflowRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 dataFlowRequestServiceClient,
-                dataflowRequestAction);
+                queuedDeliveries.requestAction("data-flow-request", dataflowRequestAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("dataFlowRequestResponseAction")
@@ -787,8 +1155,16 @@ public class GatewayConfiguration {
     @Bean("dataFlowRequestResponseOrchestrator")
     public ResponseOrchestrator dataFlowRequestResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<DataFlowRequestServiceClient> dataFlowRequestResponseAction) {
-        return new ResponseOrchestrator(validator, dataFlowRequestResponseAction);
+            DefaultValidatedResponseAction<DataFlowRequestServiceClient> dataFlowRequestResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("data-flow-request-response", dataFlowRequestResponseAction, X_HIU_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean
@@ -796,8 +1172,13 @@ public class GatewayConfiguration {
             ServiceOptions serviceOptions,
             @Qualifier("customBuilder") WebClient.Builder builder,
             IdentityService centralRegistry,
-            CMRegistry cmRegistry) {
-        return new HealthInfoNotificationServiceClient(serviceOptions, builder, centralRegistry, cmRegistry);
+            CMRegistry cmRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new HealthInfoNotificationServiceClient(serviceOptions, builder, centralRegistry, cmRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("healthInfoNotificationRequestAction")
@@ -812,12 +1193,21 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             HealthInfoNotificationServiceClient healthInfoNotificationServiceClient,
-            DefaultValidatedRequestAction<HealthInfoNotificationServiceClient> healthInfoNotificationRequestAction) {
+            DefaultValidatedRequestAction<HealthInfoNotificationServiceClient> healthInfoNotificationRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 healthInfoNotificationServiceClient,
-                healthInfoNotificationRequestAction);
+                queuedDeliveries.requestAction("health-info-notification-request",
+                        healthInfoNotificationRequestAction,
+                        X_CM_ID),
+                        routingMetrics,
+                        routeLogSampler,
+                        requestIds);
     }
 
     @Bean
@@ -825,8 +1215,13 @@ public class GatewayConfiguration {
                                                              @Qualifier("customBuilder") WebClient.Builder builder,
                                                              CMRegistry cmRegistry,
                                                              IdentityService identityService,
-                                                             BridgeRegistry bridgeRegistry) {
-        return new HipDataFlowServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry);
+                                                             BridgeRegistry bridgeRegistry,
+                                                             RoutingMetrics routingMetrics,
+                                                             RouteLogSampler routeLogSampler,
+                                                             InFlightRequests inFlightRequests,
+                                                             RequestIds requestIds) {
+        return new HipDataFlowServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("defaultHipDataflowRequestAction")
@@ -835,32 +1230,25 @@ public class GatewayConfiguration {
         return new DefaultValidatedRequestAction<>(hipDataFlowServiceClient);
     }
 
-    @Bean("hipDataflowRequestAction")
-    public RetryableValidatedRequestAction<HipDataFlowServiceClient> hipDataflowRequestAction(
-            DefaultValidatedRequestAction<HipDataFlowServiceClient> defaultHipDataflowRequestAction,
-            ReceiverOptions receiverOptions,
-            SenderOptions senderOptions,
-            ServiceOptions serviceOptions) {
-        return new RetryableValidatedRequestAction<>(RabbitFlux.createReceiver(receiverOptions),
-                RabbitFlux.createSender(senderOptions),
-                defaultHipDataflowRequestAction,
-                serviceOptions,
-                GW_DATAFLOW_QUEUE,
-                X_HIP_ID);
-    }
-
     @Bean("hipDataflowRequestOrchestrator")
     public RequestOrchestrator<HipDataFlowServiceClient> hipDataflowRequestOrchestrator(
             @Qualifier("requestIdMappings") CacheAdapter<String, String> requestIdMappings,
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             HipDataFlowServiceClient hipDataFlowServiceClient,
-            RetryableValidatedRequestAction<HipDataFlowServiceClient> hipDataflowRequestAction) {
+            DefaultValidatedRequestAction<HipDataFlowServiceClient> defaultHipDataflowRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 hipDataFlowServiceClient,
-                hipDataflowRequestAction);
+                queuedDeliveries.requestAction("hip-data-flow-request", defaultHipDataflowRequestAction, X_HIP_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean
@@ -869,8 +1257,13 @@ public class GatewayConfiguration {
             @Qualifier("customBuilder") WebClient.Builder builder,
             BridgeRegistry bridgeRegistry,
             IdentityService identityService,
-            CMRegistry cmRegistry) {
-        return new AuthConfirmServiceClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry);
+            CMRegistry cmRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new AuthConfirmServiceClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("authConfirmDefaultValidatedRequestAction")
@@ -885,12 +1278,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             AuthConfirmServiceClient authConfirmServiceClient,
-            DefaultValidatedRequestAction<AuthConfirmServiceClient> authConfirmRequestAction) {
+            DefaultValidatedRequestAction<AuthConfirmServiceClient> authConfirmRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 authConfirmServiceClient,
-                authConfirmRequestAction);
+                queuedDeliveries.requestAction("auth-confirm-request", authConfirmRequestAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("authConfirmResponseAction")
@@ -902,8 +1302,16 @@ public class GatewayConfiguration {
     @Bean("authConfirmResponseOrchestrator")
     public ResponseOrchestrator authConfirmResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<AuthConfirmServiceClient> authConfirmResponseAction) {
-        return new ResponseOrchestrator(validator, authConfirmResponseAction);
+            DefaultValidatedResponseAction<AuthConfirmServiceClient> authConfirmResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("auth-confirm-response", authConfirmResponseAction, X_HIU_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean
@@ -917,6 +1325,49 @@ public class GatewayConfiguration {
         return connectionFactory;
     }
 
+    @Bean
+    public RetryPublisher retryPublisher(SenderOptions senderOptions,
+                                         RetryPublisherOptions retryPublisherOptions,
+                                         JournalOptions journalOptions,
+                                         MeterRegistry meterRegistry) throws IOException {
+        return new RetryPublisher(RabbitFlux.createSender(senderOptions),
+                retryPublisherOptions,
+                journalOptions.isEnabled() ? new DeliveryJournal(journalOptions) : null,
+                meterRegistry);
+    }
+
+    @Bean
+    public QueuedDeliveries queuedDeliveries(DeliveryOptions deliveryOptions,
+                                             ReceiverOptions receiverOptions,
+                                             SenderOptions senderOptions,
+                                             ServiceOptions serviceOptions,
+                                             ConsumerOptions consumerOptions,
+                                             RetryPublisher retryPublisher,
+                                             MeterRegistry meterRegistry) {
+        return new QueuedDeliveries(deliveryOptions,
+                () -> RabbitFlux.createReceiver(receiverOptions),
+                () -> RabbitFlux.createSender(senderOptions),
+                serviceOptions,
+                consumerOptions,
+                retryPublisher,
+                meterRegistry);
+    }
+
+    @Bean
+    public Reprocessor reprocessor(ReceiverOptions receiverOptions,
+                                   SenderOptions senderOptions,
+                                   RetryPublisher retryPublisher,
+                                   QueuedDeliveries queuedDeliveries,
+                                   ReprocessOptions reprocessOptions,
+                                   MeterRegistry meterRegistry) {
+        return new Reprocessor(() -> RabbitFlux.createReceiver(receiverOptions),
+                RabbitFlux.createSender(senderOptions),
+                retryPublisher,
+                queuedDeliveries,
+                reprocessOptions,
+                meterRegistry);
+    }
+
     @Bean
     public ReceiverOptions receiverOptions(ConnectionFactory connectionFactory){
         return new ReceiverOptions()
@@ -945,8 +1396,18 @@ public class GatewayConfiguration {
     @Bean("hipDataFlowRequestResponseOrchestrator")
     public ResponseOrchestrator hipDataFlowRequestResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<HipDataFlowServiceClient> hipDataFlowRequestResponseAction) {
-        return new ResponseOrchestrator(validator, hipDataFlowRequestResponseAction);
+            DefaultValidatedResponseAction<HipDataFlowServiceClient> hipDataFlowRequestResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("hip-data-flow-request-response",
+                        hipDataFlowRequestResponseAction,
+                        X_CM_ID),
+                        routingMetrics,
+                        routeLogSampler,
+                        requestIds);
     }
 
     @Bean("hipConsentNotifyResponseAction")
@@ -964,22 +1425,54 @@ public class GatewayConfiguration {
     @Bean("hipConsentNotifyResponseOrchestrator")
     public ResponseOrchestrator hipConsentNotifyResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<HipConsentNotifyServiceClient> hipConsentNotifyResponseAction) {
-        return new ResponseOrchestrator(validator, hipConsentNotifyResponseAction);
+            DefaultValidatedResponseAction<HipConsentNotifyServiceClient> hipConsentNotifyResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("hip-consent-notify-response",
+                        hipConsentNotifyResponseAction,
+                        X_CM_ID),
+                        routingMetrics,
+                        routeLogSampler,
+                        requestIds);
     }
 
     @Bean("hiuConsentNotifyResponseOrchestrator")
     public ResponseOrchestrator hiuConsentNotifyResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<HiuConsentNotifyServiceClient> hiuConsentNotifyResponseAction) {
-        return new ResponseOrchestrator(validator, hiuConsentNotifyResponseAction);
+            DefaultValidatedResponseAction<HiuConsentNotifyServiceClient> hiuConsentNotifyResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("hiu-consent-notify-response",
+                        hiuConsentNotifyResponseAction,
+                        X_CM_ID),
+                        routingMetrics,
+                        routeLogSampler,
+                        requestIds);
+    }
+
+    @Bean
+    public RabbitmqHealth rabbitmqHealth(ConnectionFactory connectionFactory) {
+        return new RabbitmqHealth(connectionFactory);
     }
 
     @Bean
-    public Heartbeat heartbeat(RabbitmqOptions rabbitmqOptions,
-                               IdentityProperties identityProperties,
-                               CacheHealth cacheHealth) {
-        return new Heartbeat(rabbitmqOptions, identityProperties, cacheHealth);
+    public IdentityHealth identityHealth(@Qualifier("customBuilder") WebClient.Builder builder,
+                                         IdentityProperties identityProperties) {
+        return new IdentityHealth(builder, identityProperties);
+    }
+
+    @Bean
+    public Heartbeat heartbeat(HeartbeatOptions heartbeatOptions,
+                               CacheHealth cacheHealth,
+                               RabbitmqHealth rabbitmqHealth,
+                               IdentityHealth identityHealth) {
+        return new Heartbeat(heartbeatOptions, cacheHealth, rabbitmqHealth, identityHealth);
     }
 
     @Bean("gatewayHttpConnector")
@@ -1061,11 +1554,46 @@ public class GatewayConfiguration {
     public RedundantRequestValidator redundantRequestValidator(
             @Qualifier("requestIdTimestampMappings") CacheAdapter<String, String> requestIdTimestampMappings,
             RedisOptions redisOptions,
-            @Value("${gateway.cacheMethod}") String cacheMethod) {
+            @Value("${gateway.cacheMethod}") String cacheMethod,
+            RequestIdFilter requestIdFilter,
+            MeterRegistry meterRegistry) {
         return new RedundantRequestValidator(requestIdTimestampMappings,
                 "redis".equalsIgnoreCase(cacheMethod)
                 ? String.format("%s_replay", redisOptions.getRootNamespace())
-                : null);
+                : null,
+                requestIdFilter,
+                meterRegistry);
+    }
+
+    @ConditionalOnProperty(value = "gateway.replayFilter.enabled", havingValue = "true")
+    @Bean
+    public RequestIdFilter rotatingRequestIdFilter(ReplayFilterOptions replayFilterOptions,
+                                                   RedisOptions redisOptions,
+                                                   @Qualifier("Lettuce") RedisClient redisClient,
+                                                   MeterRegistry meterRegistry) {
+        var retention = RedundantRequestValidator.ALLOWED_PAST_DRIFT
+                .plus(RedundantRequestValidator.ALLOWED_FUTURE_DRIFT);
+        var rotatingBloomFilter = new RotatingBloomFilter(retention,
+                Duration.ofMinutes(1),
+                replayFilterOptions.getExpectedRequestsPerMinute(),
+                replayFilterOptions.getFalsePositiveProbability(),
+                Clock.systemUTC());
+        meterRegistry.gauge("gateway.replay.filter.expected.fpp", rotatingBloomFilter, RotatingBloomFilter::expectedFpp);
+        if (!replayFilterOptions.isBroadcastEnabled()) {
+            return rotatingBloomFilter;
+        }
+        return new BroadcastingRequestIdFilter(rotatingBloomFilter,
+                redisClient,
+                String.format("%s_replay_ids", redisOptions.getRootNamespace()),
+                Duration.ofMillis(replayFilterOptions.getBroadcastIntervalInMillis()),
+                retention,
+                Clock.systemUTC());
+    }
+
+    @ConditionalOnProperty(value = "gateway.replayFilter.enabled", havingValue = "false", matchIfMissing = true)
+    @Bean
+    public RequestIdFilter requestIdFilter() {
+        return RequestIdFilter.NONE;
     }
 
     @Bean
@@ -1098,8 +1626,13 @@ public class GatewayConfiguration {
                                                            @Qualifier("customBuilder") WebClient.Builder builder,
                                                            CMRegistry cmRegistry,
                                                            IdentityService identityService,
-                                                           BridgeRegistry bridgeRegistry) {
-        return new UserAuthenticatorClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry);
+                                                           BridgeRegistry bridgeRegistry,
+                                                           RoutingMetrics routingMetrics,
+                                                           RouteLogSampler routeLogSampler,
+                                                           InFlightRequests inFlightRequests,
+                                                           RequestIds requestIds) {
+        return new UserAuthenticatorClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("userAuthenticationRequestAction")
@@ -1114,12 +1647,21 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             UserAuthenticatorClient userAuthenticatorClient,
-            DefaultValidatedRequestAction<UserAuthenticatorClient> userAuthenticationRequestAction) {
+            DefaultValidatedRequestAction<UserAuthenticatorClient> userAuthenticationRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 userAuthenticatorClient,
-                userAuthenticationRequestAction);
+                queuedDeliveries.requestAction("user-authentication-request",
+                        userAuthenticationRequestAction,
+                        X_CM_ID),
+                        routingMetrics,
+                        routeLogSampler,
+                        requestIds);
     }
 
     @Bean("userAuthenticationResponseAction")
@@ -1131,8 +1673,18 @@ public class GatewayConfiguration {
     @Bean("userAuthenticationResponseOrchestrator")
     public ResponseOrchestrator userAuthenticationResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<UserAuthenticatorClient> userAuthenticationResponseAction) {
-        return new ResponseOrchestrator(validator, userAuthenticationResponseAction);
+            DefaultValidatedResponseAction<UserAuthenticatorClient> userAuthenticationResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("user-authentication-response",
+                        userAuthenticationResponseAction,
+                        X_HIU_ID),
+                        routingMetrics,
+                        routeLogSampler,
+                        requestIds);
     }
 
     @Bean("hipInitLinkServiceClient")
@@ -1140,8 +1692,13 @@ public class GatewayConfiguration {
                                                              @Qualifier("customBuilder") WebClient.Builder builder,
                                                              CMRegistry cmRegistry,
                                                              IdentityService identityService,
-                                                             BridgeRegistry bridgeRegistry) {
-        return new HipInitLinkServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry);
+                                                             BridgeRegistry bridgeRegistry,
+                                                             RoutingMetrics routingMetrics,
+                                                             RouteLogSampler routeLogSampler,
+                                                             InFlightRequests inFlightRequests,
+                                                             RequestIds requestIds) {
+        return new HipInitLinkServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("hipInitLinkRequestAction")
@@ -1156,12 +1713,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             HipInitLinkServiceClient hipInitLinkServiceClient,
-            DefaultValidatedRequestAction<HipInitLinkServiceClient> hipInitLinkRequestAction) {
+            DefaultValidatedRequestAction<HipInitLinkServiceClient> hipInitLinkRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 hipInitLinkServiceClient,
-                hipInitLinkRequestAction);
+                queuedDeliveries.requestAction("hip-init-link-request", hipInitLinkRequestAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("hipInitLinkResponseAction")
@@ -1173,8 +1737,16 @@ public class GatewayConfiguration {
     @Bean("hipInitLinkResponseOrchestrator")
     public ResponseOrchestrator hipInitLinkResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<HipInitLinkServiceClient> hipInitLinkResponseAction) {
-        return new ResponseOrchestrator(validator, hipInitLinkResponseAction);
+            DefaultValidatedResponseAction<HipInitLinkServiceClient> hipInitLinkResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("hip-init-link-response", hipInitLinkResponseAction, X_HIP_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("patientServiceClient")
@@ -1182,8 +1754,13 @@ public class GatewayConfiguration {
                                                      @Qualifier("customBuilder") WebClient.Builder builder,
                                                      CMRegistry cmRegistry,
                                                      IdentityService identityService,
-                                                     BridgeRegistry bridgeRegistry) {
-        return new PatientServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry);
+                                                     BridgeRegistry bridgeRegistry,
+                                                     RoutingMetrics routingMetrics,
+                                                     RouteLogSampler routeLogSampler,
+                                                     InFlightRequests inFlightRequests,
+                                                     RequestIds requestIds) {
+        return new PatientServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("patientRequestAction")
@@ -1198,12 +1775,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             PatientServiceClient patientServiceClient,
-            DefaultValidatedRequestAction<PatientServiceClient> patientRequestAction) {
+            DefaultValidatedRequestAction<PatientServiceClient> patientRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 patientServiceClient,
-                patientRequestAction);
+                queuedDeliveries.requestAction("patient-request", patientRequestAction, X_HIP_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("patientResponseAction")
@@ -1215,8 +1799,16 @@ public class GatewayConfiguration {
     @Bean("patientResponseOrchestrator")
     public ResponseOrchestrator patientResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<PatientServiceClient> patientResponseAction) {
-        return new ResponseOrchestrator(validator, patientResponseAction);
+            DefaultValidatedResponseAction<PatientServiceClient> patientResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("patient-response", patientResponseAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("authModeFetchClient")
@@ -1224,8 +1816,13 @@ public class GatewayConfiguration {
                                                      @Qualifier("customBuilder") WebClient.Builder builder,
                                                      CMRegistry cmRegistry,
                                                      IdentityService identityService,
-                                                     BridgeRegistry bridgeRegistry) {
-        return new AuthModeFetchClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry);
+                                                     BridgeRegistry bridgeRegistry,
+                                                     RoutingMetrics routingMetrics,
+                                                     RouteLogSampler routeLogSampler,
+                                                     InFlightRequests inFlightRequests,
+                                                     RequestIds requestIds) {
+        return new AuthModeFetchClient(serviceOptions, builder, identityService, bridgeRegistry, cmRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("authModeFetchRequestAction")
@@ -1240,12 +1837,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             AuthModeFetchClient authModeFetchClient,
-            DefaultValidatedRequestAction<AuthModeFetchClient> authModeFetchRequestAction) {
+            DefaultValidatedRequestAction<AuthModeFetchClient> authModeFetchRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 authModeFetchClient,
-                authModeFetchRequestAction);
+                queuedDeliveries.requestAction("auth-mode-fetch-request", authModeFetchRequestAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("authModeFetchResponseAction")
@@ -1257,8 +1861,16 @@ public class GatewayConfiguration {
     @Bean("authModeFetchResponseOrchestrator")
     public ResponseOrchestrator authModeFetchResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<AuthModeFetchClient> authModeFetchResponseAction) {
-        return new ResponseOrchestrator(validator, authModeFetchResponseAction);
+            DefaultValidatedResponseAction<AuthModeFetchClient> authModeFetchResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("auth-mode-fetch-response", authModeFetchResponseAction, X_HIU_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("authNotifyServiceClient")
@@ -1266,8 +1878,13 @@ public class GatewayConfiguration {
                                                            @Qualifier("customBuilder") WebClient.Builder builder,
                                                            CMRegistry cmRegistry,
                                                            IdentityService identityService,
-                                                           BridgeRegistry bridgeRegistry) {
-        return new AuthNotifyServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry);
+                                                           BridgeRegistry bridgeRegistry,
+                                                           RoutingMetrics routingMetrics,
+                                                           RouteLogSampler routeLogSampler,
+                                                           InFlightRequests inFlightRequests,
+                                                           RequestIds requestIds) {
+        return new AuthNotifyServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("authNotifyRequestAction")
@@ -1282,12 +1899,19 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             AuthNotifyServiceClient authNotifyServiceClient,
-            DefaultValidatedRequestAction<AuthNotifyServiceClient> authNotifyRequestAction) {
+            DefaultValidatedRequestAction<AuthNotifyServiceClient> authNotifyRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 authNotifyServiceClient,
-                authNotifyRequestAction);
+                queuedDeliveries.requestAction("auth-notify-request", authNotifyRequestAction, X_HIP_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean("authNotifyResponseAction")
@@ -1299,8 +1923,16 @@ public class GatewayConfiguration {
     @Bean("authNotifyResponseOrchestrator")
     public ResponseOrchestrator authNotifyResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<AuthNotifyServiceClient> authNotifyResponseAction) {
-        return new ResponseOrchestrator(validator, authNotifyResponseAction);
+            DefaultValidatedResponseAction<AuthNotifyServiceClient> authNotifyResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("auth-notify-response", authNotifyResponseAction, X_CM_ID),
+                routingMetrics,
+                routeLogSampler,
+                requestIds);
     }
 
     @Bean
@@ -1309,10 +1941,11 @@ public class GatewayConfiguration {
     public GlobalExceptionHandler clientErrorExceptionHandler(ErrorAttributes errorAttributes,
                                                               ResourceProperties resourceProperties,
                                                               ApplicationContext applicationContext,
-                                                              ServerCodecConfigurer serverCodecConfigurer) {
+                                                              ServerCodecConfigurer serverCodecConfigurer,
+                                                              RequestIds requestIds) {
 
         GlobalExceptionHandler globalExceptionHandler = new GlobalExceptionHandler(errorAttributes,
-                resourceProperties, applicationContext);
+                resourceProperties, applicationContext, requestIds);
         globalExceptionHandler.setMessageWriters(serverCodecConfigurer.getWriters());
         return globalExceptionHandler;
     }
@@ -1336,8 +1969,13 @@ public class GatewayConfiguration {
             @Qualifier("customBuilder") WebClient.Builder builder,
             IdentityService identityService,
             CMRegistry cmRegistry,
-            BridgeRegistry bridgeRegistry) {
-        return new HiuSubscriptionNotifyServiceClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry);
+            BridgeRegistry bridgeRegistry,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            InFlightRequests inFlightRequests,
+            RequestIds requestIds) {
+        return new HiuSubscriptionNotifyServiceClient(serviceOptions, builder, identityService, cmRegistry,
+                bridgeRegistry, routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("hiuSubscriptionNotifyResponseAction")
@@ -1349,8 +1987,18 @@ public class GatewayConfiguration {
     @Bean("hiuSubscriptionNotifyResponseOrchestrator")
     public ResponseOrchestrator hiuSubscriptionNotifyResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<HiuSubscriptionNotifyServiceClient> hiuSubscriptionNotifyResponseAction) {
-        return new ResponseOrchestrator(validator, hiuSubscriptionNotifyResponseAction);
+            DefaultValidatedResponseAction<HiuSubscriptionNotifyServiceClient> hiuSubscriptionNotifyResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("hiu-subscription-notify-response",
+                        hiuSubscriptionNotifyResponseAction,
+                        X_CM_ID),
+                        routingMetrics,
+                        routeLogSampler,
+                        requestIds);
     }
 
     @Bean("hiuSubscriptionNotifyRequestAction")
@@ -1365,19 +2013,29 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             HiuSubscriptionNotifyServiceClient hiuConsentNotifyServiceClient,
-            DefaultValidatedRequestAction<HiuSubscriptionNotifyServiceClient> hiuSubscriptionNotifyRequestAction) {
+            DefaultValidatedRequestAction<HiuSubscriptionNotifyServiceClient> hiuSubscriptionNotifyRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 hiuConsentNotifyServiceClient,
-                hiuSubscriptionNotifyRequestAction);
+                queuedDeliveries.requestAction("hiu-subscription-notify-request",
+                        hiuSubscriptionNotifyRequestAction,
+                        X_HIU_ID),
+                        routingMetrics,
+                        routeLogSampler,
+                        requestIds);
     }
 
     @Bean("facilityRegistryClient")
     public FacilityRegistryClient facilityRegistryClient(@Qualifier("customBuilder") WebClient.Builder builder,
                                                          FacilityRegistryProperties facilityRegistryProperties,
-                                                         @Qualifier("facilityTokenCache") CacheAdapter<String, String> facilityTokenCache){
-        return new FacilityRegistryClient(builder, facilityRegistryProperties, facilityTokenCache);
+                                                         @Qualifier("facilityTokenCache") CacheAdapter<String, String> facilityTokenCache,
+                                                         RequestIds requestIds){
+        return new FacilityRegistryClient(builder, facilityRegistryProperties, facilityTokenCache, requestIds);
     }
 
     @Bean("patientSMSNotificationClient")
@@ -1385,8 +2043,13 @@ public class GatewayConfiguration {
                                                                      @Qualifier("customBuilder") WebClient.Builder builder,
                                                                      CMRegistry cmRegistry,
                                                                      IdentityService identityService,
-                                                                     BridgeRegistry bridgeRegistry) {
-        return new PatientSMSNotificationClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry);
+                                                                     BridgeRegistry bridgeRegistry,
+                                                                     RoutingMetrics routingMetrics,
+                                                                     RouteLogSampler routeLogSampler,
+                                                                     InFlightRequests inFlightRequests,
+                                                                     RequestIds requestIds) {
+        return new PatientSMSNotificationClient(serviceOptions, builder, identityService, cmRegistry, bridgeRegistry,
+                routingMetrics, routeLogSampler, inFlightRequests, requestIds);
     }
 
     @Bean("patientSMSNotifcationRequestAction")
@@ -1401,12 +2064,21 @@ public class GatewayConfiguration {
             RedundantRequestValidator redundantRequestValidator,
             Validator validator,
             PatientSMSNotificationClient patientSMSNotificationClient,
-            DefaultValidatedRequestAction<PatientSMSNotificationClient> patientSMSNotificationRequestAction) {
+            DefaultValidatedRequestAction<PatientSMSNotificationClient> patientSMSNotificationRequestAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
         return new RequestOrchestrator<>(requestIdMappings,
                 redundantRequestValidator,
                 validator,
                 patientSMSNotificationClient,
-                patientSMSNotificationRequestAction);
+                queuedDeliveries.requestAction("patient-sms-notify-request",
+                        patientSMSNotificationRequestAction,
+                        X_CM_ID),
+                        routingMetrics,
+                        routeLogSampler,
+                        requestIds);
     }
 
     @Bean("patientSMSNotificationResponseAction")
@@ -1418,7 +2090,17 @@ public class GatewayConfiguration {
     @Bean("patientSMSNotifyResponseOrchestrator")
     public ResponseOrchestrator patientSMSNotifyResponseOrchestrator(
             Validator validator,
-            DefaultValidatedResponseAction<PatientSMSNotificationClient> patientSMSNotificationResponseAction) {
-        return new ResponseOrchestrator(validator, patientSMSNotificationResponseAction);
+            DefaultValidatedResponseAction<PatientSMSNotificationClient> patientSMSNotificationResponseAction,
+            QueuedDeliveries queuedDeliveries,
+            RoutingMetrics routingMetrics,
+            RouteLogSampler routeLogSampler,
+            RequestIds requestIds) {
+        return new ResponseOrchestrator(validator,
+                queuedDeliveries.responseAction("patient-sms-notify-response",
+                        patientSMSNotificationResponseAction,
+                        X_HIP_ID),
+                        routingMetrics,
+                        routeLogSampler,
+                        requestIds);
     }
 }
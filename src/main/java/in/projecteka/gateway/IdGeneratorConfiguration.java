@@ -0,0 +1,28 @@
+package in.projecteka.gateway;
+
+import in.projecteka.gateway.common.RequestIds;
+import in.projecteka.gateway.common.correlation.NodeOwnedRequestIds;
+import in.projecteka.gateway.common.id.IdGenerator;
+import in.projecteka.gateway.common.id.TimeOrderedIdGenerator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.UUID;
+
+@Configuration
+public class IdGeneratorConfiguration {
+    private static final String RANDOM = "random";
+    private static final String TIME_ORDERED = "time-ordered";
+
+    @Bean
+    public RequestIds requestIds(@Value("${gateway.idGenerator:" + RANDOM + "}") String idGenerator,
+                                 ObjectProvider<NodeOwnedRequestIds> nodeOwnedRequestIds) {
+        IdGenerator ids = TIME_ORDERED.equalsIgnoreCase(idGenerator)
+                          ? new TimeOrderedIdGenerator()
+                          : UUID::randomUUID;
+        var nodeOwned = nodeOwnedRequestIds.getIfAvailable();
+        return nodeOwned == null ? new RequestIds(ids) : new RequestIds(ids, nodeOwned::next);
+    }
+}
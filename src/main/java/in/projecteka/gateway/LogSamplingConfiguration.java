@@ -0,0 +1,60 @@
+package in.projecteka.gateway;
+
+import in.projecteka.gateway.common.logging.LoggingOptions;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+import static net.logstash.logback.argument.StructuredArguments.keyValue;
+
+@Configuration
+public class LogSamplingConfiguration {
+    private static final Logger logger = LoggerFactory.getLogger(LogSamplingConfiguration.class);
+    private static final int DEFAULT_SUMMARY_INTERVAL_IN_SECONDS = 60;
+
+    private final LoggingOptions loggingOptions;
+    private final RouteLogSampler sampler;
+    private Disposable summaries;
+
+    public LogSamplingConfiguration(LoggingOptions loggingOptions) {
+        this.loggingOptions = loggingOptions;
+        var sampler = new RouteLogSampler(loggingOptions.getSampleOneIn(), loggingOptions.getRouteSampleOneIn());
+        this.sampler = sampler.isSampling() ? sampler : RouteLogSampler.ALL;
+    }
+
+    @Bean
+    public RouteLogSampler routeLogSampler() {
+        return sampler;
+    }
+
+    @PostConstruct
+    private void scheduleSummaries() {
+        if (!sampler.isSampling()) {
+            return;
+        }
+        var interval = Duration.ofSeconds(loggingOptions.getSummaryIntervalInSeconds() > 0
+                                          ? loggingOptions.getSummaryIntervalInSeconds()
+                                          : DEFAULT_SUMMARY_INTERVAL_IN_SECONDS);
+        summaries = Flux.interval(interval, interval)
+                .subscribe(tick -> sampler.drainAdmitted().forEach((apiCalled, count) ->
+                        logger.info("Routed requests {} {} {}",
+                                keyValue("apiCalled", apiCalled),
+                                keyValue("count", count),
+                                keyValue("intervalInSeconds", interval.toSeconds()))));
+    }
+
+    @PreDestroy
+    private void stopSummaries() {
+        if (summaries != null) {
+            summaries.dispose();
+        }
+    }
+}
@@ -5,9 +5,14 @@ import org.slf4j.MDC;
 import reactor.core.CoreSubscriber;
 import reactor.util.context.Context;
 
-import java.util.Map;
-import java.util.stream.Collectors;
+import static in.projecteka.gateway.common.Constants.CORRELATION_ID;
 
+/**
+ * Carries only the correlation id from the Reactor context onto the signalling thread's MDC. The MDC is written
+ * only when the id differs from what the thread already holds, so the common case of consecutive signals for the
+ * same request costs a context lookup and a string comparison, with no allocation. A context without a correlation
+ * id removes it from the MDC, so a reused event-loop thread never logs someone else's id.
+ */
 public class MdcContextLifter<T> implements CoreSubscriber<T> {
 
     CoreSubscriber<T> coreSubscriber;
@@ -45,14 +50,18 @@ public class MdcContextLifter<T> implements CoreSubscriber<T> {
         return coreSubscriber.currentContext();
     }
 
-    private void copyToMdc(Context context) {
-        if (!context.isEmpty()) {
-            Map<String, String> map = context.stream()
-                    .collect(Collectors.toMap(e -> e.getKey().toString(), e -> e.getValue().toString()));
-            MDC.setContextMap(map);
-        } else {
-            MDC.clear();
+    static void copyToMdc(Context context) {
+        Object correlationId = context.getOrDefault(CORRELATION_ID, null);
+        String current = MDC.get(CORRELATION_ID);
+        if (correlationId == null) {
+            if (current != null) {
+                MDC.remove(CORRELATION_ID);
+            }
+            return;
+        }
+        String id = correlationId.toString();
+        if (!id.equals(current)) {
+            MDC.put(CORRELATION_ID, id);
         }
     }
 }
-
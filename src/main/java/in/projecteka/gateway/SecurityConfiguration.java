@@ -35,6 +35,10 @@ import static in.projecteka.gateway.common.Constants.INTERNAL_BRIDGES;
 import static in.projecteka.gateway.common.Constants.INTERNAL_BRIDGES_BRIDGE_ID_SERVICES;
 import static in.projecteka.gateway.common.Constants.INTERNAL_CM;
 import static in.projecteka.gateway.common.Constants.INTERNAL_GET_FACILITY_BY_ID;
+import static in.projecteka.gateway.common.Constants.INTERNAL_IN_FLIGHT_REQUESTS;
+import static in.projecteka.gateway.common.Constants.INTERNAL_REPROCESS;
+import static in.projecteka.gateway.common.Constants.INTERNAL_REPROCESS_SOURCE;
+import static in.projecteka.gateway.common.Constants.INTERNAL_REQUEST_ID_MAPPINGS;
 import static in.projecteka.gateway.common.Constants.INTERNAL_SEARCH_FACILITY_BY_NAME;
 import static in.projecteka.gateway.common.Constants.PATH_ADD_CARE_CONTEXTS;
 import static in.projecteka.gateway.common.Constants.PATH_CARE_CONTEXTS_DISCOVER;
@@ -71,6 +75,7 @@ import static in.projecteka.gateway.common.Constants.PATH_PATIENTS_SMS_NOTIFY;
 import static in.projecteka.gateway.common.Constants.PATH_PATIENTS_SMS_ON_NOTIFY;
 import static in.projecteka.gateway.common.Constants.PATH_PATIENT_ON_SHARE;
 import static in.projecteka.gateway.common.Constants.PATH_PATIENT_SHARE;
+import static in.projecteka.gateway.common.Constants.PATH_PROMETHEUS;
 import static in.projecteka.gateway.common.Constants.PATH_READINESS;
 import static in.projecteka.gateway.common.Constants.PATH_SERVICE_URLS;
 import static in.projecteka.gateway.common.Constants.PATH_SESSIONS;
@@ -167,7 +172,12 @@ public class SecurityConfiguration {
     protected static final String[] INTERNAL_APIS = {
             INTERNAL_BRIDGES,
             INTERNAL_BRIDGES_BRIDGE_ID_SERVICES,
-            INTERNAL_CM
+            INTERNAL_CM,
+            INTERNAL_REQUEST_ID_MAPPINGS,
+            INTERNAL_IN_FLIGHT_REQUESTS,
+            INTERNAL_REPROCESS,
+            INTERNAL_REPROCESS_SOURCE,
+            PATH_PROMETHEUS
     };
 
     protected static final String[] HFR_APIS = {
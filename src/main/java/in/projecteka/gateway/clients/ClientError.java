@@ -54,6 +54,10 @@ public class ClientError extends Throwable {
         return new ClientError(CONFLICT, errorOf(message, UNKNOWN_ERROR_OCCURRED));
     }
 
+    public static ClientError reprocessAlreadyRunning(String source) {
+        return new ClientError(CONFLICT, errorOf(format("%s is already being reprocessed", source), UNKNOWN_ERROR_OCCURRED));
+    }
+
     public static ClientError notFound(String message) {
         return new ClientError(NOT_FOUND, errorOf(message, UNKNOWN_ERROR_OCCURRED));
     }
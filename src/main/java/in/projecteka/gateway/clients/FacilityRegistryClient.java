@@ -3,6 +3,7 @@ package in.projecteka.gateway.clients;
 import in.projecteka.gateway.clients.model.FacilitySearchResponse;
 import in.projecteka.gateway.clients.model.FindFacilityByIDResponse;
 import in.projecteka.gateway.clients.model.Session;
+import in.projecteka.gateway.common.RequestIds;
 import in.projecteka.gateway.common.cache.CacheAdapter;
 import in.projecteka.gateway.registry.FacilityRegistryProperties;
 import lombok.AllArgsConstructor;
@@ -19,7 +20,6 @@ import reactor.core.publisher.Mono;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.HashMap;
-import java.util.UUID;
 
 import static in.projecteka.gateway.clients.ClientError.unableToConnect;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
@@ -35,14 +35,16 @@ public class FacilityRegistryClient {
     private final WebClient authWebClient;
     private final FacilityRegistryProperties properties;
     private final CacheAdapter<String, String> facilityTokenCache;
+    private final RequestIds requestIds;
 
 
     public FacilityRegistryClient(WebClient.Builder webClientBuilder, FacilityRegistryProperties properties,
-                                  CacheAdapter<String, String> facilityTokenCache) {
+                                  CacheAdapter<String, String> facilityTokenCache, RequestIds requestIds) {
         this.registryWebClient = webClientBuilder.baseUrl(properties.getUrl()).build();
         this.authWebClient = webClientBuilder.baseUrl(properties.getAuthUrl()).build();
         this.properties = properties;
         this.facilityTokenCache = facilityTokenCache;
+        this.requestIds = requestIds;
     }
 
     private Mono<String> getTokenForFacilityRegistry() {
@@ -117,7 +119,7 @@ public class FacilityRegistryClient {
             facilityInfo.put("district", district);
         }
 
-        requestData.put("requestId", UUID.randomUUID().toString());
+        requestData.put("requestId", requestIds.next().toString());
         requestData.put("timestamp", LocalDateTime.now(ZoneOffset.UTC));
         requestData.put("facility", facilityInfo);
         return requestData;
@@ -127,7 +129,7 @@ public class FacilityRegistryClient {
         var requestData = new HashMap<String, Object>();
         var facilityInfo = new HashMap<String, String>();
         facilityInfo.put("id", facilityId);
-        requestData.put("requestId", UUID.randomUUID().toString());
+        requestData.put("requestId", requestIds.next().toString());
         requestData.put("timestamp", LocalDateTime.now(ZoneOffset.UTC));
         requestData.put("facility", facilityInfo);
         return requestData;
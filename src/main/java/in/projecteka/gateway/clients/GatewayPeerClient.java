@@ -0,0 +1,53 @@
+package in.projecteka.gateway.clients;
+
+import in.projecteka.gateway.common.IdentityService;
+import in.projecteka.gateway.common.correlation.RequestIdMapping;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import static in.projecteka.gateway.clients.ClientError.unableToConnect;
+import static in.projecteka.gateway.common.Constants.INTERNAL_REQUEST_ID_MAPPINGS;
+import static java.lang.String.format;
+import static java.time.Duration.ofSeconds;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+/**
+ * Talks to the other nodes of this gateway deployment. {@code peerUrlTemplate} resolves a node id to the base url of
+ * that node, e.g. {@code http://gateway-%d.gateway-headless:8000} for a stateful set.
+ */
+@AllArgsConstructor
+public class GatewayPeerClient {
+    private static final Logger logger = LoggerFactory.getLogger(GatewayPeerClient.class);
+
+    private final WebClient.Builder webClientBuilder;
+    private final IdentityService identityService;
+    private final String peerUrlTemplate;
+    private final int timeout;
+
+    public Mono<RequestIdMapping> requestIdMapping(int nodeId, String gatewayRequestId) {
+        var url = format(peerUrlTemplate, nodeId) + INTERNAL_REQUEST_ID_MAPPINGS;
+        return identityService.authenticate()
+                .flatMap(token -> webClientBuilder.build()
+                        .get()
+                        .uri(url, gatewayRequestId)
+                        .accept(APPLICATION_JSON)
+                        .header(AUTHORIZATION, token)
+                        .exchange()
+                        .flatMap(response -> {
+                            if (response.statusCode().is2xxSuccessful()) {
+                                return response.bodyToMono(RequestIdMapping.class);
+                            }
+                            if (response.statusCode() == NOT_FOUND) {
+                                return response.releaseBody().then(Mono.<RequestIdMapping>empty());
+                            }
+                            logger.error("Node {} could not resolve {}: {}", nodeId, gatewayRequestId, response.statusCode());
+                            return response.releaseBody().then(Mono.<RequestIdMapping>error(unableToConnect()));
+                        }))
+                .timeout(ofSeconds(timeout));
+    }
+}
@@ -3,6 +3,7 @@ package in.projecteka.gateway.clients;
 import in.projecteka.gateway.clients.model.Error;
 import in.projecteka.gateway.clients.model.ErrorRepresentation;
 import in.projecteka.gateway.common.DbOperationError;
+import in.projecteka.gateway.common.RequestIds;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -23,8 +24,6 @@ import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebInputException;
 import reactor.core.publisher.Mono;
 
-import java.util.UUID;
-
 import static in.projecteka.gateway.clients.ClientError.unknownErrorOccurred;
 import static in.projecteka.gateway.clients.model.ErrorCode.UNKNOWN_ERROR_OCCURRED;
 import static in.projecteka.gateway.common.Constants.CORRELATION_ID;
@@ -37,11 +36,15 @@ import static org.springframework.web.reactive.function.BodyInserters.fromValue;
 public class GlobalExceptionHandler extends AbstractErrorWebExceptionHandler {
     private static final Logger logger = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
+    private final RequestIds requestIds;
+
     public GlobalExceptionHandler(
             ErrorAttributes errorAttributes,
             ResourceProperties resourceProperties,
-            ApplicationContext applicationContext) {
+            ApplicationContext applicationContext,
+            RequestIds requestIds) {
         super(errorAttributes, resourceProperties, applicationContext);
+        this.requestIds = requestIds;
     }
 
     @Override
@@ -91,7 +94,7 @@ public class GlobalExceptionHandler extends AbstractErrorWebExceptionHandler {
     }
 
     private Throwable extractAndLogError(ServerRequest request) {
-        String correlationId = request.attribute(CORRELATION_ID).orElse(UUID.randomUUID()).toString();
+        String correlationId = request.attribute(CORRELATION_ID).orElse(requestIds.next()).toString();
         MDC.put(CORRELATION_ID, correlationId);
         Throwable error = getError(request);
         var message = format("Error happened for path: %s, method: %s, message: %s",
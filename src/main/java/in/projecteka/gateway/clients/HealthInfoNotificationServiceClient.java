@@ -2,7 +2,11 @@ package in.projecteka.gateway.clients;
 
 import in.projecteka.gateway.common.Constants;
 import in.projecteka.gateway.common.IdentityService;
+import in.projecteka.gateway.common.RequestIds;
 import in.projecteka.gateway.common.cache.ServiceOptions;
+import in.projecteka.gateway.common.inflight.InFlightRequests;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
 import in.projecteka.gateway.registry.CMRegistry;
 import in.projecteka.gateway.registry.ServiceType;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -14,8 +18,13 @@ public class HealthInfoNotificationServiceClient extends ServiceClient {
     public HealthInfoNotificationServiceClient(ServiceOptions serviceOptions,
                                                WebClient.Builder webClientBuilder,
                                                IdentityService centralRegistry,
-                                               CMRegistry cmRegistry) {
-        super(serviceOptions, webClientBuilder, centralRegistry);
+                                               CMRegistry cmRegistry,
+                                               RoutingMetrics routingMetrics,
+                                               RouteLogSampler routeLogSampler,
+                                               InFlightRequests inFlightRequests,
+                                               RequestIds requestIds) {
+        super(serviceOptions, webClientBuilder, centralRegistry, routingMetrics, routeLogSampler, inFlightRequests,
+                requestIds);
         this.cmRegistry = cmRegistry;
     }
 
@@ -2,7 +2,11 @@ package in.projecteka.gateway.clients;
 
 import in.projecteka.gateway.common.Constants;
 import in.projecteka.gateway.common.IdentityService;
+import in.projecteka.gateway.common.RequestIds;
 import in.projecteka.gateway.common.cache.ServiceOptions;
+import in.projecteka.gateway.common.inflight.InFlightRequests;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
 import in.projecteka.gateway.registry.BridgeRegistry;
 import in.projecteka.gateway.registry.CMRegistry;
 import in.projecteka.gateway.registry.ServiceType;
@@ -18,8 +22,13 @@ public class HipInitLinkServiceClient extends ServiceClient{
                                    WebClient.Builder webClientBuilder,
                                    IdentityService identityService,
                                    CMRegistry cmRegistry,
-                                   BridgeRegistry bridgeRegistry) {
-        super(serviceOptions, webClientBuilder, identityService);
+                                   BridgeRegistry bridgeRegistry,
+                                   RoutingMetrics routingMetrics,
+                                   RouteLogSampler routeLogSampler,
+                                   InFlightRequests inFlightRequests,
+                                   RequestIds requestIds) {
+        super(serviceOptions, webClientBuilder, identityService, routingMetrics, routeLogSampler, inFlightRequests,
+                requestIds);
         this.cmRegistry = cmRegistry;
         this.bridgeRegistry = bridgeRegistry;
     }
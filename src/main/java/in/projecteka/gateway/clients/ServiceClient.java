@@ -3,7 +3,13 @@ package in.projecteka.gateway.clients;
 import com.fasterxml.jackson.databind.JsonNode;
 import in.projecteka.gateway.clients.model.CmErrorResponse;
 import in.projecteka.gateway.common.IdentityService;
+import in.projecteka.gateway.common.RequestIds;
 import in.projecteka.gateway.common.cache.ServiceOptions;
+import in.projecteka.gateway.common.inflight.InFlightRequests;
+import in.projecteka.gateway.common.jfr.OutboundDispatchEvent;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
+import in.projecteka.gateway.common.metrics.RoutingMetrics.Stage;
 import in.projecteka.gateway.common.model.ErrorResult;
 import in.projecteka.gateway.registry.ServiceType;
 import lombok.AllArgsConstructor;
@@ -17,17 +23,20 @@ import reactor.core.publisher.Mono;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 import java.util.function.BiFunction;
 
 import static in.projecteka.gateway.clients.ClientError.invalidRequest;
 import static in.projecteka.gateway.clients.ClientError.mappingNotFoundForId;
 import static in.projecteka.gateway.clients.ClientError.unableToConnect;
+import static in.projecteka.gateway.common.Constants.API_CALLED;
 import static in.projecteka.gateway.common.Constants.CORRELATION_ID;
 import static in.projecteka.gateway.common.Constants.X_HIP_ID;
 import static in.projecteka.gateway.common.Constants.X_HIU_ID;
 import static in.projecteka.gateway.common.Constants.X_ORIGIN_ID;
 import static in.projecteka.gateway.common.Serializer.from;
+import static in.projecteka.gateway.common.jfr.GatewayEvents.recorded;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.Stage.ERROR_NOTIFY;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.Stage.OUTBOUND_CALL;
 import static java.lang.String.format;
 import static java.time.Duration.ofSeconds;
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
@@ -43,17 +52,41 @@ public abstract class ServiceClient {
     protected final ServiceOptions serviceOptions;
     protected final WebClient.Builder webClientBuilder;
     protected final IdentityService identityService;
+    protected final RoutingMetrics routingMetrics;
+    protected final RouteLogSampler routeLogSampler;
+    protected final InFlightRequests inFlightRequests;
+    protected final RequestIds requestIds;
 
     public Mono<Void> routeRequest(Map<String, Object> request, String clientId, String routingKey, String sourceId) {
-        return routeCommon(request, clientId, this::getRequestUrl, routingKey, sourceId);
+        return outbound(OUTBOUND_CALL, "request", clientId,
+                routeCommon(request, clientId, this::getRequestUrl, routingKey, sourceId));
     }
 
     public Mono<Void> routeResponse(JsonNode request, String clientId, String routingKey) {
-        return routeCommon(request, clientId, this::getResponseUrl, routingKey, null);
+        return outbound(OUTBOUND_CALL, "response", clientId,
+                routeCommon(request, clientId, this::getResponseUrl, routingKey, null));
+    }
+
+    /** Forwards a request body which is already serialized, as retries carry it, without reading it again. */
+    public Mono<Void> routeSerializedRequest(String body, String clientId, String routingKey, String sourceId) {
+        return outbound(OUTBOUND_CALL, "request", clientId,
+                routeSerialized(Mono.just(body), clientId, this::getRequestUrl, routingKey, sourceId));
+    }
+
+    public Mono<Void> routeSerializedResponse(String body, String clientId, String routingKey) {
+        return outbound(OUTBOUND_CALL, "response", clientId,
+                routeSerialized(Mono.just(body), clientId, this::getResponseUrl, routingKey, null));
     }
 
     public Mono<Void> notifyError(String clientId, String sourceRoutingKey, ErrorResult request) {
-        return routeCommon(request, clientId, this::getResponseUrl, sourceRoutingKey, null);
+        return outbound(ERROR_NOTIFY, "error", clientId,
+                routeCommon(request, clientId, this::getResponseUrl, sourceRoutingKey, null));
+    }
+
+    private Mono<Void> outbound(Stage stage, String kind, String clientId, Mono<Void> call) {
+        return routingMetrics.timed(stage, recorded(OutboundDispatchEvent.class,
+                () -> new OutboundDispatchEvent(kind, clientId),
+                inFlightRequests.tracked(kind, clientId, call)));
     }
 
     protected abstract Mono<String> getResponseUrl(String clientId, ServiceType routingKey);
@@ -66,19 +99,30 @@ public abstract class ServiceClient {
                                        BiFunction<String,ServiceType, Mono<String>> urlGetter,
                                        String routingKey,
                                        String sourceId) {
+        return routeSerialized(Mono.defer(() -> from(requestBody).map(Mono::just).orElse(empty())),
+                targetId,
+                urlGetter,
+                routingKey,
+                sourceId);
+    }
+
+    private Mono<Void> routeSerialized(Mono<String> serializedBody,
+                                       String targetId,
+                                       BiFunction<String,ServiceType, Mono<String>> urlGetter,
+                                       String routingKey,
+                                       String sourceId) {
         var serviceType = routingKey.equals(X_HIP_ID)? ServiceType.HIP : ServiceType.HIU;
         return urlGetter.apply(targetId, serviceType)
                 .switchIfEmpty(Mono.defer(() -> {
                     logger.error(format(NO_MAPPING_FOUND_FOR_CLIENT, targetId));
                     return error(mappingNotFoundForId(targetId));
                 }))
-                .flatMap(url -> from(requestBody)
-                        .map(serialized -> route(serialized, url, routingKey, targetId, sourceId))
-                        .orElse(empty()))
+                .flatMap(url -> serializedBody
+                        .flatMap(serialized -> route(serialized, url, routingKey, targetId, sourceId)))
                 .subscriberContext(ctx -> {
                     Optional<String> correlationId = Optional.ofNullable(MDC.get(CORRELATION_ID));
                     return correlationId.map(id -> ctx.put(CORRELATION_ID, id))
-                            .orElseGet(() -> ctx.put(CORRELATION_ID, UUID.randomUUID().toString()));
+                            .orElseGet(() -> ctx.put(CORRELATION_ID, requestIds.next().toString()));
                 });
 
     }
@@ -92,7 +136,7 @@ public abstract class ServiceClient {
     }
 
     private <T> Mono<ResponseEntity<Void>> cmWebClientBuilder(T request, String url, String token, String sourceId) {
-        return webClientBuilder.build()
+        var call = webClientBuilder.build()
                 .post()
                 .uri(url)
                 .contentType(APPLICATION_JSON)
@@ -108,8 +152,8 @@ public abstract class ServiceClient {
                                 .flatMap(cmErrorResponse -> error(invalidRequest(cmErrorResponse.getError().getMessage())))
                 )
                 .toBodilessEntity()
-                .doOnSubscribe(subscription -> logger.info("About to call cm for source {}, url {}", sourceId, url))
                 .timeout(ofSeconds(serviceOptions.getTimeout()));
+        return logSampled(() -> logger.info("About to call cm for source {}, url {}", sourceId, url)).then(call);
     }
 
     private <T> Mono<ResponseEntity<Void>> bridgeWebClientBuilder(T request,
@@ -117,7 +161,7 @@ public abstract class ServiceClient {
                                                                   String token,
                                                                   String routingKey,
                                                                   String clientId) {
-        return webClientBuilder.build()
+        var call = webClientBuilder.build()
                 .post()
                 .uri(url)
                 .contentType(APPLICATION_JSON)
@@ -131,7 +175,18 @@ public abstract class ServiceClient {
                                 .doOnSuccess(e -> logger.error("Error: {} {}", clientResponse.statusCode(), e))
                                 .then(error(unableToConnect())))
                 .toBodilessEntity()
-                .doOnSubscribe(subscription -> logger.info("About to call bridge {} for url {}", clientId, url))
                 .timeout(ofSeconds(serviceOptions.getTimeout()));
+        return logSampled(() -> logger.info("About to call bridge {} for url {}", clientId, url)).then(call);
+    }
+
+    /** Logs the line if requests on the route in the subscriber context are sampled. */
+    private Mono<Void> logSampled(Runnable log) {
+        return Mono.subscriberContext()
+                .doOnNext(context -> {
+                    if (routeLogSampler.isSampled(context.getOrDefault(API_CALLED, null))) {
+                        log.run();
+                    }
+                })
+                .then();
     }
 }
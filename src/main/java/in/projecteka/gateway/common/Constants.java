@@ -13,8 +13,11 @@ public class Constants {
     public static final String TIMESTAMP = "timestamp";
     public static final String GW_DEAD_LETTER_EXCHANGE = "gw.dead-letter-exchange";
     public static final String GW_EXCHANGE = "gw.exchange";
+    public static final String GW_PARKING_EXCHANGE = "gw.parking.exchange";
     public static final String GW_LINK_QUEUE = "gw.link";
     public static final String GW_DATAFLOW_QUEUE = "gw.dataflow";
+    public static final String GW_DEAD_LETTER_QUEUE = "gw.dlq";
+    public static final String GW_PARKING_LOT_QUEUE = "gw.parkinglot";
     public static final String BRIDGE_ID_PREFIX = "bridge_";
     public static final String CORRELATION_ID = "CORRELATION-ID";
     public static final String UNSPECIFIED_SERVICE_TYPE = "UNSPECIFIED";
@@ -70,12 +73,17 @@ public class Constants {
     public static final String PATH_ADD_CARE_CONTEXTS = CURRENT_VERSION + "/links/link/add-contexts";
     public static final String PATH_ON_ADD_CARE_CONTEXTS = CURRENT_VERSION + "/links/link/on-add-contexts";
     public static final String INTERNAL_CM = "/internal/cm";
+    public static final String INTERNAL_REQUEST_ID_MAPPINGS = "/internal/request-id-mappings/{requestId}";
+    public static final String INTERNAL_IN_FLIGHT_REQUESTS = "/internal/in-flight-requests";
+    public static final String INTERNAL_REPROCESS = "/internal/reprocess";
+    public static final String INTERNAL_REPROCESS_SOURCE = "/internal/reprocess/{source}";
     public static final String PATH_CONSENT_REQUEST_STATUS = CURRENT_VERSION + "/consent-requests/status";
     public static final String PATH_CONSENT_REQUEST_ON_STATUS = CURRENT_VERSION + "/consent-requests/on-status";
     public static final String PATH_PATIENT_SHARE = CURRENT_VERSION + "/patients/profile/share";
     public static final String PATH_PATIENT_ON_SHARE = CURRENT_VERSION + "/patients/profile/on-share";
     public static final String PATH_FETCH_AUTH_MODES = CURRENT_VERSION + "/users/auth/fetch-modes";
     public static final String PATH_READINESS = CURRENT_VERSION + "/readiness";
+    public static final String PATH_PROMETHEUS = "/actuator/prometheus";
     public static final String PATH_SUBSCRIPTION_REQUESTS_INIT_ON_GW = CURRENT_VERSION + "/subscription-requests/cm/init";
     public static final String PATH_SUBSCRIPTION_REQUESTS_INIT_ON_CM = CURRENT_VERSION + "/subscription-requests/hiu/init";
     public static final String PATH_SUBSCRIPTION_REQUESTS_ON_INIT_ON_GW = CURRENT_VERSION + "/subscription-requests/cm/on-init";
@@ -22,6 +22,10 @@ public class DefaultValidatedRequestAction<T extends ServiceClient> implements V
         return serviceClient.routeRequest(updatedRequest, targetId, routingKey, sourceId);
     }
 
+    public Mono<Void> routeSerializedRequest(String sourceId, String targetId, String body, String routingKey) {
+        return serviceClient.routeSerializedRequest(body, targetId, routingKey, sourceId);
+    }
+
     @Override
     public Mono<Void> handleError(Throwable throwable, String id, Map<String, Object> map, String sourceId) {
         logger.error("Error in notifying host with result", throwable);
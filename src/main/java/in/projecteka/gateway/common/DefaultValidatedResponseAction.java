@@ -19,6 +19,10 @@ public class DefaultValidatedResponseAction<T extends ServiceClient> implements
         return serviceClient.routeResponse(updatedRequest, clientId, routingKey);
     }
 
+    public Mono<Void> routeSerializedResponse(String clientId, String body, String routingKey) {
+        return serviceClient.routeSerializedResponse(body, clientId, routingKey);
+    }
+
     @Override
     public Mono<Void> handleError(Throwable throwable, String id, JsonNode jsonNode) {
         //Does it make sense to call the same API back to notify only Error?
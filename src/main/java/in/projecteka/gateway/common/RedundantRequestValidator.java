@@ -2,12 +2,16 @@ package in.projecteka.gateway.common;
 
 import in.projecteka.gateway.clients.ClientError;
 import in.projecteka.gateway.common.cache.CacheAdapter;
-import lombok.AllArgsConstructor;
+import in.projecteka.gateway.common.replay.RequestIdFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
@@ -17,28 +21,59 @@ import java.time.format.DateTimeParseException;
 import static java.lang.String.format;
 import static org.springframework.util.StringUtils.hasText;
 
-@AllArgsConstructor
 public class RedundantRequestValidator {
     private static final Logger logger = LoggerFactory.getLogger(RedundantRequestValidator.class);
+    public static final Duration ALLOWED_PAST_DRIFT = Duration.ofMinutes(1);
+    public static final Duration ALLOWED_FUTURE_DRIFT = Duration.ofMinutes(9);
+    private static final String REPLAY_LOOKUPS = "gateway.replay.lookups";
+
     final CacheAdapter<String, String> requestIdTimestampMappings;
     final String keyPrefix;
+    private final RequestIdFilter requestIdFilter;
+    private final Counter skippedByFilter;
+    private final Counter newOnStore;
+    private final Counter duplicateOnStore;
+
+    public RedundantRequestValidator(CacheAdapter<String, String> requestIdTimestampMappings, String keyPrefix) {
+        this(requestIdTimestampMappings, keyPrefix, RequestIdFilter.NONE, Metrics.globalRegistry);
+    }
+
+    public RedundantRequestValidator(CacheAdapter<String, String> requestIdTimestampMappings,
+                                     String keyPrefix,
+                                     RequestIdFilter requestIdFilter,
+                                     MeterRegistry meterRegistry) {
+        this.requestIdTimestampMappings = requestIdTimestampMappings;
+        this.keyPrefix = keyPrefix;
+        this.requestIdFilter = requestIdFilter;
+        this.skippedByFilter = meterRegistry.counter(REPLAY_LOOKUPS, "source", "filter", "result", "new");
+        this.newOnStore = meterRegistry.counter(REPLAY_LOOKUPS, "source", "store", "result", "new");
+        this.duplicateOnStore = meterRegistry.counter(REPLAY_LOOKUPS, "source", "store", "result", "duplicate");
+    }
 
     private String keyFor(String requestId) {
         return hasText(keyPrefix) ? format("%s_%s", keyPrefix, requestId) : requestId;
     }
 
     public Mono<Void> put(String requestId, String timestamp) {
+        requestIdFilter.put(requestId);
         return requestIdTimestampMappings.put(keyFor(requestId), timestamp);
     }
 
     public Mono<Boolean> validate(String requestId, String timestamp) {
-        return isRequestIdPresent(keyFor(requestId))
+        return isRequestIdPresent(requestId)
                 .flatMap(result -> Mono.error(ClientError.tooManyRequests()))
                 .then(Mono.just(isRequestIdValidInGivenTimestamp(timestamp)));
     }
 
     private Mono<Boolean> isRequestIdPresent(String requestId) {
-        return requestIdTimestampMappings.get(requestId).map(StringUtils::hasText);
+        if (!requestIdFilter.mightContain(requestId)) {
+            skippedByFilter.increment();
+            return Mono.empty();
+        }
+        return requestIdTimestampMappings.get(keyFor(requestId))
+                .map(StringUtils::hasText)
+                .doOnNext(present -> duplicateOnStore.increment())
+                .switchIfEmpty(Mono.fromRunnable(newOnStore::increment));
     }
 
     private boolean isRequestIdValidInGivenTimestamp(String timestamp) {
@@ -61,8 +96,8 @@ public class RedundantRequestValidator {
 
     private boolean isValidTimestamp(LocalDateTime timestamp) {
         LocalDateTime currentTime = LocalDateTime.now(ZoneOffset.UTC);
-        LocalDateTime startTime = currentTime.minusMinutes(1);
-        LocalDateTime endTime = currentTime.plusMinutes(9);
+        LocalDateTime startTime = currentTime.minus(ALLOWED_PAST_DRIFT);
+        LocalDateTime endTime = currentTime.plus(ALLOWED_FUTURE_DRIFT);
         return timestamp.isAfter(startTime) && timestamp.isBefore(endTime);
     }
 }
@@ -0,0 +1,32 @@
+package in.projecteka.gateway.common;
+
+import in.projecteka.gateway.common.id.IdGenerator;
+
+import java.util.UUID;
+
+/**
+ * Every id the gateway mints (request ids, correlation ids, error ids) comes from here, so the generation strategy
+ * is chosen once at start-up. The {@code requestId} stamped on forwarded requests can be generated separately,
+ * for correlation schemes which need to recognise their own ids when the callback arrives.
+ */
+public class RequestIds {
+    private final IdGenerator ids;
+    private final IdGenerator gatewayRequestIds;
+
+    public RequestIds(IdGenerator ids) {
+        this(ids, ids);
+    }
+
+    public RequestIds(IdGenerator ids, IdGenerator gatewayRequestIds) {
+        this.ids = ids;
+        this.gatewayRequestIds = gatewayRequestIds;
+    }
+
+    public UUID next() {
+        return ids.next();
+    }
+
+    public UUID nextGatewayRequestId() {
+        return gatewayRequestIds.next();
+    }
+}
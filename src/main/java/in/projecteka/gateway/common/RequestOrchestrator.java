@@ -4,6 +4,9 @@ import in.projecteka.gateway.clients.ClientError;
 import in.projecteka.gateway.clients.ServiceClient;
 import in.projecteka.gateway.clients.model.Error;
 import in.projecteka.gateway.common.cache.CacheAdapter;
+import in.projecteka.gateway.common.jfr.AdmissionEvent;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
 import in.projecteka.gateway.common.model.ErrorResult;
 import in.projecteka.gateway.common.model.GatewayResponse;
 import lombok.AllArgsConstructor;
@@ -12,16 +15,25 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.http.HttpEntity;
 import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
 
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.TimeoutException;
 
 import static in.projecteka.gateway.clients.model.Error.unKnownError;
+import static in.projecteka.gateway.common.Constants.API_CALLED;
 import static in.projecteka.gateway.common.Constants.CORRELATION_ID;
 import static in.projecteka.gateway.common.Constants.REQUEST_ID;
 import static in.projecteka.gateway.common.Constants.TIMESTAMP;
 import static in.projecteka.gateway.common.Constants.nameMap;
+import static in.projecteka.gateway.common.jfr.GatewayEvents.recorded;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_REQUEST_ID;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_TARGET_ID;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.Stage.CACHE;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.Stage.REDUNDANCY_CHECK;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.Stage.VALIDATION;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.withRoute;
 import static net.logstash.logback.argument.StructuredArguments.keyValue;
 
 @AllArgsConstructor
@@ -32,6 +44,9 @@ public class RequestOrchestrator<T extends ServiceClient> {
     Validator validator;
     T serviceClient;
     ValidatedRequestAction requestAction;
+    RoutingMetrics routingMetrics;
+    RouteLogSampler routeLogSampler;
+    RequestIds requestIds;
 
     public Mono<Void> handleThis(HttpEntity<String> maybeRequest,
                                  String targetRoutingKey,
@@ -41,13 +56,14 @@ public class RequestOrchestrator<T extends ServiceClient> {
         return Mono.subscriberContext()
                 .flatMap(context -> {
                     apiCalled.append((String) context.get("apiCalled"));
-                    return validator.validateRequest(maybeRequest, targetRoutingKey);
+                    return routingMetrics.timed(VALIDATION, validator.validateRequest(maybeRequest, targetRoutingKey));
                 }).doOnSuccess(request -> offloadThis(request,
                         targetRoutingKey,
                         sourceRoutingKey,
                         clientId,
                         apiCalled.toString()))
-                .then();
+                .then()
+                .subscriberContext(context -> withRoute(context, sourceRoutingKey, targetRoutingKey));
     }
 
     private void offloadThis(ValidatedRequest validatedRequest,
@@ -56,25 +72,34 @@ public class RequestOrchestrator<T extends ServiceClient> {
                              String clientId,
                              String apiCalled) {
         Mono.defer(() -> {
-            var gatewayRequestId = UUID.randomUUID();
+            var gatewayRequestId = requestIds.nextGatewayRequestId();
             var downstreamRequestId = gatewayRequestId.toString();
             var request = validatedRequest.getDeSerializedRequest();
             var upstreamRequestId = validatedRequest.getRequesterRequestId();
             request.put(REQUEST_ID, gatewayRequestId);
 
-            logger.info("Received a request {} {} {} {} {} {}", keyValue("requestId", upstreamRequestId)
-                    , keyValue("source", nameMap.get(sourceRoutingKey))
-                    , keyValue("sourceId", clientId)
-                    , keyValue("apiCalled", apiCalled)
-                    , keyValue("target", nameMap.get(targetRoutingKey))
-                    , keyValue("targetId", validatedRequest.getClientId()));
+            var sampled = routeLogSampler.admit(apiCalled);
+            if (sampled) {
+                logger.info("Received a request {} {} {} {} {} {}", keyValue("requestId", upstreamRequestId)
+                        , keyValue("source", nameMap.get(sourceRoutingKey))
+                        , keyValue("sourceId", clientId)
+                        , keyValue("apiCalled", apiCalled)
+                        , keyValue("target", nameMap.get(targetRoutingKey))
+                        , keyValue("targetId", validatedRequest.getClientId()));
+            }
 
-            return requestIdMappings.put(downstreamRequestId, upstreamRequestId.toString())
-                    .then(redundantRequestValidator.put(upstreamRequestId.toString(), request.get(TIMESTAMP).toString()))
-                    .thenReturn(request)
+            return recorded(AdmissionEvent.class, () -> new AdmissionEvent(clientId),
+                    routingMetrics.timed(CACHE,
+                            requestIdMappings.put(downstreamRequestId, upstreamRequestId.toString()))
+                            .then(routingMetrics.timed(REDUNDANCY_CHECK,
+                                    redundantRequestValidator.put(upstreamRequestId.toString(),
+                                            request.get(TIMESTAMP).toString())))
+                            .thenReturn(request))
                     .flatMap(updatedRequest -> {
-                        logger.info("About to call a target {} {}", keyValue("requestId", upstreamRequestId)
-                                , keyValue("gatewayId", gatewayRequestId));
+                        if (sampled) {
+                            logger.info("About to call a target {} {}", keyValue("requestId", upstreamRequestId)
+                                    , keyValue("gatewayId", gatewayRequestId));
+                        }
                         return requestAction.execute(clientId, validatedRequest.getClientId(), updatedRequest, targetRoutingKey);
                     })
                     .onErrorMap(ClientError.class,
@@ -97,18 +122,32 @@ public class RequestOrchestrator<T extends ServiceClient> {
                     .doOnError(ErrorResult.class,
                             errorResult -> {
                                 logger.error("Notifying caller about the failure", errorResult);
-                                serviceClient.notifyError(clientId, sourceRoutingKey, errorResult).subscribe();
+                                serviceClient.notifyError(clientId, sourceRoutingKey, errorResult)
+                                        .subscriberContext(routeContext(apiCalled, sourceRoutingKey, targetRoutingKey, validatedRequest))
+                                        .subscribe();
                             });
         }).subscriberContext(ctx -> {
             Optional<String> correlationId = Optional.ofNullable(MDC.get(CORRELATION_ID));
-            return correlationId.map(id -> ctx.put(CORRELATION_ID, id))
-                    .orElseGet(() -> ctx.put(CORRELATION_ID, UUID.randomUUID().toString()));
+            var routeCtx = ctx.putAll(routeContext(apiCalled, sourceRoutingKey, targetRoutingKey, validatedRequest));
+            return correlationId.map(id -> routeCtx.put(CORRELATION_ID, id))
+                    .orElseGet(() -> routeCtx.put(CORRELATION_ID, requestIds.next().toString()));
         }).subscribe();
     }
 
+    private static Context routeContext(String apiCalled,
+                                        String sourceRoutingKey,
+                                        String targetRoutingKey,
+                                        ValidatedRequest validatedRequest) {
+        return withRoute(Context.of(API_CALLED, apiCalled,
+                ROUTE_TARGET_ID, String.valueOf(validatedRequest.getClientId()),
+                ROUTE_REQUEST_ID, validatedRequest.getRequesterRequestId().toString()),
+                sourceRoutingKey,
+                targetRoutingKey);
+    }
+
     private ErrorResult from(Error error, UUID requestId) {
         return ErrorResult.builder()
-                .requestId(UUID.randomUUID())
+                .requestId(requestIds.next())
                 .error(error)
                 .resp(new GatewayResponse(requestId))
                 .build();
@@ -1,5 +1,7 @@
 package in.projecteka.gateway.common;
 
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,17 +10,23 @@ import org.springframework.http.HttpEntity;
 import reactor.core.publisher.Mono;
 
 import java.util.Optional;
-import java.util.UUID;
 
+import static in.projecteka.gateway.common.Constants.API_CALLED;
 import static in.projecteka.gateway.common.Constants.CORRELATION_ID;
 import static in.projecteka.gateway.common.Constants.nameMap;
 import static in.projecteka.gateway.common.Utils.updateRequestId;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_REQUEST_ID;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.Stage.VALIDATION;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.withRoute;
 import static net.logstash.logback.argument.StructuredArguments.keyValue;
 
 @AllArgsConstructor
 public class ResponseOrchestrator {
     Validator validator;
     ValidatedResponseAction validatedResponseAction;
+    RoutingMetrics routingMetrics;
+    RouteLogSampler routeLogSampler;
+    RequestIds requestIds;
     private static final Logger logger = LoggerFactory.getLogger(ResponseOrchestrator.class);
 
     public Mono<Void> processResponse(HttpEntity<String> maybeResponse, String routingKey) {
@@ -26,23 +34,31 @@ public class ResponseOrchestrator {
         return Mono.subscriberContext()
                 .flatMap(context -> {
                     apiCalled.append((String) context.get("apiCalled"));
-                    return validator.validateResponse(maybeResponse, routingKey);
+                    return routingMetrics.timed(VALIDATION, validator.validateResponse(maybeResponse, routingKey));
                 }).doOnSuccess(validatedResponse -> offloadThis(validatedResponse, routingKey, apiCalled.toString()))
-                .then();
+                .then()
+                .subscriberContext(context -> withRoute(context, null, routingKey));
     }
 
     private void offloadThis(ValidatedResponse response, String routingKey, String apiCalled) {
         Mono.defer(() -> {
-            var updatedJsonNode = updateRequestId(response.getDeSerializedJsonNode(), response.getCallerRequestId());
-            logger.info("Passing the response back {} {} {} {}", keyValue("requestId", response.getCallerRequestId())
-                    , keyValue("target", nameMap.get(routingKey))
-                    , keyValue("targetId", response.getId())
-                    , keyValue("apiCalled", apiCalled));
+            var updatedJsonNode = updateRequestId(response.getDeSerializedJsonNode(),
+                    requestIds.next().toString(),
+                    response.getCallerRequestId());
+            if (routeLogSampler.admit(apiCalled)) {
+                logger.info("Passing the response back {} {} {} {}", keyValue("requestId", response.getCallerRequestId())
+                        , keyValue("target", nameMap.get(routingKey))
+                        , keyValue("targetId", response.getId())
+                        , keyValue("apiCalled", apiCalled));
+            }
             return validatedResponseAction.execute(response.getId(), updatedJsonNode, routingKey);
         }).subscriberContext(ctx -> {
             Optional<String> correlationId = Optional.ofNullable(MDC.get(CORRELATION_ID));
-            return correlationId.map(id -> ctx.put(CORRELATION_ID, id))
-                    .orElseGet(() -> ctx.put(CORRELATION_ID, UUID.randomUUID().toString()));
+            var routeCtx = withRoute(ctx.put(API_CALLED, apiCalled).put(ROUTE_REQUEST_ID, response.getCallerRequestId()),
+                    null,
+                    routingKey);
+            return correlationId.map(id -> routeCtx.put(CORRELATION_ID, id))
+                    .orElseGet(() -> routeCtx.put(CORRELATION_ID, requestIds.next().toString()));
         }).subscribe();
     }
 }
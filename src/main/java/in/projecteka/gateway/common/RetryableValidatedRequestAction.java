@@ -1,12 +1,19 @@
 package in.projecteka.gateway.common;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.LongString;
+import in.projecteka.gateway.clients.ClientError;
 import in.projecteka.gateway.clients.ServiceClient;
 import in.projecteka.gateway.common.cache.ServiceOptions;
-import lombok.AllArgsConstructor;
+import in.projecteka.gateway.common.jfr.RetryPublishEvent;
+import in.projecteka.gateway.common.retry.ConsumerOptions;
+import in.projecteka.gateway.common.retry.DelayedRetries;
+import in.projecteka.gateway.common.retry.DeliveryPermits;
+import in.projecteka.gateway.common.retry.PartitionedRetries;
+import in.projecteka.gateway.common.retry.PublishOutcome;
+import in.projecteka.gateway.common.retry.RetryEnvelope;
+import in.projecteka.gateway.common.retry.RetryPublisher;
+import in.projecteka.gateway.common.retry.TargetCircuits;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -15,56 +22,77 @@ import reactor.rabbitmq.AcknowledgableDelivery;
 import reactor.rabbitmq.OutboundMessage;
 import reactor.rabbitmq.Receiver;
 import reactor.rabbitmq.Sender;
-import reactor.util.retry.Retry;
-import reactor.util.retry.RetryBackoffSpec;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
-import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
 import static in.projecteka.gateway.common.Constants.CORRELATION_ID;
 import static in.projecteka.gateway.common.Constants.GW_EXCHANGE;
 import static in.projecteka.gateway.common.Constants.X_ORIGIN_ID;
+import static in.projecteka.gateway.common.inflight.InFlightRequests.ROUTE_ATTEMPT;
+import static in.projecteka.gateway.common.jfr.GatewayEvents.recorded;
+import static in.projecteka.gateway.common.retry.DelayedRetries.FIRST_QUEUED_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.HANDED_OFF_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.X_RETRY_ATTEMPT;
+import static in.projecteka.gateway.common.retry.RetryEnvelope.X_RETRY_ROUTING_KEY;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
-@AllArgsConstructor
 public class RetryableValidatedRequestAction<T extends ServiceClient>
         implements ValidatedRequestAction {
     private static final Logger logger = LoggerFactory.getLogger(RetryableValidatedRequestAction.class);
-    private final Receiver receiver;
-    private final Sender sender;
     private final DefaultValidatedRequestAction<T> defaultValidatedRequestAction;
     private final ServiceOptions serviceOptions;
     private final String rabbitMQRoutingKey;
     private final String clientIdRequestHeader;
+    private final RetryPublisher retryPublisher;
+    private final PartitionedRetries retries;
+    private final boolean handOff;
 
-    @PostConstruct
-    public void subscribe() {
-        receiver.consumeManualAck(rabbitMQRoutingKey)
-                .subscribe(delivery -> processDelivery(delivery).subscribe());
+    /**
+     * With {@code handOff}, a request is published to the work queue straight away, for a delivery worker to make
+     * the call, instead of being queued only once the call failed.
+     */
+    public RetryableValidatedRequestAction(Receiver receiver,
+                                           Sender sender,
+                                           DefaultValidatedRequestAction<T> defaultValidatedRequestAction,
+                                           ServiceOptions serviceOptions,
+                                           String rabbitMQRoutingKey,
+                                           String clientIdRequestHeader,
+                                           ConsumerOptions consumerOptions,
+                                           RetryPublisher retryPublisher,
+                                           int partitions,
+                                           TargetCircuits circuits,
+                                           MeterRegistry meterRegistry,
+                                           boolean handOff) {
+        this.defaultValidatedRequestAction = defaultValidatedRequestAction;
+        this.serviceOptions = serviceOptions;
+        this.rabbitMQRoutingKey = rabbitMQRoutingKey;
+        this.clientIdRequestHeader = clientIdRequestHeader;
+        this.retryPublisher = retryPublisher;
+        this.handOff = handOff;
+        this.retries = new PartitionedRetries(receiver,
+                sender,
+                retryPublisher,
+                rabbitMQRoutingKey,
+                partitions,
+                serviceOptions,
+                consumerOptions,
+                circuits,
+                meterRegistry);
     }
 
-    @PreDestroy
-    public void closeConnection() {
-        receiver.close();
-        sender.close();
+    /** Consumes the work queues, processing a delivery only once the node has a permit free for it. */
+    public void subscribe(DeliveryPermits permits) {
+        retries.start(delivery -> permits.withPermit(Mono.defer(() -> processDelivery(delivery))));
     }
 
-    private RetryBackoffSpec retryConfig(AcknowledgableDelivery delivery) {
-        return Retry
-                .fixedDelay(serviceOptions.getResponseMaxRetryAttempts(), Duration.ofMillis(serviceOptions.getRetryAttemptsDelay()))
-                .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) -> {
-                    logger.info("Exhausted Retries");
-                    delivery.nack(false);
-                    return new RetryLimitExceededException("Retry limit exceeded for routing the request");
-                });
+    public void declare() {
+        retries.declare();
     }
 
-    private Map<String, Object> extractRequestData(TraceableMessage traceableMessage){
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-        return mapper.convertValue(traceableMessage.getMessage(), Map.class);
+    /** Stops consuming the work queues, leaving the receiver and sender, which may be shared, open. */
+    public void stop() {
+        retries.stop();
     }
 
     @Override
@@ -72,36 +100,106 @@ public class RetryableValidatedRequestAction<T extends ServiceClient>
         return defaultValidatedRequestAction.routeRequest(sourceId, targetId, updatedRequest, routingKey);
     }
 
+    public Mono<Void> routeSerializedRequest(String sourceId, String targetId, String body, String routingKey) {
+        return defaultValidatedRequestAction.routeSerializedRequest(sourceId, targetId, body, routingKey);
+    }
+
+    @Override
+    public Mono<Void> execute(String sourceId, String targetId, Map<String, Object> updatedRequest, String routingKey) {
+        if (handOff) {
+            return publish(targetId, updatedRequest, sourceId, routingKey, HANDED_OFF_ATTEMPT);
+        }
+        return routeRequest(sourceId, targetId, updatedRequest, routingKey)
+                .onErrorResume(throwable -> queue(throwable, targetId, updatedRequest, sourceId, routingKey));
+    }
+
    // Todo: need to route response back to the caller ( callerDetails (id,response api) )
     @Override
     public Mono<Void> handleError(Throwable throwable, String id, Map<String, Object> map, String sourceId) {
+        return queue(throwable, id, map, sourceId, clientIdRequestHeader);
+    }
+
+    private Mono<Void> queue(Throwable throwable,
+                             String id,
+                             Map<String, Object> map,
+                             String sourceId,
+                             String routingKey) {
         logger.error("Error in notifying bridge with result; Will push for retry", throwable);
-        TraceableMessage traceableMessage = TraceableMessage.builder()
-                .correlationId(MDC.get(CORRELATION_ID))
-                .message(map)
-                .build();
+        return publish(id, map, sourceId, routingKey, FIRST_QUEUED_ATTEMPT);
+    }
 
-        return Serializer.from(traceableMessage).map(message -> {
+    private Mono<Void> publish(String id,
+                               Map<String, Object> map,
+                               String sourceId,
+                               String routingKey,
+                               int attempt) {
+        return Serializer.from(map).map(body -> {
             var headers = new HashMap<String, Object>();
-            headers.put(clientIdRequestHeader, id);
+            headers.put(X_RETRY_ATTEMPT, attempt);
+            headers.put(X_RETRY_ROUTING_KEY, routingKey);
+            headers.put(routingKey, id);
             headers.put(X_ORIGIN_ID, sourceId);
-            var messageProperties = new AMQP.BasicProperties.Builder().headers(headers).build();
-            OutboundMessage outboundMessage = new OutboundMessage(GW_EXCHANGE, rabbitMQRoutingKey, messageProperties, message.getBytes());
-            return sender.send(Mono.just(outboundMessage));
+            var messageProperties = RetryEnvelope.properties(headers, MDC.get(CORRELATION_ID));
+            var queue = retries.queueOf(id);
+            OutboundMessage outboundMessage = new OutboundMessage(GW_EXCHANGE, queue, messageProperties, body.getBytes(UTF_8));
+            return recorded(RetryPublishEvent.class,
+                    () -> new RetryPublishEvent(queue, id, outboundMessage.getBody().length),
+                    retryPublisher.publishOrHold(outboundMessage))
+                    .flatMap(outcome -> accepted(outcome, queue));
         }).orElse(Mono.empty());
     }
 
+    // A held message is accepted, though only this node has it until the retry publisher's redrive gets it confirmed;
+    // a dropped one is lost, so the caller is told to try again
+    private static Mono<Void> accepted(PublishOutcome outcome, String queue) {
+        if (outcome == PublishOutcome.DROPPED) {
+            return Mono.error(ClientError.unableToConnect());
+        }
+        if (outcome == PublishOutcome.HELD) {
+            logger.warn("The broker did not confirm a message for {}; it is held on this node for a redrive", queue);
+        }
+        return Mono.empty();
+    }
+
     public Mono<Void> processDelivery(AcknowledgableDelivery delivery) {
-        TraceableMessage traceableMessage = Serializer.to(delivery.getBody(), TraceableMessage.class);
-        var targetId = (LongString) delivery.getProperties().getHeaders().get(clientIdRequestHeader);
+        var envelope = RetryEnvelope.open(delivery);
+        var routingKey = RetryEnvelope.routingKeyOf(delivery, clientIdRequestHeader);
+        var targetId = (LongString) delivery.getProperties().getHeaders().get(routingKey);
         var sourceId = (LongString) delivery.getProperties().getHeaders().get(X_ORIGIN_ID);
-        return Mono.just(traceableMessage)
-                .map(this::extractRequestData)
-                .flatMap((requestData) -> this.routeRequest(sourceId.toString(), targetId.toString(), requestData, clientIdRequestHeader))
-                .doOnSuccess(unused -> delivery.ack())
+        var attempt = DelayedRetries.attemptOf(delivery);
+        var target = targetId.toString();
+        var delayedRetries = retries.retriesOf(target);
+        var circuits = retries.circuits();
+        if (!circuits.allows(target)) {
+            if (delayedRetries.heldOut(delivery)) {
+                logger.warn("The circuit of {} stayed open through every hold of a delivery; parking it", target);
+                return delayedRetries.park(delivery);
+            }
+            return delayedRetries.hold(delivery);
+        }
+        return Mono.defer(() -> this.routeSerializedRequest(sourceId.toString(),
+                        targetId.toString(),
+                        envelope.getBody(),
+                        routingKey)
+                        .subscriberContext(ctx -> ctx.put(ROUTE_ATTEMPT, attempt)))
+                .doOnSuccess(unused -> {
+                    circuits.succeeded(target);
+                    delivery.ack();
+                })
                 .doOnError(throwable -> logger.error("Error while processing retryable request", throwable))
+                .onErrorResume(throwable -> {
+                    circuits.failed(target);
+                    return retryOrPark(delivery, delayedRetries);
+                })
                 .doFinally(signalType -> MDC.clear())
-                .retryWhen(retryConfig(delivery))
-                .subscriberContext(ctx -> ctx.put(CORRELATION_ID, traceableMessage.getCorrelationId()));
+                .subscriberContext(ctx -> ctx.put(CORRELATION_ID, envelope.getCorrelationId()));
+    }
+
+    private Mono<Void> retryOrPark(AcknowledgableDelivery delivery, DelayedRetries delayedRetries) {
+        if (!delayedRetries.exhausted(delivery)) {
+            return delayedRetries.delay(delivery);
+        }
+        return delayedRetries.park(delivery)
+                .then(Mono.error(new RetryLimitExceededException("Retry limit exceeded for routing the request")));
     }
 }
@@ -1,13 +1,20 @@
 package in.projecteka.gateway.common;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.LongString;
+import in.projecteka.gateway.clients.ClientError;
 import in.projecteka.gateway.clients.ServiceClient;
 import in.projecteka.gateway.common.cache.ServiceOptions;
-import lombok.AllArgsConstructor;
+import in.projecteka.gateway.common.jfr.RetryPublishEvent;
+import in.projecteka.gateway.common.retry.ConsumerOptions;
+import in.projecteka.gateway.common.retry.DelayedRetries;
+import in.projecteka.gateway.common.retry.DeliveryPermits;
+import in.projecteka.gateway.common.retry.PartitionedRetries;
+import in.projecteka.gateway.common.retry.PublishOutcome;
+import in.projecteka.gateway.common.retry.RetryEnvelope;
+import in.projecteka.gateway.common.retry.RetryPublisher;
+import in.projecteka.gateway.common.retry.TargetCircuits;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -16,54 +23,75 @@ import reactor.rabbitmq.AcknowledgableDelivery;
 import reactor.rabbitmq.OutboundMessage;
 import reactor.rabbitmq.Receiver;
 import reactor.rabbitmq.Sender;
-import reactor.util.retry.Retry;
-import reactor.util.retry.RetryBackoffSpec;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
-import java.time.Duration;
 import java.util.HashMap;
 
 import static in.projecteka.gateway.common.Constants.CORRELATION_ID;
 import static in.projecteka.gateway.common.Constants.GW_EXCHANGE;
+import static in.projecteka.gateway.common.inflight.InFlightRequests.ROUTE_ATTEMPT;
+import static in.projecteka.gateway.common.jfr.GatewayEvents.recorded;
+import static in.projecteka.gateway.common.retry.DelayedRetries.FIRST_QUEUED_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.HANDED_OFF_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.X_RETRY_ATTEMPT;
+import static in.projecteka.gateway.common.retry.RetryEnvelope.X_RETRY_ROUTING_KEY;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
-@AllArgsConstructor
 public class RetryableValidatedResponseAction<T extends ServiceClient> implements ValidatedResponseAction {
     private static final Logger logger = LoggerFactory.getLogger(RetryableValidatedResponseAction.class);
 
-    private Receiver receiver;
-    private Sender sender;
     private final DefaultValidatedResponseAction<T> defaultValidatedResponseAction;
     private final ServiceOptions serviceOptions;
     private final String rabbitMQRoutingKey;
     private final String clientIdRequestHeader;
+    private final RetryPublisher retryPublisher;
+    private final PartitionedRetries retries;
+    private final boolean handOff;
 
-    @PostConstruct
-    public void subscribe() {
-        receiver.consumeManualAck(rabbitMQRoutingKey)
-                .subscribe(delivery -> this.processDelivery(delivery).subscribe());
+    /**
+     * With {@code handOff}, a response is published to the work queue straight away, for a delivery worker to make
+     * the call, instead of being queued only once the call failed.
+     */
+    public RetryableValidatedResponseAction(Receiver receiver,
+                                            Sender sender,
+                                            DefaultValidatedResponseAction<T> defaultValidatedResponseAction,
+                                            ServiceOptions serviceOptions,
+                                            String rabbitMQRoutingKey,
+                                            String clientIdRequestHeader,
+                                            ConsumerOptions consumerOptions,
+                                            RetryPublisher retryPublisher,
+                                            int partitions,
+                                            TargetCircuits circuits,
+                                            MeterRegistry meterRegistry,
+                                            boolean handOff) {
+        this.defaultValidatedResponseAction = defaultValidatedResponseAction;
+        this.serviceOptions = serviceOptions;
+        this.rabbitMQRoutingKey = rabbitMQRoutingKey;
+        this.clientIdRequestHeader = clientIdRequestHeader;
+        this.retryPublisher = retryPublisher;
+        this.handOff = handOff;
+        this.retries = new PartitionedRetries(receiver,
+                sender,
+                retryPublisher,
+                rabbitMQRoutingKey,
+                partitions,
+                serviceOptions,
+                consumerOptions,
+                circuits,
+                meterRegistry);
     }
 
-    @PreDestroy
-    public void closeConnection() {
-        receiver.close();
-        sender.close();
+    /** Consumes the work queues, processing a delivery only once the node has a permit free for it. */
+    public void subscribe(DeliveryPermits permits) {
+        retries.start(delivery -> permits.withPermit(Mono.defer(() -> processDelivery(delivery))));
     }
 
-    private RetryBackoffSpec retryConfig(AcknowledgableDelivery delivery) {
-        return Retry
-                .fixedDelay(serviceOptions.getResponseMaxRetryAttempts(), Duration.ofMillis(serviceOptions.getRetryAttemptsDelay()))
-                .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) -> {
-                    logger.info("Exhausted Retries");
-                    delivery.nack(false);
-                    return new RetryLimitExceededException("Retry limit exceeded for routing the response");
-                });
+    public void declare() {
+        retries.declare();
     }
 
-    private JsonNode extractRequestData(TraceableMessage traceableMessage){
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-        return mapper.convertValue(traceableMessage.getMessage(), JsonNode.class);
+    /** Stops consuming the work queues, leaving the receiver and sender, which may be shared, open. */
+    public void stop() {
+        retries.stop();
     }
 
     @Override
@@ -71,33 +99,94 @@ public class RetryableValidatedResponseAction<T extends ServiceClient> implement
         return defaultValidatedResponseAction.routeResponse(clientId, updatedRequest, routingKey);
     }
 
+    public Mono<Void> routeSerializedResponse(String clientId, String body, String routingKey) {
+        return defaultValidatedResponseAction.routeSerializedResponse(clientId, body, routingKey);
+    }
+
+    @Override
+    public Mono<Void> execute(String clientId, JsonNode updatedRequest, String routingKey) {
+        if (handOff) {
+            return publish(clientId, updatedRequest, routingKey, HANDED_OFF_ATTEMPT);
+        }
+        return routeResponse(clientId, updatedRequest, routingKey)
+                .onErrorResume(throwable -> queue(throwable, clientId, updatedRequest, routingKey));
+    }
+
     @Override
     public Mono<Void> handleError(Throwable throwable, String xClientId, JsonNode jsonNode) {
+        return queue(throwable, xClientId, jsonNode, clientIdRequestHeader);
+    }
+
+    private Mono<Void> queue(Throwable throwable, String xClientId, JsonNode jsonNode, String routingKey) {
         logger.error("Error in notifying CM with result; Publishing to queue for retry", throwable);
-        TraceableMessage traceableMessage = TraceableMessage.builder()
-                .correlationId(MDC.get(CORRELATION_ID))
-                .message(jsonNode)
-                .build();
+        return publish(xClientId, jsonNode, routingKey, FIRST_QUEUED_ATTEMPT);
+    }
 
-        return Serializer.from(traceableMessage).map(message -> {
+    private Mono<Void> publish(String xClientId, JsonNode jsonNode, String routingKey, int attempt) {
+        return Serializer.from(jsonNode).map(body -> {
             var headers = new HashMap<String, Object>();
-            headers.put(clientIdRequestHeader, xClientId);
-            var messageProperties = new AMQP.BasicProperties.Builder().headers(headers).build();
-            OutboundMessage outboundMessage = new OutboundMessage(GW_EXCHANGE, rabbitMQRoutingKey, messageProperties, message.getBytes());
-            return sender.send(Mono.just(outboundMessage));
+            headers.put(X_RETRY_ATTEMPT, attempt);
+            headers.put(X_RETRY_ROUTING_KEY, routingKey);
+            headers.put(routingKey, xClientId);
+            var messageProperties = RetryEnvelope.properties(headers, MDC.get(CORRELATION_ID));
+            var queue = retries.queueOf(xClientId);
+            OutboundMessage outboundMessage = new OutboundMessage(GW_EXCHANGE, queue, messageProperties, body.getBytes(UTF_8));
+            return recorded(RetryPublishEvent.class,
+                    () -> new RetryPublishEvent(queue, xClientId, outboundMessage.getBody().length),
+                    retryPublisher.publishOrHold(outboundMessage))
+                    .flatMap(outcome -> accepted(outcome, queue));
         }).orElse(Mono.empty());
     }
 
+    // A held message is accepted, though only this node has it until the retry publisher's redrive gets it confirmed;
+    // a dropped one is lost, so the caller is told to try again
+    private static Mono<Void> accepted(PublishOutcome outcome, String queue) {
+        if (outcome == PublishOutcome.DROPPED) {
+            return Mono.error(ClientError.unableToConnect());
+        }
+        if (outcome == PublishOutcome.HELD) {
+            logger.warn("The broker did not confirm a message for {}; it is held on this node for a redrive", queue);
+        }
+        return Mono.empty();
+    }
+
     public Mono<Void> processDelivery(AcknowledgableDelivery delivery) {
-        TraceableMessage traceableMessage = Serializer.to(delivery.getBody(), TraceableMessage.class);
-        var xClientId = (LongString) delivery.getProperties().getHeaders().get(clientIdRequestHeader);
-        return Mono.just(traceableMessage)
-                .map(this::extractRequestData)
-                .flatMap((requestData) -> this.routeResponse(xClientId.toString(), requestData, clientIdRequestHeader))
-                .doOnSuccess(unused -> delivery.ack())
+        var envelope = RetryEnvelope.open(delivery);
+        var routingKey = RetryEnvelope.routingKeyOf(delivery, clientIdRequestHeader);
+        var xClientId = (LongString) delivery.getProperties().getHeaders().get(routingKey);
+        var attempt = DelayedRetries.attemptOf(delivery);
+        var target = xClientId.toString();
+        var delayedRetries = retries.retriesOf(target);
+        var circuits = retries.circuits();
+        if (!circuits.allows(target)) {
+            if (delayedRetries.heldOut(delivery)) {
+                logger.warn("The circuit of {} stayed open through every hold of a delivery; parking it", target);
+                return delayedRetries.park(delivery);
+            }
+            return delayedRetries.hold(delivery);
+        }
+        return Mono.defer(() -> this.routeSerializedResponse(xClientId.toString(),
+                        envelope.getBody(),
+                        routingKey)
+                        .subscriberContext(ctx -> ctx.put(ROUTE_ATTEMPT, attempt)))
+                .doOnSuccess(unused -> {
+                    circuits.succeeded(target);
+                    delivery.ack();
+                })
                 .doOnError(throwable -> logger.error("Error while processing retryable response", throwable))
+                .onErrorResume(throwable -> {
+                    circuits.failed(target);
+                    return retryOrPark(delivery, delayedRetries);
+                })
                 .doFinally(signalType -> MDC.clear())
-                .retryWhen(retryConfig(delivery))
-                .subscriberContext(ctx -> ctx.put(CORRELATION_ID, traceableMessage.getCorrelationId()));
+                .subscriberContext(ctx -> ctx.put(CORRELATION_ID, envelope.getCorrelationId()));
+    }
+
+    private Mono<Void> retryOrPark(AcknowledgableDelivery delivery, DelayedRetries delayedRetries) {
+        if (!delayedRetries.exhausted(delivery)) {
+            return delayedRetries.delay(delivery);
+        }
+        return delayedRetries.park(delivery)
+                .then(Mono.error(new RetryLimitExceededException("Retry limit exceeded for routing the response")));
     }
 }
@@ -3,8 +3,6 @@ package in.projecteka.gateway.common;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import java.util.UUID;
-
 import static in.projecteka.gateway.common.Constants.REQUEST_ID;
 
 public class Utils {
@@ -13,9 +11,9 @@ public class Utils {
 
     }
 
-    public static JsonNode updateRequestId(JsonNode jsonNode, String callerRequestId) {
+    public static JsonNode updateRequestId(JsonNode jsonNode, String requestId, String callerRequestId) {
         ObjectNode mutableNode = (ObjectNode) jsonNode;
-        mutableNode.put(REQUEST_ID, UUID.randomUUID().toString());
+        mutableNode.put(REQUEST_ID, requestId);
         ObjectNode respNode = (ObjectNode) mutableNode.get("resp");
         respNode.put(REQUEST_ID, callerRequestId);
         return jsonNode;
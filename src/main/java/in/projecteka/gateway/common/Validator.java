@@ -1,6 +1,10 @@
 package in.projecteka.gateway.common;
 
 import in.projecteka.gateway.common.cache.CacheAdapter;
+import in.projecteka.gateway.common.jfr.CallbackCorrelationEvent;
+import in.projecteka.gateway.common.jfr.ValidationEvent;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
 import in.projecteka.gateway.registry.BridgeRegistry;
 import in.projecteka.gateway.registry.CMRegistry;
 import in.projecteka.gateway.registry.ServiceType;
@@ -18,11 +22,15 @@ import java.util.function.BiFunction;
 import static in.projecteka.gateway.clients.ClientError.invalidRequest;
 import static in.projecteka.gateway.clients.ClientError.mappingNotFoundForId;
 import static in.projecteka.gateway.clients.ClientError.tooManyRequests;
+import static in.projecteka.gateway.common.Constants.API_CALLED;
 import static in.projecteka.gateway.common.Constants.REQUEST_ID;
 import static in.projecteka.gateway.common.Constants.TIMESTAMP;
 import static in.projecteka.gateway.common.Constants.X_HIP_ID;
 import static in.projecteka.gateway.common.Constants.X_HIU_ID;
 import static in.projecteka.gateway.common.Serializer.deserializeRequestAsJsonNode;
+import static in.projecteka.gateway.common.jfr.GatewayEvents.recorded;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.Stage.CACHE;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.Stage.REDUNDANCY_CHECK;
 import static java.lang.String.format;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
@@ -43,6 +51,8 @@ public class Validator {
     CMRegistry cmRegistry;
     CacheAdapter<String, String> requestIdMappings;
     RedundantRequestValidator redundantRequestValidator;
+    RoutingMetrics routingMetrics;
+    RouteLogSampler routeLogSampler;
 
     private static Mono<ValidatedRequest> toRequest(HttpEntity<String> maybeRequest, String clientId) {
         return Serializer.from(maybeRequest)
@@ -66,14 +76,24 @@ public class Validator {
     }
 
     public Mono<ValidatedRequest> validateRequest(HttpEntity<String> maybeRequest, String routingKey) {
-        return Mono.just(maybeRequest)
-                .filterWhen(this::isValidRequest)
-                .switchIfEmpty(error(tooManyRequests()))
-                .flatMap(val -> validate(maybeRequest, routingKey, Validator::toRequest));
+        return recorded(ValidationEvent.class, ValidationEvent::ofRequest,
+                Mono.just(maybeRequest)
+                        .filterWhen(this::isValidRequest)
+                        .switchIfEmpty(error(tooManyRequests()))
+                        .flatMap(val -> validate(maybeRequest, routingKey, Validator::toRequest)),
+                (event, request) -> {
+                    event.setRequestId(request.getRequesterRequestId().toString());
+                    event.setTargetId(request.getClientId());
+                });
     }
 
     public Mono<ValidatedResponse> validateResponse(HttpEntity<String> maybeResponse, String routingKey) {
-        return validate(maybeResponse, routingKey, this::toResponse);
+        return recorded(ValidationEvent.class, ValidationEvent::ofResponse,
+                validate(maybeResponse, routingKey, this::toResponse),
+                (event, response) -> {
+                    event.setRequestId(response.getCallerRequestId());
+                    event.setTargetId(response.getId());
+                });
     }
 
     private <T> Mono<T> validate(HttpEntity<String> maybeRequest,
@@ -84,7 +104,7 @@ public class Validator {
             logger.error(HEADER_NOT_FOUND, routingKey);
             return error(mappingNotFoundForId(routingKey));
         }
-        return getRegistryMapping(bridgeRegistry, cmRegistry, routingKey, clientId)
+        return routingMetrics.timed(CACHE, getRegistryMapping(bridgeRegistry, cmRegistry, routingKey, clientId))
                 .switchIfEmpty(Mono.defer(() -> {
                     logger.error(NO_MAPPING_FOUND_FOR_ROUTING_KEY, routingKey, clientId);
                     return error(mappingNotFoundForId(routingKey));
@@ -101,13 +121,18 @@ public class Validator {
                 }))
                 .flatMap(jsonNode -> {
                     var respRequestId = jsonNode.path("resp").path(REQUEST_ID).asText();
-                    return requestIdMappings.get(respRequestId)
-                            .filter(StringUtils::hasText)
+                    return recorded(CallbackCorrelationEvent.class,
+                            () -> new CallbackCorrelationEvent(respRequestId, clientId),
+                            routingMetrics.timed(CACHE, requestIdMappings.get(respRequestId))
+                                    .filter(StringUtils::hasText),
+                            CallbackCorrelationEvent::correlatedTo)
                             .switchIfEmpty(error(invalidRequest("No mapping found for resp.requestId on cache")))
-                            .map(callerRequestId -> {
-                                logger.info("Received a response {} {} {}", keyValue("requestId", callerRequestId),
-                                        keyValue("gatewayId", respRequestId),
-                                        keyValue("targetId", clientId));
+                            .zipWith(Mono.subscriberContext(), (callerRequestId, context) -> {
+                                if (routeLogSampler.isSampled(context.getOrDefault(API_CALLED, null))) {
+                                    logger.info("Received a response {} {} {}", keyValue("requestId", callerRequestId),
+                                            keyValue("gatewayId", respRequestId),
+                                            keyValue("targetId", clientId));
+                                }
                                 return new ValidatedResponse(clientId, callerRequestId, jsonNode);
                             });
                 });
@@ -116,8 +141,8 @@ public class Validator {
     private Mono<Boolean> isValidRequest(HttpEntity<String> maybeRequest) {
         return getValue(maybeRequest, REQUEST_ID)
                 .zipWith(getValue(maybeRequest, TIMESTAMP))
-                .flatMap(requestTimeStamp ->
-                        redundantRequestValidator.validate(requestTimeStamp.getT1(), requestTimeStamp.getT2()));
+                .flatMap(requestTimeStamp -> routingMetrics.timed(REDUNDANCY_CHECK,
+                        redundantRequestValidator.validate(requestTimeStamp.getT1(), requestTimeStamp.getT2())));
     }
 
     private static Mono<String> getRegistryMapping(BridgeRegistry bridgeRegistry,
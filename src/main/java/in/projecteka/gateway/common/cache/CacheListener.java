@@ -0,0 +1,15 @@
+package in.projecteka.gateway.common.cache;
+
+/**
+ * Callbacks from a cache store about the work it does underneath a {@link CacheAdapter} operation.
+ */
+public interface CacheListener {
+    CacheListener NONE = new CacheListener() {
+    };
+
+    default void command(String command) {
+    }
+
+    default void retried() {
+    }
+}
@@ -0,0 +1,33 @@
+package in.projecteka.gateway.common.cache;
+
+import in.projecteka.gateway.common.correlation.NodeOwnedRequestIdMappings;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+
+/**
+ * Instruments every {@link CacheAdapter} bean under its bean name, once the bean is initialised. Runs ahead of the
+ * other post processors so it sees the store itself rather than a decorator. A wrapped redis adapter's connection is
+ * closed by the shutdown of the lettuce client bean it was opened from. Node owned mappings are injected by
+ * their own type, and instrument their local store themselves.
+ */
+@AllArgsConstructor
+public class CacheMetricsPostProcessor implements BeanPostProcessor, Ordered {
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof CacheAdapter) || bean instanceof NodeOwnedRequestIdMappings) {
+            return bean;
+        }
+        return new InstrumentedCacheAdapter<>(beanName, (CacheAdapter<Object, Object>) bean, meterRegistry.getObject());
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,138 @@
+package in.projecteka.gateway.common.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Records, per cache bean, the latency and outcome of every operation ({@code gateway.cache.operation}), the result
+ * of every get ({@code gateway.cache.gets}: hit, empty or miss) and errors ({@code gateway.cache.errors}). When the
+ * store is redis, the commands it issues ({@code gateway.cache.redis.commands}) and its retries
+ * ({@code gateway.cache.retries}) are counted as well, which gives the command mix each cache puts on a shared redis.
+ * Meters are registered once per operation and outcome, command or error, rather than on every operation.
+ */
+public class InstrumentedCacheAdapter<K, V> implements CacheAdapter<K, V>, CacheListener {
+    private static final String CACHE = "cache";
+    private static final String GET = "get";
+    private static final String PUT = "put";
+    private static final String INVALIDATE = "invalidate";
+
+    private final String name;
+    private final CacheAdapter<K, V> cacheAdapter;
+    private final MeterRegistry meterRegistry;
+    private final Counter hits;
+    private final Counter empties;
+    private final Counter misses;
+    private final Counter retries;
+    private final OperationTimers gets;
+    private final OperationTimers puts;
+    private final OperationTimers invalidations;
+    private final Map<String, Counter> commands = new ConcurrentHashMap<>();
+    private final Map<List<String>, Counter> errors = new ConcurrentHashMap<>();
+
+    public InstrumentedCacheAdapter(String name, CacheAdapter<K, V> cacheAdapter, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.cacheAdapter = cacheAdapter;
+        this.meterRegistry = meterRegistry;
+        this.hits = getResult("hit");
+        this.empties = getResult("empty");
+        this.misses = getResult("miss");
+        this.retries = Counter.builder("gateway.cache.retries").tag(CACHE, name).register(meterRegistry);
+        this.gets = new OperationTimers(GET);
+        this.puts = new OperationTimers(PUT);
+        this.invalidations = new OperationTimers(INVALIDATE);
+        if (cacheAdapter instanceof RedisCacheAdapter) {
+            ((RedisCacheAdapter) cacheAdapter).listenWith(this);
+        }
+    }
+
+    @Override
+    public Mono<V> get(K key) {
+        return timed(gets, Mono.defer(() -> cacheAdapter.get(key))
+                .doOnSuccess(value -> {
+                    if (value == null) {
+                        misses.increment();
+                    } else if (value instanceof String && ((String) value).isEmpty()) {
+                        empties.increment();
+                    } else {
+                        hits.increment();
+                    }
+                }));
+    }
+
+    @Override
+    public Mono<Void> put(K key, V value) {
+        return timed(puts, Mono.defer(() -> cacheAdapter.put(key, value)));
+    }
+
+    @Override
+    public Mono<Void> invalidate(K key) {
+        return timed(invalidations, Mono.defer(() -> cacheAdapter.invalidate(key)));
+    }
+
+    @Override
+    public void command(String command) {
+        commands.computeIfAbsent(command, key -> Counter.builder("gateway.cache.redis.commands")
+                .tag(CACHE, name)
+                .tag("command", key)
+                .register(meterRegistry))
+                .increment();
+    }
+
+    @Override
+    public void retried() {
+        retries.increment();
+    }
+
+    private <T> Mono<T> timed(OperationTimers timers, Mono<T> publisher) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return publisher
+                    .doOnSuccess(ignored -> timers.success.record(System.nanoTime() - start, NANOSECONDS))
+                    .doOnError(error -> {
+                        timers.error.record(System.nanoTime() - start, NANOSECONDS);
+                        errorCounter(timers.operation, error.getClass().getSimpleName()).increment();
+                    });
+        });
+    }
+
+    private Counter errorCounter(String operation, String exception) {
+        return errors.computeIfAbsent(List.of(operation, exception), key -> Counter.builder("gateway.cache.errors")
+                .tag(CACHE, name)
+                .tag("operation", operation)
+                .tag("exception", exception)
+                .register(meterRegistry));
+    }
+
+    private Counter getResult(String result) {
+        return Counter.builder("gateway.cache.gets").tag(CACHE, name).tag("result", result).register(meterRegistry);
+    }
+
+    private class OperationTimers {
+        private final String operation;
+        private final Timer success;
+        private final Timer error;
+
+        private OperationTimers(String operation) {
+            this.operation = operation;
+            success = timer("success");
+            error = timer("error");
+        }
+
+        private Timer timer(String outcome) {
+            return Timer.builder("gateway.cache.operation")
+                    .tag(CACHE, name)
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+}
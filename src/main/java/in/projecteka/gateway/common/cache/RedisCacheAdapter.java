@@ -1,5 +1,6 @@
 package in.projecteka.gateway.common.cache;
 
+import in.projecteka.gateway.common.jfr.CacheAccessEvent;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.reactive.RedisReactiveCommands;
@@ -13,6 +14,7 @@ import javax.annotation.PreDestroy;
 import java.time.Duration;
 import java.time.LocalDateTime;
 
+import static in.projecteka.gateway.common.jfr.GatewayEvents.recorded;
 import static reactor.core.publisher.Mono.defer;
 
 public class RedisCacheAdapter implements CacheAdapter<String, String> {
@@ -23,6 +25,7 @@ public class RedisCacheAdapter implements CacheAdapter<String, String> {
     private StatefulRedisConnection<String, String> statefulConnection;
     private final int expirationInMinutes;
     private final int retry;
+    private CacheListener listener = CacheListener.NONE;
 
     public RedisCacheAdapter(RedisClient redisClient, int expirationInMinutes, int retry) {
         this.redisClient = redisClient;
@@ -30,6 +33,10 @@ public class RedisCacheAdapter implements CacheAdapter<String, String> {
         this.retry = retry;
     }
 
+    public void listenWith(CacheListener listener) {
+        this.listener = listener;
+    }
+
     @PostConstruct
     public void postConstruct() {
         statefulConnection = redisClient.connect();
@@ -44,22 +51,29 @@ public class RedisCacheAdapter implements CacheAdapter<String, String> {
     @Override
     public Mono<String> get(String key) {
         RedisReactiveCommands<String, String> redisCommands = statefulConnection.reactive();
-        return retryable(redisCommands.get(key));
+        return recorded(CacheAccessEvent.class, () -> new CacheAccessEvent("GET", key),
+                retryable(command("GET", redisCommands.get(key))),
+                (event, value) -> event.setHit(true));
     }
 
     @Override
     public Mono<Void> put(String key, String value) {
         RedisReactiveCommands<String, String> redisCommands = statefulConnection.reactive();
-        Mono<Void> putOperation = redisCommands.set(key, value)
-                .then(redisCommands.expire(key, expirationInMinutes * 60L))
+        Mono<Void> putOperation = command("SET", redisCommands.set(key, value))
+                .then(command("EXPIRE", redisCommands.expire(key, expirationInMinutes * 60L)))
                 .then();
-        return retryable(putOperation);
+        return recorded(CacheAccessEvent.class, () -> new CacheAccessEvent("SET", key), retryable(putOperation));
     }
 
     @Override
     public Mono<Void> invalidate(String key) {
         RedisReactiveCommands<String, String> redisCommands = statefulConnection.reactive();
-        return retryable(redisCommands.expire(key, 0).then());
+        return recorded(CacheAccessEvent.class, () -> new CacheAccessEvent("EXPIRE", key),
+                retryable(command("EXPIRE", redisCommands.expire(key, 0)).then()));
+    }
+
+    private <U> Mono<U> command(String command, Mono<U> operation) {
+        return operation.doOnSubscribe(subscription -> listener.command(command));
     }
 
     private <U> Mono<U> retryable(Mono<U> producer) {
@@ -67,7 +81,10 @@ public class RedisCacheAdapter implements CacheAdapter<String, String> {
                 .doOnError(error -> logger.error(error.getMessage(), error))
                 .retryWhen(Retry
                         .backoff(retry, Duration.ofMillis(100)).jitter(0d)
-                        .doAfterRetry(rs -> logger.error(RETRIED_AT, LocalDateTime.now()))
+                        .doAfterRetry(rs -> {
+                            logger.error(RETRIED_AT, LocalDateTime.now());
+                            listener.retried();
+                        })
                         .onRetryExhaustedThrow((spec, rs) -> rs.failure()));
     }
 }
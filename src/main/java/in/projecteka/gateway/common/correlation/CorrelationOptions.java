@@ -0,0 +1,17 @@
+package in.projecteka.gateway.common.correlation;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@ConfigurationProperties(prefix = "gateway.correlation")
+@Getter
+@AllArgsConstructor
+@ConstructorBinding
+public class CorrelationOptions {
+    private final boolean nodeOwned;
+    private final int nodeId;
+    private final String peerUrlTemplate;
+    private final int mappingExpiryInMinutes;
+}
@@ -0,0 +1,47 @@
+package in.projecteka.gateway.common.correlation;
+
+import in.projecteka.gateway.clients.GatewayPeerClient;
+import in.projecteka.gateway.common.cache.CacheAdapter;
+import lombok.AllArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * gatewayRequestId -> callerRequestId mappings kept only in the memory of the node that minted the gateway id.
+ * A lookup for an id owned by another node is answered by that node; ids which are not node owned (minted before
+ * the switch to this mode) are looked up in the shared store.
+ */
+@AllArgsConstructor
+public class NodeOwnedRequestIdMappings implements CacheAdapter<String, String> {
+    private final NodeOwnedRequestIds requestIds;
+    private final CacheAdapter<String, String> localMappings;
+    private final CacheAdapter<String, String> sharedMappings;
+    private final GatewayPeerClient gatewayPeerClient;
+
+    public Mono<String> getLocal(String gatewayRequestId) {
+        return localMappings.get(gatewayRequestId);
+    }
+
+    @Override
+    public Mono<String> get(String gatewayRequestId) {
+        return NodeOwnedRequestIds.ownerOf(gatewayRequestId)
+                .map(owner -> owner == requestIds.nodeId()
+                              ? localMappings.get(gatewayRequestId)
+                              : gatewayPeerClient.requestIdMapping(owner, gatewayRequestId)
+                                      .map(RequestIdMapping::getCallerRequestId))
+                .orElseGet(() -> sharedMappings.get(gatewayRequestId));
+    }
+
+    @Override
+    public Mono<Void> put(String gatewayRequestId, String callerRequestId) {
+        return requestIds.isOwned(gatewayRequestId)
+               ? localMappings.put(gatewayRequestId, callerRequestId)
+               : sharedMappings.put(gatewayRequestId, callerRequestId);
+    }
+
+    @Override
+    public Mono<Void> invalidate(String gatewayRequestId) {
+        return requestIds.isOwned(gatewayRequestId)
+               ? localMappings.invalidate(gatewayRequestId)
+               : sharedMappings.invalidate(gatewayRequestId);
+    }
+}
@@ -0,0 +1,66 @@
+package in.projecteka.gateway.common.correlation;
+
+import in.projecteka.gateway.common.id.SecureRandoms;
+
+import java.security.SecureRandom;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * UUIDv8 ids that name the gateway node which minted them.
+ * <pre>
+ *  0                   1                   2                   3
+ *  0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |                         unix_ts_ms                            |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |          unix_ts_ms           |  ver  |       node id         |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |var|                        random                             |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |                            random                             |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * </pre>
+ * The random bits come from a {@code DRBG} {@link SecureRandom} per thread, so a request id cannot be guessed from the
+ * ones before it.
+ */
+public class NodeOwnedRequestIds {
+    public static final int MAX_NODE_ID = 0xFFF;
+    private static final int VERSION = 8;
+    private static final int IETF_VARIANT = 2;
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandoms::drbg);
+
+    private final int nodeId;
+
+    public NodeOwnedRequestIds(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException(String.format("Node id must be between 0 and %d", MAX_NODE_ID));
+        }
+        this.nodeId = nodeId;
+    }
+
+    public int nodeId() {
+        return nodeId;
+    }
+
+    public UUID next() {
+        long mostSignificantBits = (System.currentTimeMillis() << 16) | ((long) VERSION << 12) | nodeId;
+        long leastSignificantBits = (RANDOM.get().nextLong() >>> 2) | (1L << 63);
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    public boolean isOwned(String requestId) {
+        return ownerOf(requestId).map(owner -> owner == nodeId).orElse(false);
+    }
+
+    public static Optional<Integer> ownerOf(String requestId) {
+        try {
+            var uuid = UUID.fromString(requestId);
+            return uuid.version() == VERSION && uuid.variant() == IETF_VARIANT
+                   ? Optional.of((int) (uuid.getMostSignificantBits() & MAX_NODE_ID))
+                   : Optional.empty();
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
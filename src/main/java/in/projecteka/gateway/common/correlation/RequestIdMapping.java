@@ -0,0 +1,11 @@
+package in.projecteka.gateway.common.correlation;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+@Value
+@AllArgsConstructor
+public class RequestIdMapping {
+    String requestId;
+    String callerRequestId;
+}
@@ -0,0 +1,26 @@
+package in.projecteka.gateway.common.correlation;
+
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import static in.projecteka.gateway.clients.ClientError.notFound;
+import static in.projecteka.gateway.common.Constants.INTERNAL_REQUEST_ID_MAPPINGS;
+import static reactor.core.publisher.Mono.error;
+
+@ConditionalOnProperty(value = "gateway.correlation.nodeOwned", havingValue = "true")
+@RestController
+@AllArgsConstructor
+public class RequestIdMappingController {
+    private final NodeOwnedRequestIdMappings requestIdMappings;
+
+    @GetMapping(INTERNAL_REQUEST_ID_MAPPINGS)
+    public Mono<RequestIdMapping> requestIdMapping(@PathVariable("requestId") String requestId) {
+        return requestIdMappings.getLocal(requestId)
+                .map(callerRequestId -> new RequestIdMapping(requestId, callerRequestId))
+                .switchIfEmpty(error(notFound("No mapping found for " + requestId)));
+    }
+}
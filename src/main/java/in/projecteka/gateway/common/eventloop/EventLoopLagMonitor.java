@@ -0,0 +1,163 @@
+package in.projecteka.gateway.common.eventloop;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Measures how long a task submitted to each event loop waits before it runs. A probe is submitted to every loop at
+ * each interval and records its queueing delay when it runs; a loop whose last probe is still waiting after the
+ * blocked threshold is reported once, with the stack of its thread, which is usually the blocking call.
+ */
+public class EventLoopLagMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(EventLoopLagMonitor.class);
+    private static final String LAG = "gateway.event.loop.lag";
+    private static final String PENDING = "gateway.event.loop.pending";
+    private static final String BLOCKED = "gateway.event.loop.blocked";
+
+    private final MeterRegistry meterRegistry;
+    private final Duration probeInterval;
+    private final long blockedThresholdInNanos;
+    private final LongSupplier nanoTime;
+    private final List<LoopProbe> probes = new ArrayList<>();
+    private final List<Runnable> releases = new ArrayList<>();
+    private Disposable scheduledProbes;
+
+    public EventLoopLagMonitor(MeterRegistry meterRegistry, EventLoopLagOptions options) {
+        this(meterRegistry, options, System::nanoTime);
+    }
+
+    EventLoopLagMonitor(MeterRegistry meterRegistry, EventLoopLagOptions options, LongSupplier nanoTime) {
+        this.meterRegistry = meterRegistry;
+        this.probeInterval = Duration.ofMillis(options.getProbeIntervalInMillis());
+        this.blockedThresholdInNanos = Duration.ofMillis(options.getBlockedThresholdInMillis()).toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    public EventLoopLagMonitor monitor(String group, EventExecutorGroup loops) {
+        int index = 0;
+        for (EventExecutor loop : loops) {
+            probes.add(new LoopProbe(group, String.valueOf(index++), loop));
+        }
+        return this;
+    }
+
+    /** Monitors loops the monitor took a reference to, giving it back once probing stops. */
+    public EventLoopLagMonitor monitor(String group, EventExecutorGroup loops, Runnable release) {
+        releases.add(release);
+        return monitor(group, loops);
+    }
+
+    @PostConstruct
+    public void startProbing() {
+        if (probeInterval.isZero() || probes.isEmpty()) {
+            return;
+        }
+        scheduledProbes = Flux.interval(probeInterval)
+                .onBackpressureDrop()
+                .subscribe(tick -> probe());
+    }
+
+    @PreDestroy
+    public void stopProbing() {
+        if (scheduledProbes != null) {
+            scheduledProbes.dispose();
+        }
+        releases.forEach(Runnable::run);
+        releases.clear();
+    }
+
+    void probe() {
+        long now = nanoTime.getAsLong();
+        probes.forEach(probe -> probe.submit(now));
+    }
+
+    private class LoopProbe {
+        private final String group;
+        private final String loopIndex;
+        private final EventExecutor loop;
+        private final Timer lag;
+        private final Counter blocked;
+        private volatile long pendingSince;
+        private volatile boolean reported;
+        private volatile Thread thread;
+
+        LoopProbe(String group, String loopIndex, EventExecutor loop) {
+            this.group = group;
+            this.loopIndex = loopIndex;
+            this.loop = loop;
+            this.lag = Timer.builder(LAG)
+                    .tags("group", group, "loop", loopIndex)
+                    .register(meterRegistry);
+            this.blocked = Counter.builder(BLOCKED)
+                    .tags("group", group, "loop", loopIndex)
+                    .register(meterRegistry);
+            Gauge.builder(PENDING, this, LoopProbe::pendingInMillis)
+                    .description("How long the probe waiting on the loop has been waiting; stays 0 on a healthy loop")
+                    .tags("group", group, "loop", loopIndex)
+                    .register(meterRegistry);
+        }
+
+        double pendingInMillis() {
+            long since = pendingSince;
+            return since == 0 ? 0 : NANOSECONDS.toMillis(nanoTime.getAsLong() - since);
+        }
+
+        void submit(long now) {
+            long since = pendingSince;
+            if (since != 0) {
+                if (!reported && now - since >= blockedThresholdInNanos) {
+                    reported = true;
+                    blocked.increment();
+                    logger.warn("Event loop {}-{} has not run a task for {} ms{}",
+                            group,
+                            loopIndex,
+                            NANOSECONDS.toMillis(now - since),
+                            stackOf(thread));
+                }
+                return;
+            }
+            pendingSince = now;
+            try {
+                loop.execute(this::run);
+            } catch (RejectedExecutionException shuttingDown) {
+                pendingSince = 0;
+            }
+        }
+
+        private void run() {
+            thread = Thread.currentThread();
+            lag.record(nanoTime.getAsLong() - pendingSince, NANOSECONDS);
+            reported = false;
+            pendingSince = 0;
+        }
+
+        private String stackOf(Thread thread) {
+            if (thread == null) {
+                return "";
+            }
+            return Arrays.stream(thread.getStackTrace())
+                    .map(element -> "\n\tat " + element)
+                    .collect(joining("", ", " + thread.getName() + " is at", ""));
+        }
+    }
+}
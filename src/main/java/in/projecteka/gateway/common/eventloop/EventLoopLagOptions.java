@@ -0,0 +1,15 @@
+package in.projecteka.gateway.common.eventloop;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@ConfigurationProperties(prefix = "gateway.event-loop-lag")
+@Getter
+@AllArgsConstructor
+@ConstructorBinding
+public class EventLoopLagOptions {
+    private final int probeIntervalInMillis;
+    private final int blockedThresholdInMillis;
+}
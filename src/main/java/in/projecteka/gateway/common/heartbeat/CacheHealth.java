@@ -1,28 +1,49 @@
 package in.projecteka.gateway.common.heartbeat;
 
 import io.lettuce.core.RedisClient;
-import lombok.AllArgsConstructor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.lettuce.core.api.StatefulRedisConnection;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.util.function.BooleanSupplier;
+import javax.annotation.PreDestroy;
 
-@AllArgsConstructor
+import static reactor.core.publisher.Mono.just;
+
+@RequiredArgsConstructor
 public class CacheHealth {
-    private static final Logger logger = LoggerFactory.getLogger(CacheHealth.class);
     public static final String GUAVA = "guava";
+    private static final String PONG = "PONG";
     private final CacheMethodProperty cacheMethodProperty;
     private final RedisClient redisClient;
+    private volatile StatefulRedisConnection<String, String> connection;
+
+    public Mono<Boolean> isUp() {
+        if (GUAVA.equals(cacheMethodProperty.getMethodName())) {
+            return just(true);
+        }
+        return Mono.fromCallable(this::connection)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(redisConnection -> redisConnection.reactive().ping())
+                .map(PONG::equals);
+    }
+
+    /**
+     * One connection for the lifetime of the probe; lettuce reconnects it in the background. A ping on a disconnected
+     * connection is queued until the connection is back rather than failing, so it is the heartbeat's probe timeout
+     * which reports the cache down while redis is unreachable.
+     */
+    private synchronized StatefulRedisConnection<String, String> connection() {
+        if (connection == null) {
+            connection = redisClient.connect();
+        }
+        return connection;
+    }
 
-    public boolean isUp() {
-        BooleanSupplier checkRedis = () -> {
-            try (var ignored = redisClient.connect()) {
-                return true;
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
-                return false;
-            }
-        };
-        return cacheMethodProperty.getMethodName().equals(GUAVA) || checkRedis.getAsBoolean();
+    @PreDestroy
+    public void close() {
+        if (connection != null) {
+            connection.closeAsync();
+        }
     }
 }
@@ -0,0 +1,68 @@
+package in.projecteka.gateway.common.heartbeat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import static reactor.core.publisher.Mono.just;
+
+/**
+ * Health of one dependency, flipped only after {@code failureThreshold} consecutive failed probes or
+ * {@code successThreshold} consecutive successful ones, so a single slow probe does not take the node out of
+ * rotation.
+ */
+class DependencyProbe {
+    private static final Logger logger = LoggerFactory.getLogger(DependencyProbe.class);
+
+    private final String name;
+    private final Supplier<Mono<Boolean>> check;
+    private final int failureThreshold;
+    private final int successThreshold;
+    private int consecutiveFailures;
+    private int consecutiveSuccesses;
+    private volatile boolean up;
+
+    DependencyProbe(String name, Supplier<Mono<Boolean>> check, int failureThreshold, int successThreshold) {
+        this.name = name;
+        this.check = check;
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.successThreshold = Math.max(successThreshold, 1);
+    }
+
+    Mono<Boolean> probe(Duration timeout) {
+        return Mono.defer(check)
+                .timeout(timeout)
+                .defaultIfEmpty(false)
+                .onErrorResume(throwable -> {
+                    logger.warn("Health probe for {} failed: {}", name, throwable.getMessage());
+                    return just(false);
+                })
+                .map(this::record);
+    }
+
+    boolean isUp() {
+        return up;
+    }
+
+    private synchronized boolean record(boolean healthy) {
+        if (healthy) {
+            consecutiveFailures = 0;
+            consecutiveSuccesses++;
+            if (!up && consecutiveSuccesses >= successThreshold) {
+                logger.info("{} is up", name);
+                up = true;
+            }
+        } else {
+            consecutiveSuccesses = 0;
+            consecutiveFailures++;
+            if (up && consecutiveFailures >= failureThreshold) {
+                logger.error("{} is down after {} failed probes", name, consecutiveFailures);
+                up = false;
+            }
+        }
+        return up;
+    }
+}
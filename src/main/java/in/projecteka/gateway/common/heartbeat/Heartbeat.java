@@ -1,61 +1,94 @@
 package in.projecteka.gateway.common.heartbeat;
 
-import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConnectionFactory;
-import in.projecteka.gateway.clients.IdentityProperties;
 import in.projecteka.gateway.common.heartbeat.model.HeartbeatResponse;
-import lombok.AllArgsConstructor;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.concurrent.TimeoutException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static in.projecteka.gateway.clients.model.Error.of;
 import static in.projecteka.gateway.common.heartbeat.model.Status.DOWN;
 import static in.projecteka.gateway.common.heartbeat.model.Status.UP;
-import static java.lang.String.valueOf;
-import static java.net.HttpURLConnection.HTTP_OK;
 import static java.time.LocalDateTime.now;
 import static java.time.ZoneOffset.UTC;
-import static org.springframework.http.HttpMethod.GET;
-import static reactor.core.publisher.Mono.just;
 
-@AllArgsConstructor
+/**
+ * Readiness is served from a snapshot which background probes refresh every {@code probeIntervalInMillis}, so a
+ * readiness call never waits on a dependency. With no interval configured every call probes, off the event loop.
+ */
 public class Heartbeat {
     public static final String SERVICE_DOWN = "Service Down";
-    private final RabbitmqOptions rabbitmqOptions;
-    private final IdentityProperties identityProperties;
-    private final CacheHealth cacheHealth;
+    private static final Duration DEFAULT_PROBE_TIMEOUT = Duration.ofSeconds(2);
+
+    private final List<DependencyProbe> probes;
+    private final Duration probeInterval;
+    private final Duration probeTimeout;
+    private final AtomicReference<HeartbeatResponse> snapshot = new AtomicReference<>(down());
+    private Disposable scheduledProbes;
+
+    public Heartbeat(HeartbeatOptions heartbeatOptions,
+                     CacheHealth cacheHealth,
+                     RabbitmqHealth rabbitmqHealth,
+                     IdentityHealth identityHealth) {
+        int failureThreshold = heartbeatOptions.getFailureThreshold();
+        int successThreshold = heartbeatOptions.getSuccessThreshold();
+        this.probes = List.of(
+                new DependencyProbe("cache", cacheHealth::isUp, failureThreshold, successThreshold),
+                new DependencyProbe("rabbitmq", rabbitmqHealth::isUp, failureThreshold, successThreshold),
+                new DependencyProbe("identity", identityHealth::isUp, failureThreshold, successThreshold));
+        this.probeInterval = Duration.ofMillis(heartbeatOptions.getProbeIntervalInMillis());
+        this.probeTimeout = heartbeatOptions.getProbeTimeoutInMillis() > 0
+                            ? Duration.ofMillis(heartbeatOptions.getProbeTimeoutInMillis())
+                            : DEFAULT_PROBE_TIMEOUT;
+    }
 
     public Mono<HeartbeatResponse> getStatus() {
-        try {
-            return (cacheHealth.isUp() && isRabbitMQUp() && isKeycloakUp())
-                   ? just(HeartbeatResponse.builder().timeStamp(now(UTC)).status(UP).build())
-                   : just(HeartbeatResponse.builder().timeStamp(now(UTC)).status(DOWN).error(of(SERVICE_DOWN)).build());
-        } catch (IOException | TimeoutException e) {
-            return just(HeartbeatResponse.builder().timeStamp(now(UTC)).status(DOWN).error(of(SERVICE_DOWN)).build());
+        return isProbingInBackground() ? Mono.fromSupplier(snapshot::get) : probe();
+    }
+
+    Mono<HeartbeatResponse> probe() {
+        return Flux.fromIterable(probes)
+                .flatMap(probe -> probe.probe(probeTimeout))
+                .then(Mono.fromSupplier(this::refreshSnapshot));
+    }
+
+    @PostConstruct
+    public void startProbing() {
+        if (isProbingInBackground()) {
+            scheduledProbes = Flux.interval(Duration.ZERO, probeInterval)
+                    .onBackpressureDrop()
+                    .concatMap(tick -> probe(), 1)
+                    .subscribe();
         }
     }
 
-    private boolean isRabbitMQUp() throws IOException, TimeoutException {
-        var factory = new ConnectionFactory();
-        factory.setHost(rabbitmqOptions.getHost());
-        factory.setPort(rabbitmqOptions.getPort());
-        factory.setUsername(rabbitmqOptions.getUsername());
-        factory.setPassword(rabbitmqOptions.getPassword());
-        try (Connection connection = factory.newConnection()) {
-            return connection.isOpen();
+    @PreDestroy
+    public void stopProbing() {
+        if (scheduledProbes != null) {
+            scheduledProbes.dispose();
         }
     }
 
-    private boolean isKeycloakUp() throws IOException {
-        var siteUrl = new URL(identityProperties.getUrl());
-        HttpURLConnection httpURLConnection = (HttpURLConnection) siteUrl.openConnection();
-        httpURLConnection.setRequestMethod(valueOf(GET));
-        httpURLConnection.connect();
-        return httpURLConnection.getResponseCode() == HTTP_OK;
+    private boolean isProbingInBackground() {
+        return !probeInterval.isZero() && !probeInterval.isNegative();
+    }
+
+    private HeartbeatResponse refreshSnapshot() {
+        var response = probes.stream().allMatch(DependencyProbe::isUp) ? up() : down();
+        snapshot.set(response);
+        return response;
     }
-}
 
+    private static HeartbeatResponse up() {
+        return HeartbeatResponse.builder().timeStamp(now(UTC)).status(UP).build();
+    }
+
+    private static HeartbeatResponse down() {
+        return HeartbeatResponse.builder().timeStamp(now(UTC)).status(DOWN).error(of(SERVICE_DOWN)).build();
+    }
+}
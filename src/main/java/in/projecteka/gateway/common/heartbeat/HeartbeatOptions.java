@@ -0,0 +1,17 @@
+package in.projecteka.gateway.common.heartbeat;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@ConfigurationProperties(prefix = "gateway.heartbeat")
+@Getter
+@AllArgsConstructor
+@ConstructorBinding
+public class HeartbeatOptions {
+    private final int probeIntervalInMillis;
+    private final int probeTimeoutInMillis;
+    private final int failureThreshold;
+    private final int successThreshold;
+}
@@ -0,0 +1,24 @@
+package in.projecteka.gateway.common.heartbeat;
+
+import in.projecteka.gateway.clients.IdentityProperties;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+public class IdentityHealth {
+    private final WebClient webClient;
+    private final IdentityProperties identityProperties;
+
+    public IdentityHealth(WebClient.Builder builder, IdentityProperties identityProperties) {
+        this.webClient = builder.build();
+        this.identityProperties = identityProperties;
+    }
+
+    public Mono<Boolean> isUp() {
+        return webClient
+                .get()
+                .uri(identityProperties.getUrl())
+                .exchange()
+                .flatMap(clientResponse -> clientResponse.releaseBody()
+                        .thenReturn(clientResponse.statusCode().is2xxSuccessful()));
+    }
+}
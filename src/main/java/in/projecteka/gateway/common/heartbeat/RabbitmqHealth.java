@@ -0,0 +1,55 @@
+package in.projecteka.gateway.common.heartbeat;
+
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+public class RabbitmqHealth {
+    private static final Duration CONNECTION_TIMEOUT = Duration.ofSeconds(2);
+
+    private final ConnectionFactory connectionFactory;
+    private Connection connection;
+
+    /**
+     * Probes on a copy of the factory which does not recover its connections, so a connection dropped by the broker
+     * is not left reconnecting in the background once the probe replaces it, and which gives up connecting within the
+     * heartbeat's default probe timeout rather than holding the probe's thread for the factory's own timeout.
+     */
+    public RabbitmqHealth(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory.clone();
+        this.connectionFactory.setAutomaticRecoveryEnabled(false);
+        this.connectionFactory.setConnectionTimeout((int) CONNECTION_TIMEOUT.toMillis());
+    }
+
+    public Mono<Boolean> isUp() {
+        return Mono.fromCallable(this::isConnectionOpen).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Keeps a single connection open across probes; it is only re-established after the broker closed it, so probing
+     * no longer churns connections on the broker.
+     */
+    private synchronized boolean isConnectionOpen() throws IOException, TimeoutException {
+        if (connection == null || !connection.isOpen()) {
+            if (connection != null) {
+                connection.abort();
+                connection = null;
+            }
+            connection = connectionFactory.newConnection("gateway-heartbeat");
+        }
+        return connection.isOpen();
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (connection != null && connection.isOpen()) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package in.projecteka.gateway.common.id;
+
+import java.util.UUID;
+
+@FunctionalInterface
+public interface IdGenerator {
+    UUID next();
+}
@@ -0,0 +1,20 @@
+package in.projecteka.gateway.common.id;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+public class SecureRandoms {
+
+    private SecureRandoms() {
+
+    }
+
+    /** A new {@code DRBG} {@link SecureRandom}; the id generators hold one per thread, so none contend on it. */
+    public static SecureRandom drbg() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No DRBG SecureRandom is available", e);
+        }
+    }
+}
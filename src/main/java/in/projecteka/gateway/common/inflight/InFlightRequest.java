@@ -0,0 +1,20 @@
+package in.projecteka.gateway.common.inflight;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One outbound call between subscription and termination. Compared by identity, so each subscription is its own
+ * entry in the registry.
+ */
+@Getter
+@AllArgsConstructor
+class InFlightRequest {
+    private final String requestId;
+    private final String api;
+    private final String kind;
+    private final String target;
+    private final String targetId;
+    private final long startedAt;
+    private final int attempt;
+}
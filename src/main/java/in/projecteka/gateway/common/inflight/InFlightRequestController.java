@@ -0,0 +1,23 @@
+package in.projecteka.gateway.common.inflight;
+
+import in.projecteka.gateway.common.inflight.model.InFlightSnapshot;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import static in.projecteka.gateway.common.Constants.INTERNAL_IN_FLIGHT_REQUESTS;
+
+@RestController
+@AllArgsConstructor
+public class InFlightRequestController {
+    private static final int MAX_OLDEST = 500;
+
+    private final InFlightRequests inFlightRequests;
+
+    @GetMapping(INTERNAL_IN_FLIGHT_REQUESTS)
+    public Mono<InFlightSnapshot> inFlightRequests(@RequestParam(value = "oldest", defaultValue = "20") int oldest) {
+        return Mono.fromSupplier(() -> inFlightRequests.snapshot(Math.min(Math.max(oldest, 0), MAX_OLDEST)));
+    }
+}
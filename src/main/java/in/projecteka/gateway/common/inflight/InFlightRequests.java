@@ -0,0 +1,139 @@
+package in.projecteka.gateway.common.inflight;
+
+import in.projecteka.gateway.common.inflight.model.InFlightCall;
+import in.projecteka.gateway.common.inflight.model.InFlightSnapshot;
+import in.projecteka.gateway.common.inflight.model.TargetInFlight;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static in.projecteka.gateway.common.Constants.API_CALLED;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_REQUEST_ID;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_TARGET;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Outbound calls to bridges and consent managers which have been subscribed to and not yet terminated. Registering
+ * is an add to, and a remove from, a concurrent set of identity-hashed entries, so callers to different targets never
+ * wait on each other; all the aggregation happens when a snapshot is asked for. Like
+ * {@link in.projecteka.gateway.common.metrics.RoutingMetrics}, the route is read from the subscriber context.
+ */
+public class InFlightRequests {
+    public static final String ROUTE_ATTEMPT = "routeAttempt";
+    private static final long[] AGE_BUCKETS_IN_MILLIS = {1_000, 5_000, 15_000, 30_000, 60_000};
+    private static final String UNKNOWN = "unknown";
+
+    private final Set<InFlightRequest> inFlight = ConcurrentHashMap.newKeySet(1024);
+    private final Clock clock;
+
+    public InFlightRequests() {
+        this(Clock.systemUTC());
+    }
+
+    InFlightRequests(Clock clock) {
+        this.clock = clock;
+    }
+
+    public <T> Mono<T> tracked(String kind, String targetId, Mono<T> publisher) {
+        return Mono.subscriberContext().flatMap(context -> {
+            var request = new InFlightRequest(valueOf(context, ROUTE_REQUEST_ID),
+                    valueOf(context, API_CALLED),
+                    kind,
+                    valueOf(context, ROUTE_TARGET),
+                    targetId,
+                    clock.millis(),
+                    context.getOrDefault(ROUTE_ATTEMPT, 1));
+            return publisher
+                    .doOnSubscribe(subscription -> inFlight.add(request))
+                    .doFinally(signalType -> inFlight.remove(request));
+        });
+    }
+
+    public int count() {
+        return inFlight.size();
+    }
+
+    public InFlightSnapshot snapshot(int oldest) {
+        long now = clock.millis();
+        List<InFlightRequest> requests = new ArrayList<>(inFlight);
+        requests.sort(Comparator.comparingLong(InFlightRequest::getStartedAt));
+        var targets = requests.stream()
+                .collect(groupingBy(request -> List.of(request.getTarget(), String.valueOf(request.getTargetId())),
+                        LinkedHashMap::new,
+                        toList()))
+                .values()
+                .stream()
+                .map(forTarget -> toTarget(forTarget, now))
+                .sorted(Comparator.comparingInt(TargetInFlight::getCount).reversed())
+                .collect(toList());
+        return InFlightSnapshot.builder()
+                .takenAt(Instant.ofEpochMilli(now))
+                .total(requests.size())
+                .targets(targets)
+                .oldest(requests.stream()
+                        .limit(Math.max(oldest, 0))
+                        .map(request -> toCall(request, now))
+                        .collect(toList()))
+                .build();
+    }
+
+    private static TargetInFlight toTarget(List<InFlightRequest> oldestFirst, long now) {
+        Map<String, Integer> histogram = new LinkedHashMap<>();
+        for (int bucket = 0; bucket <= AGE_BUCKETS_IN_MILLIS.length; bucket++) {
+            histogram.put(bucketName(bucket), 0);
+        }
+        for (var request : oldestFirst) {
+            histogram.merge(bucketName(bucketOf(now - request.getStartedAt())), 1, Integer::sum);
+        }
+        var first = oldestFirst.get(0);
+        return TargetInFlight.builder()
+                .target(first.getTarget())
+                .targetId(first.getTargetId())
+                .count(oldestFirst.size())
+                .oldestAgeInMillis(now - first.getStartedAt())
+                .ageHistogram(histogram)
+                .build();
+    }
+
+    private static InFlightCall toCall(InFlightRequest request, long now) {
+        return InFlightCall.builder()
+                .requestId(request.getRequestId())
+                .api(request.getApi())
+                .kind(request.getKind())
+                .target(request.getTarget())
+                .targetId(request.getTargetId())
+                .startedAt(Instant.ofEpochMilli(request.getStartedAt()))
+                .ageInMillis(now - request.getStartedAt())
+                .attempt(request.getAttempt())
+                .build();
+    }
+
+    private static int bucketOf(long ageInMillis) {
+        int bucket = 0;
+        while (bucket < AGE_BUCKETS_IN_MILLIS.length && ageInMillis >= AGE_BUCKETS_IN_MILLIS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static String bucketName(int bucket) {
+        return bucket == AGE_BUCKETS_IN_MILLIS.length
+               ? ">=" + AGE_BUCKETS_IN_MILLIS[bucket - 1] + "ms"
+               : "<" + AGE_BUCKETS_IN_MILLIS[bucket] + "ms";
+    }
+
+    private static String valueOf(Context context, String key) {
+        Object value = context.getOrDefault(key, null);
+        return value == null ? UNKNOWN : value.toString();
+    }
+}
@@ -0,0 +1,19 @@
+package in.projecteka.gateway.common.inflight.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+@Builder
+@Value
+public class InFlightCall {
+    String requestId;
+    String api;
+    String kind;
+    String target;
+    String targetId;
+    Instant startedAt;
+    long ageInMillis;
+    int attempt;
+}
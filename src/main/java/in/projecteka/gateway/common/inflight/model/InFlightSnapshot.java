@@ -0,0 +1,16 @@
+package in.projecteka.gateway.common.inflight.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+
+@Builder
+@Value
+public class InFlightSnapshot {
+    Instant takenAt;
+    int total;
+    List<TargetInFlight> targets;
+    List<InFlightCall> oldest;
+}
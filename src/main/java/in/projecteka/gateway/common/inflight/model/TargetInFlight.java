@@ -0,0 +1,16 @@
+package in.projecteka.gateway.common.inflight.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+@Builder
+@Value
+public class TargetInFlight {
+    String target;
+    String targetId;
+    int count;
+    long oldestAgeInMillis;
+    Map<String, Integer> ageHistogram;
+}
@@ -0,0 +1,17 @@
+package in.projecteka.gateway.common.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("in.projecteka.gateway.Admission")
+@Label("Request Admission")
+@Description("Request id mapping and replay bookkeeping of a validated request, before it is dispatched")
+public class AdmissionEvent extends GatewayEvent {
+    @Label("Source Id")
+    String sourceId;
+
+    public AdmissionEvent(String sourceId) {
+        this.sourceId = sourceId;
+    }
+}
@@ -0,0 +1,28 @@
+package in.projecteka.gateway.common.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("in.projecteka.gateway.CacheAccess")
+@Label("Cache Access")
+@Description("A command against the shared cache")
+public class CacheAccessEvent extends GatewayEvent {
+    @Label("Operation")
+    String operation;
+
+    @Label("Key")
+    String key;
+
+    @Label("Hit")
+    boolean hit;
+
+    public CacheAccessEvent(String operation, String key) {
+        this.operation = operation;
+        this.key = key;
+    }
+
+    public void setHit(boolean hit) {
+        this.hit = hit;
+    }
+}
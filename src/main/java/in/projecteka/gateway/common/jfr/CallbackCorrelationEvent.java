@@ -0,0 +1,26 @@
+package in.projecteka.gateway.common.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("in.projecteka.gateway.CallbackCorrelation")
+@Label("Callback Correlation")
+@Description("Lookup of the caller request id a callback answers")
+public class CallbackCorrelationEvent extends GatewayEvent {
+    @Label("Gateway Request Id")
+    String gatewayRequestId;
+
+    @Label("Found")
+    boolean found;
+
+    public CallbackCorrelationEvent(String gatewayRequestId, String targetId) {
+        this.gatewayRequestId = gatewayRequestId;
+        setTargetId(targetId);
+    }
+
+    public void correlatedTo(String callerRequestId) {
+        setRequestId(callerRequestId);
+        found = true;
+    }
+}
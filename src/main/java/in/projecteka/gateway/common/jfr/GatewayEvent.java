@@ -0,0 +1,71 @@
+package in.projecteka.gateway.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.Context;
+
+import static in.projecteka.gateway.common.Constants.API_CALLED;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_REQUEST_ID;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_SOURCE;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_TARGET;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_TARGET_ID;
+
+/**
+ * Fields every gateway flight recorder event carries. Whatever was not set explicitly is filled in from the route
+ * the orchestrators put on the subscriber context.
+ */
+@Category("Gateway")
+@StackTrace(false)
+public abstract class GatewayEvent extends Event {
+    @Label("Request Id")
+    String requestId;
+
+    @Label("Api Called")
+    String api;
+
+    @Label("Source")
+    String source;
+
+    @Label("Target")
+    String target;
+
+    @Label("Target Id")
+    String targetId;
+
+    @Label("Outcome")
+    String outcome;
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public void setTargetId(String targetId) {
+        this.targetId = targetId;
+    }
+
+    void route(Context context) {
+        api = context.getOrDefault(API_CALLED, null);
+        source = context.getOrDefault(ROUTE_SOURCE, null);
+        target = context.getOrDefault(ROUTE_TARGET, null);
+        if (requestId == null) {
+            requestId = context.getOrDefault(ROUTE_REQUEST_ID, null);
+        }
+        if (targetId == null) {
+            targetId = context.getOrDefault(ROUTE_TARGET_ID, null);
+        }
+    }
+
+    void complete(SignalType signalType) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        outcome = signalType == SignalType.ON_ERROR
+                  ? "error"
+                  : signalType == SignalType.CANCEL ? "cancelled" : "success";
+        commit();
+    }
+}
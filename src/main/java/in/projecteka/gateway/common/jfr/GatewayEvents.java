@@ -0,0 +1,46 @@
+package in.projecteka.gateway.common.jfr;
+
+import jdk.jfr.EventType;
+import reactor.core.publisher.Mono;
+
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Records a {@link GatewayEvent} spanning a subscription to a publisher. When no recording has the event enabled the
+ * publisher is returned untouched; whether it is enabled is asked of the event's cached {@link EventType}, so
+ * instrumented paths allocate nothing while the flight recorder is off.
+ */
+public final class GatewayEvents {
+    private static final ClassValue<EventType> EVENT_TYPES = new ClassValue<>() {
+        @Override
+        protected EventType computeValue(Class<?> type) {
+            return EventType.getEventType(type.asSubclass(GatewayEvent.class));
+        }
+    };
+
+    private GatewayEvents() {
+    }
+
+    public static <E extends GatewayEvent, T> Mono<T> recorded(Class<E> type, Supplier<E> newEvent, Mono<T> publisher) {
+        return recorded(type, newEvent, publisher, (event, value) -> {
+        });
+    }
+
+    public static <E extends GatewayEvent, T> Mono<T> recorded(Class<E> type,
+                                                               Supplier<E> newEvent,
+                                                               Mono<T> publisher,
+                                                               BiConsumer<E, T> onValue) {
+        if (!EVENT_TYPES.get(type).isEnabled()) {
+            return publisher;
+        }
+        return Mono.subscriberContext().flatMap(context -> {
+            var event = newEvent.get();
+            event.route(context);
+            event.begin();
+            return publisher
+                    .doOnNext(value -> onValue.accept(event, value))
+                    .doFinally(event::complete);
+        });
+    }
+}
@@ -0,0 +1,18 @@
+package in.projecteka.gateway.common.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("in.projecteka.gateway.OutboundDispatch")
+@Label("Outbound Dispatch")
+@Description("A call to a bridge or consent manager, from resolving its url to the response")
+public class OutboundDispatchEvent extends GatewayEvent {
+    @Label("Kind")
+    String kind;
+
+    public OutboundDispatchEvent(String kind, String targetId) {
+        this.kind = kind;
+        setTargetId(targetId);
+    }
+}
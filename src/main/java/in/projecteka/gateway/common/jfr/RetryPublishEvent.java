@@ -0,0 +1,24 @@
+package in.projecteka.gateway.common.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("in.projecteka.gateway.RetryPublish")
+@Label("Retry Queue Publish")
+@Description("Publish of a failed delivery to the retry queue")
+public class RetryPublishEvent extends GatewayEvent {
+    @Label("Queue")
+    String queue;
+
+    @Label("Message Size")
+    @DataAmount
+    long size;
+
+    public RetryPublishEvent(String queue, String targetId, long size) {
+        this.queue = queue;
+        this.size = size;
+        setTargetId(targetId);
+    }
+}
@@ -0,0 +1,25 @@
+package in.projecteka.gateway.common.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("in.projecteka.gateway.Validation")
+@Label("Validation")
+@Description("Validation of an incoming request or callback")
+public class ValidationEvent extends GatewayEvent {
+    @Label("Direction")
+    String direction;
+
+    private ValidationEvent(String direction) {
+        this.direction = direction;
+    }
+
+    public static ValidationEvent ofRequest() {
+        return new ValidationEvent("request");
+    }
+
+    public static ValidationEvent ofResponse() {
+        return new ValidationEvent("response");
+    }
+}
@@ -0,0 +1,19 @@
+package in.projecteka.gateway.common.logging;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "gateway.logging")
+@Getter
+@AllArgsConstructor
+@ConstructorBinding
+public class LoggingOptions {
+    private final int sampleOneIn;
+    private final Map<String, Integer> routeSampleOneIn;
+    private final int summaryIntervalInSeconds;
+    private final int asyncQueueSize;
+}
@@ -0,0 +1,70 @@
+package in.projecteka.gateway.common.logging;
+
+import org.slf4j.MDC;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static in.projecteka.gateway.common.Constants.CORRELATION_ID;
+
+/**
+ * Decides which requests get their success path logged: one in {@code sampleOneIn} per route. The decision is made
+ * on the correlation id, so a sampled request has all of its lines logged and the others none. Lines logged without
+ * knowing the route use the default rate. Errors are never sampled; they do not go through here.
+ * <p>
+ * Requests admitted on each route are counted, so an aggregate summary can replace the lines which were skipped.
+ */
+public class RouteLogSampler {
+    public static final RouteLogSampler ALL = new RouteLogSampler(1, Map.of());
+
+    private final int sampleOneIn;
+    private final Map<String, Integer> routeSampleOneIn;
+    private final Map<String, LongAdder> admitted = new ConcurrentHashMap<>();
+
+    public RouteLogSampler(int sampleOneIn, Map<String, Integer> routeSampleOneIn) {
+        this.sampleOneIn = Math.max(sampleOneIn, 1);
+        this.routeSampleOneIn = routeSampleOneIn == null ? Map.of() : routeSampleOneIn;
+    }
+
+    /**
+     * For the first line logged for a request on a route; counts it for the summary.
+     */
+    public boolean admit(String apiCalled) {
+        if (this != ALL) {
+            admitted.computeIfAbsent(String.valueOf(apiCalled), route -> new LongAdder()).increment();
+        }
+        return isSampled(apiCalled);
+    }
+
+    public boolean isSampled(String apiCalled) {
+        int rate = apiCalled == null ? sampleOneIn : routeSampleOneIn.getOrDefault(apiCalled, sampleOneIn);
+        if (rate <= 1) {
+            return true;
+        }
+        String correlationId = MDC.get(CORRELATION_ID);
+        return correlationId == null
+               ? ThreadLocalRandom.current().nextInt(rate) == 0
+               : Math.floorMod(correlationId.hashCode(), rate) == 0;
+    }
+
+    public boolean isSampling() {
+        return sampleOneIn > 1 || routeSampleOneIn.values().stream().anyMatch(rate -> rate > 1);
+    }
+
+    /**
+     * Requests admitted per route since the last call.
+     */
+    public Map<String, Long> drainAdmitted() {
+        var counts = new HashMap<String, Long>();
+        admitted.forEach((route, count) -> {
+            long sum = count.sumThenReset();
+            if (sum > 0) {
+                counts.put(route, sum);
+            }
+        });
+        return counts;
+    }
+}
@@ -0,0 +1,22 @@
+package in.projecteka.gateway.common.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+import java.util.Set;
+
+@ConfigurationProperties(prefix = "gateway.round-trip")
+@Getter
+@AllArgsConstructor
+@ConstructorBinding
+public class RoundTripOptions {
+    private final boolean enabled;
+    private final int timeoutInSeconds;
+    private final Set<String> trackedTargetIds;
+
+    public Set<String> trackedTargetIdsOrNone() {
+        return trackedTargetIds == null ? Set.of() : trackedTargetIds;
+    }
+}
@@ -0,0 +1,196 @@
+package in.projecteka.gateway.common.metrics;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import in.projecteka.gateway.common.cache.CacheAdapter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Value;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static in.projecteka.gateway.common.Constants.API_CALLED;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_TARGET;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_TARGET_ID;
+
+/**
+ * gatewayRequestId -> callerRequestId mappings which also carry when, and for which route, the request was
+ * dispatched. Resolving a mapping for a callback records the round trip in {@code gateway.round.trip}, tagged with
+ * the api called and the target role, and in {@code gateway.round.trip.by.target}, tagged with the target id. Only
+ * the ids in {@code trackedTargetIds} get a series of their own, as there is one target id per facility; every other
+ * id is tagged {@code other}. Meters are registered once per series rather than on every callback.
+ * <p>
+ * With {@code trackTimeouts}, the dispatches are also remembered in memory; those not resolved within the timeout
+ * are counted in {@code gateway.round.trip.timeouts}. That only adds up when the callback is always resolved on the
+ * node which dispatched the request: a single node with a local store, or node owned correlation. Expired dispatches
+ * are counted during cache maintenance, which happens on subsequent dispatches. Past {@value #MAX_PENDING_DISPATCHES}
+ * pending dispatches the oldest are dropped, and counted with the cause {@code evicted} rather than {@code expired}:
+ * they can no longer tell a timeout from a callback which is still to come.
+ */
+public class RoundTripTrackingMappings implements CacheAdapter<String, String> {
+    private static final String SEPARATOR = ";";
+    private static final String UNKNOWN = "unknown";
+    private static final String OTHER = "other";
+    private static final long MAX_PENDING_DISPATCHES = 100_000;
+
+    private final CacheAdapter<String, String> mappings;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    private final Set<String> trackedTargetIds;
+    private final Cache<String, Dispatch> pendingDispatches;
+    private final Map<List<String>, Timer> roundTrips = new ConcurrentHashMap<>();
+    private final Map<List<String>, Timer> roundTripsByTarget = new ConcurrentHashMap<>();
+    private final Map<List<String>, Counter> timeouts = new ConcurrentHashMap<>();
+
+    public RoundTripTrackingMappings(CacheAdapter<String, String> mappings,
+                                     MeterRegistry meterRegistry,
+                                     Duration timeout,
+                                     Set<String> trackedTargetIds,
+                                     boolean trackTimeouts) {
+        this(mappings,
+                meterRegistry,
+                timeout,
+                trackedTargetIds,
+                trackTimeouts,
+                Clock.systemUTC(),
+                Ticker.systemTicker());
+    }
+
+    RoundTripTrackingMappings(CacheAdapter<String, String> mappings,
+                              MeterRegistry meterRegistry,
+                              Duration timeout,
+                              Set<String> trackedTargetIds,
+                              boolean trackTimeouts,
+                              Clock clock,
+                              Ticker ticker) {
+        this.mappings = mappings;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.trackedTargetIds = trackedTargetIds;
+        this.pendingDispatches = trackTimeouts
+                                 ? CacheBuilder.newBuilder()
+                                         .ticker(ticker)
+                                         .maximumSize(MAX_PENDING_DISPATCHES)
+                                         .expireAfterWrite(timeout)
+                                         .<String, Dispatch>removalListener(removal -> {
+                                             if (removal.getCause() == RemovalCause.EXPIRED) {
+                                                 timedOut(removal.getValue(), "expired");
+                                             } else if (removal.getCause() == RemovalCause.SIZE) {
+                                                 timedOut(removal.getValue(), "evicted");
+                                             }
+                                         })
+                                         .build()
+                                 : null;
+    }
+
+    @Override
+    public Mono<String> get(String gatewayRequestId) {
+        return mappings.get(gatewayRequestId)
+                .map(Dispatch::decode)
+                .map(dispatch -> {
+                    if (dispatch.getDispatchedAt() > 0) {
+                        completed(gatewayRequestId, dispatch);
+                    }
+                    return dispatch.getCallerRequestId();
+                });
+    }
+
+    @Override
+    public Mono<Void> put(String gatewayRequestId, String callerRequestId) {
+        return Mono.subscriberContext()
+                .flatMap(context -> {
+                    var dispatch = new Dispatch(callerRequestId,
+                            clock.millis(),
+                            valueOf(context, API_CALLED),
+                            valueOf(context, ROUTE_TARGET),
+                            valueOf(context, ROUTE_TARGET_ID));
+                    if (pendingDispatches != null) {
+                        pendingDispatches.put(gatewayRequestId, dispatch);
+                    }
+                    return mappings.put(gatewayRequestId, dispatch.encode());
+                });
+    }
+
+    @Override
+    public Mono<Void> invalidate(String gatewayRequestId) {
+        if (pendingDispatches != null) {
+            pendingDispatches.invalidate(gatewayRequestId);
+        }
+        return mappings.invalidate(gatewayRequestId);
+    }
+
+    private void completed(String gatewayRequestId, Dispatch dispatch) {
+        if (pendingDispatches != null) {
+            pendingDispatches.invalidate(gatewayRequestId);
+        }
+        var roundTrip = Duration.ofMillis(Math.max(clock.millis() - dispatch.getDispatchedAt(), 0));
+        roundTrips.computeIfAbsent(List.of(dispatch.getApiCalled(), dispatch.getTarget()),
+                key -> Timer.builder("gateway.round.trip")
+                        .tag("api", key.get(0))
+                        .tag("target", key.get(1))
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(roundTrip);
+        var targetId = trackedTargetIds.contains(dispatch.getTargetId()) ? dispatch.getTargetId() : OTHER;
+        roundTripsByTarget.computeIfAbsent(List.of(dispatch.getTarget(), targetId),
+                key -> Timer.builder("gateway.round.trip.by.target")
+                        .tag("target", key.get(0))
+                        .tag("targetId", key.get(1))
+                        .register(meterRegistry))
+                .record(roundTrip);
+    }
+
+    private void timedOut(Dispatch dispatch, String cause) {
+        timeouts.computeIfAbsent(List.of(dispatch.getApiCalled(), dispatch.getTarget(), cause),
+                key -> Counter.builder("gateway.round.trip.timeouts")
+                        .tag("api", key.get(0))
+                        .tag("target", key.get(1))
+                        .tag("cause", key.get(2))
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    private static String valueOf(Context context, String key) {
+        return Optional.ofNullable(context.getOrDefault(key, null)).map(Object::toString).orElse(UNKNOWN);
+    }
+
+    /**
+     * Stored as {@code callerRequestId;dispatchedAt;apiCalled;target;targetId}. A value without the separator is a
+     * plain callerRequestId, written by a node that does not track round trips.
+     */
+    @Value
+    static class Dispatch {
+        String callerRequestId;
+        long dispatchedAt;
+        String apiCalled;
+        String target;
+        String targetId;
+
+        String encode() {
+            return String.join(SEPARATOR, callerRequestId, Long.toString(dispatchedAt), apiCalled, target, targetId);
+        }
+
+        static Dispatch decode(String value) {
+            var parts = value.split(SEPARATOR, 5);
+            if (parts.length < 5) {
+                return new Dispatch(value, 0, UNKNOWN, UNKNOWN, UNKNOWN);
+            }
+            try {
+                return new Dispatch(parts[0], Long.parseLong(parts[1]), parts[2], parts[3], parts[4]);
+            } catch (NumberFormatException e) {
+                return new Dispatch(value, 0, UNKNOWN, UNKNOWN, UNKNOWN);
+            }
+        }
+    }
+}
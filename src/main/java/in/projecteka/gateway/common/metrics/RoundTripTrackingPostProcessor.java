@@ -0,0 +1,40 @@
+package in.projecteka.gateway.common.metrics;
+
+import in.projecteka.gateway.common.cache.CacheAdapter;
+import in.projecteka.gateway.common.correlation.NodeOwnedRequestIdMappings;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.time.Duration;
+
+/**
+ * Wraps the shared {@code requestIdMappings} store once it is initialised, so stores with a lifecycle of their own
+ * (the redis adapter connects in {@code @PostConstruct}) still get it. Node owned mappings wrap their stores
+ * themselves.
+ */
+@AllArgsConstructor
+public class RoundTripTrackingPostProcessor implements BeanPostProcessor {
+    private static final String REQUEST_ID_MAPPINGS = "requestIdMappings";
+
+    private final ObjectProvider<RoundTripOptions> roundTripOptions;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final boolean trackTimeouts;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!REQUEST_ID_MAPPINGS.equals(beanName)
+                || !(bean instanceof CacheAdapter)
+                || bean instanceof NodeOwnedRequestIdMappings
+                || !roundTripOptions.getObject().isEnabled()) {
+            return bean;
+        }
+        return new RoundTripTrackingMappings((CacheAdapter<String, String>) bean,
+                meterRegistry.getObject(),
+                Duration.ofSeconds(roundTripOptions.getObject().getTimeoutInSeconds()),
+                roundTripOptions.getObject().trackedTargetIdsOrNone(),
+                trackTimeouts);
+    }
+}
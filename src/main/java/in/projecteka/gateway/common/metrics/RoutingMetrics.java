@@ -0,0 +1,100 @@
+package in.projecteka.gateway.common.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static in.projecteka.gateway.common.Constants.API_CALLED;
+import static in.projecteka.gateway.common.Constants.nameMap;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Per route, per stage latency histograms and in-flight gauges for the routing pipeline. The route (api called,
+ * source role and target role) is read from the subscriber context, so stages deep in the pipeline are tagged without
+ * threading the route through every call. Histograms are registered once per route, stage and outcome rather than
+ * on every call.
+ */
+public class RoutingMetrics {
+    public static final String ROUTE_SOURCE = "routeSource";
+    public static final String ROUTE_TARGET = "routeTarget";
+    public static final String ROUTE_TARGET_ID = "routeTargetId";
+    public static final String ROUTE_REQUEST_ID = "routeRequestId";
+    private static final String STAGE_DURATION = "gateway.route.stage";
+    private static final String IN_FLIGHT = "gateway.route.stage.in.flight";
+    private static final String UNKNOWN = "unknown";
+    private static final String SUCCESS = "success";
+    private static final String ERROR = "error";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Tags, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Map<Tags, StageTimers> timers = new ConcurrentHashMap<>();
+
+    public RoutingMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public enum Stage {
+        VALIDATION,
+        REDUNDANCY_CHECK,
+        CACHE,
+        OUTBOUND_CALL,
+        ERROR_NOTIFY;
+
+        private final String tag = name().toLowerCase();
+    }
+
+    public static Context withRoute(Context context, String sourceRoutingKey, String targetRoutingKey) {
+        return context.put(ROUTE_SOURCE, roleOf(sourceRoutingKey)).put(ROUTE_TARGET, roleOf(targetRoutingKey));
+    }
+
+    public <T> Mono<T> timed(Stage stage, Mono<T> publisher) {
+        return Mono.subscriberContext().flatMap(context -> {
+            var tags = Tags.of("api", tagValue(context, API_CALLED),
+                    "stage", stage.tag,
+                    "source", tagValue(context, ROUTE_SOURCE),
+                    "target", tagValue(context, ROUTE_TARGET));
+            var stageTimers = timers.computeIfAbsent(tags, StageTimers::new);
+            var inFlightCount = inFlight.computeIfAbsent(tags,
+                    key -> meterRegistry.gauge(IN_FLIGHT, key, new AtomicInteger()));
+            inFlightCount.incrementAndGet();
+            long start = System.nanoTime();
+            return publisher
+                    .doOnSuccess(ignored -> stageTimers.success.record(System.nanoTime() - start, NANOSECONDS))
+                    .doOnError(ignored -> stageTimers.error.record(System.nanoTime() - start, NANOSECONDS))
+                    .doFinally(signalType -> inFlightCount.decrementAndGet());
+        });
+    }
+
+    private static String roleOf(String routingKey) {
+        return routingKey == null ? UNKNOWN : nameMap.getOrDefault(routingKey, UNKNOWN);
+    }
+
+    private static String tagValue(Context context, String key) {
+        Object value = context.getOrDefault(key, null);
+        return value == null ? UNKNOWN : value.toString();
+    }
+
+    private class StageTimers {
+        private final Timer success;
+        private final Timer error;
+
+        private StageTimers(Tags tags) {
+            success = timer(tags, SUCCESS);
+            error = timer(tags, ERROR);
+        }
+
+        private Timer timer(Tags tags, String outcome) {
+            return Timer.builder(STAGE_DURATION)
+                    .tags(tags)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package in.projecteka.gateway.common.replay;
+
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.SocketAddress;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps the filters of all gateway nodes warm: ids recorded locally are published in batches on a redis channel,
+ * and ids published by the other nodes are added to the local filter. One PUBLISH carries every id recorded during
+ * a flush interval, so the broadcast costs far fewer redis commands than the GETs it saves.
+ *
+ * <p>An id recorded on a peer reaches this node's filter only once the peer flushes it, up to a flush interval plus
+ * the pub/sub latency later. A replay which reaches this node inside that window is taken as new without asking
+ * redis. This is an accepted gap: the check and the store of a request id are not atomic, so two copies arriving
+ * close together could already both pass, and the broadcast only widens that race from a redis round trip to the
+ * flush interval. Keep the interval short where replays are expected to arrive that fast.
+ *
+ * <p>Ids which could not be published are put back to go out with the next flush. Peers may still have missed ids
+ * while this node could not publish, or while their own subscription was down, so a node answers "might contain"
+ * for everything, and every lookup goes to redis, from a publish error or a drop of its subscription until one
+ * retention window after it is healthy again.
+ */
+public class BroadcastingRequestIdFilter implements RequestIdFilter, RedisConnectionStateListener {
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastingRequestIdFilter.class);
+    private static final String SEPARATOR = "\n";
+    private static final int MAX_IDS_PER_MESSAGE = 10_000;
+
+    private final RequestIdFilter requestIdFilter;
+    private final RedisClient redisClient;
+    private final String channel;
+    private final Duration flushInterval;
+    private final long retentionInMillis;
+    private final Clock clock;
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+    private volatile boolean subscribed;
+    private volatile long unsureUntil;
+    private StatefulRedisConnection<String, String> publishConnection;
+    private StatefulRedisPubSubConnection<String, String> subscribeConnection;
+    private Disposable flusher;
+
+    public BroadcastingRequestIdFilter(RequestIdFilter requestIdFilter,
+                                       RedisClient redisClient,
+                                       String channel,
+                                       Duration flushInterval,
+                                       Duration retention,
+                                       Clock clock) {
+        this.requestIdFilter = requestIdFilter;
+        this.redisClient = redisClient;
+        this.channel = channel;
+        this.flushInterval = flushInterval;
+        this.retentionInMillis = retention.toMillis();
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        publishConnection = redisClient.connect();
+        subscribeConnection = redisClient.connectPubSub();
+        redisClient.addListener(this);
+        var pubSubCommands = subscribeConnection.reactive();
+        pubSubCommands.observeChannels()
+                .filter(message -> channel.equals(message.getChannel()))
+                .subscribe(message -> receive(message.getMessage()), error -> {
+                    logger.error("Stopped receiving the request ids of other nodes", error);
+                    subscribed = false;
+                });
+        pubSubCommands.subscribe(channel)
+                .doOnSuccess(ok -> recovered())
+                .doOnError(error -> logger.error("Could not subscribe to the request ids of other nodes", error))
+                .subscribe();
+        flusher = Flux.interval(flushInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> flush())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        flusher.dispose();
+        redisClient.removeListener(this);
+        subscribeConnection.close();
+        publishConnection.close();
+    }
+
+    @Override
+    public boolean mightContain(String requestId) {
+        if (!subscribed || clock.millis() < unsureUntil) {
+            return true;
+        }
+        return requestIdFilter.mightContain(requestId);
+    }
+
+    @Override
+    public void put(String requestId) {
+        requestIdFilter.put(requestId);
+        pending.offer(requestId);
+    }
+
+    @Override
+    public void onRedisConnected(RedisChannelHandler<?, ?> connection, SocketAddress socketAddress) {
+        // lettuce subscribes to the channel again before anything else goes out on the connection
+        if (connection == subscribeConnection) {
+            recovered();
+        }
+    }
+
+    @Override
+    public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+        if (connection == subscribeConnection) {
+            logger.warn("Lost the request ids of other nodes until the subscription is back");
+            subscribed = false;
+        }
+    }
+
+    @Override
+    public void onRedisExceptionCaught(RedisChannelHandler<?, ?> connection, Throwable cause) {
+        // a failure which drops the connection is handled on disconnect
+    }
+
+    private void recovered() {
+        unsureUntil = clock.millis() + retentionInMillis;
+        subscribed = true;
+    }
+
+    private void receive(String message) {
+        for (String requestId : message.split(SEPARATOR)) {
+            requestIdFilter.put(requestId);
+        }
+    }
+
+    Mono<Long> flush() {
+        var batch = new ArrayList<String>();
+        String requestId;
+        while (batch.size() < MAX_IDS_PER_MESSAGE && (requestId = pending.poll()) != null) {
+            batch.add(requestId);
+        }
+        if (batch.isEmpty()) {
+            return Mono.empty();
+        }
+        var ids = new StringJoiner(SEPARATOR);
+        batch.forEach(ids::add);
+        return publishConnection.reactive()
+                .publish(channel, ids.toString())
+                .onErrorResume(error -> {
+                    logger.error("Could not broadcast recorded request ids, they go out with the next flush", error);
+                    pending.addAll(batch);
+                    unsureUntil = clock.millis() + retentionInMillis;
+                    return Mono.empty();
+                });
+    }
+}
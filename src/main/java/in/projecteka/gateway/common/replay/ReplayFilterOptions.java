@@ -0,0 +1,18 @@
+package in.projecteka.gateway.common.replay;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@ConfigurationProperties(prefix = "gateway.replay-filter")
+@Getter
+@AllArgsConstructor
+@ConstructorBinding
+public class ReplayFilterOptions {
+    private final boolean enabled;
+    private final int expectedRequestsPerMinute;
+    private final double falsePositiveProbability;
+    private final boolean broadcastEnabled;
+    private final int broadcastIntervalInMillis;
+}
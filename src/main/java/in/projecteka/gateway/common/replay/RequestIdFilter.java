@@ -0,0 +1,25 @@
+package in.projecteka.gateway.common.replay;
+
+/**
+ * In-process pre-filter for request ids already seen by the gateway. {@link #mightContain(String)} may return
+ * false positives but never false negatives for the ids put on this node, so a {@code false} answer is safe to treat
+ * as "definitely new" there; ids recorded on other nodes are only known once they are broadcast, see
+ * {@link BroadcastingRequestIdFilter}.
+ */
+public interface RequestIdFilter {
+    RequestIdFilter NONE = new RequestIdFilter() {
+        @Override
+        public boolean mightContain(String requestId) {
+            return true;
+        }
+
+        @Override
+        public void put(String requestId) {
+            // nothing to remember, every lookup goes to the store
+        }
+    };
+
+    boolean mightContain(String requestId);
+
+    void put(String requestId);
+}
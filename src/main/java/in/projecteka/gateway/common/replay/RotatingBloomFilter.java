@@ -0,0 +1,91 @@
+package in.projecteka.gateway.common.replay;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ring of time-bucketed bloom filters. Ids are written to the bucket of the current time slot and looked up in
+ * every bucket that is still inside the retention window; a bucket is replaced (never cleared) when its slot comes
+ * round again, so neither reads nor writes take a lock.
+ * <p>
+ * Until one full retention window has passed since start-up the filter cannot know about ids recorded before it
+ * existed, hence it answers "might contain" for everything while warming up.
+ */
+public class RotatingBloomFilter implements RequestIdFilter {
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int expectedInsertionsPerBucket;
+    private final double falsePositiveProbability;
+    private final Clock clock;
+    private final long warmAt;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    public RotatingBloomFilter(Duration retention,
+                               Duration bucketSize,
+                               int expectedInsertionsPerBucket,
+                               double falsePositiveProbability,
+                               Clock clock) {
+        this.bucketMillis = bucketSize.toMillis();
+        this.bucketCount = (int) ((retention.toMillis() + bucketMillis - 1) / bucketMillis) + 1;
+        this.expectedInsertionsPerBucket = expectedInsertionsPerBucket;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.clock = clock;
+        this.warmAt = clock.millis() + retention.toMillis();
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    @Override
+    public boolean mightContain(String requestId) {
+        long now = clock.millis();
+        if (now < warmAt) {
+            return true;
+        }
+        long slot = now / bucketMillis;
+        for (int i = 0; i < bucketCount; i++) {
+            var bucket = buckets.get(i);
+            if (bucket != null && slot - bucket.slot < bucketCount && bucket.filter.mightContain(requestId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void put(String requestId) {
+        bucketFor(clock.millis() / bucketMillis).filter.put(requestId);
+    }
+
+    public double expectedFpp() {
+        var bucket = buckets.get((int) ((clock.millis() / bucketMillis) % bucketCount));
+        return bucket == null ? 0 : bucket.filter.expectedFpp();
+    }
+
+    private Bucket bucketFor(long slot) {
+        int index = (int) (slot % bucketCount);
+        var bucket = buckets.get(index);
+        while (bucket == null || bucket.slot < slot) {
+            var fresh = new Bucket(slot, BloomFilter.create(Funnels.unencodedCharsFunnel(),
+                    expectedInsertionsPerBucket,
+                    falsePositiveProbability));
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+            bucket = buckets.get(index);
+        }
+        return bucket;
+    }
+
+    private static class Bucket {
+        private final long slot;
+        private final BloomFilter<CharSequence> filter;
+
+        private Bucket(long slot, BloomFilter<CharSequence> filter) {
+            this.slot = slot;
+            this.filter = filter;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package in.projecteka.gateway.common.reprocess;
+
+import in.projecteka.gateway.common.reprocess.model.ReprocessRequest;
+import in.projecteka.gateway.common.reprocess.model.ReprocessStatus;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.util.List;
+
+import static in.projecteka.gateway.common.Constants.INTERNAL_REPROCESS;
+import static in.projecteka.gateway.common.Constants.INTERNAL_REPROCESS_SOURCE;
+
+@RestController
+@AllArgsConstructor
+public class ReprocessController {
+    private final Reprocessor reprocessor;
+
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @PostMapping(INTERNAL_REPROCESS)
+    public Mono<ReprocessStatus> reprocess(@Valid @RequestBody ReprocessRequest request) {
+        return reprocessor.start(request);
+    }
+
+    @GetMapping(INTERNAL_REPROCESS)
+    public Mono<List<ReprocessStatus>> reprocessing() {
+        return Mono.fromSupplier(reprocessor::statuses);
+    }
+
+    @DeleteMapping(INTERNAL_REPROCESS_SOURCE)
+    public Mono<ReprocessStatus> stop(@PathVariable("source") String source) {
+        return reprocessor.stop(source);
+    }
+}
@@ -0,0 +1,15 @@
+package in.projecteka.gateway.common.reprocess;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@ConfigurationProperties(prefix = "gateway.reprocess")
+@Getter
+@AllArgsConstructor
+@ConstructorBinding
+public class ReprocessOptions {
+    private final int ratePerSecond;
+    private final int prefetch;
+}
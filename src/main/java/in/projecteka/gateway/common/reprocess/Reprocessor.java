@@ -0,0 +1,321 @@
+package in.projecteka.gateway.common.reprocess;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.LongString;
+import in.projecteka.gateway.common.reprocess.model.ReprocessRequest;
+import in.projecteka.gateway.common.reprocess.model.ReprocessState;
+import in.projecteka.gateway.common.reprocess.model.ReprocessStatus;
+import in.projecteka.gateway.common.retry.PartitionedRetries;
+import in.projecteka.gateway.common.retry.QueuedDeliveries;
+import in.projecteka.gateway.common.retry.RetryEnvelope;
+import in.projecteka.gateway.common.retry.RetryPublisher;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.ConsumeOptions;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.QueueSpecification;
+import reactor.rabbitmq.Receiver;
+import reactor.rabbitmq.Sender;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static in.projecteka.gateway.clients.ClientError.invalidRequest;
+import static in.projecteka.gateway.clients.ClientError.notFound;
+import static in.projecteka.gateway.clients.ClientError.reprocessAlreadyRunning;
+import static in.projecteka.gateway.common.Constants.GW_DEAD_LETTER_QUEUE;
+import static in.projecteka.gateway.common.Constants.GW_EXCHANGE;
+import static in.projecteka.gateway.common.Constants.GW_PARKING_LOT_QUEUE;
+import static in.projecteka.gateway.common.Constants.X_CM_ID;
+import static in.projecteka.gateway.common.Constants.X_HIP_ID;
+import static in.projecteka.gateway.common.Constants.X_HIU_ID;
+import static in.projecteka.gateway.common.retry.DelayedRetries.FIRST_QUEUED_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.X_RETRY_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.X_RETRY_HOLDS;
+import static in.projecteka.gateway.common.retry.RetryEnvelope.PERSISTENT;
+
+/**
+ * Replays what ended up in {@code gw.dlq} or {@code gw.parkinglot} through the queued delivery of its route. A run
+ * looks at the messages which were in the source queue when it started, once each. A message of the asked route and
+ * target is published to its target's partition of the route's work queue with its attempts reset, at no more than
+ * {@code ratePerSecond}, and taken off the source once the broker confirmed it. From there, the route's consumers
+ * deliver it with their own prefetch, concurrency and target circuits. Every other message, and every message of a
+ * dry run, is published to the back of the source queue and so stays there, with the queue it came from kept in
+ * {@code x-reprocess-queue} for the runs after. A run stops after {@code limit} matches.
+ *
+ * <p>One run per source queue at a time. Each run counts into {@code gateway.reprocess.messages}, by source and
+ * outcome, and {@code gateway.reprocess.remaining} is what the current run of a source has still to look at.
+ */
+public class Reprocessor {
+    private static final Logger logger = LoggerFactory.getLogger(Reprocessor.class);
+    private static final List<String> SOURCES = List.of(GW_DEAD_LETTER_QUEUE, GW_PARKING_LOT_QUEUE);
+    private static final List<String> TARGET_HEADERS = List.of(X_HIP_ID, X_CM_ID, X_HIU_ID);
+    private static final String X_DEATH = "x-death";
+    static final String X_REPROCESS_QUEUE = "x-reprocess-queue";
+
+    private final Supplier<Receiver> receivers;
+    private final Sender sender;
+    private final RetryPublisher retryPublisher;
+    private final QueuedDeliveries queuedDeliveries;
+    private final ReprocessOptions options;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Run> runs = new ConcurrentHashMap<>();
+
+    private static class Run {
+        private final ReprocessRequest request;
+        private final String workQueue;
+        private final long depthAtStart;
+        private final long gapInNanos;
+        private final Instant startedAt = Instant.now();
+        private final AtomicLong examined = new AtomicLong();
+        private final AtomicLong matched = new AtomicLong();
+        private final AtomicLong replayed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile ReprocessState state = ReprocessState.RUNNING;
+        private volatile Disposable consumer;
+        private long nextSlot;
+
+        Run(ReprocessRequest request, String workQueue, long depthAtStart, int ratePerSecond) {
+            this.request = request;
+            this.workQueue = workQueue;
+            this.depthAtStart = depthAtStart;
+            this.gapInNanos = ratePerSecond > 0 ? Duration.ofSeconds(1).toNanos() / ratePerSecond : 0;
+        }
+
+        boolean limitReached() {
+            return request.getLimit() != null && request.getLimit() > 0 && matched.get() >= request.getLimit();
+        }
+
+        long remaining() {
+            return state == ReprocessState.RUNNING ? Math.max(depthAtStart - examined.get(), 0) : 0;
+        }
+    }
+
+    public Reprocessor(Supplier<Receiver> receivers,
+                       Sender sender,
+                       RetryPublisher retryPublisher,
+                       QueuedDeliveries queuedDeliveries,
+                       ReprocessOptions options,
+                       MeterRegistry meterRegistry) {
+        this.receivers = receivers;
+        this.sender = sender;
+        this.retryPublisher = retryPublisher;
+        this.queuedDeliveries = queuedDeliveries;
+        this.options = options;
+        this.meterRegistry = meterRegistry;
+        SOURCES.forEach(source -> Gauge.builder("gateway.reprocess.remaining", runs,
+                        current -> current.containsKey(source) ? current.get(source).remaining() : 0)
+                .tag("source", source)
+                .register(meterRegistry));
+    }
+
+    public Mono<ReprocessStatus> start(ReprocessRequest request) {
+        if (!SOURCES.contains(request.getSource())) {
+            return Mono.error(invalidRequest(String.format("Only %s can be reprocessed", SOURCES)));
+        }
+        var workQueue = Optional.ofNullable(request.getRoute()).flatMap(queuedDeliveries::workQueueOf);
+        if (request.getRoute() != null && workQueue.isEmpty()) {
+            return Mono.error(invalidRequest(String.format("%s is not a queued route", request.getRoute())));
+        }
+        int ratePerSecond = request.getRatePerSecond() != null ? request.getRatePerSecond() : options.getRatePerSecond();
+        return sender.declareQueue(QueueSpecification.queue(request.getSource()).passive(true))
+                .flatMap(declareOk -> {
+                    var run = new Run(request, workQueue.orElse(null), declareOk.getMessageCount(), ratePerSecond);
+                    var current = runs.compute(request.getSource(), (source, previous) ->
+                            previous != null && previous.state == ReprocessState.RUNNING ? previous : run);
+                    if (current != run) {
+                        return Mono.error(reprocessAlreadyRunning(request.getSource()));
+                    }
+                    logger.info("Reprocessing {} messages of {}; route {}, target {}, dry run {}",
+                            run.depthAtStart,
+                            request.getSource(),
+                            request.getRoute(),
+                            request.getTargetId(),
+                            request.isDryRun());
+                    run.consumer = consume(run);
+                    return Mono.just(statusOf(run));
+                });
+    }
+
+    public List<ReprocessStatus> statuses() {
+        return runs.values().stream().map(this::statusOf).collect(Collectors.toList());
+    }
+
+    public Mono<ReprocessStatus> stop(String source) {
+        var run = runs.get(source);
+        if (run == null) {
+            return Mono.error(notFound(String.format("%s has not been reprocessed", source)));
+        }
+        if (run.consumer != null) {
+            run.consumer.dispose();
+        }
+        return Mono.just(statusOf(run));
+    }
+
+    private Disposable consume(Run run) {
+        var source = run.request.getSource();
+        var receiver = receivers.get();
+        return receiver.consumeManualAck(source, new ConsumeOptions().qos(Math.max(options.getPrefetch(), 1)))
+                .take(run.depthAtStart)
+                .concatMap(delivery -> process(run, delivery))
+                .takeWhile(Boolean::booleanValue)
+                .doFinally(signal -> {
+                    receiver.close();
+                    finish(run, signal);
+                })
+                .subscribe(unused -> { }, error -> logger.error("Reprocessing {} failed", source, error));
+    }
+
+    // Emits whether the run should go on; a delivery left unacked is requeued when the run's receiver is closed
+    private Mono<Boolean> process(Run run, AcknowledgableDelivery delivery) {
+        var queue = queueOf(delivery);
+        var workQueue = PartitionedRetries.unpartitioned(queue);
+        var targetId = targetOf(delivery);
+        boolean replayable = workQueue != null && queuedDeliveries.workQueueOf(workQueue).isPresent();
+        boolean matches = replayable
+                && (run.workQueue == null || run.workQueue.equals(workQueue))
+                && (run.request.getTargetId() == null || run.request.getTargetId().equals(targetId));
+        if (matches && run.limitReached()) {
+            return Mono.just(false);
+        }
+        run.examined.incrementAndGet();
+        if (!matches) {
+            return republish(run, delivery, "", run.request.getSource(), "skipped", kept(delivery, queue));
+        }
+        run.matched.incrementAndGet();
+        if (run.request.isDryRun()) {
+            return republish(run, delivery, "", run.request.getSource(), "dry_run", kept(delivery, queue));
+        }
+        var retryQueue = queuedDeliveries.retryQueueOf(workQueue, targetId);
+        return pace(run).then(republish(run, delivery, GW_EXCHANGE, retryQueue, "replayed", replayed(delivery)));
+    }
+
+    private Mono<Boolean> republish(Run run,
+                                    AcknowledgableDelivery delivery,
+                                    String exchange,
+                                    String routingKey,
+                                    String outcome,
+                                    AMQP.BasicProperties properties) {
+        var message = new OutboundMessage(exchange, routingKey, properties, delivery.getBody());
+        return retryPublisher.publish(message)
+                .map(isConfirmed -> {
+                    if (!isConfirmed) {
+                        run.failed.incrementAndGet();
+                        count(run, "failed");
+                        delivery.nack(true);
+                        return true;
+                    }
+                    delivery.ack();
+                    if (outcome.equals("replayed")) {
+                        run.replayed.incrementAndGet();
+                    }
+                    count(run, outcome);
+                    return true;
+                });
+    }
+
+    private Mono<Void> pace(Run run) {
+        if (run.gapInNanos == 0) {
+            return Mono.empty();
+        }
+        long now = System.nanoTime();
+        long slot = Math.max(run.nextSlot, now);
+        run.nextSlot = slot + run.gapInNanos;
+        return slot > now ? Mono.delay(Duration.ofNanos(slot - now)).then() : Mono.empty();
+    }
+
+    private void finish(Run run, SignalType signal) {
+        run.state = signal == SignalType.ON_ERROR
+                    ? ReprocessState.FAILED
+                    : signal == SignalType.CANCEL ? ReprocessState.STOPPED : ReprocessState.COMPLETED;
+        logger.info("Reprocessing {} {}: examined {}, matched {}, replayed {}, failed {}",
+                run.request.getSource(),
+                run.state,
+                run.examined.get(),
+                run.matched.get(),
+                run.replayed.get(),
+                run.failed.get());
+    }
+
+    private void count(Run run, String outcome) {
+        meterRegistry.counter("gateway.reprocess.messages", "source", run.request.getSource(), "outcome", outcome)
+                .increment();
+    }
+
+    private ReprocessStatus statusOf(Run run) {
+        return ReprocessStatus.builder()
+                .source(run.request.getSource())
+                .route(run.request.getRoute())
+                .targetId(run.request.getTargetId())
+                .dryRun(run.request.isDryRun())
+                .state(run.state)
+                .startedAt(run.startedAt)
+                .depthAtStart(run.depthAtStart)
+                .examined(run.examined.get())
+                .matched(run.matched.get())
+                .replayed(run.replayed.get())
+                .failed(run.failed.get())
+                .build();
+    }
+
+    static String targetOf(AcknowledgableDelivery delivery) {
+        var headers = delivery.getProperties().getHeaders();
+        if (headers == null) {
+            return null;
+        }
+        var routingKey = RetryEnvelope.routingKeyOf(delivery, null);
+        return (routingKey == null ? TARGET_HEADERS.stream() : List.of(routingKey).stream())
+                .map(headers::get)
+                .filter(value -> value instanceof LongString || value instanceof String)
+                .map(Object::toString)
+                .findFirst()
+                .orElse(null);
+    }
+
+    // The queue a message was dead lettered or parked from; a message put back by a run has lost it as routing key
+    static String queueOf(AcknowledgableDelivery delivery) {
+        var headers = delivery.getProperties().getHeaders();
+        var queue = headers == null ? null : headers.get(X_REPROCESS_QUEUE);
+        return queue instanceof LongString || queue instanceof String
+               ? queue.toString()
+               : delivery.getEnvelope().getRoutingKey();
+    }
+
+    private static AMQP.BasicProperties kept(AcknowledgableDelivery delivery, String queue) {
+        var headers = headersOf(delivery);
+        if (queue != null) {
+            headers.put(X_REPROCESS_QUEUE, queue);
+        }
+        return delivery.getProperties().builder().headers(headers).deliveryMode(PERSISTENT).build();
+    }
+
+    // A replay starts over with every retry of its route, without the history of its dead lettering
+    private static AMQP.BasicProperties replayed(AcknowledgableDelivery delivery) {
+        var headers = headersOf(delivery);
+        headers.remove(X_DEATH);
+        headers.remove(X_REPROCESS_QUEUE);
+        headers.remove(X_RETRY_HOLDS);
+        headers.put(X_RETRY_ATTEMPT, FIRST_QUEUED_ATTEMPT);
+        return delivery.getProperties().builder().headers(headers).deliveryMode(PERSISTENT).build();
+    }
+
+    private static Map<String, Object> headersOf(AcknowledgableDelivery delivery) {
+        return delivery.getProperties().getHeaders() == null
+               ? new HashMap<>()
+               : new HashMap<>(delivery.getProperties().getHeaders());
+    }
+}
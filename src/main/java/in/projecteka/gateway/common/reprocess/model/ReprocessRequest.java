@@ -0,0 +1,20 @@
+package in.projecteka.gateway.common.reprocess.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Value;
+
+import javax.validation.constraints.NotBlank;
+
+@Value
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ReprocessRequest {
+    @NotBlank(message = "source is not specified")
+    String source;
+    String route;
+    String targetId;
+    Integer limit;
+    Integer ratePerSecond;
+    boolean dryRun;
+}
@@ -0,0 +1,8 @@
+package in.projecteka.gateway.common.reprocess.model;
+
+public enum ReprocessState {
+    RUNNING,
+    COMPLETED,
+    STOPPED,
+    FAILED
+}
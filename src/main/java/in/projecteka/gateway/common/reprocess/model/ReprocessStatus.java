@@ -0,0 +1,22 @@
+package in.projecteka.gateway.common.reprocess.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+@Builder
+@Value
+public class ReprocessStatus {
+    String source;
+    String route;
+    String targetId;
+    boolean dryRun;
+    ReprocessState state;
+    Instant startedAt;
+    long depthAtStart;
+    long examined;
+    long matched;
+    long replayed;
+    long failed;
+}
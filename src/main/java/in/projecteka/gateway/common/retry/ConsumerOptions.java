@@ -0,0 +1,20 @@
+package in.projecteka.gateway.common.retry;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@ConfigurationProperties(prefix = "gateway.consumer")
+@Getter
+@AllArgsConstructor
+@ConstructorBinding
+public class ConsumerOptions {
+    private final int prefetch;
+    private final int concurrency;
+    private final int maxConsumers;
+    private final int messagesPerConsumer;
+    private final int scaleIntervalInMillis;
+    private final int drainTimeoutInMillis;
+    private final int nodeConcurrency;
+}
@@ -0,0 +1,204 @@
+package in.projecteka.gateway.common.retry;
+
+import com.rabbitmq.client.AMQP;
+import in.projecteka.gateway.common.cache.ServiceOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.BindingSpecification;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.QueueSpecification;
+import reactor.rabbitmq.Sender;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static in.projecteka.gateway.common.Constants.GW_DEAD_LETTER_EXCHANGE;
+import static in.projecteka.gateway.common.Constants.GW_EXCHANGE;
+import static in.projecteka.gateway.common.Constants.GW_PARKING_EXCHANGE;
+import static in.projecteka.gateway.common.retry.RetryEnvelope.PERSISTENT;
+
+/**
+ * Retries of a work queue wait on the broker instead of in the gateway. A delivery which failed is re-published to the
+ * delay queue of its attempt and acked; the delay queue holds it for its TTL and then dead letters it back to the work
+ * queue through {@code gw.exchange}. Delays start at {@code retryAttemptsDelay} and double with every attempt; up to
+ * {@code retryJitter} of each is taken off at random per message. A delivery which has used up {@code
+ * responseMaxRetryAttempts} is parked on {@code gw.parkinglot}.
+ *
+ * <p>With {@code holdForMillis}, a delivery whose target should not be tried yet can be held on {@code
+ * <queue>.held.<n>ms} for that long, without using up an attempt, and comes back to the work queue after. The holds
+ * are counted in the {@link #X_RETRY_HOLDS} header; with {@code maxHolds} above 0, a delivery held that often is due
+ * for the parking lot instead.
+ *
+ * <p>The attempt travels in the {@link #X_RETRY_ATTEMPT} header; the direct call is attempt 1, so the first delivery
+ * from the work queue is attempt 2. A message handed off to the queue without a direct call is published as attempt
+ * 1, so it gets as many calls as one which was tried first; a failed attempt 1 waits out the first delay. A delivery
+ * is acked only once the broker confirmed its re-publication; one which was not confirmed is nacked to {@code gw.dlq}.
+ */
+public class DelayedRetries {
+    private static final Logger logger = LoggerFactory.getLogger(DelayedRetries.class);
+    public static final String X_RETRY_ATTEMPT = "x-retry-attempt";
+    public static final int FIRST_QUEUED_ATTEMPT = 2;
+    public static final int HANDED_OFF_ATTEMPT = 1;
+    public static final String X_RETRY_HOLDS = "x-retry-holds";
+
+    private final Sender sender;
+    private final RetryPublisher retryPublisher;
+    private final String workQueue;
+    private final int maxRetries;
+    private final long baseDelayInMillis;
+    private final double jitter;
+    private final long holdForMillis;
+    private final int maxHolds;
+
+    public DelayedRetries(Sender sender,
+                          RetryPublisher retryPublisher,
+                          String workQueue,
+                          ServiceOptions serviceOptions) {
+        this(sender, retryPublisher, workQueue, serviceOptions, 0, 0);
+    }
+
+    public DelayedRetries(Sender sender,
+                          RetryPublisher retryPublisher,
+                          String workQueue,
+                          ServiceOptions serviceOptions,
+                          long holdForMillis,
+                          int maxHolds) {
+        this.holdForMillis = holdForMillis;
+        this.maxHolds = maxHolds;
+        this.sender = sender;
+        this.retryPublisher = retryPublisher;
+        this.workQueue = workQueue;
+        this.maxRetries = serviceOptions.getResponseMaxRetryAttempts();
+        this.baseDelayInMillis = Math.max(1, serviceOptions.getRetryAttemptsDelay());
+        this.jitter = Math.min(Math.max(serviceOptions.getRetryJitter(), 0), 1);
+    }
+
+    public String getWorkQueue() {
+        return workQueue;
+    }
+
+    public static int attemptOf(AcknowledgableDelivery delivery) {
+        var headers = delivery.getProperties().getHeaders();
+        var attempt = headers == null ? null : headers.get(X_RETRY_ATTEMPT);
+        return attempt instanceof Number ? ((Number) attempt).intValue() : FIRST_QUEUED_ATTEMPT;
+    }
+
+    static int holdsOf(AcknowledgableDelivery delivery) {
+        var headers = delivery.getProperties().getHeaders();
+        var holds = headers == null ? null : headers.get(X_RETRY_HOLDS);
+        return holds instanceof Number ? ((Number) holds).intValue() : 0;
+    }
+
+    /**
+     * Declares the work queue and binds it to {@code gw.exchange}, with the arguments of the queues in the broker
+     * definitions, so a route moved onto queued delivery by configuration has its queue without a broker change.
+     */
+    public Mono<Void> declareWorkQueue() {
+        return sender.declareQueue(QueueSpecification.queue(workQueue)
+                        .durable(true)
+                        .arguments(Map.of(
+                                "x-dead-letter-exchange", GW_DEAD_LETTER_EXCHANGE,
+                                "x-queue-type", "classic")))
+                .then(Mono.defer(() -> sender.bind(BindingSpecification.binding(GW_EXCHANGE, workQueue, workQueue))))
+                .then();
+    }
+
+    /**
+     * Declares the delay queue of every retry. Queues are named after their delay, so changing the delays declares
+     * new queues rather than clashing with the arguments of existing ones.
+     */
+    public Mono<Void> declare() {
+        return Flux.range(1, maxRetries)
+                .concatMap(retry -> sender.declareQueue(QueueSpecification.queue(delayQueue(retry))
+                        .durable(true)
+                        .arguments(Map.of(
+                                "x-message-ttl", delayInMillis(retry),
+                                "x-dead-letter-exchange", GW_EXCHANGE,
+                                "x-dead-letter-routing-key", workQueue))))
+                .then(Mono.defer(() -> holdForMillis > 0
+                                       ? sender.declareQueue(QueueSpecification.queue(holdQueue())
+                                               .durable(true)
+                                               .arguments(Map.of(
+                                                       "x-message-ttl", holdForMillis,
+                                                       "x-dead-letter-exchange", GW_EXCHANGE,
+                                                       "x-dead-letter-routing-key", workQueue)))
+                                       : Mono.empty()))
+                .then();
+    }
+
+    public boolean exhausted(AcknowledgableDelivery delivery) {
+        return attemptOf(delivery) - FIRST_QUEUED_ATTEMPT >= maxRetries;
+    }
+
+    /** Whether the delivery was held as often as it may be, and should be parked rather than held again. */
+    public boolean heldOut(AcknowledgableDelivery delivery) {
+        return maxHolds > 0 && holdsOf(delivery) >= maxHolds;
+    }
+
+    /** Publishes the next attempt of the delivery to its delay queue, then acks the delivery. */
+    public Mono<Void> delay(AcknowledgableDelivery delivery) {
+        int attempt = attemptOf(delivery);
+        int retry = Math.max(attempt - FIRST_QUEUED_ATTEMPT + 1, 1);
+        long delay = delayInMillis(retry);
+        long jittered = delay - (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+        var properties = propertiesOf(delivery, attempt + 1).expiration(String.valueOf(jittered)).build();
+        return publish(delivery, new OutboundMessage("", delayQueue(retry), properties, delivery.getBody()));
+    }
+
+    /** Publishes the delivery to the parking lot, then acks it. */
+    public Mono<Void> park(AcknowledgableDelivery delivery) {
+        logger.info("Exhausted retries on {}; parking the delivery", workQueue);
+        var properties = propertiesOf(delivery, attemptOf(delivery)).build();
+        return publish(delivery, new OutboundMessage(GW_PARKING_EXCHANGE, workQueue, properties, delivery.getBody()));
+    }
+
+    /** Publishes the delivery to the hold queue, keeping its attempt and counting the hold, then acks it. */
+    public Mono<Void> hold(AcknowledgableDelivery delivery) {
+        var headers = headersOf(delivery, attemptOf(delivery));
+        headers.put(X_RETRY_HOLDS, holdsOf(delivery) + 1);
+        var properties = delivery.getProperties().builder().headers(headers).deliveryMode(PERSISTENT).build();
+        return publish(delivery, new OutboundMessage("", holdQueue(), properties, delivery.getBody()));
+    }
+
+    String holdQueue() {
+        return String.format("%s.held.%dms", workQueue, holdForMillis);
+    }
+
+    String delayQueue(int retry) {
+        return String.format("%s.delay.%dms", workQueue, delayInMillis(retry));
+    }
+
+    long delayInMillis(int retry) {
+        return baseDelayInMillis << Math.min(retry - 1, 30);
+    }
+
+    private Mono<Void> publish(AcknowledgableDelivery delivery, OutboundMessage message) {
+        return retryPublisher.publish(message)
+                .doOnNext(isConfirmed -> {
+                    if (isConfirmed) {
+                        delivery.ack();
+                        return;
+                    }
+                    logger.error("The broker did not confirm a re-published delivery of {}; dead lettering it",
+                            workQueue);
+                    delivery.nack(false);
+                })
+                .then();
+    }
+
+    private static AMQP.BasicProperties.Builder propertiesOf(AcknowledgableDelivery delivery, int attempt) {
+        return delivery.getProperties().builder().headers(headersOf(delivery, attempt)).deliveryMode(PERSISTENT);
+    }
+
+    private static Map<String, Object> headersOf(AcknowledgableDelivery delivery, int attempt) {
+        var headers = delivery.getProperties().getHeaders() == null
+                      ? new HashMap<String, Object>()
+                      : new HashMap<>(delivery.getProperties().getHeaders());
+        headers.put(X_RETRY_ATTEMPT, attempt);
+        return headers;
+    }
+}
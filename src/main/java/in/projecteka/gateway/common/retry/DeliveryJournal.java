@@ -0,0 +1,410 @@
+package in.projecteka.gateway.common.retry;
+
+import com.rabbitmq.client.AMQP;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.rabbitmq.OutboundMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only journal of retry messages the broker did not confirm. It is kept outside the heap, in memory-mapped
+ * segment files of {@code segmentSizeInBytes}. Every record is {@code [length][crc32][message]}. Records are written
+ * length last, and the unwritten tail of a segment is zeros, so a zero length or a checksum which does not match ends
+ * the records of a segment. A full segment rolls over to the next one.
+ *
+ * <p>A checkpoint file holds the position of the first record not acknowledged yet. Segments before it are deleted.
+ * Opening the journal recovers what an earlier run left: records from the checkpoint on are read again, and the last
+ * segment is appended to right after its last intact record, so a record torn by a crash is written over. Records are
+ * acknowledged in order, up to the last one that was published again, so a crash between a publish and the checkpoint
+ * replays a few messages twice rather than losing them.
+ *
+ * <p>Pages are left to the OS to write back, which survives a crash of the gateway; {@code forceOnAppend} also syncs
+ * every append to the disk, for a crash of the host. The directory is locked to one process.
+ */
+public class DeliveryJournal implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryJournal.class);
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String LOCK = "lock";
+    private static final int RECORD_HEADER = 8;
+    private static final int CHECKPOINT_SIZE = 16;
+    private static final byte INTEGER = 'I';
+    private static final byte LONG = 'L';
+    private static final byte STRING = 'S';
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceOnAppend;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final MappedByteBuffer checkpoint;
+    private final AtomicLong pending = new AtomicLong();
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private long readSegment;
+    private int readPosition;
+    private long mappedSegment = -1;
+    private MappedByteBuffer mappedBuffer;
+    private boolean closed;
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Entry {
+        private final OutboundMessage message;
+        private final long segment;
+        private final int next;
+    }
+
+    public DeliveryJournal(JournalOptions options) throws IOException {
+        this.directory = Paths.get(options.getDirectory());
+        this.segmentSize = options.getSegmentSizeInBytes();
+        this.forceOnAppend = options.isForceOnAppend();
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK), CREATE, WRITE);
+        this.lock = tryLock(lockChannel);
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException(String.format("Journal %s is used by another gateway", directory));
+        }
+        this.checkpoint = map(directory.resolve(CHECKPOINT), CHECKPOINT_SIZE);
+        recover();
+    }
+
+    /** Appends the message; false if it can never fit in a segment, or the journal was closed. */
+    public synchronized boolean append(OutboundMessage message) {
+        if (closed) {
+            logger.error("The retry journal is closed; dropping a retry for {}", message.getRoutingKey());
+            return false;
+        }
+        byte[] record = encode(message);
+        if (record.length + RECORD_HEADER > segmentSize) {
+            logger.error("A retry message of {} bytes does not fit in a journal segment", record.length);
+            return false;
+        }
+        if (writeBuffer.remaining() < record.length + RECORD_HEADER) {
+            roll();
+        }
+        int position = writeBuffer.position();
+        writeBuffer.putInt(position + 4, checksum(record));
+        writeBuffer.position(position + RECORD_HEADER);
+        writeBuffer.put(record);
+        writeBuffer.putInt(position, record.length);
+        if (forceOnAppend) {
+            writeBuffer.force();
+        }
+        pending.incrementAndGet();
+        return true;
+    }
+
+    /** Up to {@code max} records from the checkpoint on, in the order they were appended. */
+    public synchronized List<Entry> read(int max) {
+        var entries = new ArrayList<Entry>();
+        if (closed) {
+            return entries;
+        }
+        long segment = readSegment;
+        int position = readPosition;
+        while (entries.size() < max) {
+            var buffer = bufferOf(segment);
+            int length = recordAt(buffer, position);
+            if (length < 0) {
+                if (segment >= writeSegment) {
+                    break;
+                }
+                segment++;
+                position = 0;
+                continue;
+            }
+            var record = bytesAt(buffer, position + RECORD_HEADER, length);
+            position += RECORD_HEADER + length;
+            entries.add(new Entry(decode(record), segment, position));
+        }
+        return entries;
+    }
+
+    /** Moves the checkpoint past {@code last}, which acknowledges {@code count} records. */
+    public synchronized void acknowledge(Entry last, int count) {
+        if (closed) {
+            return;
+        }
+        readSegment = last.getSegment();
+        readPosition = last.getNext();
+        checkpoint.putLong(0, readSegment);
+        checkpoint.putInt(8, readPosition);
+        checkpoint.putInt(12, checkpointChecksum(readSegment, readPosition));
+        if (forceOnAppend) {
+            checkpoint.force();
+        }
+        pending.addAndGet(-count);
+        segments().stream().filter(segment -> segment < readSegment).forEach(this::delete);
+    }
+
+    public long pending() {
+        return Math.max(pending.get(), 0);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writeBuffer.force();
+        checkpoint.force();
+        lock.release();
+        lockChannel.close();
+    }
+
+    private void recover() throws IOException {
+        var segments = segments();
+        long checkpointSegment = checkpoint.getLong(0);
+        int checkpointPosition = checkpoint.getInt(8);
+        boolean validCheckpoint = checkpoint.getInt(12) == checkpointChecksum(checkpointSegment, checkpointPosition);
+        if (segments.isEmpty()) {
+            readSegment = validCheckpoint ? checkpointSegment : 0;
+            readPosition = 0;
+            writeSegment = readSegment;
+            writeBuffer = map(segmentPath(writeSegment), segmentSize);
+            return;
+        }
+        if (validCheckpoint && checkpointSegment >= segments.first() && checkpointSegment <= segments.last()) {
+            readSegment = checkpointSegment;
+            readPosition = checkpointPosition;
+        } else {
+            readSegment = segments.first();
+            readPosition = 0;
+        }
+        segments.headSet(readSegment).forEach(this::delete);
+        writeSegment = segments.last();
+        writeBuffer = map(segmentPath(writeSegment), segmentSize);
+        writeBuffer.position(endOf(writeBuffer, writeSegment == readSegment ? readPosition : 0));
+        for (int i = writeBuffer.position(); i < writeBuffer.capacity(); i++) {
+            writeBuffer.put(i, (byte) 0);
+        }
+        long recovered = countFromCheckpoint();
+        pending.set(recovered);
+        if (recovered > 0) {
+            logger.warn("Recovered {} retry messages from the journal in {}", recovered, directory);
+        }
+    }
+
+    private long countFromCheckpoint() {
+        long count = 0;
+        for (long segment = readSegment; segment <= writeSegment; segment++) {
+            var buffer = bufferOf(segment);
+            int position = segment == readSegment ? readPosition : 0;
+            int length;
+            while ((length = recordAt(buffer, position)) >= 0) {
+                position += RECORD_HEADER + length;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void roll() {
+        writeBuffer.force();
+        writeSegment++;
+        writeBuffer = mapUnchecked(segmentPath(writeSegment), segmentSize);
+    }
+
+    private MappedByteBuffer bufferOf(long segment) {
+        if (segment == writeSegment) {
+            return writeBuffer;
+        }
+        if (segment != mappedSegment) {
+            mappedBuffer = mapUnchecked(segmentPath(segment), segmentSize);
+            mappedSegment = segment;
+        }
+        return mappedBuffer;
+    }
+
+    // Length of the intact record at the position, or -1 where the records of the segment end
+    private int recordAt(MappedByteBuffer buffer, int position) {
+        if (position + RECORD_HEADER > buffer.capacity()) {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + RECORD_HEADER + length > buffer.capacity()) {
+            return -1;
+        }
+        return checksum(bytesAt(buffer, position + RECORD_HEADER, length)) == buffer.getInt(position + 4) ? length : -1;
+    }
+
+    private int endOf(MappedByteBuffer buffer, int from) {
+        int position = from;
+        int length;
+        while ((length = recordAt(buffer, position)) >= 0) {
+            position += RECORD_HEADER + length;
+        }
+        return position;
+    }
+
+    private static byte[] bytesAt(MappedByteBuffer buffer, int position, int length) {
+        var bytes = new byte[length];
+        buffer.duplicate().position(position).get(bytes);
+        return bytes;
+    }
+
+    private TreeSet<Long> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .collect(Collectors.toCollection(TreeSet::new));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void delete(long segment) {
+        if (segment == mappedSegment) {
+            mappedSegment = -1;
+            mappedBuffer = null;
+        }
+        try {
+            Files.deleteIfExists(segmentPath(segment));
+        } catch (IOException e) {
+            logger.error("Could not delete journal segment {}", segment, e);
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%020d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (var channel = FileChannel.open(path, CREATE, READ, WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static MappedByteBuffer mapUnchecked(Path path, int size) {
+        try {
+            return map(path, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int checksum(byte[] record) {
+        var crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private static int checkpointChecksum(long segment, int position) {
+        var crc = new CRC32();
+        crc.update(ByteBuffer.allocate(12).putLong(segment).putInt(position).array());
+        return (int) crc.getValue() | 1;
+    }
+
+    static byte[] encode(OutboundMessage message) {
+        var bytes = new ByteArrayOutputStream(message.getBody().length + 256);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeUTF(message.getExchange());
+            out.writeUTF(message.getRoutingKey());
+            var properties = message.getProperties() == null ? new AMQP.BasicProperties() : message.getProperties();
+            writeNullable(out, properties.getCorrelationId());
+            writeNullable(out, properties.getContentType());
+            var headers = properties.getHeaders() == null ? Map.<String, Object>of() : properties.getHeaders();
+            out.writeInt(headers.size());
+            for (var header : headers.entrySet()) {
+                out.writeUTF(header.getKey());
+                var value = header.getValue();
+                if (value instanceof Integer) {
+                    out.writeByte(INTEGER);
+                    out.writeInt((Integer) value);
+                } else if (value instanceof Long) {
+                    out.writeByte(LONG);
+                    out.writeLong((Long) value);
+                } else {
+                    out.writeByte(STRING);
+                    out.writeUTF(String.valueOf(value));
+                }
+            }
+            out.writeInt(message.getBody().length);
+            out.write(message.getBody());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static OutboundMessage decode(byte[] record) {
+        try (var in = new DataInputStream(new ByteArrayInputStream(record))) {
+            var exchange = in.readUTF();
+            var routingKey = in.readUTF();
+            var correlationId = readNullable(in);
+            var contentType = readNullable(in);
+            int headerCount = in.readInt();
+            var headers = new HashMap<String, Object>();
+            for (int i = 0; i < headerCount; i++) {
+                var key = in.readUTF();
+                byte type = in.readByte();
+                headers.put(key, type == INTEGER ? (Object) in.readInt() : type == LONG ? in.readLong() : in.readUTF());
+            }
+            var body = new byte[in.readInt()];
+            in.readFully(body);
+            var properties = new AMQP.BasicProperties.Builder()
+                    .correlationId(correlationId)
+                    .contentType(contentType)
+                    .headers(headers)
+                    .deliveryMode(RetryEnvelope.PERSISTENT)
+                    .build();
+            return new OutboundMessage(exchange, routingKey, properties, body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
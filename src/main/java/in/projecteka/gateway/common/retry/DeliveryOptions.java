@@ -0,0 +1,65 @@
+package in.projecteka.gateway.common.retry;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+@ConfigurationProperties(prefix = "gateway.delivery")
+@Getter
+@AllArgsConstructor
+@ConstructorBinding
+public class DeliveryOptions {
+    private static final DeliveryPolicy QUEUED = new DeliveryPolicy(true, null, null, null, null, null);
+
+    private final Map<String, DeliveryPolicy> routes;
+    private final int partitions;
+    private final int circuitFailureThreshold;
+    private final int circuitOpenInMillis;
+    private final int circuitMaxHolds;
+    private final DeliveryRole role;
+
+    public DeliveryRole roleOrDefault() {
+        return role == null ? DeliveryRole.COMBINED : role;
+    }
+
+    /**
+     * The policy of a route if it is queued. Route names are matched ignoring case, dashes and underscores, so
+     * {@code hip-consent-notify-request} can also be set from {@code GATEWAY_DELIVERY_ROUTES_HIPCONSENTNOTIFYREQUEST_*}.
+     * With a split {@link DeliveryRole}, every route is queued, on its own policy if it has one.
+     */
+    public Optional<DeliveryPolicy> policyFor(String route) {
+        var policy = routes == null
+                     ? Optional.<DeliveryPolicy>empty()
+                     : routes.entrySet().stream()
+                             .filter(entry -> normalized(entry.getKey()).equals(normalized(route)))
+                             .map(Map.Entry::getValue)
+                             .findFirst();
+        if (roleOrDefault().queuesEveryRoute()) {
+            return policy.or(() -> Optional.of(QUEUED));
+        }
+        return policy.filter(DeliveryPolicy::isQueued);
+    }
+
+    /** The routes configured under {@code gateway.delivery.routes} which name none of the given routes. */
+    public List<String> unknownRoutes(Collection<String> knownRoutes) {
+        if (routes == null) {
+            return List.of();
+        }
+        var known = knownRoutes.stream().map(DeliveryOptions::normalized).collect(Collectors.toSet());
+        return routes.keySet().stream()
+                .filter(route -> !known.contains(normalized(route)))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static String normalized(String route) {
+        return route.replace("-", "").replace("_", "").toLowerCase();
+    }
+}
@@ -0,0 +1,88 @@
+package in.projecteka.gateway.common.retry;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps the deliveries a node processes at a time across the consumers of all its work queues, on top of the
+ * concurrency of each {@link QueueConsumer}, so the calls a node makes do not grow with its routes and partitions. A
+ * delivery waits for a permit without holding a thread, and permits are handed out in the order they were asked for.
+ * A limit of 0 hands out permits without limit.
+ */
+public class DeliveryPermits {
+    private final int limit;
+    private final AtomicInteger available;
+    private final Queue<Waiter> waiting = new ConcurrentLinkedQueue<>();
+
+    public DeliveryPermits(int limit) {
+        this.limit = limit;
+        this.available = new AtomicInteger(Math.max(limit, 0));
+    }
+
+    public static DeliveryPermits unlimited() {
+        return new DeliveryPermits(0);
+    }
+
+    /** Subscribes to the work once a permit is free, and frees it once the work terminates or is cancelled. */
+    public <T> Mono<T> withPermit(Mono<T> work) {
+        if (limit <= 0) {
+            return work;
+        }
+        return Mono.defer(() -> {
+            var waiter = new Waiter();
+            return Mono.<Void>create(sink -> {
+                waiter.sink = sink;
+                sink.onCancel(() -> {
+                    if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.CANCELLED)) {
+                        waiting.remove(waiter);
+                    }
+                });
+                waiting.add(waiter);
+                drain();
+            })
+                    .then(work)
+                    .doFinally(signal -> {
+                        if (waiter.state.compareAndSet(Waiter.GRANTED, Waiter.RELEASED)) {
+                            available.incrementAndGet();
+                            drain();
+                        }
+                    });
+        });
+    }
+
+    int available() {
+        return available.get();
+    }
+
+    private void drain() {
+        while (!waiting.isEmpty()) {
+            int permits = available.get();
+            if (permits <= 0) {
+                return;
+            }
+            if (!available.compareAndSet(permits, permits - 1)) {
+                continue;
+            }
+            var waiter = waiting.poll();
+            if (waiter == null || !waiter.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED)) {
+                available.incrementAndGet();
+                continue;
+            }
+            waiter.sink.success();
+        }
+    }
+
+    private static class Waiter {
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+        private static final int RELEASED = 3;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile MonoSink<Void> sink;
+    }
+}
@@ -0,0 +1,21 @@
+package in.projecteka.gateway.common.retry;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+/**
+ * How one route is delivered once the direct call failed. Unset values fall back to {@code gateway.serviceoptions},
+ * and partitions to {@code gateway.delivery.partitions}; the queue defaults to {@code gw.<route>}.
+ */
+@Getter
+@AllArgsConstructor
+@ConstructorBinding
+public class DeliveryPolicy {
+    private final boolean queued;
+    private final String queue;
+    private final Integer maxRetries;
+    private final Integer retryDelayInMillis;
+    private final Double retryJitter;
+    private final Integer partitions;
+}
@@ -0,0 +1,25 @@
+package in.projecteka.gateway.common.retry;
+
+/**
+ * What a node does with the work queues of its routes. A combined node calls the target itself and queues only what
+ * failed. An ingress node publishes every validated request and response to its route's queue, without calling the
+ * target, and consumes none. A delivery worker consumes the queues. With either of the split roles, every route is
+ * queued, so the two agree on the queues.
+ */
+public enum DeliveryRole {
+    COMBINED,
+    INGRESS,
+    DELIVERY_WORKER;
+
+    public boolean handsOff() {
+        return this == INGRESS;
+    }
+
+    public boolean delivers() {
+        return this != INGRESS;
+    }
+
+    public boolean queuesEveryRoute() {
+        return this != COMBINED;
+    }
+}
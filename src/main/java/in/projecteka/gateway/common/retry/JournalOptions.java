@@ -0,0 +1,20 @@
+package in.projecteka.gateway.common.retry;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@ConfigurationProperties(prefix = "gateway.journal")
+@Getter
+@AllArgsConstructor
+@ConstructorBinding
+public class JournalOptions {
+    private final String directory;
+    private final int segmentSizeInBytes;
+    private final boolean forceOnAppend;
+
+    public boolean isEnabled() {
+        return directory != null && !directory.isBlank();
+    }
+}
@@ -0,0 +1,139 @@
+package in.projecteka.gateway.common.retry;
+
+import in.projecteka.gateway.common.cache.ServiceOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.Receiver;
+import reactor.rabbitmq.Sender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the retries of a work queue by target, so a target which keeps failing only holds up the targets which hash
+ * to the same partition. With {@code partitions} above 1, a target's retries go to {@code <queue>.p<n>}, where n is
+ * the target id's {@link String#hashCode()} modulo {@code partitions}, the same on every node; each partition has its
+ * own delay queues and its own {@link QueueConsumer}, with its own prefetch and concurrency, so partitions are
+ * consumed side by side rather than one after another. The unpartitioned queue is still consumed, to drain what was
+ * queued before partitioning.
+ *
+ * <p>Deliveries to a target whose circuit in {@link TargetCircuits} is open are held for the circuit's open period
+ * instead of being tried, which keeps them from using up their attempts and their partition's concurrency, up to the
+ * circuits' {@code maxHolds}.
+ */
+public class PartitionedRetries {
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedRetries.class);
+    private static final Pattern PARTITION_SUFFIX = Pattern.compile("\\.p\\d+$");
+
+    private final Receiver receiver;
+    private final Sender sender;
+    private final String workQueue;
+    private final ConsumerOptions consumerOptions;
+    private final TargetCircuits circuits;
+    private final MeterRegistry meterRegistry;
+    private final List<DelayedRetries> partitions = new ArrayList<>();
+    private final List<DelayedRetries> queues = new ArrayList<>();
+    private final List<QueueConsumer> consumers = new ArrayList<>();
+
+    public PartitionedRetries(Receiver receiver,
+                              Sender sender,
+                              RetryPublisher retryPublisher,
+                              String workQueue,
+                              int partitions,
+                              ServiceOptions serviceOptions,
+                              ConsumerOptions consumerOptions,
+                              TargetCircuits circuits,
+                              MeterRegistry meterRegistry) {
+        this.receiver = receiver;
+        this.sender = sender;
+        this.workQueue = workQueue;
+        this.consumerOptions = consumerOptions;
+        this.circuits = circuits;
+        this.meterRegistry = meterRegistry;
+        long holdForMillis = circuits.getOpenForMillis();
+        int maxHolds = circuits.getMaxHolds();
+        var unpartitioned = new DelayedRetries(sender,
+                retryPublisher,
+                workQueue,
+                serviceOptions,
+                holdForMillis,
+                maxHolds);
+        queues.add(unpartitioned);
+        if (partitions <= 1) {
+            this.partitions.add(unpartitioned);
+            return;
+        }
+        for (int partition = 0; partition < partitions; partition++) {
+            var retries = new DelayedRetries(sender,
+                    retryPublisher,
+                    partitionQueue(workQueue, partition),
+                    serviceOptions,
+                    holdForMillis,
+                    maxHolds);
+            this.partitions.add(retries);
+            queues.add(retries);
+        }
+    }
+
+    static String partitionQueue(String workQueue, int partition) {
+        return String.format("%s.p%d", workQueue, partition);
+    }
+
+    /** The work queue a partition belongs to; any other queue is its own. */
+    public static String unpartitioned(String queue) {
+        return queue == null ? null : PARTITION_SUFFIX.matcher(queue).replaceFirst("");
+    }
+
+    /** The queue a retry to the target is published to. */
+    public String queueOf(String targetId) {
+        return retriesOf(targetId).getWorkQueue();
+    }
+
+    public DelayedRetries retriesOf(String targetId) {
+        return partitions.get(partitionOf(targetId, partitions.size()));
+    }
+
+    /** The queue a retry to the target goes to, for a work queue split over {@code partitions}. */
+    public static String queueOf(String workQueue, int partitions, String targetId) {
+        return partitions <= 1 ? workQueue : partitionQueue(workQueue, partitionOf(targetId, partitions));
+    }
+
+    private static int partitionOf(String targetId, int partitions) {
+        return Math.floorMod(targetId == null ? 0 : targetId.hashCode(), partitions);
+    }
+
+    public TargetCircuits circuits() {
+        return circuits;
+    }
+
+    /** Declares the queues of every partition, then starts consuming each. */
+    public void start(Function<AcknowledgableDelivery, Mono<Void>> process) {
+        queues.forEach(retries -> consumers.add(
+                new QueueConsumer(receiver, sender, retries.getWorkQueue(), consumerOptions, meterRegistry, process)));
+        declared().then(Mono.fromRunnable(() -> consumers.forEach(QueueConsumer::start))).subscribe();
+    }
+
+    /** Declares the queues of every partition without consuming them, for a node which only publishes. */
+    public void declare() {
+        declared().subscribe();
+    }
+
+    private Mono<Void> declared() {
+        return Flux.fromIterable(queues)
+                .concatMap(retries -> retries.declareWorkQueue().then(retries.declare()))
+                .doOnError(error -> logger.error("Could not declare the delay queues of {}", workQueue, error))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    /** Stops the consumers of every partition side by side, waiting for what they are processing. */
+    public void stop() {
+        Flux.fromIterable(consumers).flatMap(QueueConsumer::stopping).then().block();
+    }
+}
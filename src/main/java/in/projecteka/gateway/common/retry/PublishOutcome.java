@@ -0,0 +1,11 @@
+package in.projecteka.gateway.common.retry;
+
+/**
+ * What became of a message given to {@link RetryPublisher#publishOrHold}. A held message is only on this node, in
+ * its fallback or journal, until a redrive gets the broker to confirm it; a dropped one is lost.
+ */
+public enum PublishOutcome {
+    CONFIRMED,
+    HELD,
+    DROPPED
+}
@@ -0,0 +1,203 @@
+package in.projecteka.gateway.common.retry;
+
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.ConsumeOptions;
+import reactor.rabbitmq.QueueSpecification;
+import reactor.rabbitmq.Receiver;
+import reactor.rabbitmq.Sender;
+import reactor.util.concurrent.Queues;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Consumes a work queue with at most {@code prefetch} unacked deliveries per consumer, and at most {@code
+ * concurrency} of them being processed at a time, so a surge on one queue is spread over every node instead of turning
+ * into unbounded outbound calls from the node which happened to take it. Deliveries are acked one delivery tag at a
+ * time, never with {@code multiple}, so acks finishing out of order are fine. A delivery whose processing fails, or
+ * throws before it returns, is nacked to {@code gw.dlq} unless it was acked already, and the consumer goes on.
+ *
+ * <p>With {@code maxConsumers} above 1, the depth of the queue is polled every {@code scaleIntervalInMillis} and a
+ * consumer is run for every {@code messagesPerConsumer} messages waiting, between 1 and {@code maxConsumers}. Stopping
+ * a consumer cancels it on the broker first, lets the deliveries it is processing finish for up to {@code
+ * drainTimeoutInMillis}, then closes its channel, which requeues whatever it still had unacked.
+ */
+public class QueueConsumer {
+    private static final Logger logger = LoggerFactory.getLogger(QueueConsumer.class);
+    private static final Duration DRAIN_POLL_INTERVAL = Duration.ofMillis(100);
+
+    private final Receiver receiver;
+    private final Sender sender;
+    private final String queue;
+    private final ConsumerOptions options;
+    private final Function<AcknowledgableDelivery, Mono<Void>> process;
+    private final Deque<Consumer> consumers = new ArrayDeque<>();
+    private final AtomicLong depth = new AtomicLong();
+    private Disposable scaler;
+
+    public QueueConsumer(Receiver receiver,
+                         Sender sender,
+                         String queue,
+                         ConsumerOptions options,
+                         MeterRegistry meterRegistry,
+                         Function<AcknowledgableDelivery, Mono<Void>> process) {
+        this.receiver = receiver;
+        this.sender = sender;
+        this.queue = queue;
+        this.options = options;
+        this.process = process;
+        Gauge.builder("gateway.retry.consumers", this, QueueConsumer::consumers)
+                .tag("queue", queue)
+                .register(meterRegistry);
+        Gauge.builder("gateway.retry.queue.depth", depth, AtomicLong::get)
+                .tag("queue", queue)
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        scaleTo(1);
+        if (options.getMaxConsumers() > 1) {
+            scaler = Flux.interval(Duration.ofMillis(Math.max(options.getScaleIntervalInMillis(), 1000)))
+                    .concatMap(tick -> queueDepth())
+                    .subscribe(messages -> {
+                        depth.set(messages);
+                        scaleTo(consumersFor(messages));
+                    });
+        }
+    }
+
+    /** Stops every consumer, waiting for the deliveries they are processing. */
+    public void stop() {
+        stopping().block();
+    }
+
+    public Mono<Void> stopping() {
+        return Mono.defer(() -> {
+            if (scaler != null) {
+                scaler.dispose();
+            }
+            return scaledTo(0);
+        });
+    }
+
+    int consumersFor(long messages) {
+        int perConsumer = Math.max(options.getMessagesPerConsumer(), 1);
+        long wanted = (messages + perConsumer - 1) / perConsumer;
+        return (int) Math.max(1, Math.min(wanted, options.getMaxConsumers()));
+    }
+
+    int consumers() {
+        synchronized (consumers) {
+            return consumers.size();
+        }
+    }
+
+    void scaleTo(int wanted) {
+        scaledTo(wanted).subscribe();
+    }
+
+    // Completes once the consumers stopped to scale down have drained
+    private Mono<Void> scaledTo(int wanted) {
+        var stopped = new ArrayDeque<Consumer>();
+        synchronized (consumers) {
+            if (wanted != consumers.size()) {
+                logger.info("Scaling consumers of {} from {} to {}", queue, consumers.size(), wanted);
+            }
+            while (consumers.size() < wanted) {
+                var consumer = new Consumer();
+                consumer.start();
+                consumers.push(consumer);
+            }
+            while (consumers.size() > wanted) {
+                stopped.push(consumers.pop());
+            }
+        }
+        return Flux.fromIterable(stopped).flatMap(Consumer::stop).then();
+    }
+
+    private class Consumer {
+        private final String tag = String.format("%s.%s", queue, UUID.randomUUID());
+        private final AtomicReference<Channel> channel = new AtomicReference<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile boolean cancelled;
+        private Disposable subscription;
+
+        void start() {
+            var consumeOptions = new ConsumeOptions().consumerTag(tag).channelCallback(channel::set);
+            if (options.getPrefetch() > 0) {
+                consumeOptions.qos(options.getPrefetch());
+            }
+            int concurrency = options.getConcurrency() > 0 ? options.getConcurrency() : Queues.SMALL_BUFFER_SIZE;
+            subscription = receiver.consumeManualAck(queue, consumeOptions)
+                    .flatMap(this::process, concurrency)
+                    .subscribe(unused -> { }, error -> logger.error("Consumer of {} stopped", queue, error));
+        }
+
+        // A delivery which comes in after the cancel is left unacked, for the channel's close to requeue
+        private Mono<Void> process(AcknowledgableDelivery delivery) {
+            if (cancelled) {
+                return Mono.empty();
+            }
+            inFlight.incrementAndGet();
+            return Mono.defer(() -> process.apply(delivery))
+                    .onErrorResume(error -> {
+                        // a no-op for a delivery which was acked, as one parked after its last retry is
+                        logger.warn("Processing a delivery of {} failed", queue, error);
+                        delivery.nack(false);
+                        return Mono.empty();
+                    })
+                    .doFinally(signal -> inFlight.decrementAndGet());
+        }
+
+        Mono<Void> stop() {
+            cancel();
+            return Mono.defer(() -> inFlight.get() == 0 || options.getDrainTimeoutInMillis() <= 0
+                                    ? Mono.<Void>empty()
+                                    : Flux.interval(DRAIN_POLL_INTERVAL)
+                                            .filter(tick -> inFlight.get() == 0)
+                                            .next()
+                                            .timeout(Duration.ofMillis(options.getDrainTimeoutInMillis()),
+                                                    Mono.fromRunnable(() -> logger.warn(
+                                                            "Closing the consumer of {} with {} deliveries in flight",
+                                                            queue,
+                                                            inFlight.get())))
+                                            .then())
+                    .doFinally(signal -> subscription.dispose());
+        }
+
+        private void cancel() {
+            cancelled = true;
+            var consumerChannel = channel.get();
+            if (consumerChannel == null || !consumerChannel.isOpen()) {
+                return;
+            }
+            try {
+                consumerChannel.basicCancel(tag);
+            } catch (IOException | RuntimeException error) {
+                logger.warn("Could not cancel the consumer {}", tag, error);
+            }
+        }
+    }
+
+    private Mono<Integer> queueDepth() {
+        return sender.declareQueue(QueueSpecification.queue(queue).passive(true))
+                .map(declareOk -> declareOk.getMessageCount())
+                .doOnError(error -> logger.warn("Could not read the depth of {}", queue, error))
+                .onErrorResume(error -> Mono.empty());
+    }
+}
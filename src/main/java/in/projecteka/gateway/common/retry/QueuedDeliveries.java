@@ -0,0 +1,236 @@
+package in.projecteka.gateway.common.retry;
+
+import in.projecteka.gateway.clients.ServiceClient;
+import in.projecteka.gateway.common.DefaultValidatedRequestAction;
+import in.projecteka.gateway.common.DefaultValidatedResponseAction;
+import in.projecteka.gateway.common.RetryableValidatedRequestAction;
+import in.projecteka.gateway.common.RetryableValidatedResponseAction;
+import in.projecteka.gateway.common.ValidatedRequestAction;
+import in.projecteka.gateway.common.ValidatedResponseAction;
+import in.projecteka.gateway.common.cache.ServiceOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import reactor.rabbitmq.Receiver;
+import reactor.rabbitmq.Sender;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Picks how each route is delivered, from {@code gateway.delivery.routes}. A route without a queued policy keeps its
+ * default action, which gives up on a failed call. A queued route gets a retryable action on its own work queue: a
+ * failed call is published there and retried through the delay queues of {@link DelayedRetries}, consumed with the
+ * back pressure of {@link QueueConsumer}, split by target as {@link PartitionedRetries} describes. Queues are
+ * declared when the action is created. Every queued route shares one set of {@link TargetCircuits}, one receiver and
+ * one sender, and the node's {@link DeliveryPermits}, which cap the deliveries processed at a time across all of them.
+ *
+ * <p>The {@link DeliveryRole} of the node decides whether the queues are consumed here, and whether requests and
+ * responses are handed to them without a call of their own.
+ *
+ * <p>Once every route has asked for its action, a route in {@code gateway.delivery.routes} which names none of them
+ * fails the start, rather than leaving the route it was meant for undelivered by queue.
+ */
+public class QueuedDeliveries implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(QueuedDeliveries.class);
+
+    private final DeliveryOptions deliveryOptions;
+    private final Supplier<Receiver> receivers;
+    private final Supplier<Sender> senders;
+    private final ServiceOptions serviceOptions;
+    private final ConsumerOptions consumerOptions;
+    private final RetryPublisher retryPublisher;
+    private final TargetCircuits circuits;
+    private final DeliveryRole role;
+    private final DeliveryPermits permits;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Runnable> queues = new ConcurrentHashMap<>();
+    private final Map<String, String> routes = new ConcurrentHashMap<>();
+    private final Map<String, Integer> partitions = new ConcurrentHashMap<>();
+    private final Set<String> knownRoutes = ConcurrentHashMap.newKeySet();
+    private Receiver receiver;
+    private Sender sender;
+
+    public QueuedDeliveries(DeliveryOptions deliveryOptions,
+                            Supplier<Receiver> receivers,
+                            Supplier<Sender> senders,
+                            ServiceOptions serviceOptions,
+                            ConsumerOptions consumerOptions,
+                            RetryPublisher retryPublisher,
+                            MeterRegistry meterRegistry) {
+        this.deliveryOptions = deliveryOptions;
+        this.receivers = receivers;
+        this.senders = senders;
+        this.serviceOptions = serviceOptions;
+        this.consumerOptions = consumerOptions;
+        this.retryPublisher = retryPublisher;
+        this.circuits = deliveryOptions.getCircuitFailureThreshold() > 0
+                        ? new TargetCircuits(deliveryOptions.getCircuitFailureThreshold(),
+                                deliveryOptions.getCircuitOpenInMillis(),
+                                deliveryOptions.getCircuitMaxHolds(),
+                                meterRegistry)
+                        : TargetCircuits.disabled();
+        this.role = deliveryOptions.roleOrDefault();
+        this.permits = new DeliveryPermits(consumerOptions.getNodeConcurrency());
+        this.meterRegistry = meterRegistry;
+        logger.info("Delivering as {}", role);
+    }
+
+    public <T extends ServiceClient> ValidatedRequestAction requestAction(String route,
+                                                                          DefaultValidatedRequestAction<T> action,
+                                                                          String targetIdHeader) {
+        knownRoutes.add(route);
+        return deliveryOptions.policyFor(route)
+                .<ValidatedRequestAction>map(policy -> {
+                    var queue = reserve(route, policy);
+                    var retryable = new RetryableValidatedRequestAction<>(receiver(),
+                            sender(),
+                            action,
+                            serviceOptionsOf(policy),
+                            queue,
+                            targetIdHeader,
+                            consumerOptions,
+                            retryPublisher,
+                            partitionsOf(policy),
+                            circuits,
+                            meterRegistry,
+                            role.handsOff());
+                    queues.put(queue, retryable::stop);
+                    if (role.delivers()) {
+                        retryable.subscribe(permits);
+                    } else {
+                        retryable.declare();
+                    }
+                    return retryable;
+                })
+                .orElse(action);
+    }
+
+    public <T extends ServiceClient> ValidatedResponseAction responseAction(String route,
+                                                                            DefaultValidatedResponseAction<T> action,
+                                                                            String targetIdHeader) {
+        knownRoutes.add(route);
+        return deliveryOptions.policyFor(route)
+                .<ValidatedResponseAction>map(policy -> {
+                    var queue = reserve(route, policy);
+                    var retryable = new RetryableValidatedResponseAction<>(receiver(),
+                            sender(),
+                            action,
+                            serviceOptionsOf(policy),
+                            queue,
+                            targetIdHeader,
+                            consumerOptions,
+                            retryPublisher,
+                            partitionsOf(policy),
+                            circuits,
+                            meterRegistry,
+                            role.handsOff());
+                    queues.put(queue, retryable::stop);
+                    if (role.delivers()) {
+                        retryable.subscribe(permits);
+                    } else {
+                        retryable.declare();
+                    }
+                    return retryable;
+                })
+                .orElse(action);
+    }
+
+    /** The work queue of a queued route, given either its route name or its queue. */
+    public Optional<String> workQueueOf(String routeOrQueue) {
+        if (routeOrQueue == null) {
+            return Optional.empty();
+        }
+        return queues.containsKey(routeOrQueue)
+               ? Optional.of(routeOrQueue)
+               : Optional.ofNullable(routes.get(routeOrQueue));
+    }
+
+    /** The queue of the work queue's partition a retry to the target goes to. */
+    public String retryQueueOf(String workQueue, String targetId) {
+        return PartitionedRetries.queueOf(workQueue, partitions.getOrDefault(workQueue, 1), targetId);
+    }
+
+    public int queuedRoutes() {
+        return queues.size();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        var unknownRoutes = deliveryOptions.unknownRoutes(knownRoutes);
+        if (!unknownRoutes.isEmpty()) {
+            throw new IllegalStateException(String.format("gateway.delivery.routes names unknown routes %s",
+                    unknownRoutes));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        queues.values().forEach(Runnable::run);
+        queues.clear();
+        synchronized (this) {
+            if (receiver != null) {
+                receiver.close();
+                receiver = null;
+            }
+            if (sender != null) {
+                sender.close();
+                sender = null;
+            }
+        }
+    }
+
+    // One receiver and one sender, each on its own connection, for the queues of every route
+    private synchronized Receiver receiver() {
+        if (receiver == null) {
+            receiver = receivers.get();
+        }
+        return receiver;
+    }
+
+    private synchronized Sender sender() {
+        if (sender == null) {
+            sender = senders.get();
+        }
+        return sender;
+    }
+
+    static String queueOf(String route, DeliveryPolicy policy) {
+        return policy.getQueue() == null || policy.getQueue().isBlank() ? "gw." + route : policy.getQueue();
+    }
+
+    int partitionsOf(DeliveryPolicy policy) {
+        return policy.getPartitions() == null ? deliveryOptions.getPartitions() : policy.getPartitions();
+    }
+
+    ServiceOptions serviceOptionsOf(DeliveryPolicy policy) {
+        return ServiceOptions.builder()
+                .timeout(serviceOptions.getTimeout())
+                .registryPath(serviceOptions.getRegistryPath())
+                .responseMaxRetryAttempts(policy.getMaxRetries() == null
+                                          ? serviceOptions.getResponseMaxRetryAttempts()
+                                          : policy.getMaxRetries())
+                .retryAttemptsDelay(policy.getRetryDelayInMillis() == null
+                                    ? serviceOptions.getRetryAttemptsDelay()
+                                    : policy.getRetryDelayInMillis())
+                .retryJitter(policy.getRetryJitter() == null ? serviceOptions.getRetryJitter() : policy.getRetryJitter())
+                .build();
+    }
+
+    // Every message on a work queue is routed through the client of the route which consumes it
+    private String reserve(String route, DeliveryPolicy policy) {
+        var queue = queueOf(route, policy);
+        if (queues.putIfAbsent(queue, () -> { }) != null) {
+            throw new IllegalStateException(String.format("Queue %s of route %s is used by another route", queue, route));
+        }
+        routes.put(route, queue);
+        partitions.put(queue, partitionsOf(policy));
+        logger.info("Route {} is delivered through queue {}", route, queue);
+        return queue;
+    }
+}
@@ -0,0 +1,74 @@
+package in.projecteka.gateway.common.retry;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.LongString;
+import com.rabbitmq.client.MessageProperties;
+import in.projecteka.gateway.common.Serializer;
+import in.projecteka.gateway.common.TraceableMessage;
+import lombok.Value;
+import org.springframework.util.StringUtils;
+import reactor.rabbitmq.AcknowledgableDelivery;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * What a retry message carries. The body is the request or response to forward, serialized once when it is queued
+ * and sent on as is, so a retry does not go through Jackson at all. The correlation id travels as the AMQP correlation
+ * id and the routing ids as headers, next to {@link DelayedRetries#X_RETRY_ATTEMPT}. {@link #X_RETRY_ROUTING_KEY} names
+ * the header holding the target id, as some routes reach either a HIP or a HIU.
+ *
+ * <p>Messages queued before this format wrap the body in a {@link TraceableMessage}; they have no {@link
+ * #X_RETRY_ENVELOPE} header and are still opened, at the cost of reading and writing the body once more.
+ */
+@Value
+public class RetryEnvelope {
+    public static final String X_RETRY_ENVELOPE = "x-retry-envelope";
+    public static final String X_RETRY_ROUTING_KEY = "x-retry-routing-key";
+    /** Every queued message is written to disk by the broker, so a broker restart loses none of them. */
+    public static final Integer PERSISTENT = MessageProperties.PERSISTENT_BASIC.getDeliveryMode();
+    private static final String BODY = "body";
+    private static final String CONTENT_TYPE = "application/json";
+
+    String correlationId;
+    String body;
+
+    public static AMQP.BasicProperties properties(Map<String, Object> headers, String correlationId) {
+        var envelopeHeaders = new HashMap<>(headers);
+        envelopeHeaders.put(X_RETRY_ENVELOPE, BODY);
+        return new AMQP.BasicProperties.Builder()
+                .headers(envelopeHeaders)
+                .correlationId(correlationId)
+                .contentType(CONTENT_TYPE)
+                .deliveryMode(PERSISTENT)
+                .build();
+    }
+
+    public static RetryEnvelope open(AcknowledgableDelivery delivery) {
+        var properties = delivery.getProperties();
+        var headers = properties.getHeaders();
+        var format = headers == null ? null : headers.get(X_RETRY_ENVELOPE);
+        if (format != null && BODY.equals(format.toString())) {
+            return new RetryEnvelope(orNext(properties.getCorrelationId()), new String(delivery.getBody(), UTF_8));
+        }
+        var traceableMessage = Serializer.to(delivery.getBody(), TraceableMessage.class);
+        var body = Serializer.from(traceableMessage.getMessage())
+                .orElseThrow(() -> new IllegalArgumentException("Retry message without a body"));
+        return new RetryEnvelope(traceableMessage.getCorrelationId(), body);
+    }
+
+    public static String routingKeyOf(AcknowledgableDelivery delivery, String defaultRoutingKey) {
+        var headers = delivery.getProperties().getHeaders();
+        var routingKey = headers == null ? null : headers.get(X_RETRY_ROUTING_KEY);
+        return routingKey instanceof LongString || routingKey instanceof String
+               ? routingKey.toString()
+               : defaultRoutingKey;
+    }
+
+    private static String orNext(String correlationId) {
+        return StringUtils.isEmpty(correlationId) ? UUID.randomUUID().toString() : correlationId;
+    }
+}
@@ -0,0 +1,247 @@
+package in.projecteka.gateway.common.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.Sender;
+import reactor.util.concurrent.Queues;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Publishes retry messages with publisher confirms. Messages published within {@code batchWindowInMillis} of each
+ * other, up to {@code batchSize}, go out in one {@code sendWithPublishConfirms} on a channel of the sender's pool,
+ * with at most {@code batchesInFlight} batches awaiting their confirms.
+ *
+ * <p>A message the broker did not confirm is held in a bounded local fallback and published again every {@code
+ * redriveIntervalInMillis}; once the fallback is full, further messages are dropped and counted. Exports the size of
+ * every batch ({@code gateway.retry.publish.batch.size}), the latency of every confirm ({@code
+ * gateway.retry.publish.confirm}, by outcome) and the fallback's size and drops.
+ *
+ * <p>Given a {@link DeliveryJournal}, the fallback is the journal instead: held messages survive a restart, and a
+ * redrive acknowledges them in the journal only as far as the broker confirmed them, in order.
+ */
+public class RetryPublisher {
+    private static final Logger logger = LoggerFactory.getLogger(RetryPublisher.class);
+
+    private final Sender sender;
+    private final int fallbackCapacity;
+    private final int redriveBatch;
+    private final DeliveryJournal journal;
+    private final FluxSink<Pending> pending;
+    private final Queue<OutboundMessage> fallback = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger fallbackSize = new AtomicInteger();
+    private final DistributionSummary batchSize;
+    private final Timer confirmed;
+    private final Timer notConfirmed;
+    private final Counter dropped;
+    private final Disposable batches;
+    private final Disposable redrives;
+
+    private static class Pending {
+        private final OutboundMessage message;
+        private final MonoProcessor<Boolean> result = MonoProcessor.create();
+
+        Pending(OutboundMessage message) {
+            this.message = message;
+        }
+    }
+
+    public RetryPublisher(Sender sender, RetryPublisherOptions options, MeterRegistry meterRegistry) {
+        this(sender, options, null, meterRegistry);
+    }
+
+    public RetryPublisher(Sender sender,
+                          RetryPublisherOptions options,
+                          DeliveryJournal journal,
+                          MeterRegistry meterRegistry) {
+        this.sender = sender;
+        this.fallbackCapacity = options.getFallbackCapacity();
+        this.redriveBatch = Math.max(options.getBatchSize(), 1) * Math.max(options.getBatchesInFlight(), 1);
+        this.journal = journal;
+        this.batchSize = DistributionSummary.builder("gateway.retry.publish.batch.size")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.confirmed = confirmTimer(meterRegistry, "ack");
+        this.notConfirmed = confirmTimer(meterRegistry, "nack");
+        this.dropped = meterRegistry.counter("gateway.retry.fallback.dropped");
+        Gauge.builder("gateway.retry.fallback.size", this, RetryPublisher::held).register(meterRegistry);
+
+        UnicastProcessor<Pending> processor = UnicastProcessor.create(Queues.<Pending>unboundedMultiproducer().get());
+        this.pending = processor.sink();
+        this.batches = processor
+                .bufferTimeout(Math.max(options.getBatchSize(), 1),
+                        Duration.ofMillis(Math.max(options.getBatchWindowInMillis(), 1)))
+                .flatMap(this::publishBatch, Math.max(options.getBatchesInFlight(), 1))
+                .subscribe();
+        this.redrives = options.getRedriveIntervalInMillis() > 0
+                        ? Flux.interval(Duration.ofMillis(options.getRedriveIntervalInMillis()))
+                                .concatMap(tick -> Mono.defer(this::redrive)
+                                        .doOnError(error -> logger.error("Redriving held retry messages failed", error))
+                                        .onErrorResume(error -> Mono.empty()))
+                                .subscribe()
+                        : null;
+    }
+
+    /** Emits whether the broker confirmed the message. */
+    public Mono<Boolean> publish(OutboundMessage message) {
+        return Mono.defer(() -> {
+            var publication = new Pending(message);
+            pending.next(publication);
+            return publication.result;
+        });
+    }
+
+    /**
+     * Emits {@link PublishOutcome#CONFIRMED} once the broker confirmed the message; otherwise it is handed to the
+     * local fallback, and the outcome tells whether it is held there or was dropped.
+     */
+    public Mono<PublishOutcome> publishOrHold(OutboundMessage message) {
+        return publish(message).map(isConfirmed -> {
+            if (isConfirmed) {
+                return PublishOutcome.CONFIRMED;
+            }
+            return hold(message) ? PublishOutcome.HELD : PublishOutcome.DROPPED;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (redrives != null) {
+            redrives.dispose();
+        }
+        batches.dispose();
+        sender.close();
+        if (journal != null) {
+            closeJournal();
+            return;
+        }
+        if (fallbackSize.get() > 0) {
+            logger.error("Stopping with {} retry messages which the broker never confirmed", fallbackSize.get());
+        }
+    }
+
+    long held() {
+        return journal == null ? fallbackSize.get() : journal.pending();
+    }
+
+    Mono<Void> redrive() {
+        if (journal != null) {
+            return replay();
+        }
+        List<OutboundMessage> messages = new ArrayList<>();
+        for (int i = fallbackSize.get(); i > 0; i--) {
+            var message = fallback.poll();
+            if (message == null) {
+                break;
+            }
+            fallbackSize.decrementAndGet();
+            messages.add(message);
+        }
+        return Flux.fromIterable(messages).flatMap(this::publishOrHold).then();
+    }
+
+    // Publishes the journal from its checkpoint, which moves past the leading run of confirmed messages
+    private Mono<Void> replay() {
+        var entries = journal.read(redriveBatch);
+        if (entries.isEmpty()) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(entries)
+                .flatMapSequential(entry -> publish(entry.getMessage()))
+                .collectList()
+                .flatMap(results -> {
+                    int confirmedRun = results.indexOf(false) < 0 ? results.size() : results.indexOf(false);
+                    if (confirmedRun > 0) {
+                        journal.acknowledge(entries.get(confirmedRun - 1), confirmedRun);
+                    }
+                    return confirmedRun == entries.size() ? replay() : Mono.empty();
+                });
+    }
+
+    private void closeJournal() {
+        if (journal.pending() > 0) {
+            logger.warn("Stopping with {} retry messages in the journal; they are published after the next start",
+                    journal.pending());
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.error("Could not close the retry journal", e);
+        }
+    }
+
+    // Whether the message is held; false if it was dropped
+    private boolean hold(OutboundMessage message) {
+        if (journal != null) {
+            if (!journal.append(message)) {
+                dropped.increment();
+                return false;
+            }
+            return true;
+        }
+        if (fallbackSize.incrementAndGet() > fallbackCapacity) {
+            fallbackSize.decrementAndGet();
+            dropped.increment();
+            logger.error("Dropping a retry for {}; the broker did not confirm it and the fallback is full",
+                    message.getRoutingKey());
+            return false;
+        }
+        fallback.add(message);
+        return true;
+    }
+
+    private Mono<Void> publishBatch(List<Pending> batch) {
+        batchSize.record(batch.size());
+        var byMessage = new IdentityHashMap<OutboundMessage, Pending>();
+        batch.forEach(publication -> byMessage.put(publication.message, publication));
+        long start = System.nanoTime();
+        return sender.sendWithPublishConfirms(Flux.fromIterable(batch).map(publication -> publication.message))
+                .doOnNext(result -> {
+                    var publication = byMessage.remove(result.getOutboundMessage());
+                    if (publication != null) {
+                        complete(publication, result.isAck(), start);
+                    }
+                })
+                .doOnError(error -> logger.error("Publishing a batch of {} retries failed", batch.size(), error))
+                .onErrorResume(error -> Mono.empty())
+                .doFinally(signal -> {
+                    byMessage.values().forEach(publication -> complete(publication, false, start));
+                    byMessage.clear();
+                })
+                .then();
+    }
+
+    private void complete(Pending publication, boolean isConfirmed, long start) {
+        (isConfirmed ? confirmed : notConfirmed).record(System.nanoTime() - start, NANOSECONDS);
+        publication.result.onNext(isConfirmed);
+    }
+
+    private static Timer confirmTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("gateway.retry.publish.confirm")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
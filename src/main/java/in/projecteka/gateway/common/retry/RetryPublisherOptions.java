@@ -0,0 +1,18 @@
+package in.projecteka.gateway.common.retry;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+@ConfigurationProperties(prefix = "gateway.retry-publisher")
+@Getter
+@AllArgsConstructor
+@ConstructorBinding
+public class RetryPublisherOptions {
+    private final int batchSize;
+    private final int batchWindowInMillis;
+    private final int batchesInFlight;
+    private final int fallbackCapacity;
+    private final int redriveIntervalInMillis;
+}
@@ -0,0 +1,103 @@
+package in.projecteka.gateway.common.retry;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A circuit per bridge or consent manager, fed by the queued retries to it. {@code failureThreshold} failures in a
+ * row open the circuit of a target for {@code openForMillis}; while it is open, its deliveries are held back instead
+ * of being tried. Once that has passed, one delivery is let through: its success closes the circuit, its failure
+ * keeps it open for another {@code openForMillis}. A threshold of 0 never opens a circuit, and holds nothing back.
+ * A delivery held back {@code maxHolds} times is parked rather than held again, so one to a target which stays down
+ * does not cycle through the hold queue forever; 0 holds it for as long as the circuit stays open.
+ */
+public class TargetCircuits {
+    private static final Logger logger = LoggerFactory.getLogger(TargetCircuits.class);
+
+    private final int failureThreshold;
+    private final long openForMillis;
+    private final int maxHolds;
+    private final Clock clock;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    private static class Circuit {
+        private int failures;
+        private volatile long openUntil;
+    }
+
+    public TargetCircuits(int failureThreshold, long openForMillis, int maxHolds, MeterRegistry meterRegistry) {
+        this(failureThreshold, openForMillis, maxHolds, Clock.systemUTC());
+        if (failureThreshold > 0) {
+            Gauge.builder("gateway.retry.circuits.open", this, TargetCircuits::open).register(meterRegistry);
+        }
+    }
+
+    TargetCircuits(int failureThreshold, long openForMillis, int maxHolds, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openForMillis = failureThreshold > 0 ? Math.max(openForMillis, 1) : 0;
+        this.maxHolds = maxHolds;
+        this.clock = clock;
+    }
+
+    public static TargetCircuits disabled() {
+        return new TargetCircuits(0, 0, 0, Clock.systemUTC());
+    }
+
+    public long getOpenForMillis() {
+        return openForMillis;
+    }
+
+    public int getMaxHolds() {
+        return maxHolds;
+    }
+
+    /** Whether a delivery to the target should be tried now; past an open period, this lets one through. */
+    public boolean allows(String targetId) {
+        var circuit = circuits.get(targetId);
+        if (circuit == null) {
+            return true;
+        }
+        synchronized (circuit) {
+            if (circuit.openUntil == 0) {
+                return true;
+            }
+            long now = clock.millis();
+            if (now < circuit.openUntil) {
+                return false;
+            }
+            circuit.openUntil = now + openForMillis;
+            return true;
+        }
+    }
+
+    public void succeeded(String targetId) {
+        var circuit = circuits.remove(targetId);
+        if (circuit != null && circuit.openUntil != 0) {
+            logger.info("Closing the circuit of {}", targetId);
+        }
+    }
+
+    public void failed(String targetId) {
+        if (failureThreshold <= 0) {
+            return;
+        }
+        var circuit = circuits.computeIfAbsent(targetId, key -> new Circuit());
+        synchronized (circuit) {
+            circuit.failures++;
+            if (circuit.failures >= failureThreshold && circuit.openUntil == 0) {
+                logger.warn("Opening the circuit of {} after {} failures in a row", targetId, circuit.failures);
+                circuit.openUntil = clock.millis() + openForMillis;
+            }
+        }
+    }
+
+    long open() {
+        return circuits.values().stream().filter(circuit -> circuit.openUntil != 0).count();
+    }
+}
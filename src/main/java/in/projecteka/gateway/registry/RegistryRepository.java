@@ -5,6 +5,7 @@ import in.projecteka.gateway.common.DbOperationError;
 import in.projecteka.gateway.registry.model.Bridge;
 import in.projecteka.gateway.registry.model.BridgeRegistryRequest;
 import in.projecteka.gateway.registry.model.BridgeService;
+import in.projecteka.gateway.registry.model.BridgeServiceEntry;
 import in.projecteka.gateway.registry.model.CMEntry;
 import in.projecteka.gateway.registry.model.CMServiceRequest;
 import in.projecteka.gateway.registry.model.EndpointDetails;
@@ -14,10 +15,14 @@ import in.projecteka.gateway.registry.model.HFRBridgeResponse;
 import in.projecteka.gateway.registry.model.ServiceDetailsResponse;
 import in.projecteka.gateway.registry.model.ServiceProfile;
 import in.projecteka.gateway.registry.model.ServiceRole;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.json.JsonObject;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Transaction;
 import io.vertx.sqlclient.Tuple;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
@@ -26,6 +31,9 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -58,16 +66,16 @@ public class RegistryRepository {
     private static final String UPDATE_BRIDGE_ENTRY = "UPDATE bridge SET name = $1, url = $2, active = $3, " +
             "blocklisted = $4, date_modified = timezone('utc'::text, now()) WHERE bridge.bridge_id = $5";
 
-    private static final String SELECT_BRIDGE_SERVICE = "SELECT service_id FROM bridge_service " +
-            "WHERE bridge_id = $1 AND service_id = $2";
+    private static final String SELECT_SERVICES_OF_OTHER_BRIDGES = "SELECT service_id, is_hip, is_hiu, " +
+            "is_health_locker FROM bridge_service WHERE service_id = ANY($1) AND bridge_id != $2";
     private static final String SELECT_BRIDGE_SERVICES = "SELECT service_id, is_hip, is_hiu, is_health_locker FROM bridge_service " +
             "WHERE bridge_id = $1 AND active = $2";
     private static final String SELECT_BRIDGE_SERVICES_BY_SERVICE_ID = "SELECT service_id, name, is_hip, is_hiu," +
             " is_health_locker, active, endpoints FROM bridge_service WHERE service_id = $1 AND active = $2";
     private static final String SELECT_BRIDGE_PROFILE = "SELECT name, url, bridge_id, active, blocklisted, " +
             "date_created, date_modified FROM bridge WHERE bridge_id = $1";
-    private static final String SELECT_ENDPOINTS_OF_SERVICE = "SELECT endpoints FROM bridge_service " +
-            "WHERE bridge_id = $1 AND service_id = $2";
+    private static final String SELECT_ENDPOINTS_OF_SERVICES = "SELECT service_id, endpoints FROM bridge_service " +
+            "WHERE bridge_id = $1 AND service_id = ANY($2)";
 
     private static final String SELECT_FACILITIES_BY_NAME = "SELECT service_id, name, is_hip, is_hiu, is_health_locker " +
             "FROM bridge_service WHERE UPPER(name) LIKE $1 AND is_hip = true";
@@ -181,20 +189,39 @@ public class RegistryRepository {
                         }));
     }
 
-    private String prepareSelectActiveBridgeServiceQuery(String typeColumnName) {
-        return "SELECT service_id FROM bridge_service WHERE service_id = $1 AND " + typeColumnName + " = $2 AND bridge_id != $3";
-    }
-
-    public Mono<Boolean> ifPresent(String serviceId, ServiceType type, boolean active, String bridgeId) {
-        return select(prepareSelectActiveBridgeServiceQuery(getColumnName(type)),
-                Tuple.of(serviceId, active, bridgeId),
-                "Failed to fetch active bridge service");
+    /** The types each of the services is registered for by bridges other than the given one. */
+    public Flux<BridgeService> fetchServicesOfOtherBridges(List<String> serviceIds, String bridgeId) {
+        return Flux.create(fluxSink -> this.readOnlyClient.preparedQuery(SELECT_SERVICES_OF_OTHER_BRIDGES)
+                .execute(Tuple.of(serviceIds.toArray(String[]::new), bridgeId),
+                        handler -> {
+                            if (handler.failed()) {
+                                logger.error(handler.cause().getMessage(), handler.cause());
+                                fluxSink.error(new DbOperationError("Failed to fetch active bridge services"));
+                                return;
+                            }
+                            handler.result().forEach(row -> bridgeServicesOf(row).forEach(fluxSink::next));
+                            fluxSink.complete();
+                        }));
     }
 
-    public Mono<Boolean> ifBridgeServicePresent(String bridgeId, String serviceId) {
-        return select(SELECT_BRIDGE_SERVICE,
-                Tuple.of(bridgeId, serviceId),
-                "Failed to fetch bridge service");
+    /** The endpoints of those of the services the bridge already has, by service id. */
+    public Mono<Map<String, Endpoints>> fetchExistingEndpoints(String bridgeId, List<String> serviceIds) {
+        return Mono.create(monoSink -> this.readOnlyClient.preparedQuery(SELECT_ENDPOINTS_OF_SERVICES)
+                .execute(Tuple.of(bridgeId, serviceIds.toArray(String[]::new)),
+                        handler -> {
+                            if (handler.failed()) {
+                                logger.error(handler.cause().getMessage(), handler.cause());
+                                monoSink.error(new DbOperationError("Failed to fetch endpoints from bridge service"));
+                                return;
+                            }
+                            var existingEndpoints = new HashMap<String, Endpoints>();
+                            handler.result().forEach(row -> {
+                                var endpointJson = row.getValue("endpoints");
+                                existingEndpoints.put(row.getString("service_id"),
+                                        endpointJson != null ? to(endpointJson) : new Endpoints());
+                            });
+                            monoSink.success(existingEndpoints);
+                        }));
     }
 
     private String prepareInsertBridgeServiceQuery(Map<ServiceType, Boolean> typeActive) {
@@ -209,19 +236,6 @@ public class RegistryRepository {
         return "INSERT INTO bridge_service (bridge_id, service_id, name, active, endpoints" + typeColumnNames + ") VALUES ($1, $2, $3, $4, $5" + typeValues + ")";
     }
 
-    public Mono<Void> insertBridgeServiceEntry(String bridgeId, String serviceId, String serviceName, Endpoints endpoints, Map<ServiceType, Boolean> typeActive) {
-        return Mono.create(monoSink -> readWriteClient.preparedQuery(prepareInsertBridgeServiceQuery(typeActive))
-                .execute(Tuple.of(bridgeId, serviceId, serviceName, true, new JsonObject(from(endpoints).get())),
-                        handler -> {
-                            if (handler.failed()) {
-                                logger.error(handler.cause().getMessage(), handler.cause());
-                                monoSink.error(new DbOperationError("Failed to insert bridge service entry"));
-                                return;
-                            }
-                            monoSink.success();
-                        }));
-    }
-
     private String prepareUpdateBridgeServiceQuery(Map<ServiceType, Boolean> typeActive) {
         StringBuilder setTypeColumnValues = new StringBuilder();
         for(Entry<ServiceType, Boolean> entry : typeActive.entrySet()) {
@@ -235,35 +249,66 @@ public class RegistryRepository {
                 "AND bridge.active = $3 AND bridge_service.service_id = $4 AND bridge_service.active = $5";
     }
 
-    public Mono<Void> updateBridgeServiceEntry(String bridgeId, String serviceId, String serviceName, Endpoints endpoints, Map<ServiceType, Boolean> typeActive) {
-        return Mono.create(monoSink -> readWriteClient.preparedQuery(prepareUpdateBridgeServiceQuery(typeActive))
-                .execute(Tuple.of(bridgeId, serviceName, true, serviceId, true, new JsonObject(from(endpoints).get())),
-                        handler -> {
-                            if (handler.failed()) {
-                                logger.error(handler.cause().getMessage(), handler.cause());
-                                monoSink.error(new DbOperationError("Failed to update bridge service entry"));
-                                return;
-                            }
-                            monoSink.success();
-                        }));
+    /**
+     * Inserts the new services of a bridge and updates the existing ones in one transaction. Entries which end up
+     * with the same statement, the same types set the same way, are sent as one batch.
+     */
+    public Mono<Void> saveBridgeServiceEntries(String bridgeId, List<BridgeServiceEntry> entries) {
+        if (entries.isEmpty()) {
+            return Mono.empty();
+        }
+        var batches = new LinkedHashMap<String, List<Tuple>>();
+        entries.forEach(entry -> {
+            var endpoints = new JsonObject(from(entry.getEndpoints()).get());
+            if (entry.isExisting()) {
+                batches.computeIfAbsent(prepareUpdateBridgeServiceQuery(entry.getTypeActive()), query -> new ArrayList<>())
+                        .add(Tuple.of(bridgeId, entry.getName(), true, entry.getId(), true, endpoints));
+                return;
+            }
+            batches.computeIfAbsent(prepareInsertBridgeServiceQuery(entry.getTypeActive()), query -> new ArrayList<>())
+                    .add(Tuple.of(bridgeId, entry.getId(), entry.getName(), true, endpoints));
+        });
+        return Mono.create(monoSink -> readWriteClient.begin(begun -> {
+            if (begun.failed()) {
+                logger.error(begun.cause().getMessage(), begun.cause());
+                monoSink.error(new DbOperationError("Failed to save bridge service entries"));
+                return;
+            }
+            var transaction = begun.result();
+            executeBatches(transaction, batches.entrySet().iterator(), executed -> {
+                if (executed.failed()) {
+                    logger.error(executed.cause().getMessage(), executed.cause());
+                    transaction.rollback();
+                    monoSink.error(new DbOperationError("Failed to save bridge service entries"));
+                    return;
+                }
+                transaction.commit(committed -> {
+                    if (committed.failed()) {
+                        logger.error(committed.cause().getMessage(), committed.cause());
+                        monoSink.error(new DbOperationError("Failed to save bridge service entries"));
+                        return;
+                    }
+                    monoSink.success();
+                });
+            });
+        }));
     }
 
-    private Mono<Boolean> select(String query, Tuple params, String errorMessage) {
-        return Mono.create(monoSink -> this.readOnlyClient.preparedQuery(query)
-                .execute(params,
-                        handler -> {
-                            if (handler.failed()) {
-                                logger.error(handler.cause().getMessage(), handler.cause());
-                                monoSink.error(new DbOperationError(errorMessage));
-                                return;
-                            }
-                            var iterator = handler.result().iterator();
-                            if (!iterator.hasNext()) {
-                                monoSink.success(false);
-                                return;
-                            }
-                            monoSink.success(true);
-                        }));
+    private void executeBatches(Transaction transaction,
+                                Iterator<Entry<String, List<Tuple>>> batches,
+                                Handler<AsyncResult<Void>> done) {
+        if (!batches.hasNext()) {
+            done.handle(Future.succeededFuture());
+            return;
+        }
+        var batch = batches.next();
+        transaction.preparedQuery(batch.getKey()).executeBatch(batch.getValue(), executed -> {
+            if (executed.failed()) {
+                done.handle(Future.failedFuture(executed.cause()));
+                return;
+            }
+            executeBatches(transaction, batches, done);
+        });
     }
 
     public Flux<BridgeService> fetchBridgeServicesIfPresent(String bridgeId) {
@@ -275,39 +320,26 @@ public class RegistryRepository {
                                 fluxSink.error(new DbOperationError("Failed to fetch bridge services"));
                                 return;
                             }
-                            RowSet<Row> results = handler.result();
-                            if (results.iterator().hasNext()) {
-                                results.forEach(row -> {
-                                    var isHIU = Boolean.TRUE.equals(row.getBoolean("is_hiu"));
-                                    var isHIP = Boolean.TRUE.equals(row.getBoolean("is_hip"));
-                                    var isLocker = Boolean.TRUE.equals(row.getBoolean("is_health_locker"));
-
-                                    if(isHIU){
-                                        fluxSink.next(BridgeService.builder()
-                                                .id(row.getString("service_id"))
-                                                .type(HIU)
-                                                .build());
-                                    }
-
-                                    if(isHIP) {
-                                        fluxSink.next(BridgeService.builder()
-                                                .id(row.getString("service_id"))
-                                                .type(HIP)
-                                                .build());
-                                    }
-
-                                    if(isLocker) {
-                                        fluxSink.next(BridgeService.builder()
-                                                .id(row.getString("service_id"))
-                                                .type(HEALTH_LOCKER)
-                                                .build());
-                                    }
-                                });
-                            }
+                            handler.result().forEach(row -> bridgeServicesOf(row).forEach(fluxSink::next));
                             fluxSink.complete();
                         }));
     }
 
+    private static List<BridgeService> bridgeServicesOf(Row row) {
+        var bridgeServices = new ArrayList<BridgeService>();
+        var serviceId = row.getString("service_id");
+        if (Boolean.TRUE.equals(row.getBoolean("is_hiu"))) {
+            bridgeServices.add(BridgeService.builder().id(serviceId).type(HIU).build());
+        }
+        if (Boolean.TRUE.equals(row.getBoolean("is_hip"))) {
+            bridgeServices.add(BridgeService.builder().id(serviceId).type(HIP).build());
+        }
+        if (Boolean.TRUE.equals(row.getBoolean("is_health_locker"))) {
+            bridgeServices.add(BridgeService.builder().id(serviceId).type(HEALTH_LOCKER).build());
+        }
+        return bridgeServices;
+    }
+
     public Mono<ServiceProfile> fetchServiceEntries(String serviceId) {
         return Mono.create(monoSink -> this.readOnlyClient.preparedQuery(SELECT_BRIDGE_SERVICES_BY_SERVICE_ID)
                 .execute(Tuple.of(serviceId, true),
@@ -436,27 +468,6 @@ public class RegistryRepository {
                         }));
     }
 
-    public Mono<Endpoints> fetchExistingEndpoints(String bridgeId, String serviceId) {
-        return Mono.create(monoSink -> this.readOnlyClient.preparedQuery(SELECT_ENDPOINTS_OF_SERVICE)
-                .execute(Tuple.of(bridgeId, serviceId),
-                        handler -> {
-                            if (handler.failed()) {
-                                logger.error(handler.cause().getMessage(), handler.cause());
-                                monoSink.error(new DbOperationError("Failed to fetch endpoints from bridge service"));
-                                return;
-                            }
-                            var iterator = handler.result().iterator();
-                            if (!iterator.hasNext()) {
-                                monoSink.success();
-                                return;
-                            }
-                            var row = iterator.next();
-                            var endpointJson = row.getValue("endpoints");
-                            var endpoints = endpointJson != null ? to(endpointJson) : new Endpoints();
-                            monoSink.success(endpoints);
-                        }));
-    }
-
     public Flux<FacilityRepresentation> searchFacilityByName(String serviceName) {
         var searchQuery = "%" + serviceName.toUpperCase() + "%";
         return Flux.create(fluxSink -> this.readOnlyClient.preparedQuery(SELECT_FACILITIES_BY_NAME)
@@ -9,6 +9,8 @@ import in.projecteka.gateway.clients.model.RealmRole;
 import in.projecteka.gateway.common.cache.CacheAdapter;
 import in.projecteka.gateway.registry.model.Bridge;
 import in.projecteka.gateway.registry.model.BridgeRegistryRequest;
+import in.projecteka.gateway.registry.model.BridgeService;
+import in.projecteka.gateway.registry.model.BridgeServiceEntry;
 import in.projecteka.gateway.registry.model.BridgeServiceRequest;
 import in.projecteka.gateway.registry.model.CMEntry;
 import in.projecteka.gateway.registry.model.CMServiceRequest;
@@ -27,8 +29,12 @@ import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static in.projecteka.gateway.clients.ClientError.invalidBridgeRegistryRequest;
 import static in.projecteka.gateway.clients.ClientError.invalidBridgeServiceRequest;
@@ -38,6 +44,10 @@ import static in.projecteka.gateway.clients.ClientError.invalidRequest;
 import static in.projecteka.gateway.registry.ServiceType.HEALTH_LOCKER;
 import static in.projecteka.gateway.registry.ServiceType.HIP;
 import static in.projecteka.gateway.registry.ServiceType.HIU;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static reactor.core.publisher.Mono.error;
 import static reactor.core.publisher.Mono.just;
 
@@ -161,41 +171,41 @@ public class RegistryService {
                                 .build()));
     }
 
+    /**
+     * Registers the services of a bridge with one read of what other bridges hold, one read of what the bridge
+     * already has and one transaction for the inserts and updates, however many services there are. The bridge gets
+     * the role of each type it has an active service of once.
+     */
     public Mono<Void> populateBridgeServicesEntries(String bridgeId, List<BridgeServiceRequest> bridgeServicesRequest) {
-        return Flux.fromIterable(bridgeServicesRequest)
-                .groupBy(BridgeServiceRequest::getId)
-                .flatMap(serviceIdFlux -> serviceIdFlux
-                        .collectList()
-                        .flatMap(services -> {
-                            Endpoints endpoints = new Endpoints();
-                            return Flux.fromIterable(services)
-                                    .flatMap(request -> {
-                                        if (!CollectionUtils.isEmpty(request.getEndpoints())) {
-                                            if (isInvalid(request.getEndpoints())) {
-                                                return error(invalidRequest("Invalid endpoints specified"));
-                                            }
-                                            switch (request.getType()) {
-                                                case HIP:
-                                                    endpoints.setHipEndpoints(request.getEndpoints());
-                                                    break;
-                                                case HIU:
-                                                    endpoints.setHiuEndpoints(request.getEndpoints());
-                                                    break;
-                                                case HEALTH_LOCKER:
-                                                    endpoints.setHealthLockerEndpoints(request.getEndpoints());
-                                                    break;
-                                            }
-                                        }
-                                        return just(request);
-                                    })
-                                    .flatMap(request -> request.isActive()
-                                            ? registryRepository.ifPresent(request.getId(), request.getType(), request.isActive(), bridgeId)
-                                            .flatMap(result -> Boolean.TRUE.equals(result)
-                                                    ? Mono.error(invalidBridgeServiceRequest())
-                                                    : addRole(bridgeId, request.getType().toString()))
-                                            : Mono.empty())
-                                    .then(upsertBridgeServiceEntries(bridgeId, services, endpoints));
-                        })).then();
+        if (bridgeServicesRequest.stream().anyMatch(request ->
+                !CollectionUtils.isEmpty(request.getEndpoints()) && isInvalid(request.getEndpoints()))) {
+            return error(invalidRequest("Invalid endpoints specified"));
+        }
+        var services = bridgeServicesRequest.stream()
+                .collect(groupingBy(BridgeServiceRequest::getId, LinkedHashMap::new, toList()));
+        var serviceIds = new ArrayList<>(services.keySet());
+        var activeServices = bridgeServicesRequest.stream()
+                .filter(BridgeServiceRequest::isActive)
+                .map(request -> BridgeService.builder().id(request.getId()).type(request.getType()).build())
+                .collect(toSet());
+        var activeTypes = activeServices.stream()
+                .map(service -> service.getType().toString())
+                .collect(toCollection(LinkedHashSet::new));
+        return registryRepository.fetchServicesOfOtherBridges(serviceIds, bridgeId)
+                .filter(activeServices::contains)
+                .hasElements()
+                .flatMap(taken -> Boolean.TRUE.equals(taken)
+                        ? Mono.<Map<String, Endpoints>>error(invalidBridgeServiceRequest())
+                        : registryRepository.fetchExistingEndpoints(bridgeId, serviceIds))
+                .flatMap(existingEndpoints -> Flux.fromIterable(services.values())
+                        .concatMap(requests -> entryOf(requests, existingEndpoints.get(requests.get(0).getId())))
+                        .collectList())
+                .flatMap(entries -> registryRepository.saveBridgeServiceEntries(bridgeId, entries)
+                        .then(Flux.fromIterable(entries)
+                                .filter(BridgeServiceEntry::isExisting)
+                                .concatMap(entry -> invalidateBridgeMappings(entry.getId(), entry.getTypeActive()))
+                                .then()))
+                .then(Mono.defer(() -> addRoles(bridgeId, activeTypes)));
     }
 
     private boolean isInvalid(List<EndpointDetails> endpoints) {
@@ -203,25 +213,36 @@ public class RegistryService {
                 endpoint.getUse() == null || endpoint.getConnectionType() == null || !StringUtils.hasText(endpoint.getAddress()));
     }
 
-    private Mono<Void> upsertBridgeServiceEntries(String bridgeId, List<BridgeServiceRequest> services, Endpoints endpoints) {
+    private Mono<BridgeServiceEntry> entryOf(List<BridgeServiceRequest> services, Endpoints existingEndpoints) {
         BridgeServiceRequest serviceDetails = services.get(0);
-
-        return Flux.fromIterable(services)
-                .collectMap(BridgeServiceRequest::getType, BridgeServiceRequest::isActive)
-                .flatMap(serviceTypeActiveMap ->
-                        registryRepository.ifBridgeServicePresent(bridgeId, serviceDetails.getId())
-                                .flatMap(result -> upsertServiceForBridge(bridgeId, serviceDetails, serviceTypeActiveMap, endpoints, result))
-                                .then());
-
-    }
-
-    private Mono<Void> upsertServiceForBridge(String bridgeId, BridgeServiceRequest serviceDetails, Map<ServiceType, Boolean> serviceTypeActiveMap, Endpoints endpoints, Boolean result) {
-        return Boolean.TRUE.equals(result) ?
-                registryRepository.fetchExistingEndpoints(bridgeId, serviceDetails.getId())
-                        .flatMap(existingEndpoints -> prepareVaildEndpointsToStoreWith(existingEndpoints, endpoints))
-                        .flatMap(endpointsToBeSaved -> registryRepository.updateBridgeServiceEntry(bridgeId, serviceDetails.getId(), serviceDetails.getName(), endpointsToBeSaved, serviceTypeActiveMap))
-                        .then(invalidateBridgeMappings(serviceDetails.getId(), serviceTypeActiveMap)) :
-                registryRepository.insertBridgeServiceEntry(bridgeId, serviceDetails.getId(), serviceDetails.getName(), endpoints, serviceTypeActiveMap);
+        Endpoints endpoints = new Endpoints();
+        Map<ServiceType, Boolean> serviceTypeActiveMap = new HashMap<>();
+        for (BridgeServiceRequest request : services) {
+            serviceTypeActiveMap.put(request.getType(), request.isActive());
+            if (CollectionUtils.isEmpty(request.getEndpoints())) {
+                continue;
+            }
+            switch (request.getType()) {
+                case HIP:
+                    endpoints.setHipEndpoints(request.getEndpoints());
+                    break;
+                case HIU:
+                    endpoints.setHiuEndpoints(request.getEndpoints());
+                    break;
+                case HEALTH_LOCKER:
+                    endpoints.setHealthLockerEndpoints(request.getEndpoints());
+                    break;
+            }
+        }
+        var entry = BridgeServiceEntry.builder()
+                .id(serviceDetails.getId())
+                .name(serviceDetails.getName())
+                .typeActive(serviceTypeActiveMap);
+        if (existingEndpoints == null) {
+            return just(entry.endpoints(endpoints).existing(false).build());
+        }
+        return prepareVaildEndpointsToStoreWith(existingEndpoints, endpoints)
+                .map(endpointsToBeSaved -> entry.endpoints(endpointsToBeSaved).existing(true).build());
     }
 
     private Mono<Endpoints> prepareVaildEndpointsToStoreWith(Endpoints existingEndpoints, Endpoints endpoints) {
@@ -277,14 +298,27 @@ public class RegistryService {
     }
 
     private Mono<Void> addRole(String clientId, String type) {
+        return addRoles(clientId, Set.of(type));
+    }
+
+    private Mono<Void> addRoles(String clientId, Set<String> types) {
+        if (types.isEmpty()) {
+            return Mono.empty();
+        }
         return adminServiceClient.getServiceAccount(clientId)
                 .flatMap(serviceAccount -> adminServiceClient.getAvailableRealmRoles(serviceAccount.getId())
-                        .flatMap(realmRoles -> ifPresent(type, realmRoles)
-                                .flatMap(realmRole -> adminServiceClient.assignRoleToClient(List.of(realmRole), serviceAccount.getId()))));
+                        .flatMap(realmRoles -> {
+                            var rolesToAssign = rolesOf(types, realmRoles);
+                            return rolesToAssign.isEmpty()
+                                   ? Mono.<Void>empty()
+                                   : adminServiceClient.assignRoleToClient(rolesToAssign, serviceAccount.getId());
+                        }));
     }
 
-    private Mono<RealmRole> ifPresent(String type, List<RealmRole> realmRoles) {
-        return Mono.justOrEmpty(realmRoles.stream().filter(realmRole -> realmRole.getName().equalsIgnoreCase(type)).findFirst());
+    private List<RealmRole> rolesOf(Set<String> types, List<RealmRole> realmRoles) {
+        return realmRoles.stream()
+                .filter(realmRole -> types.stream().anyMatch(type -> realmRole.getName().equalsIgnoreCase(type)))
+                .collect(toList());
     }
 
     public Mono<ServiceProfileResponse> serviceProfile(String serviceId) {
@@ -0,0 +1,17 @@
+package in.projecteka.gateway.registry.model;
+
+import in.projecteka.gateway.registry.ServiceType;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+@Value
+@Builder
+public class BridgeServiceEntry {
+    String id;
+    String name;
+    Endpoints endpoints;
+    Map<ServiceType, Boolean> typeActive;
+    boolean existing;
+}
@@ -0,0 +1,59 @@
+package in.projecteka.gateway;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.test.StepVerifier;
+
+import static in.projecteka.gateway.common.Constants.API_CALLED;
+import static in.projecteka.gateway.common.Constants.CORRELATION_ID;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MdcContextLifterTest {
+    private static final String HOOK_KEY = MdcContextLifterTest.class.getName();
+
+    @BeforeEach
+    void init() {
+        Hooks.onEachOperator(HOOK_KEY, Operators.lift((scannable, coreSubscriber) -> new MdcContextLifter<>(coreSubscriber)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        Hooks.resetOnEachOperator(HOOK_KEY);
+        MDC.clear();
+    }
+
+    @Test
+    void shouldCopyOnlyCorrelationIdToMdc() {
+        var correlationId = string();
+
+        var mdc = Mono.fromCallable(() -> new String[]{MDC.get(CORRELATION_ID), MDC.get(API_CALLED)})
+                .map(values -> values)
+                .subscriberContext(context -> context.put(CORRELATION_ID, correlationId).put(API_CALLED, string()));
+
+        StepVerifier.create(mdc)
+                .assertNext(values -> {
+                    assertThat(values[0]).isEqualTo(correlationId);
+                    assertThat(values[1]).isNull();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldNotLeakCorrelationIdOfPreviousRequestOnSameThread() {
+        MDC.put(CORRELATION_ID, string());
+
+        var mdc = Mono.fromCallable(() -> String.valueOf(MDC.get(CORRELATION_ID)))
+                .map(value -> value)
+                .subscriberContext(context -> context.put(API_CALLED, string()));
+
+        StepVerifier.create(mdc)
+                .assertNext(value -> assertThat(value).isEqualTo("null"))
+                .verifyComplete();
+    }
+}
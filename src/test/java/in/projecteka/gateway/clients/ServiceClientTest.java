@@ -2,8 +2,13 @@ package in.projecteka.gateway.clients;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import in.projecteka.gateway.common.IdentityService;
+import in.projecteka.gateway.common.RequestIds;
 import in.projecteka.gateway.common.cache.ServiceOptions;
+import in.projecteka.gateway.common.inflight.InFlightRequests;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
 import in.projecteka.gateway.registry.ServiceType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -19,6 +24,7 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.util.HashMap;
+import java.util.UUID;
 
 import static in.projecteka.gateway.clients.ClientError.invalidRequest;
 import static in.projecteka.gateway.testcommon.TestBuilders.errorResult;
@@ -48,10 +54,13 @@ class ServiceClientTest {
 
     WebClient.Builder webClientBuilder;
 
+    RoutingMetrics routingMetrics;
+
     @BeforeEach
     void init() {
         initMocks(this);
         webClientBuilder = WebClient.builder().exchangeFunction(exchangeFunction);
+        routingMetrics = new RoutingMetrics(new SimpleMeterRegistry());
     }
 
     @Test
@@ -64,7 +73,13 @@ class ServiceClientTest {
                 .thenReturn(just(ClientResponse.create(HttpStatus.OK)
                         .header(CONTENT_TYPE, APPLICATION_JSON_VALUE)
                         .build()));
-        var serviceClient = new ServiceClient(SERVICE_OPTIONS, webClientBuilder, identityService) {
+        var serviceClient = new ServiceClient(SERVICE_OPTIONS,
+                webClientBuilder,
+                identityService,
+                routingMetrics,
+                RouteLogSampler.ALL,
+                new InFlightRequests(),
+                new RequestIds(UUID::randomUUID)) {
             @Override
             protected Mono<String> getResponseUrl(String clientId, ServiceType serviceType) {
                 return Mono.empty();
@@ -81,6 +96,39 @@ class ServiceClientTest {
         assertThat(captor.getValue().headers().get(HttpHeaders.AUTHORIZATION).get(0)).isEqualTo(token);
     }
 
+    @Test
+    void shouldRouteSerializedRequestToURL() {
+        var token = string();
+        var url = string();
+        when(identityService.authenticate()).thenReturn(just(token));
+        when(exchangeFunction.exchange(captor.capture()))
+                .thenReturn(just(ClientResponse.create(HttpStatus.OK)
+                        .header(CONTENT_TYPE, APPLICATION_JSON_VALUE)
+                        .build()));
+        var serviceClient = new ServiceClient(SERVICE_OPTIONS,
+                webClientBuilder,
+                identityService,
+                routingMetrics,
+                RouteLogSampler.ALL,
+                new InFlightRequests(),
+                new RequestIds(UUID::randomUUID)) {
+            @Override
+            protected Mono<String> getResponseUrl(String clientId, ServiceType serviceType) {
+                return Mono.empty();
+            }
+
+            @Override
+            protected Mono<String> getRequestUrl(String clientId, ServiceType serviceType) {
+                return Mono.just(url);
+            }
+        };
+
+        StepVerifier.create(serviceClient.routeSerializedRequest("{}", string(), string(), string()))
+                .verifyComplete();
+        assertThat(captor.getValue().url()).hasPath(url);
+        assertThat(captor.getValue().headers().get(HttpHeaders.AUTHORIZATION).get(0)).isEqualTo(token);
+    }
+
     @Test
     void shouldRouteGivenResponseToURL() {
         var token = string();
@@ -93,7 +141,13 @@ class ServiceClientTest {
                 .thenReturn(just(ClientResponse.create(HttpStatus.OK)
                         .header(CONTENT_TYPE, APPLICATION_JSON_VALUE)
                         .build()));
-        var serviceClient = new ServiceClient(SERVICE_OPTIONS, webClientBuilder, identityService) {
+        var serviceClient = new ServiceClient(SERVICE_OPTIONS,
+                webClientBuilder,
+                identityService,
+                routingMetrics,
+                RouteLogSampler.ALL,
+                new InFlightRequests(),
+                new RequestIds(UUID::randomUUID)) {
             @Override
             protected Mono<String> getResponseUrl(String clientId, ServiceType serviceType) {
                 return Mono.just(url);
@@ -124,7 +178,13 @@ class ServiceClientTest {
                 .thenReturn(just(ClientResponse.create(HttpStatus.OK)
                         .header(CONTENT_TYPE, APPLICATION_JSON_VALUE)
                         .build()));
-        var serviceClient = new ServiceClient(SERVICE_OPTIONS, webClientBuilder, identityService) {
+        var serviceClient = new ServiceClient(SERVICE_OPTIONS,
+                webClientBuilder,
+                identityService,
+                routingMetrics,
+                RouteLogSampler.ALL,
+                new InFlightRequests(),
+                new RequestIds(UUID::randomUUID)) {
             @Override
             protected Mono<String> getResponseUrl(String clientId, ServiceType serviceType) {
                 return Mono.just(url);
@@ -156,7 +216,13 @@ class ServiceClientTest {
                         .header(CONTENT_TYPE, APPLICATION_JSON_VALUE)
                         .body(OBJECT_MAPPER.writeValueAsString(somethingWentWrong))
                         .build()));
-        var serviceClient = new ServiceClient(SERVICE_OPTIONS, webClientBuilder, identityService) {
+        var serviceClient = new ServiceClient(SERVICE_OPTIONS,
+                webClientBuilder,
+                identityService,
+                routingMetrics,
+                RouteLogSampler.ALL,
+                new InFlightRequests(),
+                new RequestIds(UUID::randomUUID)) {
             @Override
             protected Mono<String> getResponseUrl(String clientId, ServiceType serviceType) {
                 return Mono.just(url);
@@ -177,7 +243,13 @@ class ServiceClientTest {
 
     @Test
     void returnErrorIfUnableToFindAHostForAClient() {
-        var serviceClient = new ServiceClient(serviceOptions().timeout(10000).build(), webClientBuilder, identityService) {
+        var serviceClient = new ServiceClient(serviceOptions().timeout(10000).build(),
+                webClientBuilder,
+                identityService,
+                routingMetrics,
+                RouteLogSampler.ALL,
+                new InFlightRequests(),
+                new RequestIds(UUID::randomUUID)) {
             @Override
             protected Mono<String> getResponseUrl(String clientId, ServiceType serviceType) {
                 return Mono.empty();
@@ -0,0 +1,88 @@
+package in.projecteka.gateway.common.Heartbeat;
+
+import in.projecteka.gateway.common.heartbeat.CacheHealth;
+import in.projecteka.gateway.common.heartbeat.Heartbeat;
+import in.projecteka.gateway.common.heartbeat.HeartbeatOptions;
+import in.projecteka.gateway.common.heartbeat.IdentityHealth;
+import in.projecteka.gateway.common.heartbeat.RabbitmqHealth;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static in.projecteka.gateway.common.heartbeat.model.Status.DOWN;
+import static in.projecteka.gateway.common.heartbeat.model.Status.UP;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+import static reactor.core.publisher.Mono.just;
+
+class HeartbeatTest {
+    @Mock
+    CacheHealth cacheHealth;
+
+    @Mock
+    RabbitmqHealth rabbitmqHealth;
+
+    @Mock
+    IdentityHealth identityHealth;
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.initMocks(this);
+        when(cacheHealth.isUp()).thenReturn(just(true));
+        when(rabbitmqHealth.isUp()).thenReturn(just(true));
+        when(identityHealth.isUp()).thenReturn(just(true));
+    }
+
+    @Test
+    void shouldBeUpWhenAllDependenciesAreUp() {
+        var heartbeat = heartbeat(1, 100);
+
+        StepVerifier.create(heartbeat.getStatus())
+                .assertNext(response -> assertThat(response.getStatus()).isEqualTo(UP))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldBeDownWhenADependencyIsDown() {
+        when(rabbitmqHealth.isUp()).thenReturn(just(false));
+        var heartbeat = heartbeat(1, 100);
+
+        StepVerifier.create(heartbeat.getStatus())
+                .assertNext(response -> assertThat(response.getStatus()).isEqualTo(DOWN))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldBeDownWhenAProbeDoesNotAnswerInTime() {
+        when(identityHealth.isUp()).thenReturn(Mono.never());
+        var heartbeat = heartbeat(1, 50);
+
+        StepVerifier.create(heartbeat.getStatus())
+                .assertNext(response -> assertThat(response.getStatus()).isEqualTo(DOWN))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldStayUpUntilFailureThresholdIsReached() {
+        var heartbeat = heartbeat(2, 100);
+        heartbeat.getStatus().block();
+        when(cacheHealth.isUp()).thenReturn(Mono.error(new RuntimeException()));
+
+        StepVerifier.create(heartbeat.getStatus())
+                .assertNext(response -> assertThat(response.getStatus()).isEqualTo(UP))
+                .verifyComplete();
+        StepVerifier.create(heartbeat.getStatus())
+                .assertNext(response -> assertThat(response.getStatus()).isEqualTo(DOWN))
+                .verifyComplete();
+    }
+
+    private Heartbeat heartbeat(int failureThreshold, int probeTimeoutInMillis) {
+        return new Heartbeat(new HeartbeatOptions(0, probeTimeoutInMillis, failureThreshold, 1),
+                cacheHealth,
+                rabbitmqHealth,
+                identityHealth);
+    }
+}
@@ -5,6 +5,8 @@ import com.google.common.cache.CacheLoader;
 import in.projecteka.gateway.clients.ClientError;
 import in.projecteka.gateway.common.cache.CacheAdapter;
 import in.projecteka.gateway.common.cache.LoadingCacheAdapter;
+import in.projecteka.gateway.common.replay.RequestIdFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -18,6 +20,12 @@ import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import static in.projecteka.gateway.common.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class RedundantRequestValidatorTest {
 
@@ -89,4 +97,27 @@ class RedundantRequestValidatorTest {
                 .expectComplete()
                 .verify();
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldNotLookUpTheStoreWhenFilterSaysRequestIdIsNew() {
+        CacheAdapter<String, String> requestIdTimestampMappings = mock(CacheAdapter.class);
+        var requestIdFilter = mock(RequestIdFilter.class);
+        var meterRegistry = new SimpleMeterRegistry();
+        var requestValidator = new RedundantRequestValidator(requestIdTimestampMappings,
+                "replay",
+                requestIdFilter,
+                meterRegistry);
+        when(requestIdFilter.mightContain(any())).thenReturn(false);
+
+        StepVerifier
+                .create(requestValidator.validate(string(), LocalDateTime.now(ZoneOffset.UTC).toString()))
+                .expectNext(true)
+                .expectComplete()
+                .verify();
+
+        verify(requestIdTimestampMappings, never()).get(any());
+        assertThat(meterRegistry.counter("gateway.replay.lookups", "source", "filter", "result", "new").count())
+                .isEqualTo(1);
+    }
 }
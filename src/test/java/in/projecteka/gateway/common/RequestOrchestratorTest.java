@@ -4,7 +4,10 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import in.projecteka.gateway.clients.ClientError;
 import in.projecteka.gateway.clients.DiscoveryServiceClient;
 import in.projecteka.gateway.common.cache.CacheAdapter;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
 import in.projecteka.gateway.common.model.ErrorResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -74,7 +77,10 @@ class RequestOrchestratorTest {
                 new RedundantRequestValidator(requestIdTimestampMappings, null),
                 validator,
                 discoveryServiceClient,
-                validatedRequestAction));
+                validatedRequestAction,
+                new RoutingMetrics(new SimpleMeterRegistry()),
+                RouteLogSampler.ALL,
+                new RequestIds(UUID::randomUUID)));
     }
 
     @ParameterizedTest
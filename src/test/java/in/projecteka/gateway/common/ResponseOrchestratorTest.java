@@ -4,6 +4,9 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import in.projecteka.gateway.clients.ClientError;
 import in.projecteka.gateway.common.cache.CacheAdapter;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -47,7 +50,11 @@ class ResponseOrchestratorTest {
     @BeforeEach
     public void init() {
         MockitoAnnotations.initMocks(this);
-        responseOrchestrator = Mockito.spy(new ResponseOrchestrator(validator, validatedResponseAction));
+        responseOrchestrator = Mockito.spy(new ResponseOrchestrator(validator,
+                validatedResponseAction,
+                new RoutingMetrics(new SimpleMeterRegistry()),
+                RouteLogSampler.ALL,
+                new RequestIds(UUID::randomUUID)));
     }
 
     @Test
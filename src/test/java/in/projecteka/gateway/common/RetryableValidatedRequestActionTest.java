@@ -3,7 +3,14 @@ package in.projecteka.gateway.common;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.rabbitmq.client.LongString;
 import com.rabbitmq.client.impl.LongStringHelper;
+import in.projecteka.gateway.clients.ClientError;
 import in.projecteka.gateway.clients.ServiceClient;
+import in.projecteka.gateway.common.retry.ConsumerOptions;
+import in.projecteka.gateway.common.retry.DeliveryPermits;
+import in.projecteka.gateway.common.retry.PublishOutcome;
+import in.projecteka.gateway.common.retry.RetryPublisher;
+import in.projecteka.gateway.common.retry.TargetCircuits;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,20 +22,33 @@ import org.mockito.MockitoAnnotations;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.ConsumeOptions;
 import reactor.rabbitmq.OutboundMessage;
 import reactor.rabbitmq.Receiver;
 import reactor.rabbitmq.Sender;
 import reactor.test.StepVerifier;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static in.projecteka.gateway.clients.ClientError.mappingNotFoundForId;
 import static in.projecteka.gateway.common.Constants.GW_DATAFLOW_QUEUE;
+import static in.projecteka.gateway.common.Constants.GW_PARKING_EXCHANGE;
+import static in.projecteka.gateway.common.Constants.X_HIU_ID;
 import static in.projecteka.gateway.common.Constants.X_ORIGIN_ID;
+import static in.projecteka.gateway.common.retry.DelayedRetries.FIRST_QUEUED_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.X_RETRY_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.X_RETRY_HOLDS;
+import static in.projecteka.gateway.common.retry.RetryEnvelope.X_RETRY_ENVELOPE;
+import static in.projecteka.gateway.common.retry.RetryEnvelope.X_RETRY_ROUTING_KEY;
 import static in.projecteka.gateway.testcommon.TestBuilders.serviceOptions;
 import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.times;
@@ -45,6 +65,9 @@ class RetryableValidatedRequestActionTest {
     @Mock
     private Sender sender;
 
+    @Mock
+    private RetryPublisher retryPublisher;
+
     @Mock
     private Map<String, Object> map;
 
@@ -56,20 +79,29 @@ class RetryableValidatedRequestActionTest {
     private AcknowledgableDelivery acknowledgableDelivery;
 
     @Captor
-    private ArgumentCaptor<Mono<OutboundMessage>> outboundMessageCaptor;
+    private ArgumentCaptor<OutboundMessage> outboundMessageCaptor;
 
     @BeforeEach
     public void init() {
         MockitoAnnotations.initMocks(this);
         map = new HashMap<>(); //Sample request body;
         acknowledgableDelivery = Mockito.mock(AcknowledgableDelivery.class, RETURNS_DEEP_STUBS);
-        when(receiver.consumeManualAck(GW_DATAFLOW_QUEUE)).thenReturn(Flux.just(acknowledgableDelivery));
+        when(receiver.consumeManualAck(eq(GW_DATAFLOW_QUEUE), any(ConsumeOptions.class)))
+                .thenReturn(Flux.just(acknowledgableDelivery));
+        when(sender.declareQueue(any())).thenReturn(empty());
+        when(sender.bind(any())).thenReturn(empty());
         retryableValidatedRequestAction = Mockito.spy(new RetryableValidatedRequestAction<>(receiver,
                 sender,
                 defaultValidatedRequestAction,
                 serviceOptions().responseMaxRetryAttempts(5).retryAttemptsDelay(100).build(),
                 Constants.GW_DATAFLOW_QUEUE,
-                "X-HIP-ID"));
+                "X-HIP-ID",
+                new ConsumerOptions(0, 0, 1, 0, 0, 0, 0),
+                retryPublisher,
+                1,
+                TargetCircuits.disabled(),
+                new SimpleMeterRegistry(),
+                false));
     }
 
     @Test
@@ -77,6 +109,29 @@ class RetryableValidatedRequestActionTest {
         String routingKey = "X-HIP-ID";
         LongString testHipId = LongStringHelper.asLongString("testHipId");
         LongString sourceId = LongStringHelper.asLongString("sourceId");
+        String body = "{\"requestId\":\"" + string() + "\"}";
+
+        when(acknowledgableDelivery.getProperties().getHeaders().get(routingKey)).thenReturn(testHipId);
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_ORIGIN_ID)).thenReturn(sourceId);
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_RETRY_ENVELOPE))
+                .thenReturn(LongStringHelper.asLongString("body"));
+        when(acknowledgableDelivery.getBody()).thenReturn(body.getBytes(UTF_8));
+
+        doReturn(Mono.empty())
+                .when(retryableValidatedRequestAction)
+                .routeSerializedRequest(sourceId.toString(), testHipId.toString(), body, routingKey);
+
+        retryableValidatedRequestAction.subscribe(DeliveryPermits.unlimited());
+
+        verify(retryableValidatedRequestAction)
+                .routeSerializedRequest(sourceId.toString(), testHipId.toString(), body, routingKey);
+    }
+
+    @Test
+    void shouldRouteMessagesQueuedBeforeTheRetryEnvelope() {
+        String routingKey = "X-HIP-ID";
+        LongString testHipId = LongStringHelper.asLongString("testHipId");
+        LongString sourceId = LongStringHelper.asLongString("sourceId");
 
         TraceableMessage traceableMessage = TraceableMessage.builder()
                 .correlationId(UUID.randomUUID().toString())
@@ -86,16 +141,20 @@ class RetryableValidatedRequestActionTest {
         when(acknowledgableDelivery.getProperties().getHeaders().get(X_ORIGIN_ID)).thenReturn(sourceId);
         when(acknowledgableDelivery.getBody()).thenReturn(Serializer.from(traceableMessage).get().getBytes());
 
-        doReturn(Mono.empty()).when(retryableValidatedRequestAction).routeRequest(sourceId.toString(), testHipId.toString(), map, routingKey);
+        doReturn(Mono.empty())
+                .when(retryableValidatedRequestAction)
+                .routeSerializedRequest(sourceId.toString(), testHipId.toString(), "{}", routingKey);
 
-        retryableValidatedRequestAction.subscribe();
+        StepVerifier.create(retryableValidatedRequestAction.processDelivery(acknowledgableDelivery))
+                .verifyComplete();
 
-        verify(retryableValidatedRequestAction).routeRequest(sourceId.toString(), testHipId.toString(), map, routingKey);
+        verify(retryableValidatedRequestAction)
+                .routeSerializedRequest(sourceId.toString(), testHipId.toString(), "{}", routingKey);
+        verify(acknowledgableDelivery).ack();
     }
 
-
     @Test
-    void shouldRetryIfFailsToRouteRequest() {
+    void shouldPublishToDelayQueueIfFailsToRouteRequest() {
         String routingKey = "X-HIP-ID";
         LongString testHipId = LongStringHelper.asLongString("testHipId");
         LongString sourceId = LongStringHelper.asLongString("sourceId");
@@ -108,18 +167,24 @@ class RetryableValidatedRequestActionTest {
         when(acknowledgableDelivery.getProperties().getHeaders().get(X_ORIGIN_ID)).thenReturn(sourceId);
         when(acknowledgableDelivery.getBody()).thenReturn(Serializer.from(traceableMessage).get().getBytes());
 
-        doReturn(error(mappingNotFoundForId(testHipId.toString())), empty())
+        doReturn(error(mappingNotFoundForId(testHipId.toString())))
                 .when(retryableValidatedRequestAction)
-                .routeRequest(sourceId.toString(), testHipId.toString(), map, routingKey);
+                .routeSerializedRequest(sourceId.toString(), testHipId.toString(), "{}", routingKey);
+        when(retryPublisher.publish(outboundMessageCaptor.capture())).thenReturn(Mono.just(true));
 
         StepVerifier.create(retryableValidatedRequestAction.processDelivery(acknowledgableDelivery))
                 .verifyComplete();
 
-        verify(retryableValidatedRequestAction, times(2)).routeRequest(sourceId.toString(), testHipId.toString(), map, routingKey);
+        verify(retryableValidatedRequestAction)
+                .routeSerializedRequest(sourceId.toString(), testHipId.toString(), "{}", routingKey);
+        var outboundMessage = outboundMessageCaptor.getValue();
+        Assertions.assertEquals("", outboundMessage.getExchange());
+        Assertions.assertEquals(GW_DATAFLOW_QUEUE + ".delay.100ms", outboundMessage.getRoutingKey());
+        verify(acknowledgableDelivery).ack();
     }
 
     @Test
-    void shouldThrowExceptionWhenRetryLimitExceeds() {
+    void shouldParkAndThrowExceptionWhenRetryLimitExceeds() {
         String routingKey = "X-HIP-ID";
         LongString testHipId = LongStringHelper.asLongString("testHipId");
         LongString sourceId = LongStringHelper.asLongString("sourceId");
@@ -132,15 +197,93 @@ class RetryableValidatedRequestActionTest {
         when(acknowledgableDelivery.getProperties().getHeaders().get(X_ORIGIN_ID)).thenReturn(sourceId);
         when(acknowledgableDelivery.getBody()).thenReturn(Serializer.from(traceableMessage).get().getBytes());
 
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_RETRY_ATTEMPT)).thenReturn(7);
         doReturn(error(mappingNotFoundForId(testHipId.toString())))
                 .when(retryableValidatedRequestAction)
-                .routeRequest(sourceId.toString(), testHipId.toString(), map, routingKey);
+                .routeSerializedRequest(sourceId.toString(), testHipId.toString(), "{}", routingKey);
+        when(retryPublisher.publish(outboundMessageCaptor.capture())).thenReturn(Mono.just(true));
 
         StepVerifier.create(retryableValidatedRequestAction.processDelivery(acknowledgableDelivery))
                 .expectError(RetryLimitExceededException.class)
                 .verify();
 
-        verify(retryableValidatedRequestAction, times(6)).routeRequest(sourceId.toString(), testHipId.toString(), map, routingKey);
+        verify(retryableValidatedRequestAction)
+                .routeSerializedRequest(sourceId.toString(), testHipId.toString(), "{}", routingKey);
+        Assertions.assertEquals(GW_PARKING_EXCHANGE, outboundMessageCaptor.getValue().getExchange());
+        verify(acknowledgableDelivery).ack();
+    }
+
+    @Test
+    void shouldHoldDeliveriesToATargetWhoseCircuitIsOpen() {
+        String routingKey = "X-HIP-ID";
+        LongString testHipId = LongStringHelper.asLongString("testHipId");
+        LongString sourceId = LongStringHelper.asLongString("sourceId");
+        var action = Mockito.spy(new RetryableValidatedRequestAction<>(receiver,
+                sender,
+                defaultValidatedRequestAction,
+                serviceOptions().responseMaxRetryAttempts(5).retryAttemptsDelay(100).build(),
+                GW_DATAFLOW_QUEUE,
+                routingKey,
+                new ConsumerOptions(0, 0, 1, 0, 0, 0, 0),
+                retryPublisher,
+                1,
+                new TargetCircuits(1, 30_000, 0, new SimpleMeterRegistry()),
+                new SimpleMeterRegistry(),
+                false));
+        when(acknowledgableDelivery.getProperties().getHeaders().get(routingKey)).thenReturn(testHipId);
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_ORIGIN_ID)).thenReturn(sourceId);
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_RETRY_ENVELOPE))
+                .thenReturn(LongStringHelper.asLongString("body"));
+        when(acknowledgableDelivery.getBody()).thenReturn("{}".getBytes(UTF_8));
+        doReturn(error(mappingNotFoundForId(testHipId.toString())))
+                .when(action)
+                .routeSerializedRequest(sourceId.toString(), testHipId.toString(), "{}", routingKey);
+        when(retryPublisher.publish(outboundMessageCaptor.capture())).thenReturn(Mono.just(true));
+
+        StepVerifier.create(action.processDelivery(acknowledgableDelivery)).verifyComplete();
+        StepVerifier.create(action.processDelivery(acknowledgableDelivery)).verifyComplete();
+
+        verify(action, times(1))
+                .routeSerializedRequest(sourceId.toString(), testHipId.toString(), "{}", routingKey);
+        var routingKeys = outboundMessageCaptor.getAllValues().stream().map(OutboundMessage::getRoutingKey);
+        Assertions.assertEquals(List.of(GW_DATAFLOW_QUEUE + ".delay.100ms", GW_DATAFLOW_QUEUE + ".held.30000ms"),
+                routingKeys.collect(Collectors.toList()));
+    }
+
+    @Test
+    void shouldParkDeliveriesHeldAsOftenAsAllowed() {
+        String routingKey = "X-HIP-ID";
+        LongString testHipId = LongStringHelper.asLongString("testHipId");
+        LongString sourceId = LongStringHelper.asLongString("sourceId");
+        var action = Mockito.spy(new RetryableValidatedRequestAction<>(receiver,
+                sender,
+                defaultValidatedRequestAction,
+                serviceOptions().responseMaxRetryAttempts(5).retryAttemptsDelay(100).build(),
+                GW_DATAFLOW_QUEUE,
+                routingKey,
+                new ConsumerOptions(0, 0, 1, 0, 0, 0, 0),
+                retryPublisher,
+                1,
+                new TargetCircuits(1, 30_000, 1, new SimpleMeterRegistry()),
+                new SimpleMeterRegistry(),
+                false));
+        when(acknowledgableDelivery.getProperties().getHeaders().get(routingKey)).thenReturn(testHipId);
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_ORIGIN_ID)).thenReturn(sourceId);
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_RETRY_HOLDS)).thenReturn(1);
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_RETRY_ENVELOPE))
+                .thenReturn(LongStringHelper.asLongString("body"));
+        when(acknowledgableDelivery.getBody()).thenReturn("{}".getBytes(UTF_8));
+        doReturn(error(mappingNotFoundForId(testHipId.toString())))
+                .when(action)
+                .routeSerializedRequest(sourceId.toString(), testHipId.toString(), "{}", routingKey);
+        when(retryPublisher.publish(outboundMessageCaptor.capture())).thenReturn(Mono.just(true));
+
+        StepVerifier.create(action.processDelivery(acknowledgableDelivery)).verifyComplete();
+        StepVerifier.create(action.processDelivery(acknowledgableDelivery)).verifyComplete();
+
+        var parked = outboundMessageCaptor.getValue();
+        Assertions.assertEquals(GW_PARKING_EXCHANGE, parked.getExchange());
+        Assertions.assertEquals(GW_DATAFLOW_QUEUE, parked.getRoutingKey());
     }
 
     @Test
@@ -157,20 +300,71 @@ class RetryableValidatedRequestActionTest {
         verify(defaultValidatedRequestAction).routeRequest(sourceId, testHipId, map, routingKey);
     }
 
+    @Test
+    void shouldTellTheCallerWhenTheRetryPublisherDroppedTheRequest() {
+        when(retryPublisher.publishOrHold(any())).thenReturn(Mono.just(PublishOutcome.DROPPED));
+
+        StepVerifier.create(retryableValidatedRequestAction.handleError(new RuntimeException(), string(), map, string()))
+                .verifyError(ClientError.class);
+    }
+
     @Test
     void shouldHandleError() {
         String routingKey = "X-HIP-ID";
         String testHipId = "testHipId";
         var sourceId = string();
 
-        when(sender.send(outboundMessageCaptor.capture())).thenReturn(Mono.empty());
+        when(retryPublisher.publishOrHold(outboundMessageCaptor.capture())).thenReturn(Mono.empty());
 
         StepVerifier.create(retryableValidatedRequestAction.handleError(new RuntimeException(), testHipId, map, sourceId))
                 .verifyComplete();
 
-        var outboundMessage = outboundMessageCaptor.getValue().block();
+        var outboundMessage = outboundMessageCaptor.getValue();
         var headers = outboundMessage.getProperties().getHeaders();
         Assertions.assertEquals(testHipId, headers.get(routingKey));
+        Assertions.assertEquals(FIRST_QUEUED_ATTEMPT, headers.get(X_RETRY_ATTEMPT));
         Assertions.assertEquals(sourceId, headers.get(X_ORIGIN_ID));
+        Assertions.assertEquals("body", headers.get(X_RETRY_ENVELOPE));
+        Assertions.assertEquals(routingKey, headers.get(X_RETRY_ROUTING_KEY));
+        Assertions.assertEquals(Serializer.from(map).get(), new String(outboundMessage.getBody(), UTF_8));
+    }
+
+    @Test
+    void shouldQueueWithTheRoutingKeyOfTheFailedCall() {
+        var testHiuId = string();
+        var sourceId = string();
+        doReturn(error(mappingNotFoundForId(testHiuId)))
+                .when(retryableValidatedRequestAction)
+                .routeRequest(sourceId, testHiuId, map, X_HIU_ID);
+        when(retryPublisher.publishOrHold(outboundMessageCaptor.capture())).thenReturn(Mono.empty());
+
+        StepVerifier.create(retryableValidatedRequestAction.execute(sourceId, testHiuId, map, X_HIU_ID))
+                .verifyComplete();
+
+        var headers = outboundMessageCaptor.getValue().getProperties().getHeaders();
+        Assertions.assertEquals(X_HIU_ID, headers.get(X_RETRY_ROUTING_KEY));
+        Assertions.assertEquals(testHiuId, headers.get(X_HIU_ID));
+    }
+
+    @Test
+    void shouldRouteToTheTargetOfTheRoutingKeyItWasQueuedWith() {
+        LongString testHiuId = LongStringHelper.asLongString("testHiuId");
+        LongString sourceId = LongStringHelper.asLongString("sourceId");
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_RETRY_ROUTING_KEY))
+                .thenReturn(LongStringHelper.asLongString(X_HIU_ID));
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_HIU_ID)).thenReturn(testHiuId);
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_ORIGIN_ID)).thenReturn(sourceId);
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_RETRY_ENVELOPE))
+                .thenReturn(LongStringHelper.asLongString("body"));
+        when(acknowledgableDelivery.getBody()).thenReturn("{}".getBytes(UTF_8));
+        doReturn(Mono.empty())
+                .when(retryableValidatedRequestAction)
+                .routeSerializedRequest(sourceId.toString(), testHiuId.toString(), "{}", X_HIU_ID);
+
+        StepVerifier.create(retryableValidatedRequestAction.processDelivery(acknowledgableDelivery))
+                .verifyComplete();
+
+        verify(retryableValidatedRequestAction)
+                .routeSerializedRequest(sourceId.toString(), testHiuId.toString(), "{}", X_HIU_ID);
     }
 }
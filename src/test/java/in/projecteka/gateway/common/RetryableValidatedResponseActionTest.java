@@ -5,6 +5,10 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.rabbitmq.client.LongString;
 import com.rabbitmq.client.impl.LongStringHelper;
 import in.projecteka.gateway.clients.ServiceClient;
+import in.projecteka.gateway.common.retry.ConsumerOptions;
+import in.projecteka.gateway.common.retry.RetryPublisher;
+import in.projecteka.gateway.common.retry.TargetCircuits;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,6 +20,7 @@ import org.mockito.MockitoAnnotations;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.ConsumeOptions;
 import reactor.rabbitmq.OutboundMessage;
 import reactor.rabbitmq.Receiver;
 import reactor.rabbitmq.Sender;
@@ -25,12 +30,20 @@ import java.util.UUID;
 
 import static in.projecteka.gateway.clients.ClientError.mappingNotFoundForId;
 import static in.projecteka.gateway.common.Constants.GW_LINK_QUEUE;
+import static in.projecteka.gateway.common.Constants.GW_PARKING_EXCHANGE;
 import static in.projecteka.gateway.common.Constants.X_CM_ID;
+import static in.projecteka.gateway.common.Constants.X_HIP_ID;
+import static in.projecteka.gateway.common.retry.DelayedRetries.FIRST_QUEUED_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.X_RETRY_ATTEMPT;
+import static in.projecteka.gateway.common.retry.RetryEnvelope.X_RETRY_ENVELOPE;
+import static in.projecteka.gateway.common.retry.RetryEnvelope.X_RETRY_ROUTING_KEY;
 import static in.projecteka.gateway.testcommon.TestBuilders.serviceOptions;
 import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.doReturn;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static reactor.core.publisher.Mono.empty;
@@ -43,6 +56,9 @@ class RetryableValidatedResponseActionTest {
     @Mock
     private Sender sender;
 
+    @Mock
+    private RetryPublisher retryPublisher;
+
     private JsonNode jsonNode;
 
     @Mock
@@ -53,7 +69,7 @@ class RetryableValidatedResponseActionTest {
     private AcknowledgableDelivery acknowledgableDelivery;
 
     @Captor
-    private ArgumentCaptor<Mono<OutboundMessage>> outboundMessageCaptor;
+    private ArgumentCaptor<OutboundMessage> outboundMessageCaptor;
 
 
     @BeforeEach
@@ -61,18 +77,46 @@ class RetryableValidatedResponseActionTest {
         MockitoAnnotations.initMocks(this);
         jsonNode = Serializer.objectMapper.readValue("{}", JsonNode.class);
         acknowledgableDelivery = Mockito.mock(AcknowledgableDelivery.class, RETURNS_DEEP_STUBS);
-        when(receiver.consumeManualAck(GW_LINK_QUEUE)).thenReturn(Flux.just(acknowledgableDelivery));
+        when(receiver.consumeManualAck(eq(GW_LINK_QUEUE), any(ConsumeOptions.class)))
+                .thenReturn(Flux.just(acknowledgableDelivery));
+        when(sender.declareQueue(any())).thenReturn(empty());
+        when(sender.bind(any())).thenReturn(empty());
         retryableValidatedResponseAction = Mockito.spy(new RetryableValidatedResponseAction<>(receiver,
                 sender,
                 defaultValidatedResponseAction,
                 serviceOptions().responseMaxRetryAttempts(5).retryAttemptsDelay(100).build(),
                 GW_LINK_QUEUE,
-                X_CM_ID));
+                X_CM_ID,
+                new ConsumerOptions(0, 0, 1, 0, 0, 0, 0),
+                retryPublisher,
+                1,
+                TargetCircuits.disabled(),
+                new SimpleMeterRegistry(),
+                false));
     }
 
     @Test
     void shouldRouteResponseAndNotRetryWhenSuccessful() {
+        LongString testCmId = LongStringHelper.asLongString("testCmId");
+        var routingKey = X_CM_ID;
+        var body = "{\"requestId\":\"" + string() + "\"}";
+
+        when(acknowledgableDelivery.getProperties().getHeaders().get(routingKey)).thenReturn(testCmId);
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_RETRY_ENVELOPE))
+                .thenReturn(LongStringHelper.asLongString("body"));
+        when(acknowledgableDelivery.getBody()).thenReturn(body.getBytes(UTF_8));
 
+        doReturn(Mono.empty()).when(retryableValidatedResponseAction)
+                .routeSerializedResponse(testCmId.toString(), body, routingKey);
+
+        StepVerifier.create(retryableValidatedResponseAction.processDelivery(acknowledgableDelivery))
+                .verifyComplete();
+
+        verify(retryableValidatedResponseAction).routeSerializedResponse(testCmId.toString(), body, routingKey);
+    }
+
+    @Test
+    void shouldRouteMessagesQueuedBeforeTheRetryEnvelope() {
         LongString testCmId = LongStringHelper.asLongString("testCmId");
         var routingKey = X_CM_ID;
 
@@ -83,16 +127,18 @@ class RetryableValidatedResponseActionTest {
         when(acknowledgableDelivery.getProperties().getHeaders().get(routingKey)).thenReturn(testCmId);
         when(acknowledgableDelivery.getBody()).thenReturn(Serializer.from(traceableMessage).get().getBytes());
 
-        doReturn(Mono.empty()).when(retryableValidatedResponseAction).routeResponse(testCmId.toString(), jsonNode, routingKey);
+        doReturn(Mono.empty()).when(retryableValidatedResponseAction)
+                .routeSerializedResponse(testCmId.toString(), "{}", routingKey);
 
         StepVerifier.create(retryableValidatedResponseAction.processDelivery(acknowledgableDelivery))
                 .verifyComplete();
 
-        verify(retryableValidatedResponseAction).routeResponse(testCmId.toString(), jsonNode, routingKey);
+        verify(retryableValidatedResponseAction).routeSerializedResponse(testCmId.toString(), "{}", routingKey);
+        verify(acknowledgableDelivery).ack();
     }
 
     @Test
-    void shouldRetryIfFailsToRouteResponse() {
+    void shouldPublishToDelayQueueIfFailsToRouteResponse() {
         String routingKey = X_CM_ID;
         LongString testCmId = LongStringHelper.asLongString("testCmId");
 
@@ -103,18 +149,23 @@ class RetryableValidatedResponseActionTest {
         when(acknowledgableDelivery.getProperties().getHeaders().get(routingKey)).thenReturn(testCmId);
         when(acknowledgableDelivery.getBody()).thenReturn(Serializer.from(traceableMessage).get().getBytes());
 
-        doReturn(error(mappingNotFoundForId(testCmId.toString())), empty())
+        doReturn(error(mappingNotFoundForId(testCmId.toString())))
                 .when(retryableValidatedResponseAction)
-                .routeResponse(testCmId.toString(), jsonNode, routingKey);
+                .routeSerializedResponse(testCmId.toString(), "{}", routingKey);
+        when(retryPublisher.publish(outboundMessageCaptor.capture())).thenReturn(Mono.just(true));
 
         StepVerifier.create(retryableValidatedResponseAction.processDelivery(acknowledgableDelivery))
                 .verifyComplete();
 
-        verify(retryableValidatedResponseAction, times(2)).routeResponse(testCmId.toString(), jsonNode, routingKey);
+        verify(retryableValidatedResponseAction).routeSerializedResponse(testCmId.toString(), "{}", routingKey);
+        var outboundMessage = outboundMessageCaptor.getValue();
+        Assertions.assertEquals("", outboundMessage.getExchange());
+        Assertions.assertEquals(GW_LINK_QUEUE + ".delay.100ms", outboundMessage.getRoutingKey());
+        verify(acknowledgableDelivery).ack();
     }
 
     @Test
-    void shouldThrowExceptionWhenRetryLimitExceeds() {
+    void shouldParkAndThrowExceptionWhenRetryLimitExceeds() {
         String routingKey = X_CM_ID;
         LongString testCmId = LongStringHelper.asLongString("testCmId");
 
@@ -125,15 +176,19 @@ class RetryableValidatedResponseActionTest {
         when(acknowledgableDelivery.getProperties().getHeaders().get(routingKey)).thenReturn(testCmId);
         when(acknowledgableDelivery.getBody()).thenReturn(Serializer.from(traceableMessage).get().getBytes());
 
+        when(acknowledgableDelivery.getProperties().getHeaders().get(X_RETRY_ATTEMPT)).thenReturn(7);
         doReturn(error(mappingNotFoundForId(testCmId.toString())))
                 .when(retryableValidatedResponseAction)
-                .routeResponse(testCmId.toString(), jsonNode, routingKey);
+                .routeSerializedResponse(testCmId.toString(), "{}", routingKey);
+        when(retryPublisher.publish(outboundMessageCaptor.capture())).thenReturn(Mono.just(true));
 
         StepVerifier.create(retryableValidatedResponseAction.processDelivery(acknowledgableDelivery))
                 .expectError(RetryLimitExceededException.class)
                 .verify();
 
-        verify(retryableValidatedResponseAction, times(6)).routeResponse(testCmId.toString(), jsonNode, routingKey);
+        verify(retryableValidatedResponseAction).routeSerializedResponse(testCmId.toString(), "{}", routingKey);
+        Assertions.assertEquals(GW_PARKING_EXCHANGE, outboundMessageCaptor.getValue().getExchange());
+        verify(acknowledgableDelivery).ack();
     }
 
     @Test
@@ -153,13 +208,33 @@ class RetryableValidatedResponseActionTest {
         String routingKey = X_CM_ID;
         String testCmId = "testCmId";
 
-        when(sender.send(outboundMessageCaptor.capture())).thenReturn(Mono.empty());
+        when(retryPublisher.publishOrHold(outboundMessageCaptor.capture())).thenReturn(Mono.empty());
 
         StepVerifier.create(retryableValidatedResponseAction.handleError(new RuntimeException(), testCmId, jsonNode))
                 .verifyComplete();
 
-        var outboundMessage = outboundMessageCaptor.getValue().block();
+        var outboundMessage = outboundMessageCaptor.getValue();
         var headers = outboundMessage.getProperties().getHeaders();
         Assertions.assertEquals(testCmId, headers.get(routingKey));
+        Assertions.assertEquals(FIRST_QUEUED_ATTEMPT, headers.get(X_RETRY_ATTEMPT));
+        Assertions.assertEquals("body", headers.get(X_RETRY_ENVELOPE));
+        Assertions.assertEquals(routingKey, headers.get(X_RETRY_ROUTING_KEY));
+        Assertions.assertEquals("{}", new String(outboundMessage.getBody(), UTF_8));
+    }
+
+    @Test
+    void shouldQueueWithTheRoutingKeyOfTheFailedCall() {
+        var testHipId = string();
+        doReturn(error(mappingNotFoundForId(testHipId)))
+                .when(retryableValidatedResponseAction)
+                .routeResponse(testHipId, jsonNode, X_HIP_ID);
+        when(retryPublisher.publishOrHold(outboundMessageCaptor.capture())).thenReturn(Mono.empty());
+
+        StepVerifier.create(retryableValidatedResponseAction.execute(testHipId, jsonNode, X_HIP_ID))
+                .verifyComplete();
+
+        var headers = outboundMessageCaptor.getValue().getProperties().getHeaders();
+        Assertions.assertEquals(X_HIP_ID, headers.get(X_RETRY_ROUTING_KEY));
+        Assertions.assertEquals(testHipId, headers.get(X_HIP_ID));
     }
 }
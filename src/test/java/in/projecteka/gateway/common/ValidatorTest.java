@@ -2,9 +2,12 @@ package in.projecteka.gateway.common;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import in.projecteka.gateway.common.cache.CacheAdapter;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
 import in.projecteka.gateway.registry.BridgeRegistry;
 import in.projecteka.gateway.registry.CMRegistry;
 import in.projecteka.gateway.registry.ServiceType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -74,7 +77,9 @@ class ValidatorTest {
         validator = Mockito.spy(new Validator(bridgeRegistry,
                 cmRegistry,
                 requestIdMappings,
-                new RedundantRequestValidator(requestIdTimestampMappings, null)));
+                new RedundantRequestValidator(requestIdTimestampMappings, null),
+                new RoutingMetrics(new SimpleMeterRegistry()),
+                RouteLogSampler.ALL));
     }
 
     @ParameterizedTest
@@ -0,0 +1,83 @@
+package in.projecteka.gateway.common.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+class InstrumentedCacheAdapterTest {
+    @Mock
+    CacheAdapter<String, String> cacheAdapter;
+
+    private SimpleMeterRegistry meterRegistry;
+    private InstrumentedCacheAdapter<String, String> instrumented;
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        instrumented = new InstrumentedCacheAdapter<>("bridgeMappings", cacheAdapter, meterRegistry);
+    }
+
+    @Test
+    void shouldCountHitsEmptiesAndMisses() {
+        var hit = string();
+        var empty = string();
+        var miss = string();
+        when(cacheAdapter.get(hit)).thenReturn(Mono.just(string()));
+        when(cacheAdapter.get(empty)).thenReturn(Mono.just(""));
+        when(cacheAdapter.get(miss)).thenReturn(Mono.empty());
+
+        StepVerifier.create(instrumented.get(hit)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(instrumented.get(empty)).expectNext("").verifyComplete();
+        StepVerifier.create(instrumented.get(miss)).verifyComplete();
+
+        assertThat(gets("hit")).isEqualTo(1);
+        assertThat(gets("empty")).isEqualTo(1);
+        assertThat(gets("miss")).isEqualTo(1);
+        assertThat(meterRegistry.get("gateway.cache.operation")
+                .tags("cache", "bridgeMappings", "operation", "get", "outcome", "success")
+                .timer()
+                .count()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldCountErrors() {
+        var key = string();
+        when(cacheAdapter.put(key, key)).thenReturn(Mono.error(new IllegalStateException()));
+
+        StepVerifier.create(instrumented.put(key, key)).verifyError(IllegalStateException.class);
+        StepVerifier.create(instrumented.put(key, key)).verifyError(IllegalStateException.class);
+
+        assertThat(meterRegistry.get("gateway.cache.errors")
+                .tags("cache", "bridgeMappings", "operation", "put", "exception", "IllegalStateException")
+                .counter()
+                .count()).isEqualTo(2);
+        assertThat(meterRegistry.get("gateway.cache.operation")
+                .tags("cache", "bridgeMappings", "operation", "put", "outcome", "error")
+                .timer()
+                .count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldCountRedisCommandsAndRetries() {
+        instrumented.command("GET");
+        instrumented.retried();
+
+        assertThat(meterRegistry.get("gateway.cache.redis.commands").tags("command", "GET").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("gateway.cache.retries").tags("cache", "bridgeMappings").counter().count())
+                .isEqualTo(1);
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("gateway.cache.gets").tags("cache", "bridgeMappings", "result", result).counter().count();
+    }
+}
@@ -0,0 +1,91 @@
+package in.projecteka.gateway.common.correlation;
+
+import in.projecteka.gateway.clients.GatewayPeerClient;
+import in.projecteka.gateway.common.cache.CacheAdapter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.test.StepVerifier;
+
+import java.util.UUID;
+
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static reactor.core.publisher.Mono.empty;
+import static reactor.core.publisher.Mono.just;
+
+class NodeOwnedRequestIdMappingsTest {
+    private static final int THIS_NODE = 3;
+    private static final int OTHER_NODE = 7;
+
+    @Mock
+    CacheAdapter<String, String> localMappings;
+
+    @Mock
+    CacheAdapter<String, String> sharedMappings;
+
+    @Mock
+    GatewayPeerClient gatewayPeerClient;
+
+    private NodeOwnedRequestIdMappings requestIdMappings;
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.initMocks(this);
+        requestIdMappings = new NodeOwnedRequestIdMappings(new NodeOwnedRequestIds(THIS_NODE),
+                localMappings,
+                sharedMappings,
+                gatewayPeerClient);
+    }
+
+    @Test
+    void shouldEncodeOwningNodeInMintedIds() {
+        var requestId = new NodeOwnedRequestIds(OTHER_NODE).next();
+
+        assertThat(requestId.version()).isEqualTo(8);
+        assertThat(requestId.variant()).isEqualTo(2);
+        assertThat(NodeOwnedRequestIds.ownerOf(requestId.toString())).contains(OTHER_NODE);
+        assertThat(NodeOwnedRequestIds.ownerOf(UUID.randomUUID().toString())).isEmpty();
+    }
+
+    @Test
+    void shouldResolveOwnIdsFromLocalMappings() {
+        var gatewayRequestId = new NodeOwnedRequestIds(THIS_NODE).next().toString();
+        var callerRequestId = string();
+        when(localMappings.get(gatewayRequestId)).thenReturn(just(callerRequestId));
+
+        StepVerifier.create(requestIdMappings.get(gatewayRequestId))
+                .expectNext(callerRequestId)
+                .verifyComplete();
+        verify(gatewayPeerClient, never()).requestIdMapping(anyInt(), any());
+    }
+
+    @Test
+    void shouldAskOwningNodeForIdsMintedElsewhere() {
+        var gatewayRequestId = new NodeOwnedRequestIds(OTHER_NODE).next().toString();
+        var callerRequestId = string();
+        when(gatewayPeerClient.requestIdMapping(OTHER_NODE, gatewayRequestId))
+                .thenReturn(just(new RequestIdMapping(gatewayRequestId, callerRequestId)));
+
+        StepVerifier.create(requestIdMappings.get(gatewayRequestId))
+                .expectNext(callerRequestId)
+                .verifyComplete();
+        verify(localMappings, never()).get(any());
+    }
+
+    @Test
+    void shouldFallBackToSharedMappingsForIdsWhichAreNotNodeOwned() {
+        var gatewayRequestId = UUID.randomUUID().toString();
+        when(sharedMappings.get(gatewayRequestId)).thenReturn(empty());
+
+        StepVerifier.create(requestIdMappings.get(gatewayRequestId))
+                .verifyComplete();
+        verify(sharedMappings).get(gatewayRequestId);
+    }
+}
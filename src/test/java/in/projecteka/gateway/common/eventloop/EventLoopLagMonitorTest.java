@@ -0,0 +1,84 @@
+package in.projecteka.gateway.common.eventloop;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.channel.DefaultEventLoop;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventLoopLagMonitorTest {
+    private static final long MILLI = Duration.ofMillis(1).toNanos();
+
+    private final AtomicLong nanoTime = new AtomicLong(1);
+    private SimpleMeterRegistry meterRegistry;
+    private DefaultEventLoop loop;
+    private EventLoopLagMonitor monitor;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        loop = new DefaultEventLoop();
+        monitor = new EventLoopLagMonitor(meterRegistry, new EventLoopLagOptions(100, 1000), nanoTime::get)
+                .monitor("test", loop);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loop.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void shouldRecordTheLagOfEachProbe() throws InterruptedException {
+        monitor.probe();
+        loop.submit(() -> { }).sync();
+
+        var lag = meterRegistry.get("gateway.event.loop.lag").tags("group", "test", "loop", "0").timer();
+        assertThat(lag.count()).isEqualTo(1);
+        assertThat(meterRegistry.get("gateway.event.loop.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldReportABlockedLoopOnce() throws InterruptedException {
+        var release = new CountDownLatch(1);
+        // spins rather than waits, so the blocking call detector has nothing to object to
+        loop.execute(() -> {
+            while (release.getCount() > 0) {
+                Thread.onSpinWait();
+            }
+        });
+
+        monitor.probe();
+        nanoTime.addAndGet(1500 * MILLI);
+        monitor.probe();
+        nanoTime.addAndGet(1500 * MILLI);
+        monitor.probe();
+
+        assertThat(meterRegistry.get("gateway.event.loop.blocked").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("gateway.event.loop.pending").gauge().value()).isEqualTo(3000);
+
+        release.countDown();
+        loop.submit(() -> { }).sync();
+
+        assertThat(meterRegistry.get("gateway.event.loop.lag").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("gateway.event.loop.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldReleaseTheLoopsItWasHandedOnceStopped() {
+        var released = new AtomicInteger();
+        monitor.monitor("allocated", loop, released::incrementAndGet);
+
+        monitor.stopProbing();
+        monitor.stopProbing();
+
+        assertThat(released).hasValue(1);
+    }
+}
@@ -0,0 +1,102 @@
+package in.projecteka.gateway.common.inflight;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Clock;
+
+import static in.projecteka.gateway.common.Constants.API_CALLED;
+import static in.projecteka.gateway.common.Constants.X_CM_ID;
+import static in.projecteka.gateway.common.Constants.X_HIP_ID;
+import static in.projecteka.gateway.common.inflight.InFlightRequests.ROUTE_ATTEMPT;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_REQUEST_ID;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.withRoute;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class InFlightRequestsTest {
+    @Mock
+    Clock clock;
+
+    private InFlightRequests inFlightRequests;
+
+    @BeforeEach
+    void init() {
+        initMocks(this);
+        inFlightRequests = new InFlightRequests(clock);
+    }
+
+    @Test
+    void shouldHoldACallOnlyWhileItIsInFlight() {
+        var requestId = string();
+        var apiCalled = string();
+        var targetId = string();
+        var context = withRoute(Context.of(API_CALLED, apiCalled, ROUTE_REQUEST_ID, requestId, ROUTE_ATTEMPT, 2),
+                X_CM_ID,
+                X_HIP_ID);
+        when(clock.millis()).thenReturn(1_000L, 3_500L);
+
+        var call = inFlightRequests.tracked("request", targetId, Mono.never())
+                .subscriberContext(context)
+                .subscribe();
+
+        var snapshot = inFlightRequests.snapshot(10);
+        assertThat(snapshot.getTotal()).isEqualTo(1);
+        var target = snapshot.getTargets().get(0);
+        assertThat(target.getTarget()).isEqualTo("HIP");
+        assertThat(target.getTargetId()).isEqualTo(targetId);
+        assertThat(target.getCount()).isEqualTo(1);
+        assertThat(target.getOldestAgeInMillis()).isEqualTo(2_500L);
+        assertThat(target.getAgeHistogram()).containsEntry("<5000ms", 1).containsEntry("<1000ms", 0);
+        var oldest = snapshot.getOldest().get(0);
+        assertThat(oldest.getRequestId()).isEqualTo(requestId);
+        assertThat(oldest.getApi()).isEqualTo(apiCalled);
+        assertThat(oldest.getKind()).isEqualTo("request");
+        assertThat(oldest.getAttempt()).isEqualTo(2);
+
+        call.dispose();
+
+        assertThat(inFlightRequests.count()).isZero();
+    }
+
+    @Test
+    void shouldRemoveACallOnceItTerminates() {
+        when(clock.millis()).thenReturn(0L);
+
+        StepVerifier.create(inFlightRequests.tracked("response", string(), Mono.error(new RuntimeException())))
+                .verifyError(RuntimeException.class);
+
+        assertThat(inFlightRequests.count()).isZero();
+    }
+
+    @Test
+    void shouldGroupByTargetAndListTheOldestFirst() {
+        var busyTarget = string();
+        var quietTarget = string();
+        when(clock.millis()).thenReturn(100L, 200L, 300L, 70_000L);
+        var calls = new Disposable[]{
+                inFlightRequests.tracked("request", quietTarget, Mono.never()).subscribe(),
+                inFlightRequests.tracked("request", busyTarget, Mono.never()).subscribe(),
+                inFlightRequests.tracked("request", busyTarget, Mono.never()).subscribe()};
+
+        var snapshot = inFlightRequests.snapshot(2);
+
+        assertThat(snapshot.getTargets()).hasSize(2);
+        assertThat(snapshot.getTargets().get(0).getTargetId()).isEqualTo(busyTarget);
+        assertThat(snapshot.getTargets().get(0).getCount()).isEqualTo(2);
+        assertThat(snapshot.getTargets().get(0).getAgeHistogram()).containsEntry(">=60000ms", 2);
+        assertThat(snapshot.getOldest()).hasSize(2);
+        assertThat(snapshot.getOldest().get(0).getTargetId()).isEqualTo(quietTarget);
+        assertThat(snapshot.getOldest().get(0).getTarget()).isEqualTo("unknown");
+        for (var call : calls) {
+            call.dispose();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package in.projecteka.gateway.common.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static in.projecteka.gateway.common.Constants.API_CALLED;
+import static in.projecteka.gateway.common.Constants.X_CM_ID;
+import static in.projecteka.gateway.common.Constants.X_HIP_ID;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_REQUEST_ID;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_TARGET_ID;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.withRoute;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GatewayEventsTest {
+    private static final String CACHE_ACCESS = "in.projecteka.gateway.CacheAccess";
+
+    private Recording recording;
+
+    @BeforeEach
+    void setUp() {
+        recording = new Recording();
+        recording.enable(CACHE_ACCESS).withoutThreshold();
+        recording.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        recording.close();
+    }
+
+    @Test
+    void shouldRecordTheRouteFromTheSubscriberContext() throws IOException {
+        var apiCalled = string();
+        var requestId = string();
+        var targetId = string();
+        var key = string();
+        var context = withRoute(Context.of(API_CALLED, apiCalled, ROUTE_REQUEST_ID, requestId, ROUTE_TARGET_ID, targetId),
+                X_CM_ID,
+                X_HIP_ID);
+
+        StepVerifier.create(GatewayEvents.recorded(CacheAccessEvent.class, () -> new CacheAccessEvent("GET", key),
+                Mono.just(string()),
+                (event, value) -> event.setHit(true))
+                .subscriberContext(context))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        var events = recordedEvents();
+        assertThat(events).hasSize(1);
+        var event = events.get(0);
+        assertThat(event.getString("api")).isEqualTo(apiCalled);
+        assertThat(event.getString("requestId")).isEqualTo(requestId);
+        assertThat(event.getString("targetId")).isEqualTo(targetId);
+        assertThat(event.getString("source")).isEqualTo("CM");
+        assertThat(event.getString("target")).isEqualTo("HIP");
+        assertThat(event.getString("key")).isEqualTo(key);
+        assertThat(event.getBoolean("hit")).isTrue();
+        assertThat(event.getString("outcome")).isEqualTo("success");
+    }
+
+    @Test
+    void shouldRecordAnErrorOutcome() throws IOException {
+        StepVerifier.create(GatewayEvents.recorded(CacheAccessEvent.class, () -> new CacheAccessEvent("SET", string()),
+                Mono.error(new RuntimeException())))
+                .verifyError(RuntimeException.class);
+
+        var events = recordedEvents();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getString("outcome")).isEqualTo("error");
+        assertThat(events.get(0).getBoolean("hit")).isFalse();
+    }
+
+    @Test
+    void shouldPassThroughWhenTheEventIsNotEnabled() throws IOException {
+        recording.disable(CACHE_ACCESS);
+        var value = string();
+
+        StepVerifier.create(GatewayEvents.recorded(CacheAccessEvent.class,
+                () -> new CacheAccessEvent("GET", string()),
+                Mono.just(value)))
+                .expectNext(value)
+                .verifyComplete();
+
+        assertThat(recordedEvents()).isEmpty();
+    }
+
+    private List<RecordedEvent> recordedEvents() throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("gateway", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().equals(CACHE_ACCESS))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
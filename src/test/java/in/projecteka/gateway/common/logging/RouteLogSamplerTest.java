@@ -0,0 +1,58 @@
+package in.projecteka.gateway.common.logging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static in.projecteka.gateway.common.Constants.CORRELATION_ID;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteLogSamplerTest {
+    @AfterEach
+    void tearDown() {
+        MDC.clear();
+    }
+
+    @Test
+    void shouldSampleEverythingWhenRateIsOne() {
+        var sampler = new RouteLogSampler(1, null);
+
+        assertThat(sampler.isSampling()).isFalse();
+        assertThat(sampler.isSampled(string())).isTrue();
+    }
+
+    @Test
+    void shouldMakeTheSameDecisionForEveryLineOfARequest() {
+        var apiCalled = string();
+        var sampler = new RouteLogSampler(1, Map.of(apiCalled, 4));
+        MDC.put(CORRELATION_ID, string());
+
+        var decision = sampler.admit(apiCalled);
+
+        assertThat(sampler.isSampling()).isTrue();
+        IntStream.range(0, 10).forEach(i -> assertThat(sampler.isSampled(apiCalled)).isEqualTo(decision));
+    }
+
+    @Test
+    void shouldUseDefaultRateForRoutesWithoutOverride() {
+        var sampler = new RouteLogSampler(1, Map.of(string(), 1000));
+
+        assertThat(sampler.isSampled(string())).isTrue();
+    }
+
+    @Test
+    void shouldCountAdmittedRequestsPerRouteUntilDrained() {
+        var apiCalled = string();
+        var sampler = new RouteLogSampler(10, Map.of());
+
+        sampler.admit(apiCalled);
+        sampler.admit(apiCalled);
+
+        assertThat(sampler.drainAdmitted()).containsEntry(apiCalled, 2L);
+        assertThat(sampler.drainAdmitted()).isEmpty();
+    }
+}
@@ -0,0 +1,121 @@
+package in.projecteka.gateway.common.metrics;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import in.projecteka.gateway.common.cache.LoadingCacheAdapter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+
+import static in.projecteka.gateway.common.Constants.API_CALLED;
+import static in.projecteka.gateway.common.Constants.X_CM_ID;
+import static in.projecteka.gateway.common.Constants.X_HIP_ID;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.ROUTE_TARGET_ID;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.withRoute;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+class RoundTripTrackingMappingsTest {
+    private static final String TRACKED_TARGET_ID = "tracked-hip";
+
+    @Mock
+    Clock clock;
+
+    @Mock
+    Ticker ticker;
+
+    private LoadingCacheAdapter<String, String> store;
+    private SimpleMeterRegistry meterRegistry;
+    private RoundTripTrackingMappings mappings;
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.initMocks(this);
+        store = new LoadingCacheAdapter<>(CacheBuilder.newBuilder().build(CacheLoader.from(key -> "")));
+        meterRegistry = new SimpleMeterRegistry();
+        mappings = new RoundTripTrackingMappings(store,
+                meterRegistry,
+                Duration.ofSeconds(60),
+                Set.of(TRACKED_TARGET_ID),
+                true,
+                clock,
+                ticker);
+    }
+
+    @Test
+    void shouldRecordRoundTripWhenCallbackResolvesTheMapping() {
+        var gatewayRequestId = string();
+        var callerRequestId = string();
+        var apiCalled = string();
+        when(clock.millis()).thenReturn(1_000L, 1_250L);
+
+        StepVerifier.create(mappings.put(gatewayRequestId, callerRequestId)
+                .subscriberContext(context -> withRoute(context.put(API_CALLED, apiCalled)
+                        .put(ROUTE_TARGET_ID, TRACKED_TARGET_ID), X_CM_ID, X_HIP_ID)))
+                .verifyComplete();
+        StepVerifier.create(mappings.get(gatewayRequestId))
+                .expectNext(callerRequestId)
+                .verifyComplete();
+
+        var roundTrip = meterRegistry.get("gateway.round.trip").tags("api", apiCalled, "target", "HIP").timer();
+        assertThat(roundTrip.count()).isEqualTo(1);
+        assertThat(roundTrip.totalTime(MILLISECONDS)).isEqualTo(250);
+        assertThat(meterRegistry.get("gateway.round.trip.by.target")
+                .tags("targetId", TRACKED_TARGET_ID)
+                .timer()
+                .count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldTagTheRoundTripsOfUntrackedTargetsAsOther() {
+        var gatewayRequestId = string();
+        when(clock.millis()).thenReturn(1_000L, 1_250L);
+
+        mappings.put(gatewayRequestId, string())
+                .subscriberContext(context -> context.put(ROUTE_TARGET_ID, string()))
+                .block();
+        mappings.get(gatewayRequestId).block();
+
+        assertThat(meterRegistry.get("gateway.round.trip.by.target").tags("targetId", "other").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldReadMappingsWrittenWithoutDispatchDetails() {
+        var gatewayRequestId = string();
+        var callerRequestId = string();
+        store.put(gatewayRequestId, callerRequestId).block();
+
+        StepVerifier.create(mappings.get(gatewayRequestId))
+                .expectNext(callerRequestId)
+                .verifyComplete();
+
+        assertThat(meterRegistry.find("gateway.round.trip").timer()).isNull();
+    }
+
+    @Test
+    void shouldCountDispatchesWithoutCallbackAsTimeouts() {
+        var apiCalled = string();
+        when(clock.millis()).thenReturn(1_000L);
+        when(ticker.read()).thenReturn(0L);
+        mappings.put(string(), string()).subscriberContext(context -> context.put(API_CALLED, apiCalled)).block();
+
+        when(ticker.read()).thenReturn(Duration.ofSeconds(61).toNanos());
+        mappings.put(string(), string()).block();
+
+        assertThat(meterRegistry.get("gateway.round.trip.timeouts")
+                .tags("api", apiCalled, "cause", "expired")
+                .counter()
+                .count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,73 @@
+package in.projecteka.gateway.common.metrics;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static in.projecteka.gateway.common.Constants.API_CALLED;
+import static in.projecteka.gateway.common.Constants.X_CM_ID;
+import static in.projecteka.gateway.common.Constants.X_HIP_ID;
+import static in.projecteka.gateway.common.Constants.X_HIU_ID;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.Stage.OUTBOUND_CALL;
+import static in.projecteka.gateway.common.metrics.RoutingMetrics.withRoute;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoutingMetricsTest {
+    private SimpleMeterRegistry meterRegistry;
+    private RoutingMetrics routingMetrics;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        routingMetrics = new RoutingMetrics(meterRegistry);
+    }
+
+    @Test
+    void shouldRecordStageDurationTaggedWithRouteFromContext() {
+        var apiCalled = string();
+
+        for (var target : new String[]{X_HIP_ID, X_HIU_ID, X_HIP_ID}) {
+            StepVerifier.create(routingMetrics.timed(OUTBOUND_CALL, Mono.just(string()))
+                    .subscriberContext(context -> withRoute(context.put(API_CALLED, apiCalled), X_CM_ID, target)))
+                    .expectNextCount(1)
+                    .verifyComplete();
+        }
+
+        var tags = Tags.of("api", apiCalled, "stage", "outbound_call", "source", "CM", "outcome", "success");
+        assertThat(meterRegistry.get("gateway.route.stage").tags(tags.and("target", "HIP")).timer().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("gateway.route.stage").tags(tags.and("target", "HIU")).timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldRecordFailuresAsErrorOutcomeWithUnknownRoute() {
+        StepVerifier.create(routingMetrics.timed(OUTBOUND_CALL, Mono.error(new RuntimeException())))
+                .verifyError(RuntimeException.class);
+
+        var timer = meterRegistry.get("gateway.route.stage")
+                .tags("api", "unknown", "outcome", "error")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldTrackInFlightCallsForAStage() {
+        var apiCalled = string();
+        var inFlight = routingMetrics.timed(OUTBOUND_CALL, Mono.never())
+                .subscriberContext(context -> context.put(API_CALLED, apiCalled))
+                .subscribe();
+
+        assertThat(meterRegistry.get("gateway.route.stage.in.flight").tags("api", apiCalled).gauge().value())
+                .isEqualTo(1);
+
+        inFlight.dispose();
+
+        assertThat(meterRegistry.get("gateway.route.stage.in.flight").tags("api", apiCalled).gauge().value())
+                .isEqualTo(0);
+    }
+}
@@ -0,0 +1,123 @@
+package in.projecteka.gateway.common.replay;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.reactive.RedisReactiveCommands;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnectionImpl;
+import io.lettuce.core.pubsub.api.reactive.RedisPubSubReactiveCommands;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class BroadcastingRequestIdFilterTest {
+    private static final String CHANNEL = "replay_ids";
+    private static final long RETENTION = Duration.ofMinutes(10).toMillis();
+
+    @Mock
+    RedisClient redisClient;
+
+    @Mock
+    StatefulRedisConnection<String, String> publishConnection;
+
+    @Mock
+    RedisReactiveCommands<String, String> publishCommands;
+
+    @Mock
+    RedisPubSubReactiveCommands<String, String> subscribeCommands;
+
+    @Mock
+    Clock clock;
+
+    private StatefulRedisPubSubConnection<String, String> subscribeConnection;
+    private RequestIdFilter requestIds;
+    private BroadcastingRequestIdFilter filter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void init() {
+        initMocks(this);
+        subscribeConnection = mock(StatefulRedisPubSubConnectionImpl.class);
+        when(redisClient.connect()).thenReturn(publishConnection);
+        when(redisClient.connectPubSub()).thenReturn(subscribeConnection);
+        when(publishConnection.reactive()).thenReturn(publishCommands);
+        when(subscribeConnection.reactive()).thenReturn(subscribeCommands);
+        when(subscribeCommands.observeChannels()).thenReturn(Flux.never());
+        when(subscribeCommands.subscribe(any())).thenReturn(Mono.empty());
+        when(clock.millis()).thenReturn(0L);
+        requestIds = new RotatingBloomFilter(Duration.ZERO, Duration.ofMinutes(1), 1000, 0.001, clock);
+        filter = new BroadcastingRequestIdFilter(requestIds,
+                redisClient,
+                CHANNEL,
+                Duration.ofHours(1),
+                Duration.ofMillis(RETENTION),
+                clock);
+        filter.postConstruct();
+    }
+
+    @AfterEach
+    void tearDown() {
+        filter.preDestroy();
+    }
+
+    @Test
+    void shouldTrustTheFilterOnceSubscribedForARetentionWindow() {
+        when(clock.millis()).thenReturn(RETENTION - 1);
+        assertThat(filter.mightContain(string())).isTrue();
+
+        when(clock.millis()).thenReturn(RETENTION);
+        assertThat(filter.mightContain(string())).isFalse();
+    }
+
+    @Test
+    void shouldPublishTheIdsOfAFailedPublishWithTheNextFlush() {
+        var requestId = string();
+        when(clock.millis()).thenReturn(RETENTION);
+        when(publishCommands.publish(eq(CHANNEL), anyString()))
+                .thenReturn(Mono.error(new RuntimeException()))
+                .thenReturn(Mono.just(1L));
+        filter.put(requestId);
+
+        StepVerifier.create(filter.flush()).verifyComplete();
+        assertThat(filter.mightContain(string())).isTrue();
+        StepVerifier.create(filter.flush()).expectNext(1L).verifyComplete();
+
+        when(clock.millis()).thenReturn(2 * RETENTION - 1);
+        assertThat(filter.mightContain(string())).isTrue();
+        when(clock.millis()).thenReturn(2 * RETENTION);
+        assertThat(filter.mightContain(string())).isFalse();
+    }
+
+    @Test
+    void shouldAskTheStoreWhileTheSubscriptionIsDownAndForARetentionWindowAfter() {
+        var connection = (RedisChannelHandler<?, ?>) subscribeConnection;
+        when(clock.millis()).thenReturn(RETENTION);
+
+        filter.onRedisDisconnected(connection);
+        when(clock.millis()).thenReturn(5 * RETENTION);
+        assertThat(filter.mightContain(string())).isTrue();
+
+        filter.onRedisConnected(connection, null);
+        when(clock.millis()).thenReturn(6 * RETENTION - 1);
+        assertThat(filter.mightContain(string())).isTrue();
+        when(clock.millis()).thenReturn(6 * RETENTION);
+        assertThat(filter.mightContain(string())).isFalse();
+    }
+}
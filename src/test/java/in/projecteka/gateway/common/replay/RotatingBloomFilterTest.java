@@ -0,0 +1,66 @@
+package in.projecteka.gateway.common.replay;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+class RotatingBloomFilterTest {
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    @Mock
+    Clock clock;
+
+    private RotatingBloomFilter filter;
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.initMocks(this);
+        when(clock.millis()).thenReturn(0L);
+        filter = new RotatingBloomFilter(Duration.ofMinutes(10), Duration.ofMinutes(1), 1000, 0.001, clock);
+    }
+
+    @Test
+    void shouldAnswerMightContainForEverythingWhileWarmingUp() {
+        when(clock.millis()).thenReturn(9 * MINUTE);
+
+        assertThat(filter.mightContain(string())).isTrue();
+    }
+
+    @Test
+    void shouldAnswerDefinitelyNewForUnseenIdsOnceWarm() {
+        when(clock.millis()).thenReturn(10 * MINUTE);
+
+        assertThat(filter.mightContain(string())).isFalse();
+    }
+
+    @Test
+    void shouldRememberIdsForTheWholeRetentionWindow() {
+        var requestId = string();
+        when(clock.millis()).thenReturn(10 * MINUTE);
+        filter.put(requestId);
+
+        when(clock.millis()).thenReturn(20 * MINUTE + MINUTE - 1);
+
+        assertThat(filter.mightContain(requestId)).isTrue();
+    }
+
+    @Test
+    void shouldForgetIdsOnceTheirBucketRotatesOut() {
+        var requestId = string();
+        when(clock.millis()).thenReturn(10 * MINUTE);
+        filter.put(requestId);
+
+        when(clock.millis()).thenReturn(21 * MINUTE);
+        filter.put(string());
+
+        assertThat(filter.mightContain(requestId)).isFalse();
+    }
+}
@@ -0,0 +1,231 @@
+package in.projecteka.gateway.common.reprocess;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Envelope;
+import in.projecteka.gateway.clients.ClientError;
+import in.projecteka.gateway.common.reprocess.model.ReprocessRequest;
+import in.projecteka.gateway.common.reprocess.model.ReprocessState;
+import in.projecteka.gateway.common.retry.QueuedDeliveries;
+import in.projecteka.gateway.common.retry.RetryPublisher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.ConsumeOptions;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.Receiver;
+import reactor.rabbitmq.Sender;
+import reactor.test.StepVerifier;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static in.projecteka.gateway.common.Constants.GW_EXCHANGE;
+import static in.projecteka.gateway.common.Constants.GW_LINK_QUEUE;
+import static in.projecteka.gateway.common.Constants.GW_PARKING_EXCHANGE;
+import static in.projecteka.gateway.common.Constants.GW_PARKING_LOT_QUEUE;
+import static in.projecteka.gateway.common.Constants.X_CM_ID;
+import static in.projecteka.gateway.common.reprocess.Reprocessor.X_REPROCESS_QUEUE;
+import static in.projecteka.gateway.common.retry.DelayedRetries.FIRST_QUEUED_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.X_RETRY_ATTEMPT;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReprocessorTest {
+    @Mock
+    private Receiver receiver;
+
+    @Mock
+    private Sender sender;
+
+    @Mock
+    private RetryPublisher retryPublisher;
+
+    @Mock
+    private QueuedDeliveries queuedDeliveries;
+
+    @Captor
+    private ArgumentCaptor<OutboundMessage> messageCaptor;
+
+    private SimpleMeterRegistry meterRegistry;
+    private Reprocessor reprocessor;
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        when(queuedDeliveries.workQueueOf(GW_LINK_QUEUE)).thenReturn(Optional.of(GW_LINK_QUEUE));
+        when(queuedDeliveries.workQueueOf("link-confirm-response")).thenReturn(Optional.of(GW_LINK_QUEUE));
+        when(queuedDeliveries.retryQueueOf(eq(GW_LINK_QUEUE), any())).thenReturn(GW_LINK_QUEUE + ".p1");
+        when(retryPublisher.publish(messageCaptor.capture())).thenReturn(Mono.just(true));
+        reprocessor = new Reprocessor(() -> receiver,
+                sender,
+                retryPublisher,
+                queuedDeliveries,
+                new ReprocessOptions(0, 10),
+                meterRegistry);
+    }
+
+    @Test
+    void shouldReplayMatchingMessagesToTheirTargetsPartitionWithTheirAttemptsReset() {
+        var cmId = string();
+        var matching = parked(GW_LINK_QUEUE + ".p1", cmId);
+        var otherTarget = parked(GW_LINK_QUEUE, string());
+        givenParkingLot(matching, otherTarget);
+
+        StepVerifier.create(reprocessor.start(request().route("link-confirm-response").targetId(cmId).build()))
+                .assertNext(status -> assertThat(status.getDepthAtStart()).isEqualTo(2))
+                .verifyComplete();
+
+        var messages = messageCaptor.getAllValues();
+        assertThat(messages.get(0).getExchange()).isEqualTo(GW_EXCHANGE);
+        assertThat(messages.get(0).getRoutingKey()).isEqualTo(GW_LINK_QUEUE + ".p1");
+        verify(queuedDeliveries).retryQueueOf(GW_LINK_QUEUE, cmId);
+        assertThat(messages.get(0).getProperties().getHeaders())
+                .containsEntry(X_RETRY_ATTEMPT, FIRST_QUEUED_ATTEMPT)
+                .doesNotContainKey("x-death");
+        assertThat(messages.get(0).getProperties().getDeliveryMode()).isEqualTo(2);
+        assertThat(messages.get(1).getProperties().getDeliveryMode()).isEqualTo(2);
+        assertThat(messages.get(1).getExchange()).isEmpty();
+        assertThat(messages.get(1).getRoutingKey()).isEqualTo(GW_PARKING_LOT_QUEUE);
+        verify(matching).ack();
+        verify(otherTarget).ack();
+        var status = reprocessor.statuses().get(0);
+        assertThat(status.getState()).isEqualTo(ReprocessState.COMPLETED);
+        assertThat(status.getExamined()).isEqualTo(2);
+        assertThat(status.getReplayed()).isEqualTo(1);
+        assertThat(meterRegistry.get("gateway.reprocess.messages").tag("outcome", "replayed").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldOnlyCountMatchesOnADryRun() {
+        var cmId = string();
+        givenParkingLot(parked(GW_LINK_QUEUE, cmId), parked(GW_LINK_QUEUE, cmId));
+
+        StepVerifier.create(reprocessor.start(request().targetId(cmId).dryRun(true).build()))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(messageCaptor.getAllValues())
+                .extracting(OutboundMessage::getRoutingKey)
+                .containsOnly(GW_PARKING_LOT_QUEUE);
+        var status = reprocessor.statuses().get(0);
+        assertThat(status.getMatched()).isEqualTo(2);
+        assertThat(status.getReplayed()).isZero();
+    }
+
+    @Test
+    void shouldReplayWhatAnEarlierRunPutBack() {
+        var cmId = string();
+        givenParkingLot(parked(GW_LINK_QUEUE + ".p3", cmId));
+        StepVerifier.create(reprocessor.start(request().dryRun(true).build())).expectNextCount(1).verifyComplete();
+        var putBack = messageCaptor.getValue();
+        assertThat(putBack.getProperties().getHeaders()).containsEntry(X_REPROCESS_QUEUE, GW_LINK_QUEUE + ".p3");
+
+        givenParkingLot(delivered(putBack));
+        StepVerifier.create(reprocessor.start(request().route("link-confirm-response").build()))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        var replayed = messageCaptor.getValue();
+        assertThat(replayed.getExchange()).isEqualTo(GW_EXCHANGE);
+        assertThat(replayed.getRoutingKey()).isEqualTo(GW_LINK_QUEUE + ".p1");
+        assertThat(replayed.getProperties().getHeaders()).doesNotContainKey(X_REPROCESS_QUEUE);
+        assertThat(reprocessor.statuses().get(0).getReplayed()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldLeaveMatchesBeyondTheLimitInTheSourceQueue() {
+        var first = parked(GW_LINK_QUEUE, string());
+        var second = parked(GW_LINK_QUEUE, string());
+        givenParkingLot(first, second);
+
+        StepVerifier.create(reprocessor.start(request().limit(1).build())).expectNextCount(1).verifyComplete();
+
+        verify(first).ack();
+        verify(second, never()).ack();
+        verify(receiver).close();
+        assertThat(reprocessor.statuses().get(0).getReplayed()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepMessagesOfRoutesWhichAreNotQueuedAnymore() {
+        var unknownRoute = parked("gw.unknown", string());
+        givenParkingLot(unknownRoute);
+
+        StepVerifier.create(reprocessor.start(request().build())).expectNextCount(1).verifyComplete();
+
+        assertThat(messageCaptor.getValue().getRoutingKey()).isEqualTo(GW_PARKING_LOT_QUEUE);
+        assertThat(reprocessor.statuses().get(0).getMatched()).isZero();
+    }
+
+    @Test
+    void shouldRunOneReprocessingOfASourceAtATime() {
+        givenDepth(100);
+        when(receiver.consumeManualAck(eq(GW_PARKING_LOT_QUEUE), any(ConsumeOptions.class))).thenReturn(Flux.never());
+        StepVerifier.create(reprocessor.start(request().build())).expectNextCount(1).verifyComplete();
+
+        StepVerifier.create(reprocessor.start(request().build())).verifyError(ClientError.class);
+
+        StepVerifier.create(reprocessor.stop(GW_PARKING_LOT_QUEUE))
+                .assertNext(status -> assertThat(status.getState()).isEqualTo(ReprocessState.STOPPED))
+                .verifyComplete();
+        StepVerifier.create(reprocessor.start(request().build())).expectNextCount(1).verifyComplete();
+    }
+
+    @Test
+    void shouldRejectQueuesOtherThanTheDeadLetterQueueAndParkingLot() {
+        StepVerifier.create(reprocessor.start(ReprocessRequest.builder().source(GW_LINK_QUEUE).build()))
+                .verifyError(ClientError.class);
+        StepVerifier.create(reprocessor.start(request().route("unknown-route").build()))
+                .verifyError(ClientError.class);
+    }
+
+    private static ReprocessRequest.ReprocessRequestBuilder request() {
+        return ReprocessRequest.builder().source(GW_PARKING_LOT_QUEUE);
+    }
+
+    private void givenParkingLot(AcknowledgableDelivery... deliveries) {
+        givenDepth(deliveries.length);
+        when(receiver.consumeManualAck(eq(GW_PARKING_LOT_QUEUE), any(ConsumeOptions.class)))
+                .thenReturn(Flux.just(deliveries));
+    }
+
+    private void givenDepth(int depth) {
+        when(sender.declareQueue(any())).thenReturn(Mono.just(new AMQP.Queue.DeclareOk.Builder()
+                .queue(GW_PARKING_LOT_QUEUE)
+                .messageCount(depth)
+                .build()));
+    }
+
+    private static AcknowledgableDelivery delivered(OutboundMessage message) {
+        var delivery = mock(AcknowledgableDelivery.class);
+        when(delivery.getEnvelope()).thenReturn(new Envelope(2, false, message.getExchange(), message.getRoutingKey()));
+        when(delivery.getProperties()).thenReturn(message.getProperties());
+        when(delivery.getBody()).thenReturn(message.getBody());
+        return delivery;
+    }
+
+    private static AcknowledgableDelivery parked(String workQueue, String cmId) {
+        var delivery = mock(AcknowledgableDelivery.class);
+        var headers = new HashMap<String, Object>(Map.of(X_CM_ID, cmId, X_RETRY_ATTEMPT, 7, "x-death", "history"));
+        when(delivery.getEnvelope()).thenReturn(new Envelope(1, false, GW_PARKING_EXCHANGE, workQueue));
+        when(delivery.getProperties()).thenReturn(new AMQP.BasicProperties.Builder().headers(headers).build());
+        when(delivery.getBody()).thenReturn(string().getBytes());
+        return delivery;
+    }
+}
@@ -0,0 +1,235 @@
+package in.projecteka.gateway.common.retry;
+
+import com.rabbitmq.client.AMQP;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.BindingSpecification;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.QueueSpecification;
+import reactor.rabbitmq.Sender;
+import reactor.test.StepVerifier;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static in.projecteka.gateway.common.Constants.GW_DEAD_LETTER_EXCHANGE;
+import static in.projecteka.gateway.common.Constants.GW_EXCHANGE;
+import static in.projecteka.gateway.common.Constants.GW_LINK_QUEUE;
+import static in.projecteka.gateway.common.Constants.GW_PARKING_EXCHANGE;
+import static in.projecteka.gateway.common.Constants.X_CM_ID;
+import static in.projecteka.gateway.common.retry.DelayedRetries.FIRST_QUEUED_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.HANDED_OFF_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.X_RETRY_ATTEMPT;
+import static in.projecteka.gateway.common.retry.DelayedRetries.X_RETRY_HOLDS;
+import static in.projecteka.gateway.testcommon.TestBuilders.serviceOptions;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DelayedRetriesTest {
+    @Mock
+    private Sender sender;
+
+    @Mock
+    private RetryPublisher retryPublisher;
+
+    @Mock
+    private AcknowledgableDelivery delivery;
+
+    @Captor
+    private ArgumentCaptor<OutboundMessage> outboundMessageCaptor;
+
+    @Captor
+    private ArgumentCaptor<QueueSpecification> queueCaptor;
+
+    @Captor
+    private ArgumentCaptor<BindingSpecification> bindingCaptor;
+
+    private DelayedRetries delayedRetries;
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.initMocks(this);
+        delayedRetries = new DelayedRetries(sender,
+                retryPublisher,
+                GW_LINK_QUEUE,
+                serviceOptions().responseMaxRetryAttempts(3).retryAttemptsDelay(1000).retryJitter(0.2).build());
+        when(delivery.getBody()).thenReturn(string().getBytes());
+    }
+
+    @Test
+    void shouldDeclareADelayQueuePerRetryWhichDeadLettersBackToTheWorkQueue() {
+        when(sender.declareQueue(any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(delayedRetries.declare()).verifyComplete();
+
+        verify(sender, times(3)).declareQueue(queueCaptor.capture());
+        var queues = queueCaptor.getAllValues();
+        assertThat(queues).extracting(QueueSpecification::getName)
+                .containsExactly("gw.link.delay.1000ms", "gw.link.delay.2000ms", "gw.link.delay.4000ms");
+        assertThat(queues.get(2).getArguments())
+                .containsEntry("x-message-ttl", 4000L)
+                .containsEntry("x-dead-letter-exchange", GW_EXCHANGE)
+                .containsEntry("x-dead-letter-routing-key", GW_LINK_QUEUE);
+    }
+
+    @Test
+    void shouldDeclareTheWorkQueueBoundToTheExchange() {
+        when(sender.declareQueue(any())).thenReturn(Mono.empty());
+        when(sender.bind(any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(delayedRetries.declareWorkQueue()).verifyComplete();
+
+        verify(sender).declareQueue(queueCaptor.capture());
+        assertThat(queueCaptor.getValue().getName()).isEqualTo(GW_LINK_QUEUE);
+        assertThat(queueCaptor.getValue().getArguments())
+                .containsEntry("x-dead-letter-exchange", GW_DEAD_LETTER_EXCHANGE);
+        verify(sender).bind(bindingCaptor.capture());
+        assertThat(bindingCaptor.getValue().getExchange()).isEqualTo(GW_EXCHANGE);
+        assertThat(bindingCaptor.getValue().getRoutingKey()).isEqualTo(GW_LINK_QUEUE);
+        assertThat(bindingCaptor.getValue().getQueue()).isEqualTo(GW_LINK_QUEUE);
+    }
+
+    @Test
+    void shouldPublishTheNextAttemptToItsDelayQueueWithJitterAndAck() {
+        var cmId = string();
+        givenDelivery(Map.of(X_RETRY_ATTEMPT, 3, X_CM_ID, cmId));
+        when(retryPublisher.publish(outboundMessageCaptor.capture())).thenReturn(Mono.just(true));
+
+        StepVerifier.create(delayedRetries.delay(delivery)).verifyComplete();
+
+        var message = outboundMessageCaptor.getValue();
+        assertThat(message.getExchange()).isEmpty();
+        assertThat(message.getRoutingKey()).isEqualTo("gw.link.delay.2000ms");
+        assertThat(message.getProperties().getHeaders())
+                .containsEntry(X_RETRY_ATTEMPT, 4)
+                .containsEntry(X_CM_ID, cmId);
+        assertThat(Long.parseLong(message.getProperties().getExpiration())).isBetween(1600L, 2000L);
+        assertThat(message.getProperties().getDeliveryMode()).isEqualTo(2);
+        verify(delivery).ack();
+    }
+
+    @Test
+    void shouldTreatADeliveryWithoutAttemptAsTheFirstQueuedAttempt() {
+        givenDelivery(Map.of());
+        when(retryPublisher.publish(outboundMessageCaptor.capture())).thenReturn(Mono.just(true));
+
+        StepVerifier.create(delayedRetries.delay(delivery)).verifyComplete();
+
+        var message = outboundMessageCaptor.getValue();
+        assertThat(message.getRoutingKey()).isEqualTo("gw.link.delay.1000ms");
+        assertThat(message.getProperties().getHeaders()).containsEntry(X_RETRY_ATTEMPT, 3);
+    }
+
+    @Test
+    void shouldDelayAFailedHandedOffAttemptByTheFirstDelay() {
+        givenDelivery(Map.of(X_RETRY_ATTEMPT, HANDED_OFF_ATTEMPT));
+        when(retryPublisher.publish(outboundMessageCaptor.capture())).thenReturn(Mono.just(true));
+
+        StepVerifier.create(delayedRetries.delay(delivery)).verifyComplete();
+
+        var message = outboundMessageCaptor.getValue();
+        assertThat(message.getRoutingKey()).isEqualTo("gw.link.delay.1000ms");
+        assertThat(message.getProperties().getHeaders()).containsEntry(X_RETRY_ATTEMPT, FIRST_QUEUED_ATTEMPT);
+        assertThat(delayedRetries.exhausted(delivery)).isFalse();
+    }
+
+    @Test
+    void shouldBeExhaustedOnceEveryRetryHasBeenUsed() {
+        givenDelivery(Map.of(X_RETRY_ATTEMPT, 4));
+        assertThat(delayedRetries.exhausted(delivery)).isFalse();
+
+        givenDelivery(Map.of(X_RETRY_ATTEMPT, 5));
+        assertThat(delayedRetries.exhausted(delivery)).isTrue();
+    }
+
+    @Test
+    void shouldParkOnTheParkingExchangeAndAck() {
+        givenDelivery(Map.of(X_RETRY_ATTEMPT, 5));
+        when(retryPublisher.publish(outboundMessageCaptor.capture())).thenReturn(Mono.just(true));
+
+        StepVerifier.create(delayedRetries.park(delivery)).verifyComplete();
+
+        var message = outboundMessageCaptor.getValue();
+        assertThat(message.getExchange()).isEqualTo(GW_PARKING_EXCHANGE);
+        assertThat(message.getRoutingKey()).isEqualTo(GW_LINK_QUEUE);
+        assertThat(message.getProperties().getHeaders()).containsEntry(X_RETRY_ATTEMPT, 5);
+        assertThat(message.getProperties().getDeliveryMode()).isEqualTo(2);
+        verify(delivery).ack();
+    }
+
+    @Test
+    void shouldHoldADeliveryWithoutUsingUpAnAttempt() {
+        var holding = new DelayedRetries(sender,
+                retryPublisher,
+                GW_LINK_QUEUE,
+                serviceOptions().responseMaxRetryAttempts(1).retryAttemptsDelay(1000).build(),
+                30_000,
+                0);
+        when(sender.declareQueue(any())).thenReturn(Mono.empty());
+        givenDelivery(Map.of(X_RETRY_ATTEMPT, 3));
+        when(retryPublisher.publish(outboundMessageCaptor.capture())).thenReturn(Mono.just(true));
+
+        StepVerifier.create(holding.declare()).verifyComplete();
+        StepVerifier.create(holding.hold(delivery)).verifyComplete();
+
+        verify(sender, times(2)).declareQueue(queueCaptor.capture());
+        var holdQueue = queueCaptor.getAllValues().get(1);
+        assertThat(holdQueue.getName()).isEqualTo("gw.link.held.30000ms");
+        assertThat(holdQueue.getArguments())
+                .containsEntry("x-message-ttl", 30_000L)
+                .containsEntry("x-dead-letter-routing-key", GW_LINK_QUEUE);
+        var message = outboundMessageCaptor.getValue();
+        assertThat(message.getRoutingKey()).isEqualTo("gw.link.held.30000ms");
+        assertThat(message.getProperties().getHeaders())
+                .containsEntry(X_RETRY_ATTEMPT, 3)
+                .containsEntry(X_RETRY_HOLDS, 1);
+        assertThat(message.getProperties().getDeliveryMode()).isEqualTo(2);
+        verify(delivery).ack();
+    }
+
+    @Test
+    void shouldBeHeldOutOnceHeldAsOftenAsAllowed() {
+        var holding = new DelayedRetries(sender,
+                retryPublisher,
+                GW_LINK_QUEUE,
+                serviceOptions().responseMaxRetryAttempts(1).retryAttemptsDelay(1000).build(),
+                30_000,
+                2);
+
+        givenDelivery(Map.of(X_RETRY_HOLDS, 1));
+        assertThat(holding.heldOut(delivery)).isFalse();
+        givenDelivery(Map.of(X_RETRY_HOLDS, 2));
+        assertThat(holding.heldOut(delivery)).isTrue();
+        assertThat(delayedRetries.heldOut(delivery)).isFalse();
+    }
+
+    @Test
+    void shouldDeadLetterTheDeliveryWhenItsRepublicationIsNotConfirmed() {
+        givenDelivery(Map.of());
+        when(retryPublisher.publish(outboundMessageCaptor.capture())).thenReturn(Mono.just(false));
+
+        StepVerifier.create(delayedRetries.delay(delivery)).verifyComplete();
+
+        verify(delivery).nack(false);
+        verify(delivery, never()).ack();
+        verify(delivery, never()).nack(anyBoolean(), anyBoolean());
+    }
+
+    private void givenDelivery(Map<String, Object> headers) {
+        when(delivery.getProperties()).thenReturn(new AMQP.BasicProperties.Builder()
+                .headers(new HashMap<>(headers))
+                .build());
+    }
+}
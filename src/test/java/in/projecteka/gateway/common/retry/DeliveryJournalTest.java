@@ -0,0 +1,150 @@
+package in.projecteka.gateway.common.retry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.rabbitmq.OutboundMessage;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static in.projecteka.gateway.common.Constants.GW_EXCHANGE;
+import static in.projecteka.gateway.common.retry.RetryEnvelope.X_RETRY_ROUTING_KEY;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeliveryJournalTest {
+    @TempDir
+    Path directory;
+
+    private DeliveryJournal journal(int segmentSize) throws IOException {
+        return new DeliveryJournal(new JournalOptions(directory.toString(), segmentSize, false));
+    }
+
+    @Test
+    void shouldReadAppendedMessagesAsTheyWere() throws IOException {
+        var body = "{\"requestId\":\"" + string() + "\"}";
+        var routingKey = string();
+        var message = new OutboundMessage(GW_EXCHANGE,
+                "gw.link.delay.1000ms",
+                RetryEnvelope.properties(Map.of(X_RETRY_ROUTING_KEY, routingKey, "x-attempt", 2), "correlation"),
+                body.getBytes(UTF_8));
+
+        try (var journal = journal(4096)) {
+            assertThat(journal.append(message)).isTrue();
+
+            var entries = journal.read(10);
+
+            assertThat(entries).hasSize(1);
+            var read = entries.get(0).getMessage();
+            assertThat(read.getExchange()).isEqualTo(GW_EXCHANGE);
+            assertThat(read.getRoutingKey()).isEqualTo("gw.link.delay.1000ms");
+            assertThat(new String(read.getBody(), UTF_8)).isEqualTo(body);
+            assertThat(read.getProperties().getCorrelationId()).isEqualTo("correlation");
+            assertThat(read.getProperties().getDeliveryMode()).isEqualTo(2);
+            assertThat(read.getProperties().getHeaders())
+                    .containsEntry(X_RETRY_ROUTING_KEY, routingKey)
+                    .containsEntry("x-attempt", 2);
+            assertThat(journal.pending()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void shouldRecoverWhatWasNotAcknowledgedAfterAReopen() throws IOException {
+        try (var journal = journal(4096)) {
+            journal.append(message("first"));
+            journal.append(message("second"));
+            journal.append(message("third"));
+            journal.acknowledge(journal.read(1).get(0), 1);
+        }
+
+        try (var journal = journal(4096)) {
+            assertThat(journal.pending()).isEqualTo(2);
+            journal.append(message("fourth"));
+            assertThat(bodiesOf(journal)).isEqualTo("second,third,fourth");
+        }
+    }
+
+    @Test
+    void shouldRollSegmentsAndDeleteThoseFullyAcknowledged() throws IOException {
+        try (var journal = journal(128)) {
+            for (int i = 0; i < 10; i++) {
+                assertThat(journal.append(message("message-" + i))).isTrue();
+            }
+            assertThat(segments()).isGreaterThan(1);
+
+            var entries = journal.read(10);
+            assertThat(entries).hasSize(10);
+            journal.acknowledge(entries.get(9), 10);
+
+            assertThat(segments()).isEqualTo(1);
+            assertThat(journal.pending()).isZero();
+            assertThat(journal.read(10)).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldRefuseAMessageLargerThanASegment() throws IOException {
+        try (var journal = journal(64)) {
+            assertThat(journal.append(message("x".repeat(100)))).isFalse();
+            assertThat(journal.pending()).isZero();
+        }
+    }
+
+    @Test
+    void shouldRefuseAppendsOnceClosed() throws IOException {
+        var journal = journal(4096);
+        journal.close();
+
+        assertThat(journal.append(message(string()))).isFalse();
+        assertThat(journal.read(10)).isEmpty();
+        assertThat(journal.pending()).isZero();
+    }
+
+    @Test
+    void shouldIgnoreARecordTornByACrash() throws IOException {
+        try (var journal = journal(4096)) {
+            journal.append(message("first"));
+            journal.append(message("second"));
+        }
+        try (var segment = new RandomAccessFile(directory.resolve(String.format("%020d.segment", 0)).toFile(), "rw")) {
+            long secondRecord = 8 + DeliveryJournal.encode(message("first")).length;
+            segment.seek(secondRecord + 10);
+            segment.write(0xff);
+        }
+
+        try (var journal = journal(4096)) {
+            assertThat(journal.pending()).isEqualTo(1);
+            journal.append(message("third"));
+            assertThat(bodiesOf(journal)).isEqualTo("first,third");
+        }
+    }
+
+    @Test
+    void shouldLockTheDirectoryToOneJournal() throws IOException {
+        try (var ignored = journal(4096)) {
+            assertThatThrownBy(() -> journal(4096)).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    private long segments() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".segment")).count();
+        }
+    }
+
+    private static String bodiesOf(DeliveryJournal journal) {
+        return journal.read(10).stream()
+                .map(entry -> new String(entry.getMessage().getBody(), UTF_8))
+                .collect(Collectors.joining(","));
+    }
+
+    private static OutboundMessage message(String body) {
+        return new OutboundMessage(GW_EXCHANGE, "gw.link", body.getBytes(UTF_8));
+    }
+}
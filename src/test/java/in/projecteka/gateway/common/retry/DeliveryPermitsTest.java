@@ -0,0 +1,61 @@
+package in.projecteka.gateway.common.retry;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeliveryPermitsTest {
+    @Test
+    void shouldRunNoMoreWorkAtATimeThanTheLimit() {
+        var permits = new DeliveryPermits(2);
+        var started = new AtomicInteger();
+        var first = new CompletableFuture<Void>();
+
+        permits.withPermit(Mono.fromRunnable(started::incrementAndGet).then(Mono.fromFuture(first))).subscribe();
+        permits.withPermit(Mono.fromRunnable(started::incrementAndGet).then(Mono.never())).subscribe();
+        permits.withPermit(Mono.fromRunnable(started::incrementAndGet)).subscribe();
+
+        assertThat(started.get()).isEqualTo(2);
+        first.complete(null);
+        assertThat(started.get()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldFreeThePermitOfWorkWhichFailed() {
+        var permits = new DeliveryPermits(1);
+
+        StepVerifier.create(permits.withPermit(Mono.error(new RuntimeException()))).verifyError();
+
+        StepVerifier.create(permits.withPermit(Mono.just(1))).expectNext(1).verifyComplete();
+        assertThat(permits.available()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldGiveUpTheTurnOfWorkCancelledWhileWaiting() {
+        var permits = new DeliveryPermits(1);
+        var held = permits.withPermit(Mono.never()).subscribe();
+        var cancelled = permits.withPermit(Mono.just(1)).subscribe();
+
+        cancelled.dispose();
+        held.dispose();
+
+        assertThat(permits.available()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotLimitWithoutALimit() {
+        var permits = DeliveryPermits.unlimited();
+        var started = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) {
+            permits.withPermit(Mono.fromRunnable(started::incrementAndGet).then(Mono.never())).subscribe();
+        }
+
+        assertThat(started.get()).isEqualTo(100);
+    }
+}
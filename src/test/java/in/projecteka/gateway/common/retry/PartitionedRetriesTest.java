@@ -0,0 +1,75 @@
+package in.projecteka.gateway.common.retry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.rabbitmq.Receiver;
+import reactor.rabbitmq.Sender;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static in.projecteka.gateway.common.Constants.GW_LINK_QUEUE;
+import static in.projecteka.gateway.testcommon.TestBuilders.serviceOptions;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionedRetriesTest {
+    @Mock
+    private Receiver receiver;
+
+    @Mock
+    private Sender sender;
+
+    @Mock
+    private RetryPublisher retryPublisher;
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    private PartitionedRetries partitionedRetries(int partitions) {
+        return new PartitionedRetries(receiver,
+                sender,
+                retryPublisher,
+                GW_LINK_QUEUE,
+                partitions,
+                serviceOptions().responseMaxRetryAttempts(2).retryAttemptsDelay(1000).build(),
+                new ConsumerOptions(0, 0, 1, 0, 0, 0, 0),
+                TargetCircuits.disabled(),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void shouldKeepTheWorkQueueWhenNotPartitioned() {
+        assertThat(partitionedRetries(1).queueOf(string())).isEqualTo(GW_LINK_QUEUE);
+    }
+
+    @Test
+    void shouldSendEveryRetryOfATargetToTheSamePartition() {
+        var retries = partitionedRetries(4);
+        var hipId = string();
+
+        assertThat(retries.queueOf(hipId))
+                .isEqualTo(retries.queueOf(hipId))
+                .isEqualTo(PartitionedRetries.partitionQueue(GW_LINK_QUEUE, Math.floorMod(hipId.hashCode(), 4)));
+        assertThat(retries.retriesOf(hipId).getWorkQueue()).isEqualTo(retries.queueOf(hipId));
+    }
+
+    @Test
+    void shouldSpreadTargetsOverThePartitions() {
+        var retries = partitionedRetries(4);
+
+        var queues = IntStream.range(0, 200)
+                .mapToObj(i -> retries.queueOf(string()))
+                .collect(Collectors.toSet());
+
+        assertThat(queues).containsExactlyInAnyOrder(GW_LINK_QUEUE + ".p0",
+                GW_LINK_QUEUE + ".p1",
+                GW_LINK_QUEUE + ".p2",
+                GW_LINK_QUEUE + ".p3");
+    }
+}
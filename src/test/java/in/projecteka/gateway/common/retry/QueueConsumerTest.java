@@ -0,0 +1,232 @@
+package in.projecteka.gateway.common.retry;
+
+import com.rabbitmq.client.AMQP;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.ConsumeOptions;
+import reactor.rabbitmq.Receiver;
+import reactor.rabbitmq.Sender;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static in.projecteka.gateway.common.Constants.GW_DATAFLOW_QUEUE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QueueConsumerTest {
+    @Mock
+    private Receiver receiver;
+
+    @Mock
+    private Sender sender;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.initMocks(this);
+        inFlight.set(0);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shouldConsumeWithThePrefetchAsQos() {
+        when(receiver.consumeManualAck(eq(GW_DATAFLOW_QUEUE), any(ConsumeOptions.class))).thenReturn(Flux.never());
+        var consumer = consumer(new ConsumerOptions(20, 10, 1, 0, 0, 0, 0));
+
+        consumer.start();
+
+        var consumeOptions = ArgumentCaptor.forClass(ConsumeOptions.class);
+        verify(receiver).consumeManualAck(eq(GW_DATAFLOW_QUEUE), consumeOptions.capture());
+        assertThat(consumeOptions.getValue().getQos()).isEqualTo(20);
+        consumer.stop();
+    }
+
+    @Test
+    void shouldReportItsConsumersOnTheGivenRegistry() {
+        when(receiver.consumeManualAck(eq(GW_DATAFLOW_QUEUE), any(ConsumeOptions.class))).thenReturn(Flux.never());
+        var consumer = consumer(new ConsumerOptions(0, 1, 1, 0, 0, 0, 0));
+
+        consumer.start();
+
+        var consumers = meterRegistry.get("gateway.retry.consumers").tag("queue", GW_DATAFLOW_QUEUE).gauge();
+        assertThat(consumers.value()).isEqualTo(1);
+        consumer.stop();
+        assertThat(consumers.value()).isZero();
+    }
+
+    @Test
+    void shouldProcessNoMoreDeliveriesAtATimeThanTheConcurrency() {
+        var deliveries = Flux.range(0, 50).map(i -> mock(AcknowledgableDelivery.class));
+        when(receiver.consumeManualAck(eq(GW_DATAFLOW_QUEUE), any(ConsumeOptions.class))).thenReturn(deliveries);
+        var consumer = consumer(new ConsumerOptions(0, 4, 1, 0, 0, 0, 0));
+
+        consumer.start();
+
+        assertThat(inFlight.get()).isEqualTo(4);
+        consumer.stop();
+    }
+
+    @Test
+    void shouldKeepConsumingWhenADeliveryFails() {
+        var processed = new AtomicInteger();
+        var deliveries = Flux.range(0, 3).map(i -> mock(AcknowledgableDelivery.class));
+        when(receiver.consumeManualAck(eq(GW_DATAFLOW_QUEUE), any(ConsumeOptions.class))).thenReturn(deliveries);
+        var consumer = new QueueConsumer(receiver,
+                sender,
+                GW_DATAFLOW_QUEUE,
+                new ConsumerOptions(0, 1, 1, 0, 0, 0, 0),
+                meterRegistry,
+                delivery -> Mono.fromRunnable(processed::incrementAndGet)
+                        .then(Mono.error(new RuntimeException())));
+
+        consumer.start();
+
+        assertThat(processed.get()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldDeadLetterADeliveryWhoseProcessingThrowsAndKeepConsuming() {
+        var first = mock(AcknowledgableDelivery.class);
+        var second = mock(AcknowledgableDelivery.class);
+        when(receiver.consumeManualAck(eq(GW_DATAFLOW_QUEUE), any(ConsumeOptions.class)))
+                .thenReturn(Flux.just(first, second));
+        var consumer = new QueueConsumer(receiver,
+                sender,
+                GW_DATAFLOW_QUEUE,
+                new ConsumerOptions(0, 1, 1, 0, 0, 0, 0),
+                meterRegistry,
+                delivery -> {
+                    throw new IllegalStateException();
+                });
+
+        consumer.start();
+
+        verify(first).nack(false);
+        verify(second).nack(false);
+    }
+
+    @Test
+    void shouldCloseAStoppedConsumerOnlyOnceItsDeliveriesFinished() {
+        var cancelled = new AtomicBoolean();
+        var deliveries = Flux.just(mock(AcknowledgableDelivery.class))
+                .concatWith(Flux.never())
+                .doOnCancel(() -> cancelled.set(true));
+        when(receiver.consumeManualAck(eq(GW_DATAFLOW_QUEUE), any(ConsumeOptions.class))).thenReturn(deliveries);
+        var processing = new CompletableFuture<Void>();
+        var consumer = new QueueConsumer(receiver,
+                sender,
+                GW_DATAFLOW_QUEUE,
+                new ConsumerOptions(0, 1, 1, 0, 0, 10000, 0),
+                meterRegistry,
+                delivery -> Mono.fromFuture(processing));
+        var scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            consumer.start();
+            consumer.scaleTo(0);
+            scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+            assertThat(consumer.consumers()).isZero();
+            assertThat(cancelled).isFalse();
+
+            processing.complete(null);
+            scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+            assertThat(cancelled).isTrue();
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @Test
+    void shouldCloseAStoppedConsumerAfterTheDrainTimeout() {
+        var cancelled = new AtomicBoolean();
+        var deliveries = Flux.just(mock(AcknowledgableDelivery.class))
+                .concatWith(Flux.never())
+                .doOnCancel(() -> cancelled.set(true));
+        when(receiver.consumeManualAck(eq(GW_DATAFLOW_QUEUE), any(ConsumeOptions.class))).thenReturn(deliveries);
+        var consumer = consumer(new ConsumerOptions(0, 1, 1, 0, 0, 5000, 0));
+        var scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            consumer.start();
+            consumer.scaleTo(0);
+            scheduler.advanceTimeBy(Duration.ofSeconds(4));
+            assertThat(cancelled).isFalse();
+
+            scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+            assertThat(cancelled).isTrue();
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @Test
+    void shouldRunAConsumerPerMessagesPerConsumerWaitingUpToTheMaximum() {
+        var consumer = consumer(new ConsumerOptions(0, 1, 4, 100, 0, 0, 0));
+
+        assertThat(consumer.consumersFor(0)).isEqualTo(1);
+        assertThat(consumer.consumersFor(100)).isEqualTo(1);
+        assertThat(consumer.consumersFor(101)).isEqualTo(2);
+        assertThat(consumer.consumersFor(10_000)).isEqualTo(4);
+    }
+
+    @Test
+    void shouldStartAndStopConsumersToScale() {
+        when(receiver.consumeManualAck(eq(GW_DATAFLOW_QUEUE), any(ConsumeOptions.class))).thenReturn(Flux.never());
+        var consumer = consumer(new ConsumerOptions(0, 1, 4, 100, 0, 0, 0));
+
+        consumer.scaleTo(3);
+        assertThat(consumer.consumers()).isEqualTo(3);
+        consumer.scaleTo(1);
+        assertThat(consumer.consumers()).isEqualTo(1);
+        verify(receiver, times(3)).consumeManualAck(eq(GW_DATAFLOW_QUEUE), any(ConsumeOptions.class));
+
+        consumer.stop();
+        assertThat(consumer.consumers()).isZero();
+    }
+
+    @Test
+    void shouldReadTheQueueDepthWithAPassiveDeclare() {
+        when(receiver.consumeManualAck(eq(GW_DATAFLOW_QUEUE), any(ConsumeOptions.class))).thenReturn(Flux.never());
+        when(sender.declareQueue(any())).thenReturn(Mono.just(new AMQP.Queue.DeclareOk.Builder()
+                .queue(GW_DATAFLOW_QUEUE)
+                .messageCount(250)
+                .build()));
+        var consumer = consumer(new ConsumerOptions(0, 1, 4, 100, 1000, 0, 0));
+        var scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            consumer.start();
+            scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+            assertThat(consumer.consumers()).isEqualTo(3);
+            consumer.stop();
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    private QueueConsumer consumer(ConsumerOptions options) {
+        return new QueueConsumer(receiver, sender, GW_DATAFLOW_QUEUE, options, meterRegistry, delivery -> {
+            inFlight.incrementAndGet();
+            return Mono.never();
+        });
+    }
+}
@@ -0,0 +1,273 @@
+package in.projecteka.gateway.common.retry;
+
+import in.projecteka.gateway.clients.ServiceClient;
+import in.projecteka.gateway.common.DefaultValidatedRequestAction;
+import in.projecteka.gateway.common.DefaultValidatedResponseAction;
+import in.projecteka.gateway.common.RetryableValidatedRequestAction;
+import in.projecteka.gateway.common.RetryableValidatedResponseAction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Flux;
+import reactor.rabbitmq.ConsumeOptions;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.QueueSpecification;
+import reactor.rabbitmq.Receiver;
+import reactor.rabbitmq.Sender;
+import reactor.test.StepVerifier;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static in.projecteka.gateway.common.Constants.X_CM_ID;
+import static in.projecteka.gateway.common.Constants.X_HIP_ID;
+import static in.projecteka.gateway.testcommon.TestBuilders.serviceOptions;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static reactor.core.publisher.Mono.empty;
+
+class QueuedDeliveriesTest {
+    @Mock
+    private Receiver receiver;
+
+    @Mock
+    private Sender sender;
+
+    @Mock
+    private RetryPublisher retryPublisher;
+
+    @Mock
+    private DefaultValidatedRequestAction<ServiceClient> requestAction;
+
+    @Mock
+    private DefaultValidatedResponseAction<ServiceClient> responseAction;
+
+    @Captor
+    private ArgumentCaptor<QueueSpecification> queueCaptor;
+
+    @Captor
+    private ArgumentCaptor<OutboundMessage> messageCaptor;
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.initMocks(this);
+        when(sender.declareQueue(any())).thenReturn(empty());
+        when(sender.bind(any())).thenReturn(empty());
+        when(receiver.consumeManualAck(any(), any(ConsumeOptions.class))).thenReturn(Flux.never());
+    }
+
+    private QueuedDeliveries queuedDeliveries(Map<String, DeliveryPolicy> routes) {
+        return queuedDeliveries(routes, null);
+    }
+
+    private QueuedDeliveries queuedDeliveries(Map<String, DeliveryPolicy> routes, DeliveryRole role) {
+        return new QueuedDeliveries(new DeliveryOptions(routes, 1, 0, 0, 0, role),
+                () -> receiver,
+                () -> sender,
+                serviceOptions().responseMaxRetryAttempts(2).retryAttemptsDelay(1000).retryJitter(0.2).build(),
+                new ConsumerOptions(0, 0, 1, 0, 0, 0, 0),
+                retryPublisher,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void shouldKeepTheDefaultActionOfARouteWhichIsNotQueued() {
+        var queuedDeliveries = queuedDeliveries(
+                Map.of("hip-consent-notify-request", new DeliveryPolicy(false, null, null, null, null, null)));
+
+        assertThat(queuedDeliveries.requestAction("hip-consent-notify-request", requestAction, X_HIP_ID))
+                .isSameAs(requestAction);
+        assertThat(queuedDeliveries.responseAction("discovery-response", responseAction, X_CM_ID))
+                .isSameAs(responseAction);
+        assertThat(queuedDeliveries.queuedRoutes()).isZero();
+    }
+
+    @Test
+    void shouldDeliverAQueuedRouteThroughItsOwnWorkQueue() {
+        var queuedDeliveries = queuedDeliveries(
+                Map.of("HIPCONSENTNOTIFYREQUEST", new DeliveryPolicy(true, null, null, null, null, null)));
+
+        var action = queuedDeliveries.requestAction("hip-consent-notify-request", requestAction, X_HIP_ID);
+
+        assertThat(action).isInstanceOf(RetryableValidatedRequestAction.class);
+        verify(sender, atLeastOnce()).declareQueue(queueCaptor.capture());
+        assertThat(queueCaptor.getAllValues()).extracting(QueueSpecification::getName)
+                .contains("gw.hip-consent-notify-request", "gw.hip-consent-notify-request.delay.1000ms");
+        verify(receiver).consumeManualAck(eq("gw.hip-consent-notify-request"), any(ConsumeOptions.class));
+    }
+
+    @Test
+    void shouldUseTheQueueAndRetriesOfThePolicy() {
+        var queuedDeliveries = queuedDeliveries(
+                Map.of("link-confirm-response", new DeliveryPolicy(true, "gw.link", 1, 250, null, null)));
+
+        var action = queuedDeliveries.responseAction("link-confirm-response", responseAction, X_CM_ID);
+
+        assertThat(action).isInstanceOf(RetryableValidatedResponseAction.class);
+        verify(sender, atLeastOnce()).declareQueue(queueCaptor.capture());
+        assertThat(queueCaptor.getAllValues()).extracting(QueueSpecification::getName)
+                .containsExactly("gw.link", "gw.link.delay.250ms");
+    }
+
+    @Test
+    void shouldFindTheWorkQueueOfAQueuedRouteByRouteOrQueue() {
+        var queuedDeliveries = queuedDeliveries(
+                Map.of("link-confirm-response", new DeliveryPolicy(true, "gw.link", 1, 250, null, null)));
+        queuedDeliveries.responseAction("link-confirm-response", responseAction, X_CM_ID);
+
+        assertThat(queuedDeliveries.workQueueOf("link-confirm-response")).contains("gw.link");
+        assertThat(queuedDeliveries.workQueueOf("gw.link")).contains("gw.link");
+        assertThat(queuedDeliveries.workQueueOf("discovery-response")).isEmpty();
+    }
+
+    @Test
+    void shouldConsumeEveryPartitionOfAPartitionedRoute() {
+        var queuedDeliveries = queuedDeliveries(
+                Map.of("link-confirm-response", new DeliveryPolicy(true, "gw.link", 1, 250, null, 3)));
+
+        queuedDeliveries.responseAction("link-confirm-response", responseAction, X_CM_ID);
+
+        verify(sender, atLeastOnce()).declareQueue(queueCaptor.capture());
+        assertThat(queueCaptor.getAllValues()).extracting(QueueSpecification::getName)
+                .contains("gw.link", "gw.link.p0", "gw.link.p1", "gw.link.p2", "gw.link.p2.delay.250ms");
+        verify(receiver).consumeManualAck(eq("gw.link"), any(ConsumeOptions.class));
+        verify(receiver).consumeManualAck(eq("gw.link.p0"), any(ConsumeOptions.class));
+        verify(receiver).consumeManualAck(eq("gw.link.p2"), any(ConsumeOptions.class));
+    }
+
+    @Test
+    void shouldSendARetryToTheTargetsPartitionOfTheWorkQueue() {
+        var queuedDeliveries = queuedDeliveries(
+                Map.of("link-confirm-response", new DeliveryPolicy(true, "gw.link", 1, 250, null, 3)));
+        queuedDeliveries.responseAction("link-confirm-response", responseAction, X_CM_ID);
+        var targetId = string();
+
+        assertThat(queuedDeliveries.retryQueueOf("gw.link", targetId))
+                .isEqualTo("gw.link.p" + Math.floorMod(targetId.hashCode(), 3));
+        assertThat(queuedDeliveries.retryQueueOf("gw.unknown", targetId)).isEqualTo("gw.unknown");
+    }
+
+    @Test
+    void shouldFallBackToServiceOptionsForWhatThePolicyLeavesUnset() {
+        var queuedDeliveries = queuedDeliveries(Map.of());
+
+        var serviceOptions = queuedDeliveries.serviceOptionsOf(new DeliveryPolicy(true, null, 5, null, 0.0, null));
+
+        assertThat(serviceOptions.getResponseMaxRetryAttempts()).isEqualTo(5);
+        assertThat(serviceOptions.getRetryAttemptsDelay()).isEqualTo(1000);
+        assertThat(serviceOptions.getRetryJitter()).isZero();
+    }
+
+    @Test
+    void shouldNotLetTwoRoutesShareAWorkQueue() {
+        var queuedDeliveries = queuedDeliveries(Map.of(
+                "link-confirm-response", new DeliveryPolicy(true, "gw.link", null, null, null, null),
+                "link-init-response", new DeliveryPolicy(true, "gw.link", null, null, null, null)));
+        queuedDeliveries.responseAction("link-confirm-response", responseAction, X_CM_ID);
+
+        assertThatThrownBy(() -> queuedDeliveries.responseAction("link-init-response", responseAction, X_CM_ID))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void shouldFailToStartOnARouteWhichNamesNoRoute() {
+        var queuedDeliveries = queuedDeliveries(Map.of(
+                "HIPCONSENTNOTIFYREQUEST", new DeliveryPolicy(true, null, null, null, null, null),
+                "hip-consent-notify", new DeliveryPolicy(true, null, null, null, null, null)));
+        queuedDeliveries.requestAction("hip-consent-notify-request", requestAction, X_HIP_ID);
+
+        assertThatThrownBy(queuedDeliveries::afterSingletonsInstantiated)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("[hip-consent-notify]");
+    }
+
+    @Test
+    void shouldHandEveryRouteToItsQueueWithoutConsumingItOnAnIngressNode() {
+        when(retryPublisher.publishOrHold(messageCaptor.capture())).thenReturn(empty());
+        var queuedDeliveries = queuedDeliveries(Map.of(), DeliveryRole.INGRESS);
+
+        var action = queuedDeliveries.requestAction("discovery-request", requestAction, X_HIP_ID);
+
+        assertThat(action).isInstanceOf(RetryableValidatedRequestAction.class);
+        verify(sender, atLeastOnce()).declareQueue(queueCaptor.capture());
+        assertThat(queueCaptor.getAllValues()).extracting(QueueSpecification::getName)
+                .contains("gw.discovery-request");
+        verify(receiver, never()).consumeManualAck(any(), any(ConsumeOptions.class));
+
+        StepVerifier.create(action.execute(string(), string(), Map.of("requestId", string()), X_HIP_ID))
+                .verifyComplete();
+
+        verify(requestAction, never()).routeRequest(any(), any(), any(), any());
+        assertThat(messageCaptor.getValue().getRoutingKey()).isEqualTo("gw.discovery-request");
+        assertThat(messageCaptor.getValue().getProperties().getHeaders())
+                .containsEntry(DelayedRetries.X_RETRY_ATTEMPT, DelayedRetries.HANDED_OFF_ATTEMPT);
+    }
+
+    @Test
+    void shouldConsumeTheQueueOfEveryRouteOnADeliveryWorker() {
+        var queuedDeliveries = queuedDeliveries(
+                Map.of("link-init-response", new DeliveryPolicy(false, "gw.linkinit", null, null, null, null)),
+                DeliveryRole.DELIVERY_WORKER);
+
+        queuedDeliveries.responseAction("link-init-response", responseAction, X_CM_ID);
+        queuedDeliveries.responseAction("discovery-response", responseAction, X_CM_ID);
+
+        verify(receiver).consumeManualAck(eq("gw.linkinit"), any(ConsumeOptions.class));
+        verify(receiver).consumeManualAck(eq("gw.discovery-response"), any(ConsumeOptions.class));
+        assertThat(queuedDeliveries.queuedRoutes()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldShareOneReceiverAndSenderBetweenQueuedRoutes() {
+        var receiversCreated = new AtomicInteger();
+        var sendersCreated = new AtomicInteger();
+        var deliveryOptions = new DeliveryOptions(Map.of(), 1, 0, 0, 0, DeliveryRole.DELIVERY_WORKER);
+        var queuedDeliveries = new QueuedDeliveries(deliveryOptions,
+                () -> {
+                    receiversCreated.incrementAndGet();
+                    return receiver;
+                },
+                () -> {
+                    sendersCreated.incrementAndGet();
+                    return sender;
+                },
+                serviceOptions().responseMaxRetryAttempts(2).retryAttemptsDelay(1000).build(),
+                new ConsumerOptions(0, 0, 1, 0, 0, 0, 10),
+                retryPublisher,
+                new SimpleMeterRegistry());
+
+        queuedDeliveries.responseAction("link-init-response", responseAction, X_CM_ID);
+        queuedDeliveries.responseAction("discovery-response", responseAction, X_CM_ID);
+        queuedDeliveries.requestAction("discovery-request", requestAction, X_HIP_ID);
+
+        assertThat(receiversCreated.get()).isEqualTo(1);
+        assertThat(sendersCreated.get()).isEqualTo(1);
+        queuedDeliveries.stop();
+        verify(receiver).close();
+        verify(sender).close();
+    }
+
+    @Test
+    void shouldCloseTheConnectionsOfQueuedRoutesOnStop() {
+        var queuedDeliveries = queuedDeliveries(
+                Map.of("link-confirm-response", new DeliveryPolicy(true, "gw.link", null, null, null, null)));
+        queuedDeliveries.responseAction("link-confirm-response", responseAction, X_CM_ID);
+
+        queuedDeliveries.stop();
+
+        verify(receiver).close();
+        verify(sender).close();
+        assertThat(queuedDeliveries.queuedRoutes()).isZero();
+    }
+}
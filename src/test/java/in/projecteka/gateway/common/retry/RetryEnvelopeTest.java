@@ -0,0 +1,80 @@
+package in.projecteka.gateway.common.retry;
+
+import com.rabbitmq.client.impl.LongStringHelper;
+import in.projecteka.gateway.common.Serializer;
+import in.projecteka.gateway.common.TraceableMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.rabbitmq.AcknowledgableDelivery;
+
+import java.util.Map;
+
+import static in.projecteka.gateway.common.retry.RetryEnvelope.X_RETRY_ENVELOPE;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.when;
+
+class RetryEnvelopeTest {
+    private AcknowledgableDelivery delivery;
+
+    @BeforeEach
+    void init() {
+        delivery = Mockito.mock(AcknowledgableDelivery.class, RETURNS_DEEP_STUBS);
+    }
+
+    @Test
+    void shouldCarryCorrelationIdAndRoutingHeaders() {
+        var correlationId = string();
+        var hipId = string();
+
+        var properties = RetryEnvelope.properties(Map.of("X-HIP-ID", hipId), correlationId);
+
+        assertThat(properties.getCorrelationId()).isEqualTo(correlationId);
+        assertThat(properties.getHeaders())
+                .containsEntry("X-HIP-ID", hipId)
+                .containsEntry(X_RETRY_ENVELOPE, "body");
+        assertThat(properties.getDeliveryMode()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldOpenBodyAsPublished() {
+        var correlationId = string();
+        var body = "{\"requestId\":\"" + string() + "\",\"timestamp\":\"2020-06-01T10:00:00.000Z\"}";
+        when(delivery.getProperties().getHeaders().get(X_RETRY_ENVELOPE))
+                .thenReturn(LongStringHelper.asLongString("body"));
+        when(delivery.getProperties().getCorrelationId()).thenReturn(correlationId);
+        when(delivery.getBody()).thenReturn(body.getBytes(UTF_8));
+
+        var envelope = RetryEnvelope.open(delivery);
+
+        assertThat(envelope.getBody()).isEqualTo(body);
+        assertThat(envelope.getCorrelationId()).isEqualTo(correlationId);
+    }
+
+    @Test
+    void shouldOpenTraceableMessageQueuedBeforeTheEnvelope() {
+        var correlationId = string();
+        var requestId = string();
+        var traceableMessage = new TraceableMessage(correlationId, Map.of("requestId", requestId));
+        when(delivery.getProperties().getHeaders().get(X_RETRY_ENVELOPE)).thenReturn(null);
+        when(delivery.getBody()).thenReturn(Serializer.from(traceableMessage).get().getBytes(UTF_8));
+
+        var envelope = RetryEnvelope.open(delivery);
+
+        assertThat(envelope.getBody()).isEqualTo("{\"requestId\":\"" + requestId + "\"}");
+        assertThat(envelope.getCorrelationId()).isEqualTo(correlationId);
+    }
+
+    @Test
+    void shouldGiveAnEnvelopeWithoutCorrelationIdOne() {
+        when(delivery.getProperties().getHeaders().get(X_RETRY_ENVELOPE))
+                .thenReturn(LongStringHelper.asLongString("body"));
+        when(delivery.getProperties().getCorrelationId()).thenReturn(null);
+        when(delivery.getBody()).thenReturn("{}".getBytes(UTF_8));
+
+        assertThat(RetryEnvelope.open(delivery).getCorrelationId()).isNotEmpty();
+    }
+}
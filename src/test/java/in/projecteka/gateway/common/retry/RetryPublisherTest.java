@@ -0,0 +1,170 @@
+package in.projecteka.gateway.common.retry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.OutboundMessageResult;
+import reactor.rabbitmq.Sender;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static in.projecteka.gateway.common.Constants.GW_EXCHANGE;
+import static in.projecteka.gateway.common.Constants.GW_LINK_QUEUE;
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RetryPublisherTest {
+    @Mock
+    private Sender sender;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RetryPublisher retryPublisher;
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void stop() {
+        retryPublisher.stop();
+    }
+
+    @Test
+    void shouldPublishMessagesOfOneWindowInOneConfirmedBatch() {
+        confirming(Set.of());
+        retryPublisher = new RetryPublisher(sender, new RetryPublisherOptions(3, 60_000, 1, 10, 0), meterRegistry);
+
+        StepVerifier.create(Flux.merge(retryPublisher.publish(message()),
+                retryPublisher.publish(message()),
+                retryPublisher.publish(message())))
+                .expectNext(true, true, true)
+                .verifyComplete();
+
+        verify(sender, times(1)).sendWithPublishConfirms(any());
+        var batchSize = meterRegistry.get("gateway.retry.publish.batch.size").summary();
+        assertThat(batchSize.count()).isEqualTo(1);
+        assertThat(batchSize.totalAmount()).isEqualTo(3);
+        assertThat(meterRegistry.get("gateway.retry.publish.confirm").tag("outcome", "ack").timer().count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    void shouldHoldAMessageWhichWasNotConfirmedAndPublishItAgainOnRedrive() {
+        var rejected = message();
+        confirming(Set.of(rejected));
+        retryPublisher = new RetryPublisher(sender, new RetryPublisherOptions(1, 1, 1, 10, 0), meterRegistry);
+
+        StepVerifier.create(retryPublisher.publishOrHold(rejected)).expectNext(PublishOutcome.HELD).verifyComplete();
+        assertThat(retryPublisher.held()).isEqualTo(1);
+
+        confirming(Set.of());
+        StepVerifier.create(retryPublisher.redrive()).verifyComplete();
+        assertThat(retryPublisher.held()).isZero();
+        assertThat(meterRegistry.get("gateway.retry.publish.confirm").tag("outcome", "nack").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldTreatAFailedBatchAsNotConfirmed() {
+        when(sender.sendWithPublishConfirms(any())).thenReturn(Flux.error(new RuntimeException()));
+        retryPublisher = new RetryPublisher(sender, new RetryPublisherOptions(1, 1, 1, 10, 0), meterRegistry);
+
+        StepVerifier.create(retryPublisher.publish(message())).expectNext(false).verifyComplete();
+    }
+
+    @Test
+    void shouldDropAndCountOnceTheFallbackIsFull() {
+        when(sender.sendWithPublishConfirms(any())).thenReturn(Flux.error(new RuntimeException()));
+        retryPublisher = new RetryPublisher(sender, new RetryPublisherOptions(1, 1, 1, 1, 0), meterRegistry);
+
+        StepVerifier.create(retryPublisher.publishOrHold(message())).expectNext(PublishOutcome.HELD).verifyComplete();
+        StepVerifier.create(retryPublisher.publishOrHold(message()))
+                .expectNext(PublishOutcome.DROPPED)
+                .verifyComplete();
+
+        assertThat(retryPublisher.held()).isEqualTo(1);
+        assertThat(meterRegistry.get("gateway.retry.fallback.dropped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldHoldUnconfirmedMessagesInTheJournalAcrossARestart(@TempDir Path directory) throws IOException {
+        var rejected = message();
+        confirming(Set.of(rejected));
+        var journalOptions = new JournalOptions(directory.toString(), 4096, false);
+        var options = new RetryPublisherOptions(1, 1, 1, 10, 0);
+        retryPublisher = new RetryPublisher(sender, options, new DeliveryJournal(journalOptions), meterRegistry);
+
+        StepVerifier.create(retryPublisher.publishOrHold(rejected)).expectNext(PublishOutcome.HELD).verifyComplete();
+        retryPublisher.stop();
+
+        confirming(Set.of());
+        retryPublisher = new RetryPublisher(sender, options, new DeliveryJournal(journalOptions), meterRegistry);
+        assertThat(retryPublisher.held()).isEqualTo(1);
+        StepVerifier.create(retryPublisher.redrive()).verifyComplete();
+        assertThat(retryPublisher.held()).isZero();
+    }
+
+    @Test
+    void shouldCloseItsSenderOnStop() {
+        retryPublisher = new RetryPublisher(sender, new RetryPublisherOptions(1, 1, 1, 10, 0), meterRegistry);
+
+        retryPublisher.stop();
+
+        verify(sender).close();
+    }
+
+    @Test
+    void shouldKeepRedrivingOnScheduleAfterARedriveFailed() {
+        var journal = mock(DeliveryJournal.class);
+        when(journal.read(anyInt()))
+                .thenThrow(new UncheckedIOException(new IOException()))
+                .thenReturn(List.of());
+        var scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            retryPublisher = new RetryPublisher(sender,
+                    new RetryPublisherOptions(1, 1, 1, 10, 1000),
+                    journal,
+                    meterRegistry);
+
+            scheduler.advanceTimeBy(Duration.ofSeconds(2));
+
+            verify(journal, times(2)).read(anyInt());
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void confirming(Set<OutboundMessage> rejected) {
+        when(sender.sendWithPublishConfirms(any())).thenAnswer(invocation ->
+                Flux.from((Publisher<OutboundMessage>) invocation.getArgument(0))
+                        .map(message -> new OutboundMessageResult(message, !rejected.contains(message))));
+    }
+
+    private static OutboundMessage message() {
+        return new OutboundMessage(GW_EXCHANGE, GW_LINK_QUEUE, string().getBytes());
+    }
+}
@@ -0,0 +1,89 @@
+package in.projecteka.gateway.common.retry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+
+import static in.projecteka.gateway.testcommon.TestBuilders.string;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+class TargetCircuitsTest {
+    @Mock
+    Clock clock;
+
+    private TargetCircuits circuits;
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.initMocks(this);
+        when(clock.millis()).thenReturn(0L);
+        circuits = new TargetCircuits(2, 1000, 0, clock);
+    }
+
+    @Test
+    void shouldOpenTheCircuitOfATargetAfterFailuresInARow() {
+        var hipId = string();
+
+        circuits.failed(hipId);
+        assertThat(circuits.allows(hipId)).isTrue();
+        circuits.failed(hipId);
+
+        assertThat(circuits.allows(hipId)).isFalse();
+        assertThat(circuits.allows(string())).isTrue();
+        assertThat(circuits.open()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldForgetFailuresOnceATargetSucceeds() {
+        var hipId = string();
+
+        circuits.failed(hipId);
+        circuits.succeeded(hipId);
+        circuits.failed(hipId);
+
+        assertThat(circuits.allows(hipId)).isTrue();
+    }
+
+    @Test
+    void shouldLetOneDeliveryThroughOnceTheOpenPeriodHasPassed() {
+        var hipId = string();
+        circuits.failed(hipId);
+        circuits.failed(hipId);
+
+        when(clock.millis()).thenReturn(1000L);
+
+        assertThat(circuits.allows(hipId)).isTrue();
+        assertThat(circuits.allows(hipId)).isFalse();
+        circuits.succeeded(hipId);
+        assertThat(circuits.allows(hipId)).isTrue();
+        assertThat(circuits.open()).isZero();
+    }
+
+    @Test
+    void shouldNeverOpenWhenDisabled() {
+        var disabled = TargetCircuits.disabled();
+        var hipId = string();
+
+        for (int i = 0; i < 10; i++) {
+            disabled.failed(hipId);
+        }
+
+        assertThat(disabled.allows(hipId)).isTrue();
+        assertThat(disabled.getOpenForMillis()).isZero();
+    }
+
+    @Test
+    void shouldCountOpenCircuitsOnTheGivenRegistry() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var registered = new TargetCircuits(1, 1000, 0, meterRegistry);
+
+        registered.failed(string());
+
+        assertThat(meterRegistry.get("gateway.retry.circuits.open").gauge().value()).isEqualTo(1);
+    }
+}
@@ -8,11 +8,15 @@ import in.projecteka.gateway.clients.HealthInfoNotificationServiceClient;
 import in.projecteka.gateway.clients.HipDataFlowServiceClient;
 import in.projecteka.gateway.common.Authenticator;
 import in.projecteka.gateway.common.Constants;
+import in.projecteka.gateway.common.RequestIds;
 import in.projecteka.gateway.common.RequestOrchestrator;
 import in.projecteka.gateway.common.ResponseOrchestrator;
 import in.projecteka.gateway.common.ValidatedResponse;
 import in.projecteka.gateway.common.ValidatedResponseAction;
 import in.projecteka.gateway.common.Validator;
+import in.projecteka.gateway.common.logging.RouteLogSampler;
+import in.projecteka.gateway.common.metrics.RoutingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -93,7 +97,10 @@ class DataflowControllerTest {
     @BeforeEach
     void init() {
         hipDataFlowRequestResponseOrchestrator = new ResponseOrchestrator(dataFlowResponseValidator,
-                validatedResponseAction);
+                validatedResponseAction,
+                new RoutingMetrics(new SimpleMeterRegistry()),
+                RouteLogSampler.ALL,
+                new RequestIds(UUID::randomUUID));
     }
 
     @Test
@@ -7,6 +7,7 @@ import in.projecteka.gateway.clients.model.ClientResponse;
 import in.projecteka.gateway.clients.model.ClientSecret;
 import in.projecteka.gateway.common.cache.CacheAdapter;
 import in.projecteka.gateway.registry.model.Bridge;
+import in.projecteka.gateway.registry.model.BridgeServiceEntry;
 import in.projecteka.gateway.registry.model.CMEntry;
 import in.projecteka.gateway.registry.model.EndpointDetails;
 import in.projecteka.gateway.registry.model.Endpoints;
@@ -14,6 +15,8 @@ import in.projecteka.gateway.registry.model.ServiceProfileResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -25,6 +28,7 @@ import reactor.core.publisher.MonoSink;
 import reactor.test.StepVerifier;
 
 import java.util.List;
+import java.util.Map;
 
 import static in.projecteka.gateway.clients.ClientError.invalidBridgeRegistryRequest;
 import static in.projecteka.gateway.clients.ClientError.invalidBridgeServiceRequest;
@@ -51,6 +55,7 @@ import static in.projecteka.gateway.testcommon.TestBuilders.clientSecret;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -79,6 +84,9 @@ class RegistryServiceTest {
     @Mock
     FacilityRegistryClient facilityRegistryClient;
 
+    @Captor
+    ArgumentCaptor<List<BridgeServiceEntry>> entriesCaptor;
+
     @BeforeEach
     void init() {
         initMocks(this);
@@ -318,24 +326,29 @@ class RegistryServiceTest {
     void shouldCreateBridgeServiceEntries() {
         var request = bridgeServiceRequest().active(false).build();
         var bridgeId = string();
-        when(registryRepository.ifBridgeServicePresent(bridgeId, request.getId())).thenReturn(just(false));
-        when(registryRepository.insertBridgeServiceEntry(eq(bridgeId), eq(request.getId()), eq(request.getName()), any(), any())).thenReturn(empty());
+        when(registryRepository.fetchServicesOfOtherBridges(List.of(request.getId()), bridgeId)).thenReturn(Flux.empty());
+        when(registryRepository.fetchExistingEndpoints(bridgeId, List.of(request.getId()))).thenReturn(just(Map.of()));
+        when(registryRepository.saveBridgeServiceEntries(eq(bridgeId), entriesCaptor.capture())).thenReturn(empty());
 
         var producer = registryService.populateBridgeServicesEntries(bridgeId, List.of(request));
         StepVerifier.create(producer)
                 .verifyComplete();
 
-        verify(registryRepository).ifBridgeServicePresent(bridgeId, request.getId());
-        verify(registryRepository).insertBridgeServiceEntry(eq(bridgeId), eq(request.getId()), eq(request.getName()), any(), any());
+        var entry = entriesCaptor.getValue().get(0);
+        assertThat(entry.getId()).isEqualTo(request.getId());
+        assertThat(entry.getName()).isEqualTo(request.getName());
+        assertThat(entry.isExisting()).isFalse();
+        verify(adminServiceClient, never()).getServiceAccount(any());
     }
 
     @Test
     void shouldUpdateBridgeServiceEntries() {
         var request = bridgeServiceRequest().active(false).build();
         var bridgeId = string();
-        when(registryRepository.ifBridgeServicePresent(bridgeId, request.getId())).thenReturn(just(true));
-        when(registryRepository.fetchExistingEndpoints(bridgeId, request.getId())).thenReturn(just(new Endpoints()));
-        when(registryRepository.updateBridgeServiceEntry(eq(bridgeId), eq(request.getId()), eq(request.getName()), any(), any())).thenReturn(empty());
+        when(registryRepository.fetchServicesOfOtherBridges(List.of(request.getId()), bridgeId)).thenReturn(Flux.empty());
+        when(registryRepository.fetchExistingEndpoints(bridgeId, List.of(request.getId())))
+                .thenReturn(just(Map.of(request.getId(), new Endpoints())));
+        when(registryRepository.saveBridgeServiceEntries(eq(bridgeId), entriesCaptor.capture())).thenReturn(empty());
         String key = request.getId() + "-" + request.getType().name();
         when(bridgeMappings.invalidate(key)).thenReturn(empty());
 
@@ -343,9 +356,7 @@ class RegistryServiceTest {
         StepVerifier.create(producer)
                 .verifyComplete();
 
-        verify(registryRepository).ifBridgeServicePresent(bridgeId, request.getId());
-        verify(registryRepository).fetchExistingEndpoints(bridgeId, request.getId());
-        verify(registryRepository).updateBridgeServiceEntry(eq(bridgeId), eq(request.getId()), eq(request.getName()), any(), any());
+        assertThat(entriesCaptor.getValue().get(0).isExisting()).isTrue();
         verify(bridgeMappings).invalidate(key);
     }
 
@@ -353,15 +364,16 @@ class RegistryServiceTest {
     void shouldThrowInvalidBridgeServiceRequest() {
         var request = bridgeServiceRequest().active(true).build();
         var bridgeId = string();
-        when(registryRepository.ifPresent(request.getId(), request.getType(), request.isActive(), bridgeId))
-                .thenReturn(just(true));
+        when(registryRepository.fetchServicesOfOtherBridges(List.of(request.getId()), bridgeId))
+                .thenReturn(Flux.just(bridgeService().id(request.getId()).type(request.getType()).build()));
 
         var producer = registryService.populateBridgeServicesEntries(bridgeId, List.of(request));
         StepVerifier.create(producer)
                 .verifyErrorSatisfies(throwable ->
                         assertThat(throwable).isEqualToComparingFieldByField(invalidBridgeServiceRequest()));
 
-        verify(registryRepository).ifPresent(request.getId(), request.getType(), request.isActive(), bridgeId);
+        verify(registryRepository, never()).saveBridgeServiceEntries(any(), any());
+        verify(adminServiceClient, never()).getServiceAccount(any());
     }
 
     @Test
@@ -370,11 +382,10 @@ class RegistryServiceTest {
         var bridgeId = string();
         var serviceAccount = serviceAccount().build();
         var realmRoles = List.of(realmRole().name("HIP").build(), realmRole().name("HIU").build());
-        when(registryRepository.ifPresent(request.getId(), request.getType(), request.isActive(), bridgeId))
-                .thenReturn(just(false));
-        when(registryRepository.ifBridgeServicePresent(bridgeId, request.getId())).thenReturn(just(false));
-        when(registryRepository.insertBridgeServiceEntry(eq(bridgeId), eq(request.getId()), eq(request.getName()), any(), any()))
-                .thenReturn(empty());
+        when(registryRepository.fetchServicesOfOtherBridges(List.of(request.getId()), bridgeId))
+                .thenReturn(Flux.just(bridgeService().id(request.getId()).type(HIU).build()));
+        when(registryRepository.fetchExistingEndpoints(bridgeId, List.of(request.getId()))).thenReturn(just(Map.of()));
+        when(registryRepository.saveBridgeServiceEntries(eq(bridgeId), entriesCaptor.capture())).thenReturn(empty());
         when(adminServiceClient.getServiceAccount(bridgeId)).thenReturn(just(serviceAccount));
         when(adminServiceClient.getAvailableRealmRoles(serviceAccount.getId())).thenReturn(just(realmRoles));
         when(adminServiceClient.assignRoleToClient(List.of(realmRoles.get(0)), serviceAccount.getId()))
@@ -384,9 +395,7 @@ class RegistryServiceTest {
         StepVerifier.create(producer)
                 .verifyComplete();
 
-        verify(registryRepository).ifPresent(request.getId(), request.getType(), request.isActive(), bridgeId);
-        verify(registryRepository).ifBridgeServicePresent(bridgeId, request.getId());
-        verify(registryRepository).insertBridgeServiceEntry(eq(bridgeId), eq(request.getId()), eq(request.getName()), any(), any());
+        assertThat(entriesCaptor.getValue().get(0).isExisting()).isFalse();
         verify(adminServiceClient).getServiceAccount(bridgeId);
         verify(adminServiceClient).getAvailableRealmRoles(serviceAccount.getId());
         verify(adminServiceClient).assignRoleToClient(List.of(realmRoles.get(0)), serviceAccount.getId());
@@ -403,12 +412,10 @@ class RegistryServiceTest {
         var existingEndpoints = Endpoints.builder().hipEndpoints(List.of(hipEndpointDetails1, hipEndpointDetails2)).build();
         String key = request.getId() + "-" + request.getType().name();
 
-        when(registryRepository.ifPresent(request.getId(), request.getType(), request.isActive(), bridgeId))
-                .thenReturn(just(false));
-        when(registryRepository.ifBridgeServicePresent(bridgeId, request.getId())).thenReturn(just(true));
-        when(registryRepository.fetchExistingEndpoints(bridgeId, request.getId())).thenReturn(just(existingEndpoints));
-        when(registryRepository.updateBridgeServiceEntry(eq(bridgeId), eq(request.getId()), eq(request.getName()), any(), any()))
-                .thenReturn(empty());
+        when(registryRepository.fetchServicesOfOtherBridges(List.of(request.getId()), bridgeId)).thenReturn(Flux.empty());
+        when(registryRepository.fetchExistingEndpoints(bridgeId, List.of(request.getId())))
+                .thenReturn(just(Map.of(request.getId(), existingEndpoints)));
+        when(registryRepository.saveBridgeServiceEntries(eq(bridgeId), entriesCaptor.capture())).thenReturn(empty());
         when(bridgeMappings.invalidate(key)).thenReturn(empty());
         when(adminServiceClient.getServiceAccount(bridgeId)).thenReturn(just(serviceAccount));
         when(adminServiceClient.getAvailableRealmRoles(serviceAccount.getId())).thenReturn(just(realmRoles));
@@ -419,16 +426,41 @@ class RegistryServiceTest {
         StepVerifier.create(producer)
                 .verifyComplete();
 
-        verify(registryRepository).ifPresent(request.getId(), request.getType(), request.isActive(), bridgeId);
-        verify(registryRepository).ifBridgeServicePresent(bridgeId, request.getId());
-        verify(registryRepository).fetchExistingEndpoints(bridgeId, request.getId());
-        verify(registryRepository).updateBridgeServiceEntry(eq(bridgeId), eq(request.getId()), eq(request.getName()), any(), any());
+        var entry = entriesCaptor.getValue().get(0);
+        assertThat(entry.isExisting()).isTrue();
+        assertThat(entry.getTypeActive()).containsEntry(HIP, true);
         verify(bridgeMappings).invalidate(key);
         verify(adminServiceClient).getServiceAccount(bridgeId);
         verify(adminServiceClient).getAvailableRealmRoles(serviceAccount.getId());
         verify(adminServiceClient).assignRoleToClient(List.of(realmRoles.get(0)), serviceAccount.getId());
     }
 
+    @Test
+    void shouldRegisterManyServicesInOneSaveAndAssignEachRoleOnce() {
+        var bridgeId = string();
+        var serviceAccount = serviceAccount().build();
+        var realmRoles = List.of(realmRole().name("HIP").build(), realmRole().name("HIU").build());
+        var requests = List.of(bridgeServiceRequest().active(true).type(HIP).build(),
+                bridgeServiceRequest().active(true).type(HIP).build(),
+                bridgeServiceRequest().active(true).type(HIU).build());
+        var serviceIds = List.of(requests.get(0).getId(), requests.get(1).getId(), requests.get(2).getId());
+        when(registryRepository.fetchServicesOfOtherBridges(serviceIds, bridgeId)).thenReturn(Flux.empty());
+        when(registryRepository.fetchExistingEndpoints(bridgeId, serviceIds)).thenReturn(just(Map.of()));
+        when(registryRepository.saveBridgeServiceEntries(eq(bridgeId), entriesCaptor.capture())).thenReturn(empty());
+        when(adminServiceClient.getServiceAccount(bridgeId)).thenReturn(just(serviceAccount));
+        when(adminServiceClient.getAvailableRealmRoles(serviceAccount.getId())).thenReturn(just(realmRoles));
+        when(adminServiceClient.assignRoleToClient(realmRoles, serviceAccount.getId())).thenReturn(empty());
+
+        var producer = registryService.populateBridgeServicesEntries(bridgeId, requests);
+        StepVerifier.create(producer)
+                .verifyComplete();
+
+        assertThat(entriesCaptor.getValue()).extracting(BridgeServiceEntry::getId).containsExactlyElementsOf(serviceIds);
+        verify(registryRepository).saveBridgeServiceEntries(eq(bridgeId), any());
+        verify(adminServiceClient).getServiceAccount(bridgeId);
+        verify(adminServiceClient).assignRoleToClient(realmRoles, serviceAccount.getId());
+    }
+
     @Test
     void shouldReturnServiceProfileForGivenServiceId() {
         var serviceId = string();
@@ -0,0 +1,28 @@
+package in.projecteka.gateway.testcommon;
+
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestPlan;
+import reactor.blockhound.BlockHound;
+
+/**
+ * Installs BlockHound before any test runs when the {@value #ENABLED} system property is set, as the testBlocking
+ * task does. A blocking call made on a non-blocking thread (netty event loops and reactor's parallel scheduler) then
+ * fails the pipeline it was made in with a BlockingOperationError, which fails the test.
+ */
+public class BlockingCallDetector implements TestExecutionListener {
+    public static final String ENABLED = "gateway.detectBlockingCalls";
+
+    @Override
+    public void testPlanExecutionStarted(TestPlan testPlan) {
+        if (!isEnabled()) {
+            return;
+        }
+        BlockHound.install(builder -> builder
+                // tests log straight to the console; the application logs through an async appender
+                .allowBlockingCallsInside("ch.qos.logback.core.OutputStreamAppender", "writeBytes"));
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED);
+    }
+}
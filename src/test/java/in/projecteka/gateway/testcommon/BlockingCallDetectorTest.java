@@ -0,0 +1,40 @@
+package in.projecteka.gateway.testcommon;
+
+import org.junit.jupiter.api.Test;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BlockingCallDetectorTest {
+    @Test
+    void shouldFailABlockingCallOnANonBlockingThread() {
+        assumeTrue(BlockingCallDetector.isEnabled());
+
+        StepVerifier.create(Mono.delay(Duration.ofMillis(1))
+                .doOnNext(tick -> {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }))
+                .verifyError(BlockingOperationError.class);
+    }
+
+    @Test
+    void shouldAllowABlockingCallOnBoundedElastic() {
+        assumeTrue(BlockingCallDetector.isEnabled());
+
+        StepVerifier.create(Mono.fromCallable(() -> {
+            Thread.sleep(1);
+            return 1;
+        }).subscribeOn(Schedulers.boundedElastic()))
+                .expectNext(1)
+                .verifyComplete();
+    }
+}